@@ -22,16 +22,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpResponse;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.graph.Graph;
+import org.apache.jena.http.sys.AdmissionControl;
+import org.apache.jena.http.sys.ParseExecutor;
+import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.WebContent;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.riot.system.StreamRDFLib;
@@ -49,7 +58,73 @@ import org.apache.jena.web.HttpSC;
  * See also {@link HttpRDF}.
  */
 public class AsyncHttpRDF {
-    // Add POST and PUT
+
+    private static volatile Executor parseExecutor = ParseExecutor.create();
+
+    /**
+     * Set the {@link Executor} for parsing the response to asynchronous GET requests.
+     * Parsing reads the response body as it arrives, so it must not run on the
+     * {@code HttpClient} executor. The default is a {@link ParseExecutor}, one thread per processor.
+     */
+    public static void setParseExecutor(Executor executor) {
+        parseExecutor = Objects.requireNonNull(executor);
+    }
+
+    /** Get the {@link Executor} used for parsing the response to asynchronous GET requests. */
+    public static Executor getParseExecutor() {
+        return parseExecutor;
+    }
+
+    /** Number of threads of the default upload executor, and the default limit on uploads in progress. */
+    public static final int dftUploadThreads = 4;
+
+    private static volatile Executor uploadExecutor = createUploadExecutor(dftUploadThreads);
+
+    private static volatile AdmissionControl uploadAdmission = AdmissionControl.newBuilder().maxInFlight(dftUploadThreads).build();
+
+    private static Executor createUploadExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r->{
+            Thread thread = new Thread(r, "HttpUpload-"+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Set the {@link Executor} that serializes the request body of asynchronous
+     * POST and PUT requests when the body is streamed (see {@link HttpEnv#sendContentLength}).
+     * <p>
+     * A streaming writer holds a thread until its body has been sent. The number of
+     * uploads in progress is limited by {@link #setUploadAdmission}, so the executor
+     * should have at least that many threads. The default is a pool of
+     * {@value #dftUploadThreads} threads.
+     */
+    public static void setUploadExecutor(Executor executor) {
+        uploadExecutor = Objects.requireNonNull(executor);
+    }
+
+    /** Get the {@link Executor} used for streaming the body of asynchronous POST and PUT requests. */
+    public static Executor getUploadExecutor() {
+        return uploadExecutor;
+    }
+
+    /**
+     * Set the {@link AdmissionControl} for asynchronous POST and PUT requests.
+     * An upload waits, without blocking a thread, until it is admitted; only then is
+     * the request sent. An upload is in progress until its response has been received.
+     * The default allows {@value #dftUploadThreads} uploads in progress at once.
+     */
+    public static void setUploadAdmission(AdmissionControl admissionControl) {
+        uploadAdmission = Objects.requireNonNull(admissionControl);
+    }
+
+    /** Get the {@link AdmissionControl} for asynchronous POST and PUT requests. */
+    public static AdmissionControl getUploadAdmission() {
+        return uploadAdmission;
+    }
 
     private static Consumer<HttpRequest.Builder> acceptHeaderGraph = HttpLib.setAcceptHeader(WebContent.defaultGraphAcceptHeader);
     private static Consumer<HttpRequest.Builder> acceptHeaderDatasetGraph = HttpLib.setAcceptHeader(WebContent.defaultDatasetAcceptHeader);
@@ -135,12 +210,114 @@ public class AsyncHttpRDF {
     private static CompletableFuture<Void> asyncGetToStream(HttpClient httpClient, String url, Consumer<HttpRequest.Builder> modifier, StreamRDF dest, Transactional _transactional) {
         CompletableFuture<HttpResponse<InputStream>> cf = asyncGetToInput(httpClient, url, modifier);
         Transactional transact = ( _transactional == null ) ? TransactionalNull.create() : _transactional;
-        return cf.thenApply(httpResponse->{
+        // Parse on the parse executor, not the thread completing the response.
+        // If the parse executor rejects the task (e.g. it has been shutdown), the
+        // response body is never read: close it. Closing after a failed parse is harmless.
+        CompletableFuture<Void> parse = cf.thenApplyAsync(httpResponse->{
             transact.executeWrite(()->HttpRDF.httpResponseToStreamRDF(url, httpResponse, dest));
             return null;
+        }, parseExecutor);
+        parse.whenComplete((x, ex)->{
+            if ( ex != null ) {
+                HttpResponse<InputStream> response = cf.getNow(null);
+                if ( response != null )
+                    IO.close(response.body());
+            }
+        });
+        return parse;
+    }
+
+    /**
+     * Execute an asynchronous GET, with the given HTTP headers, and parse the result to a StreamRDF.
+     * If "transactional" is not null, the object is used a write transaction around the parsing step.
+     */
+    public static CompletableFuture<Void> asyncGetToStream(HttpClient httpClient, String url, Map<String, String> headers, StreamRDF dest, Transactional transactional) {
+        Objects.requireNonNull(httpClient, "HttpClient");
+        Objects.requireNonNull(url, "URL");
+        Objects.requireNonNull(dest, "StreamRDF");
+        return asyncGetToStream(httpClient, url, HttpLib.setHeaders(headers), dest, transactional);
+    }
+
+    // ---- POST, PUT, DELETE
+    // The request body is serialized as it is sent (see HttpEnv.sendContentLength)
+    // on the upload executor. Requests wait for the upload admission control before
+    // they are sent.
+    // The response body, which is only used for error messages, is read into memory
+    // before the CompletableFuture completes.
+
+    /** POST a graph, asynchronously */
+    public static CompletableFuture<Void> asyncPostGraph(String url, Graph graph) {
+        return asyncPostGraph(HttpEnv.getDftHttpClient(), url, graph, HttpEnv.dftTriplesFormat, null);
+    }
+
+    /** POST a graph, asynchronously */
+    public static CompletableFuture<Void> asyncPostGraph(HttpClient httpClient, String url, Graph graph,
+                                                         RDFFormat format, Map<String, String> httpHeaders) {
+        BodyPublisher bodyPublisher = HttpRDF.graphToHttpBody(graph, format, HttpEnv.sendContentLength, null, uploadExecutor);
+        return asyncPushBody(httpClient, url, Push.POST, bodyPublisher, format, httpHeaders);
+    }
+
+    /** PUT a graph, asynchronously */
+    public static CompletableFuture<Void> asyncPutGraph(String url, Graph graph) {
+        return asyncPutGraph(HttpEnv.getDftHttpClient(), url, graph, HttpEnv.dftTriplesFormat, null);
+    }
+
+    /** PUT a graph, asynchronously */
+    public static CompletableFuture<Void> asyncPutGraph(HttpClient httpClient, String url, Graph graph,
+                                                        RDFFormat format, Map<String, String> httpHeaders) {
+        BodyPublisher bodyPublisher = HttpRDF.graphToHttpBody(graph, format, HttpEnv.sendContentLength, null, uploadExecutor);
+        return asyncPushBody(httpClient, url, Push.PUT, bodyPublisher, format, httpHeaders);
+    }
+
+    /** POST a dataset, asynchronously */
+    public static CompletableFuture<Void> asyncPostDataset(HttpClient httpClient, String url, DatasetGraph dataset,
+                                                           RDFFormat format, Map<String, String> httpHeaders) {
+        BodyPublisher bodyPublisher = HttpRDF.datasetToHttpBody(dataset, format, HttpEnv.sendContentLength, null, uploadExecutor);
+        return asyncPushBody(httpClient, url, Push.POST, bodyPublisher, format, httpHeaders);
+    }
+
+    /** PUT a dataset, asynchronously */
+    public static CompletableFuture<Void> asyncPutDataset(HttpClient httpClient, String url, DatasetGraph dataset,
+                                                          RDFFormat format, Map<String, String> httpHeaders) {
+        BodyPublisher bodyPublisher = HttpRDF.datasetToHttpBody(dataset, format, HttpEnv.sendContentLength, null, uploadExecutor);
+        return asyncPushBody(httpClient, url, Push.PUT, bodyPublisher, format, httpHeaders);
+    }
+
+    /**
+     * Send a body of RDF with POST or PUT, asynchronously.
+     * See {@link HttpRDF#httpPushBody}.
+     */
+    public static CompletableFuture<Void> asyncPushBody(HttpClient httpClient, String url, Push style, BodyPublisher bodyPublisher,
+                                                        RDFFormat format, Map<String, String> httpHeaders) {
+        Objects.requireNonNull(httpClient, "HttpClient");
+        Objects.requireNonNull(url, "URL");
+        Consumer<HttpRequest.Builder> modifier = HttpLib.setHeaders(HttpRDF.pushHeaders(format, httpHeaders));
+        // Wait for admission before the request is sent, not in the body writer.
+        return uploadAdmission.acquireAsync(bodyPublisher.contentLength()).thenCompose(permit->{
+            CompletableFuture<Void> cf;
+            try {
+                cf = HttpLib.asyncHttpPushData(httpClient, style, url, modifier, bodyPublisher);
+            } catch (RuntimeException ex) {
+                permit.release();
+                throw ex;
+            }
+            return cf.whenComplete((x, ex)->permit.release());
         });
     }
 
+    /** DELETE a graph, asynchronously */
+    public static CompletableFuture<Void> asyncDeleteGraph(String url) {
+        return asyncDeleteGraph(HttpEnv.getDftHttpClient(), url);
+    }
+
+    /** DELETE a graph, asynchronously */
+    public static CompletableFuture<Void> asyncDeleteGraph(HttpClient httpClient, String url) {
+        Objects.requireNonNull(httpClient, "HttpClient");
+        Objects.requireNonNull(url, "URL");
+        HttpRDF.invalidateCache(url);
+        return HttpLib.asyncExecuteNoBody(httpClient, HttpRDF.deleteRequest(url));
+    }
+
     /**
      * Wait for the {@code CompletableFuture} or throw a runtime exception.
      * This operation extracts RuntimeException from the {@code CompletableFuture}.
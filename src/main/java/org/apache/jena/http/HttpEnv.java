@@ -18,10 +18,27 @@
 
 package org.apache.jena.http;
 
+import java.lang.reflect.Method;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
+import org.apache.jena.http.sys.AdmissionControl;
+import org.apache.jena.http.sys.CircuitBreaker;
+import org.apache.jena.http.sys.ContentDecoderRegistry;
+import org.apache.jena.http.sys.RegistryAcceptEncoding;
+import org.apache.jena.http.sys.RegistryAdmissionControl;
+import org.apache.jena.http.sys.RegistryCircuitBreaker;
+import org.apache.jena.http.sys.RegistryRetryPolicy;
+import org.apache.jena.http.sys.RetryPolicy;
 import org.apache.jena.riot.RDFFormat;
 
 /**
@@ -40,6 +57,28 @@ public class HttpEnv {
      */
     public static /* final */ int urlLimit = 2 * 1024;
 
+    /**
+     * Whether RDF graphs and datasets sent with HTTP PUT and POST are serialized
+     * before sending, so that the request has a {@code Content-Length}, or streamed as
+     * they are serialized (the default). Some servers require {@code Content-Length}.
+     */
+    public static /* final */ boolean sendContentLength = false;
+
+    /**
+     * When finishing with an HTTP response body that has not been read to the end,
+     * read and discard at most this many bytes to reach the end so that the connection
+     * can be reused, otherwise abort the exchange. -1 means "no limit".
+     * See {@link HttpLib#finish(java.io.InputStream)}.
+     */
+    public static /* final */ long finishDrainBytes = 256 * 1024;
+
+    /**
+     * When finishing with an HTTP response body that has not been read to the end,
+     * spend at most this many milliseconds reading to the end, otherwise abort the exchange.
+     * -1 means "no limit".
+     */
+    public static /* final */ long finishDrainMillis = 500;
+
     public static HttpClient getDftHttpClient() { return httpClient; }
     public static void setDftHttpClient(HttpClient dftHttpClient) { httpClient = dftHttpClient; }
 
@@ -53,9 +92,139 @@ public class HttpEnv {
         return requestHttpClient;
     }
 
-    private static HttpClient httpClient = buildDftHttpClient();
+    /**
+     * The {@code Accept-Encoding} for requests where there is no
+     * {@link RegistryAcceptEncoding} entry for the URL. Default: none (no compression).
+     * Set to {@link RegistryAcceptEncoding#COMPRESSED} to ask for
+     * compressed responses from all services.
+     */
+    public static /* final */ String dftAcceptEncoding = null;
 
-    private static HttpClient buildDftHttpClient() {
+    /**
+     * Return the {@code Accept-Encoding} header value for a request URL, or null for "don't set".
+     * An explicit registration in {@link RegistryAcceptEncoding} takes precedence over {@link #dftAcceptEncoding}.
+     */
+    public static String getAcceptEncoding(String url) {
+        String acceptEncoding = RegistryAcceptEncoding.get().find(url);
+        if ( acceptEncoding == null )
+            acceptEncoding = dftAcceptEncoding;
+        if ( acceptEncoding == null || acceptEncoding.equals("identity") )
+            return null;
+        if ( acceptEncoding.equals(RegistryAcceptEncoding.COMPRESSED) )
+            return ContentDecoderRegistry.get().acceptEncoding();
+        return acceptEncoding;
+    }
+
+    /**
+     * The {@link RetryPolicy} for idempotent requests (GET, HEAD, PUT, DELETE) where
+     * there is no {@link RegistryRetryPolicy} entry for the URL. Default: none (no retries).
+     */
+    public static /* final */ RetryPolicy dftRetryPolicy = null;
+
+    /**
+     * Return the {@link RetryPolicy} for a service URL, or null for "no retries".
+     * An explicit registration in {@link RegistryRetryPolicy} takes precedence over {@link #dftRetryPolicy}.
+     */
+    public static RetryPolicy getRetryPolicy(String url) {
+        RetryPolicy retryPolicy = RegistryRetryPolicy.get().find(url);
+        if ( retryPolicy == null )
+            retryPolicy = dftRetryPolicy;
+        return retryPolicy;
+    }
+
+    /**
+     * Return the {@link AdmissionControl} for a service URL, or null for "no limits".
+     * @see RegistryAdmissionControl
+     */
+    public static AdmissionControl getAdmissionControl(String url) {
+        return RegistryAdmissionControl.get().find(url);
+    }
+
+    /**
+     * Return the {@link CircuitBreaker} for a service URL, or null for none.
+     * @see RegistryCircuitBreaker
+     */
+    public static CircuitBreaker getCircuitBreaker(String url) {
+        return RegistryCircuitBreaker.get().find(url);
+    }
+
+    /**
+     * Cache for RDF fetched by {@link HttpRDF} and {@link org.apache.jena.sparql.exec.http.GSP}
+     * GET operations. Default: none.
+     */
+    public static /* final */ HttpRDFCache httpRDFCache = null;
+
+    /**
+     * Coalescing of identical concurrent requests for {@link HttpRDF} GET operations
+     * and {@link org.apache.jena.sparql.exec.http.QueryExecHTTP} SELECT queries. Default: none.
+     */
+    public static /* final */ RequestCoalescer requestCoalescer = null;
+
+    // ---- HttpClient profiles.
+
+    /**
+     * Profile name: the default {@link HttpClient} settings (JDK default executor).
+     * The profile is the {@link HttpClient} that {@code HttpEnv} starts with as its default.
+     */
+    public static final String profileDefault           = "default";
+    /**
+     * Profile name: an {@link HttpClient} with a thread-per-task executor, using virtual threads
+     * when the JVM has them (Java 21 and later) and otherwise a cached pool of daemon threads.
+     */
+    public static final String profileHighConcurrency   = "high-concurrency";
+    /** Profile name: an {@link HttpClient} with a fixed size pool of {@link #boundedPoolSize} threads. */
+    public static final String profileBounded           = "bounded";
+
+    /** Number of threads for the {@value #profileBounded} profile. Set before the profile is first used. */
+    public static /* final */ int boundedPoolSize = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final Map<String, Supplier<HttpClient>> profileBuilders = new ConcurrentHashMap<>();
+    private static final Map<String, HttpClient> profiles = new ConcurrentHashMap<>();
+
+    static {
+        profileBuilders.put(profileDefault,         ()->initialHttpClient);
+        profileBuilders.put(profileHighConcurrency, ()->httpClientBuilder().executor(threadPerTaskExecutor()).build());
+        profileBuilders.put(profileBounded,         ()->httpClientBuilder().executor(boundedExecutor(boundedPoolSize)).build());
+    }
+
+    /**
+     * Register a named {@link HttpClient} profile. The {@link HttpClient} is built when
+     * the profile is first used. A profile that has already been built is not changed.
+     */
+    public static void registerProfile(String name, Supplier<HttpClient> builder) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(builder);
+        profileBuilders.put(name, builder);
+    }
+
+    /**
+     * Return the {@link HttpClient} for a named profile. There is one {@link HttpClient}
+     * per profile, built on first use. To use a profile for certain services, register it:
+     * <pre>
+     *   RegistryHttpClient.get().addPrefix("http://host/", HttpEnv.getProfile(HttpEnv.profileHighConcurrency));
+     * </pre>
+     * @throws IllegalArgumentException if there is no such profile.
+     */
+    public static HttpClient getProfile(String name) {
+        Objects.requireNonNull(name);
+        return profiles.computeIfAbsent(name, n->{
+            Supplier<HttpClient> builder = profileBuilders.get(n);
+            if ( builder == null )
+                throw new IllegalArgumentException("No such HttpClient profile: "+n);
+            return builder.get();
+        });
+    }
+
+    /** Use a named profile as the default {@link HttpClient}. */
+    public static void setDftProfile(String name) {
+        setDftHttpClient(getProfile(name));
+    }
+
+    /**
+     * An {@link HttpClient.Builder} with the settings used by the default {@link HttpClient}.
+     * Use this to build an {@link HttpClient} with other settings, such as an executor or HTTP version.
+     */
+    public static HttpClient.Builder httpClientBuilder() {
         return HttpClient.newBuilder()
             // By default, the client has polling and connection-caching.
             // Version HTTP/2 is the default, negotiating up from HTTP 1.1.
@@ -65,7 +234,39 @@ public class HttpEnv {
             //.sslParameters
             //.proxy
             //.authenticator
-            .build();
+            ;
     }
 
+    private static HttpClient httpClient = buildDftHttpClient();
+    private static final HttpClient initialHttpClient = httpClient;
+
+    private static HttpClient buildDftHttpClient() {
+        return httpClientBuilder().build();
+    }
+
+    /** Virtual thread per task, if available (Java21+), otherwise a cached thread pool. */
+    private static ExecutorService threadPerTaskExecutor() {
+        try {
+            // Release 11 - find the Java21 operation by reflection.
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)m.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(daemonThreads("HttpClient-"));
+        }
+    }
+
+    private static ExecutorService boundedExecutor(int size) {
+        if ( size <= 0 )
+            throw new IllegalArgumentException("Pool size must be positive: "+size);
+        return Executors.newFixedThreadPool(size, daemonThreads("HttpClient-bounded-"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return r->{
+            Thread thread = new Thread(r, prefix+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -18,8 +18,13 @@
 
 package org.apache.jena.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -33,24 +38,42 @@ import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.net.http.HttpResponse.BodySubscribers;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.InflaterInputStream;
 
 import org.apache.jena.atlas.RuntimeIOException;
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.lib.IRILib;
 import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.http.sys.AdmissionControl;
+import org.apache.jena.http.sys.CircuitBreaker;
+import org.apache.jena.http.sys.CircuitBreakerOpenException;
+import org.apache.jena.http.sys.ContentDecoder;
+import org.apache.jena.http.sys.ContentDecoderRegistry;
+import org.apache.jena.http.sys.ContentEncoder;
+import org.apache.jena.http.sys.ContentEncoderRegistry;
+import org.apache.jena.http.sys.HttpMonitor;
+import org.apache.jena.http.sys.HttpOperation;
+import org.apache.jena.http.sys.HttpRequestInfo;
+import org.apache.jena.http.sys.HttpRequestListener;
 import org.apache.jena.http.sys.HttpRequestModifier;
 import org.apache.jena.http.sys.RegistryRequestModifier;
+import org.apache.jena.http.sys.RetryPolicy;
 import org.apache.jena.query.ARQ;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.sparql.exec.http.Params;
@@ -69,6 +92,70 @@ public class HttpLib {
 
     public static BodyPublisher stringBody(String str) { return BodyPublishers.ofString(str); }
 
+    /**
+     * Return a {@link BodyPublisher} that encodes (compresses) the output of the writer
+     * with the {@code Content-Encoding} as the request is sent.
+     * The caller must set the "Content-Encoding" header (see {@link #contentEncodingHeader}).
+     */
+    public static BodyPublisher encodedBody(String contentEncoding, Consumer<OutputStream> writer) {
+        return encodedBody(contentEncoding, writer, null);
+    }
+
+    /**
+     * Return a {@link BodyPublisher} that encodes (compresses) the output of the writer
+     * with the {@code Content-Encoding} as the request is sent, running the writer on the
+     * {@code executor} (null for the {@link StreamingBodyPublisher} default).
+     */
+    public static BodyPublisher encodedBody(String contentEncoding, Consumer<OutputStream> writer, Executor executor) {
+        ContentEncoder encoder = contentEncoder(contentEncoding);
+        return StreamingBodyPublisher.create(out->encodeTo(encoder, out, writer), executor);
+    }
+
+    /**
+     * Return a {@link BodyPublisher} for a string (UTF-8), encoded with the {@code Content-Encoding}.
+     * The string is already in memory so it is encoded now, to a byte array; the request
+     * has a {@code Content-Length}.
+     */
+    public static BodyPublisher encodedBody(String contentEncoding, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        return BodyPublishers.ofByteArray(encodedBytes(contentEncoding, out->{
+            try { out.write(bytes); } catch (IOException ex) { IO.exception(ex); }
+        }));
+    }
+
+    /**
+     * Return a {@link BodyPublisher} for the contents of a file, encoded with the
+     * {@code Content-Encoding}. The file is read and encoded as the request is sent.
+     */
+    public static BodyPublisher encodedBody(String contentEncoding, Path path) throws FileNotFoundException {
+        if ( ! Files.isReadable(path) )
+            throw new FileNotFoundException(path.toString());
+        return encodedBody(contentEncoding, out->{
+            try { Files.copy(path, out); } catch (IOException ex) { IO.exception(ex); }
+        });
+    }
+
+    /** Encode the output of the writer into a byte array, for use where {@code Content-Length} is required. */
+    public static byte[] encodedBytes(String contentEncoding, Consumer<OutputStream> writer) {
+        ContentEncoder encoder = contentEncoder(contentEncoding);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8*1024);
+        encodeTo(encoder, out, writer);
+        return out.toByteArray();
+    }
+
+    private static void encodeTo(ContentEncoder encoder, OutputStream out, Consumer<OutputStream> writer) {
+        try ( OutputStream output = encoder.encode(out) ) {
+            writer.accept(output);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    private static ContentEncoder contentEncoder(String contentEncoding) {
+        ContentEncoder encoder = ContentEncoderRegistry.get().find(contentEncoding);
+        if ( encoder == null )
+            throw new HttpException("No encoder for Content-Encoding: "+contentEncoding);
+        return encoder;
+    }
+
     private static BodyHandler<InputStream> bodyHandlerInputStream = buildDftBodyHandlerInputStream();
 
     private static BodyHandler<InputStream> buildDftBodyHandlerInputStream() {
@@ -99,25 +186,45 @@ public class HttpLib {
      * The application must consume or close the {@code InputStream} (see {@link #finish(InputStream)}).
      * Closing the InputStream may close the HTTP connection.
      * Assumes the status code has been handled e.g. {@link #handleHttpStatusCode} has been called.
+     * <p>
+     * Decoders are found in the {@link ContentDecoderRegistry}.
      */
     private static InputStream getInputStream(HttpResponse<InputStream> httpResponse) {
         String encoding = httpResponse.headers().firstValue(HttpNames.hContentEncoding).orElse("");
         InputStream responseInput = httpResponse.body();
-        // Only support "Content-Encoding: <compression>" and not
-        // "Content-Encoding: chunked, <compression>"
+        return decodeInputStream(encoding, responseInput);
+    }
+
+    /**
+     * Apply the content decoders for a {@code Content-Encoding} header value.
+     * Multiple encodings are listed in the order they were applied (RFC 7231, section 3.1.2.2)
+     * so they are decoded in reverse order.
+     */
+    /*package*/ static InputStream decodeInputStream(String encoding, InputStream input) {
+        if ( encoding.isEmpty() )
+            return input;
+        String[] encodings = encoding.split(",");
         try {
-            switch (encoding) {
-                case "" :
-                case "identity" : // Proper name for no compression.
-                    return responseInput;
-                case "gzip" :
-                    return new GZIPInputStream(responseInput, 2*1024);
-                case "inflate" :
-                    return new InflaterInputStream(responseInput);
-                case "br" : // RFC7932
-                default :
+            InputStream in = input;
+            for ( int i = encodings.length-1 ; i >= 0 ; i-- ) {
+                String enc = encodings[i].trim();
+                switch (enc) {
+                    case "" :
+                    case "identity" : // Proper name for no compression.
+                    case "chunked" :  // Transfer-Encoding, sometimes seen in Content-Encoding.
+                        continue;
+                }
+                ContentDecoder decoder = ContentDecoderRegistry.get().find(enc);
+                if ( decoder == null )
                     throw new UnsupportedOperationException("Not supported: Content-Encoding: " + encoding);
+                try {
+                    in = decoder.decode(in);
+                } catch (EOFException ex) {
+                    // Decoders that read a header (e.g. gzip) fail on an empty body.
+                    return InputStream.nullInputStream();
+                }
             }
+            return in;
         } catch (IOException ex) {
             throw new UncheckedIOException(ex);
         }
@@ -210,12 +317,14 @@ public class HttpLib {
     }
 
     static HttpException exception(HttpResponse<InputStream> response, int httpStatusCode) {
-        InputStream in = response.body();
         String msg = null;
         try {
+            InputStream in = getInputStream(response);
             msg = IO.readWholeFileAsUTF8(in);
-        } catch (RuntimeIOException e) {
+        } catch (RuntimeIOException | UncheckedIOException | UnsupportedOperationException e) {
             e.printStackTrace();
+        } finally {
+            finish(response);
         }
         return new HttpException(httpStatusCode, HttpSC.getMessage(httpStatusCode), msg);
     }
@@ -224,54 +333,105 @@ public class HttpLib {
     private static boolean inRange(int x, int min, int max) { return min <= x && x <= max; }
 
     /** Finish with {@code HttpResponse<InputStream>}.
-     * This read and drops any remaining bytes in the response body.
-     * {@code close} may close the underlying HTTP connection.
+     * This reads and drops remaining bytes in the response body, within the limits
+     * {@link HttpEnv#finishDrainBytes} and {@link HttpEnv#finishDrainMillis}, so that
+     * the connection can be reused. If the end of the body is not reached within the limits,
+     * the body is closed, which aborts the exchange and drops the connection.
      *  See {@link BodySubscribers#ofInputStream()}.
      */
     public static void finish(HttpResponse<InputStream> response) {
         finish(response.body());
     }
 
-    /** Read to end of {@link InputStream}.
-     *  {@code close} may close the underlying HTTP connection.
-     *  See {@link BodySubscribers#ofInputStream()}.
+    /** Finish with the {@link InputStream} of a response body.
+     *  See {@link #finish(HttpResponse)}.
      */
     public static void finish(InputStream input) {
-        consume(input);
+        drainOrAbort(input, HttpEnv.finishDrainBytes, HttpEnv.finishDrainMillis);
     }
 
-    // This is extracted from commons-io, IOUtils.skip.
-    // Changes:
-    // * No exception.
-    // * Always consumes to the end of stream (or stream throws IOException)
-    // * Larger buffer
     private static int SKIP_BUFFER_SIZE = 8*1024;
-    private static byte[] SKIP_BYTE_BUFFER = null;
-
-    private static void consume(final InputStream input) {
-        /*
-         * N.B. no need to synchronize this because: - we don't care if the buffer is created multiple times (the data
-         * is ignored) - we always use the same size buffer, so if it it is recreated it will still be OK (if the buffer
-         * size were variable, we would need to synch. to ensure some other thread did not create a smaller one)
-         */
-        if (SKIP_BYTE_BUFFER == null) {
-            SKIP_BYTE_BUFFER = new byte[SKIP_BUFFER_SIZE];
-        }
-        int bytesRead = 0; // Informational
+
+    // Closes a body being drained when the time limit passes, even if a read is blocked.
+    private static final ScheduledExecutorService drainTimer = Executors.newSingleThreadScheduledExecutor(r->{
+        Thread thread = new Thread(r, "HttpDrain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Read to the end of the {@link InputStream}, dropping the bytes, unless more than
+     * {@code maxBytes} bytes are read or it takes longer than {@code maxMillis}
+     * milliseconds, in which case the {@link InputStream} is closed. For an HTTP
+     * response body, closing cancels the exchange. A negative limit means "no limit".
+     * <p>
+     * The time limit is enforced by closing the {@link InputStream} at the deadline,
+     * so a read that blocks waiting for the server does not hold the calling thread
+     * beyond {@code maxMillis}.
+     * <p>
+     * Returns true if the end of the stream was reached.
+     */
+    public static boolean drainOrAbort(InputStream input, long maxBytes, long maxMillis) {
+        if ( input == null )
+            return true;
+        // Per-call buffer: this may run on many threads at once.
+        int bufferSize = ( maxBytes >= 0 && maxBytes < SKIP_BUFFER_SIZE ) ? (int)maxBytes+1 : SKIP_BUFFER_SIZE;
+        byte[] buffer = new byte[bufferSize];
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> deadline = ( maxMillis >= 0 )
+            ? drainTimer.schedule(()->{ timedOut.set(true); abort(input); }, maxMillis, TimeUnit.MILLISECONDS)
+            : null;
+        long bytesRead = 0;
         try {
             for(;;) {
                 // See https://issues.apache.org/jira/browse/IO-203 for why we use read() rather than delegating to skip()
-                final long n = input.read(SKIP_BYTE_BUFFER, 0, SKIP_BUFFER_SIZE);
-                if (n < 0) { // EOF
+                int n = input.read(buffer, 0, buffer.length);
+                if ( timedOut.get() )
                     break;
-                }
+                if ( n < 0 ) // EOF
+                    return true;
                 bytesRead += n;
+                if ( maxBytes >= 0 && bytesRead > maxBytes )
+                    break;
             }
         } catch (IOException ex) { /*ignore*/ }
+        finally {
+            if ( deadline != null )
+                deadline.cancel(false);
+        }
+        abort(input);
+        return false;
     }
 
+    /** Close a response body {@link InputStream} without reading any more. The exchange is cancelled. */
+    public static void abort(InputStream input) {
+        if ( input == null )
+            return;
+        try {
+            input.close();
+        } catch (IOException ex) { /*ignore*/ }
+    }
+
+    // Parsed service URLs. URLs with a query string vary per request and are not cached.
+    private static final int requestURICacheSize = 1000;
+    private static final Map<String, URI> requestURICache = new ConcurrentHashMap<>();
+
     /** String to {@link URI}. Throws {@link HttpException} on bad syntax or if the URI isn't absolute. */
     static URI toRequestURI(String uriStr) {
+        URI uri = requestURICache.get(uriStr);
+        if ( uri != null )
+            return uri;
+        uri = parseRequestURI(uriStr);
+        if ( uriStr.indexOf('?') < 0 ) {
+            // Simple bound. A client uses a few service URLs.
+            if ( requestURICache.size() >= requestURICacheSize )
+                requestURICache.clear();
+            requestURICache.put(uriStr, uri);
+        }
+        return uri;
+    }
+
+    private static URI parseRequestURI(String uriStr) {
         try {
             URI uri = new URI(uriStr);
             if ( ! uri.isAbsolute() )
@@ -288,6 +448,7 @@ public class HttpLib {
 
     public static HttpRequest newGetRequest(HttpClient httpClient, String url, Consumer<HttpRequest.Builder> modifier) {
         HttpRequest.Builder builder = HttpRequest.newBuilder().uri(toRequestURI(url)).GET();
+        acceptEncoding(builder, url);
         if ( modifier != null )
             modifier.accept(builder);
         HttpRequest request = builder.build();
@@ -321,6 +482,8 @@ public class HttpLib {
 
     public static Builder newBuilder(String url, Map<String, String> httpHeaders, long readTimeout, TimeUnit readTimeoutUnit) {
         HttpRequest.Builder builder = HttpRequest.newBuilder();
+        if ( httpHeaders == null || ! httpHeaders.containsKey(HttpNames.hAcceptEncoding) )
+            acceptEncoding(builder, url);
         headers(builder, httpHeaders);
         builder.uri(toRequestURI(url));
         if ( readTimeout >= 0 )
@@ -352,15 +515,26 @@ public class HttpLib {
         return builder;
     }
 
-//    /**
-//     * Set the "Accept-Encoding" header. Returns the builder.
-//     * See {@link #getInputStream(HttpResponse)}.
-//     */
-//    public
-//    /*package*/ static Builder acceptEncodingCompressed(Builder builder) {
-//        builder.header(HttpNames.hAcceptEncoding, WebContent.acceptEncodingCompressed);
-//        return builder;
-//    }
+    /** Set the "Content-Encoding" header if value is not null. Returns the builder. */
+    public
+    /*package*/ static Builder contentEncodingHeader(Builder builder, String contentEncoding) {
+        if ( contentEncoding != null )
+            builder.header(HttpNames.hContentEncoding, contentEncoding);
+        return builder;
+    }
+
+    /**
+     * Set the "Accept-Encoding" header for a request to the URL, if
+     * response compression has been enabled for the URL. Returns the builder.
+     * See {@link HttpEnv#getAcceptEncoding(String)} and {@link #getInputStream(HttpResponse)}.
+     */
+    public
+    /*package*/ static Builder acceptEncoding(Builder builder, String url) {
+        String acceptEncoding = HttpEnv.getAcceptEncoding(url);
+        if ( acceptEncoding != null )
+            builder.setHeader(HttpNames.hAcceptEncoding, acceptEncoding);
+        return builder;
+    }
 
     /** Execute a request, return a {@code HttpResponse<InputStream>} which can be passed to
      * {@link #handleHttpStatusCode(HttpResponse)}.
@@ -370,7 +544,72 @@ public class HttpLib {
      */
     public
     /*package*/ static HttpResponse<InputStream> execute(HttpClient httpClient, HttpRequest httpRequest) {
-        return execute(httpClient, httpRequest, BodyHandlers.ofInputStream());
+        return execute(httpClient, httpRequest, (HttpOperation)null);
+    }
+
+    /**
+     * Execute a request, as {@link #execute(HttpClient, HttpRequest)}, stating the
+     * kind of operation for any {@link HttpRequestListener HttpRequestListeners}.
+     */
+    public static HttpResponse<InputStream> execute(HttpClient httpClient, HttpRequest httpRequest, HttpOperation operation) {
+        RetryPolicy retryPolicy = retryPolicy(httpRequest);
+        if ( retryPolicy == null )
+            return execute(httpClient, httpRequest, operation, BodyHandlers.ofInputStream());
+        return executeRetry(httpClient, httpRequest, operation, retryPolicy);
+    }
+
+    /** The {@link RetryPolicy} for a request, or null. Only idempotent requests are retried. */
+    private static RetryPolicy retryPolicy(HttpRequest httpRequest) {
+        switch (httpRequest.method()) {
+            case HttpNames.METHOD_GET: case HttpNames.METHOD_HEAD:
+            case HttpNames.METHOD_PUT: case HttpNames.METHOD_DELETE:
+                return HttpEnv.getRetryPolicy(serviceURL(httpRequest.uri()));
+            default:
+                return null;
+        }
+    }
+
+    /** The request URL without the query string. */
+    private static String serviceURL(URI uri) {
+        String s = uri.toString();
+        int i = s.indexOf('?');
+        return ( i < 0 ) ? s : s.substring(0, i);
+    }
+
+    /**
+     * Execute with retries. A retryable error status response is consumed before
+     * the retry; the last response is returned, whatever its status.
+     */
+    private static HttpResponse<InputStream> executeRetry(HttpClient httpClient, HttpRequest httpRequest, HttpOperation operation, RetryPolicy retryPolicy) {
+        retryPolicy.requestStarted();
+        for ( int attempt = 1 ; ; attempt++ ) {
+            HttpResponse<InputStream> response;
+            try {
+                response = execute(httpClient, httpRequest, operation, BodyHandlers.ofInputStream());
+            } catch (HttpException ex) {
+                if ( ! retryPolicy.isRetryException(ex) || ! retryPolicy.tryRetry(attempt) )
+                    throw ex;
+                pause(httpRequest, retryPolicy.backoff(attempt));
+                continue;
+            }
+            if ( ! retryPolicy.isRetryStatus(response.statusCode()) )
+                return response;
+            String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+            Duration delay = retryPolicy.delay(attempt, retryAfter);
+            if ( delay == null || ! retryPolicy.tryRetry(attempt) )
+                return response;
+            finish(response);
+            pause(httpRequest, delay);
+        }
+    }
+
+    private static void pause(HttpRequest httpRequest, Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new HttpException(httpRequest.method()+" "+httpRequest.uri().toString(), ex);
+        }
     }
 
     /**
@@ -380,17 +619,36 @@ public class HttpLib {
      * {@code InputStream} response.
      * @param httpClient
      * @param httpRequest
+     * @param operation (may be null)
      * @param bodyHandler
      * @return HttpResponse
      */
-    private static <T> HttpResponse<T> execute(HttpClient httpClient, HttpRequest httpRequest, BodyHandler<T> bodyHandler) {
+    private static <T> HttpResponse<T> execute(HttpClient httpClient, HttpRequest httpRequest, HttpOperation operation, BodyHandler<T> bodyHandler) {
+        // This is the one place all HTTP requests go through.
+        // Fail fast if the circuit breaker is open, before waiting for admission.
+        CircuitBreaker circuitBreaker = circuitBreaker(httpRequest);
+        AdmissionControl.Permit permit = admit(httpRequest, circuitBreaker);
+        HttpRequestInfo info = HttpMonitor.start(httpRequest, operation);
+        long start = System.nanoTime();
         try {
-            // This is the one place all HTTP requests go through.
-            logRequest(httpRequest);
-            HttpResponse<T> httpResponse = httpClient.send(httpRequest, bodyHandler);
-            logResponse(httpResponse);
+            HttpResponse<T> httpResponse = httpClient.send(httpRequest, bodyHandler(permit, HttpMonitor.bodyHandler(info, bodyHandler)));
+            if ( circuitBreaker != null )
+                circuitBreaker.onResponse(httpResponse.statusCode(), System.nanoTime() - start);
+            HttpMonitor.response(info, httpResponse);
             return httpResponse;
-        } catch (IOException | InterruptedException ex) {
+        } catch (InterruptedException ex) {
+            // Cancelled by the caller: not a failure of the service.
+            Thread.currentThread().interrupt();
+            release(permit);
+            if ( circuitBreaker != null )
+                circuitBreaker.cancel();
+            HttpMonitor.error(info, ex);
+            throw new HttpException(httpRequest.method()+" "+httpRequest.uri().toString(), ex);
+        } catch (IOException ex) {
+            release(permit);
+            if ( circuitBreaker != null )
+                circuitBreaker.onFailure(System.nanoTime() - start);
+            HttpMonitor.error(info, ex);
             if ( ex.getMessage() != null ) {
                 // This is silly.
                 // Rather than an HTTP exception, bad authentication becomes IOException("too many authentication attempts");
@@ -401,46 +659,141 @@ public class HttpLib {
                 }
             }
             throw new HttpException(httpRequest.method()+" "+httpRequest.uri().toString(), ex);
+        } catch (RuntimeException ex) {
+            release(permit);
+            if ( circuitBreaker != null )
+                circuitBreaker.onFailure(System.nanoTime() - start);
+            HttpMonitor.error(info, ex);
+            throw ex;
+        }
+    }
+
+    /** Check the circuit breaker then wait for admission. Returns null if there is no admission control. */
+    private static AdmissionControl.Permit admit(HttpRequest httpRequest, CircuitBreaker circuitBreaker) {
+        if ( circuitBreaker != null )
+            circuitBreaker.acquire(httpRequest.method()+" "+httpRequest.uri());
+        AdmissionControl admissionControl = admissionControl(httpRequest);
+        if ( admissionControl == null )
+            return null;
+        try {
+            return admissionControl.acquire(bodyLength(httpRequest));
+        } catch (RuntimeException ex) {
+            if ( circuitBreaker != null )
+                circuitBreaker.cancel();
+            throw ex;
         }
     }
 
     /*package*/ static CompletableFuture<HttpResponse<InputStream>> asyncExecute(HttpClient httpClient, HttpRequest httpRequest) {
-        logAsyncRequest(httpRequest);
-        return httpClient.sendAsync(httpRequest, BodyHandlers.ofInputStream());
+        return asyncExecute(httpClient, httpRequest, BodyHandlers.ofInputStream());
+    }
+
+    private static <T> CompletableFuture<HttpResponse<T>> asyncExecute(HttpClient httpClient, HttpRequest httpRequest, BodyHandler<T> bodyHandler) {
+        CircuitBreaker circuitBreaker = circuitBreaker(httpRequest);
+        if ( circuitBreaker != null && ! circuitBreaker.tryAcquire() )
+            return CompletableFuture.failedFuture(new CircuitBreakerOpenException("Circuit breaker open: "+httpRequest.method()+" "+httpRequest.uri()));
+        AdmissionControl admissionControl = admissionControl(httpRequest);
+        if ( admissionControl == null )
+            return asyncSend(httpClient, httpRequest, bodyHandler, null, circuitBreaker);
+        // Wait for admission without blocking a thread.
+        return admissionControl.acquireAsync(bodyLength(httpRequest))
+                .whenComplete((permit, ex) -> {
+                    if ( ex != null && circuitBreaker != null )
+                        circuitBreaker.cancel();
+                })
+                .thenCompose(permit -> asyncSend(httpClient, httpRequest, bodyHandler, permit, circuitBreaker));
+    }
+
+    private static <T> CompletableFuture<HttpResponse<T>> asyncSend(HttpClient httpClient, HttpRequest httpRequest, BodyHandler<T> bodyHandler,
+                                                                    AdmissionControl.Permit permit, CircuitBreaker circuitBreaker) {
+        HttpRequestInfo info = HttpMonitor.start(httpRequest, null);
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> cf;
+        try {
+            cf = httpClient.sendAsync(httpRequest, bodyHandler(permit, HttpMonitor.bodyHandler(info, bodyHandler)));
+        } catch (RuntimeException ex) {
+            release(permit);
+            if ( circuitBreaker != null )
+                circuitBreaker.cancel();
+            throw ex;
+        }
+        if ( info == null && permit == null && circuitBreaker == null )
+            return cf;
+        return cf.whenComplete((response, ex) -> {
+            long duration = System.nanoTime() - start;
+            if ( ex != null ) {
+                release(permit);
+                if ( circuitBreaker != null )
+                    circuitBreaker.onFailure(duration);
+                HttpMonitor.error(info, ex);
+            } else {
+                if ( circuitBreaker != null )
+                    circuitBreaker.onResponse(response.statusCode(), duration);
+                HttpMonitor.response(info, response);
+            }
+        });
+    }
+
+    /** The {@link CircuitBreaker} for a request, or null. */
+    private static CircuitBreaker circuitBreaker(HttpRequest httpRequest) {
+        return HttpEnv.getCircuitBreaker(serviceURL(httpRequest.uri()));
+    }
+
+    /** The {@link AdmissionControl} for a request, or null. */
+    private static AdmissionControl admissionControl(HttpRequest httpRequest) {
+        return HttpEnv.getAdmissionControl(serviceURL(httpRequest.uri()));
+    }
+
+    /** The length of the request body, or 0 if there is none or it is not known. */
+    private static long bodyLength(HttpRequest httpRequest) {
+        long len = httpRequest.bodyPublisher().map(BodyPublisher::contentLength).orElse(0L);
+        return Math.max(0, len);
+    }
+
+    private static <T> BodyHandler<T> bodyHandler(AdmissionControl.Permit permit, BodyHandler<T> bodyHandler) {
+        return ( permit == null ) ? bodyHandler : permit.bodyHandler(bodyHandler);
+    }
+
+    private static void release(AdmissionControl.Permit permit) {
+        if ( permit != null )
+            permit.release();
+    }
+
+    /**
+     * Execute a request asynchronously where the response body is not needed except
+     * for error messages. The response body is read into memory before the
+     * {@code CompletableFuture} completes so no thread blocks waiting for it.
+     * The {@code CompletableFuture} completes exceptionally with an {@link HttpException}
+     * if the response is not a 2xx.
+     */
+    public static CompletableFuture<Void> asyncExecuteNoBody(HttpClient httpClient, HttpRequest httpRequest) {
+        BodyHandler<InputStream> bodyHandler = responseInfo -> BodySubscribers.mapping(BodySubscribers.ofByteArray(), ByteArrayInputStream::new);
+        return asyncExecute(httpClient, httpRequest, bodyHandler).thenAccept(HttpLib::handleResponseNoBody);
+    }
+
+    /** Push data asynchronously. POST, PUT, PATCH request with no response body data. */
+    public static CompletableFuture<Void> asyncHttpPushData(HttpClient httpClient, Push style, String url, Consumer<HttpRequest.Builder> modifier, BodyPublisher body) {
+        HttpRDF.invalidateCache(url);
+        HttpRequest request = pushRequest(style, url, modifier, body);
+        return asyncExecuteNoBody(httpClient, request);
     }
 
     /** Push data. POST, PUT, PATCH request with no response body data. */
     public static void httpPushData(HttpClient httpClient, Push style, String url, Consumer<HttpRequest.Builder> modifier, BodyPublisher body) {
+        HttpRDF.invalidateCache(url);
+        HttpRequest request = pushRequest(style, url, modifier, body);
+        HttpResponse<InputStream> response = execute(httpClient, request);
+        handleResponseNoBody(response);
+    }
+
+    private static HttpRequest pushRequest(Push style, String url, Consumer<HttpRequest.Builder> modifier, BodyPublisher body) {
         URI uri = toRequestURI(url);
         HttpRequest.Builder builder = HttpRequest.newBuilder();
         builder.uri(uri);
         builder.method(style.method(), body);
         if ( modifier != null )
             modifier.accept(builder);
-        HttpRequest request = builder.build();
-        HttpResponse<InputStream> response = execute(httpClient, request);
-        handleResponseNoBody(response);
-    }
-
-    /** Request */
-    private static void logRequest(HttpRequest httpRequest) {
-        // Uses the SystemLogger which defaults to JUL.
-        // Add org.apache.jena.logging:log4j-jpl
-        // (java11 : 11.0.9, if using log4j-jpl, logging prints the request as {0} but response OK)
-//        httpRequest.uri();
-//        httpRequest.method();
-//        httpRequest.headers();
-    }
-
-    /** Async Request */
-    private static void logAsyncRequest(HttpRequest httpRequest) {}
-
-        /** Response (do not touch the body!)  */
-    private static void logResponse(HttpResponse<?> httpResponse) {
-//        httpResponse.uri();
-//        httpResponse.statusCode();
-//        httpResponse.headers();
-//        httpResponse.previousResponse();
+        return builder.build();
     }
 
     /**
@@ -473,7 +826,7 @@ public class HttpLib {
     public static Consumer<HttpRequest.Builder> setHeaders(Map<String, String> headers) {
         if ( headers == null )
             return (x)->{};
-        return x->headers.forEach(x::header);
+        return x->headers.forEach(x::setHeader);
     }
 
     /**
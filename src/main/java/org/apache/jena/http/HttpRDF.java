@@ -22,6 +22,7 @@ import static org.apache.jena.http.HttpLib.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -31,16 +32,22 @@ import java.net.http.HttpResponse;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.riot.*;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.exec.http.GSP;
 import org.apache.jena.sparql.graph.GraphFactory;
 
@@ -120,6 +127,34 @@ public class HttpRDF {
 
     // Worker
     private static void httpGetToStream(HttpClient client, String url, Consumer<HttpRequest.Builder> modifier, StreamRDF dest) {
+        RequestCoalescer coalescer = HttpEnv.requestCoalescer;
+        if ( coalescer != null ) {
+            RequestCoalescer.Key key = RequestCoalescer.key(client, HttpLib.newGetRequest(client, url, modifier));
+            CollectOrStream collect = new CollectOrStream(dest, coalescer.maxSize());
+            DatasetGraph dsg = coalescer.execute(key, ()->{
+                fetchToStream(client, url, modifier, collect);
+                return collect.data;
+            });
+            if ( collect.streamed )
+                // This caller made the exchange; too large to share and already sent to dest.
+                return;
+            if ( dsg == null ) {
+                // Another caller made the exchange and it was too large to share.
+                fetchToStream(client, url, modifier, dest);
+                return;
+            }
+            StreamRDFOps.sendDatasetToStream(dsg, dest);
+            return;
+        }
+        fetchToStream(client, url, modifier, dest);
+    }
+
+    private static void fetchToStream(HttpClient client, String url, Consumer<HttpRequest.Builder> modifier, StreamRDF dest) {
+        HttpRDFCache cache = HttpEnv.httpRDFCache;
+        if ( cache != null ) {
+            cache.httpGetToStream(client, url, modifier, dest);
+            return;
+        }
         HttpResponse<InputStream> response = execGetToInput(client, url, modifier);
         httpResponseToStreamRDF(url, response, dest);
     }
@@ -135,7 +170,8 @@ public class HttpRDF {
                 .lang(lang)
                 .parse(dest);
         } catch (RiotParseException ex) {
-            // We only read part of the input stream.
+            // We only read part of the input stream. Abort - don't read the rest.
+            abort(in);
             throw ex;
         } finally {
             // Even if parsing finished, it is possible we only read part of the input stream (e.g. RDF/XML).
@@ -167,7 +203,7 @@ public class HttpRDF {
     public static void httpPostGraph(HttpClient httpClient, String url, Graph graph,
                                      RDFFormat format, Map<String, String> httpHeaders) {
         BodyPublisher bodyPublisher = graphToHttpBody(graph, format);
-        pushBody(httpClient, url, Push.POST, bodyPublisher, format, httpHeaders);
+        httpPushBody(httpClient, url, Push.POST, bodyPublisher, format, httpHeaders);
     }
 
     public static void httpPostDataset(HttpClient httpClient, String url, DatasetGraph dataset, RDFFormat format) {
@@ -177,7 +213,7 @@ public class HttpRDF {
     public static void httpPostDataset(HttpClient httpClient, String url, DatasetGraph dataset,
                                        RDFFormat format, Map<String, String> httpHeaders) {
         BodyPublisher bodyPublisher = datasetToHttpBody(dataset, format);
-        pushBody(httpClient, url, Push.POST, bodyPublisher, format, httpHeaders);
+        httpPushBody(httpClient, url, Push.POST, bodyPublisher, format, httpHeaders);
     }
 
     public static void httpPutGraph(String url, Graph graph) {
@@ -191,7 +227,7 @@ public class HttpRDF {
     public static void httpPutGraph(HttpClient httpClient, String url, Graph graph,
                                     RDFFormat format, Map<String, String> httpHeaders) {
         BodyPublisher bodyPublisher = graphToHttpBody(graph, format);
-        pushBody(httpClient, url, Push.PUT, bodyPublisher, format, httpHeaders);
+        httpPushBody(httpClient, url, Push.PUT, bodyPublisher, format, httpHeaders);
     }
 
     public static void httpPutDataset(HttpClient httpClient, String url, DatasetGraph dataset, RDFFormat format) {
@@ -201,18 +237,26 @@ public class HttpRDF {
     public static void httpPutDataset(HttpClient httpClient, String url, DatasetGraph dataset,
                                       RDFFormat format, Map<String, String> httpHeaders) {
         BodyPublisher bodyPublisher = datasetToHttpBody(dataset, format);
-        pushBody(httpClient, url, Push.PUT, bodyPublisher, format, httpHeaders);
+        httpPushBody(httpClient, url, Push.PUT, bodyPublisher, format, httpHeaders);
     }
 
-    // Shared between push* and put*
-    private static void pushBody(HttpClient httpClient, String url, Push style, BodyPublisher bodyPublisher,
+    /**
+     * Send a body of RDF with POST or PUT.
+     * See {@link #graphToHttpBody(Graph, RDFFormat, boolean)} and {@link #datasetToHttpBody(DatasetGraph, RDFFormat, boolean)}.
+     */
+    public static void httpPushBody(HttpClient httpClient, String url, Push style, BodyPublisher bodyPublisher,
                                  RDFFormat format, Map<String, String> httpHeaders) {
+        httpHeaders = pushHeaders(format, httpHeaders);
+        HttpLib.httpPushData(httpClient, style, url, HttpLib.setHeaders(httpHeaders), bodyPublisher);
+    }
+
+    /** Add the Content-Type for the format to the HTTP headers. */
+    /*package*/ static Map<String, String> pushHeaders(RDFFormat format, Map<String, String> httpHeaders) {
         String contentType = format.getLang().getHeaderString();
         if ( httpHeaders == null )
-            httpHeaders = Collections.singletonMap(HttpNames.hContentType, contentType);
-        else
-            httpHeaders.put(HttpNames.hContentType, contentType);
-        HttpLib.httpPushData(httpClient, style, url, HttpLib.setHeaders(httpHeaders), bodyPublisher);
+            return Collections.singletonMap(HttpNames.hContentType, contentType);
+        httpHeaders.put(HttpNames.hContentType, contentType);
+        return httpHeaders;
     }
 
     public static void httpDeleteGraph(String url) {
@@ -220,13 +264,25 @@ public class HttpRDF {
     }
 
     public static void httpDeleteGraph(HttpClient httpClient, String url) {
+        invalidateCache(url);
+        HttpRequest requestData = deleteRequest(url);
+        HttpResponse<InputStream> response = execute(httpClient, requestData);
+        handleResponseNoBody(response);
+    }
+
+    /** Remove any cached GET responses for a URL that is being changed. */
+    /*package*/ static void invalidateCache(String url) {
+        HttpRDFCache cache = HttpEnv.httpRDFCache;
+        if ( cache != null )
+            cache.invalidate(url);
+    }
+
+    /*package*/ static HttpRequest deleteRequest(String url) {
         URI uri = toRequestURI(url);
-        HttpRequest requestData = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
             .DELETE()
             .uri(uri)
             .build();
-        HttpResponse<InputStream> response = execute(httpClient, requestData);
-        handleResponseNoBody(response);
     }
 
     /** RDF {@link Lang}. */
@@ -248,26 +304,142 @@ public class HttpRDF {
         return uri.toString();
     }
 
-    // This sets Content-Length but requires the entire graph being serialized
+    // There are two ways to send RDF:
+    //
+    // With Content-Length. This requires the entire graph to be serialized
     // to get the serialization size.
     //
-    // An alternative is to stream the output but then the HTTP connection can't
-    // be reused (don't know when the request finishes, only closing the connection
-    // indicates that).
+    // Streamed, serializing as the request is sent. The body is sent with
+    // chunked transfer encoding (HTTP/1.1) or as a stream of DATA frames (HTTP/2).
+    // Only a few buffers are in memory at any one time.
+    //
+    // The default is HttpEnv.sendContentLength.
 
     /*package*/ static BodyPublisher graphToHttpBody(Graph graph, RDFFormat syntax) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream(128*1024);
-        RDFDataMgr.write(out, graph, syntax);
-        byte[] bytes = out.toByteArray();
-        IO.close(out);
-        return BodyPublishers.ofByteArray(bytes);
+        return graphToHttpBody(graph, syntax, HttpEnv.sendContentLength);
     }
 
     /*package*/ static BodyPublisher datasetToHttpBody(DatasetGraph dataset, RDFFormat syntax) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream(128*1024);
-        RDFDataMgr.write(out, dataset, syntax);
-        byte[] bytes = out.toByteArray();
-        IO.close(out);
-        return BodyPublishers.ofByteArray(bytes);
+        return datasetToHttpBody(dataset, syntax, HttpEnv.sendContentLength);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} for a graph. If {@code contentLength} is true, the
+     * graph is serialized to bytes so that the {@code Content-Length} is known,
+     * otherwise the graph is serialized as the request body is sent.
+     */
+    public static BodyPublisher graphToHttpBody(Graph graph, RDFFormat syntax, boolean contentLength) {
+        return graphToHttpBody(graph, syntax, contentLength, null);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} for a graph, compressed with the {@code Content-Encoding} if not null.
+     * The caller must set the "Content-Encoding" header.
+     * See {@link #graphToHttpBody(Graph, RDFFormat, boolean)}.
+     */
+    public static BodyPublisher graphToHttpBody(Graph graph, RDFFormat syntax, boolean contentLength, String contentEncoding) {
+        return graphToHttpBody(graph, syntax, contentLength, contentEncoding, null);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} for a graph. When streamed, the graph is serialized on a
+     * thread of the {@code executor} (null for the {@link StreamingBodyPublisher} default).
+     * See {@link #graphToHttpBody(Graph, RDFFormat, boolean, String)}.
+     */
+    public static BodyPublisher graphToHttpBody(Graph graph, RDFFormat syntax, boolean contentLength, String contentEncoding, Executor executor) {
+        return toHttpBody(out->writeGraph(out, graph, syntax), contentLength, contentEncoding, executor);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} for a dataset. If {@code contentLength} is true, the
+     * dataset is serialized to bytes so that the {@code Content-Length} is known,
+     * otherwise the dataset is serialized as the request body is sent.
+     */
+    public static BodyPublisher datasetToHttpBody(DatasetGraph dataset, RDFFormat syntax, boolean contentLength) {
+        return datasetToHttpBody(dataset, syntax, contentLength, null);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} for a dataset, compressed with the {@code Content-Encoding} if not null.
+     * The caller must set the "Content-Encoding" header.
+     * See {@link #datasetToHttpBody(DatasetGraph, RDFFormat, boolean)}.
+     */
+    public static BodyPublisher datasetToHttpBody(DatasetGraph dataset, RDFFormat syntax, boolean contentLength, String contentEncoding) {
+        return datasetToHttpBody(dataset, syntax, contentLength, contentEncoding, null);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} for a dataset. When streamed, the dataset is serialized on a
+     * thread of the {@code executor} (null for the {@link StreamingBodyPublisher} default).
+     * See {@link #datasetToHttpBody(DatasetGraph, RDFFormat, boolean, String)}.
+     */
+    public static BodyPublisher datasetToHttpBody(DatasetGraph dataset, RDFFormat syntax, boolean contentLength, String contentEncoding, Executor executor) {
+        return toHttpBody(out->writeDataset(out, dataset, syntax), contentLength, contentEncoding, executor);
+    }
+
+    private static BodyPublisher toHttpBody(Consumer<OutputStream> writer, boolean contentLength, String contentEncoding, Executor executor) {
+        if ( contentEncoding != null ) {
+            if ( contentLength )
+                return BodyPublishers.ofByteArray(HttpLib.encodedBytes(contentEncoding, writer));
+            return HttpLib.encodedBody(contentEncoding, writer, executor);
+        }
+        if ( contentLength ) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128*1024);
+            writer.accept(out);
+            byte[] bytes = out.toByteArray();
+            IO.close(out);
+            return BodyPublishers.ofByteArray(bytes);
+        }
+        return StreamingBodyPublisher.create(writer, executor);
+    }
+
+    private static void writeGraph(OutputStream out, Graph graph, RDFFormat syntax) {
+        if ( StreamRDFWriter.registered(syntax) )
+            StreamRDFWriter.write(out, graph, syntax);
+        else
+            RDFDataMgr.write(out, graph, syntax);
+    }
+
+    private static void writeDataset(OutputStream out, DatasetGraph dataset, RDFFormat syntax) {
+        if ( StreamRDFWriter.registered(syntax) )
+            StreamRDFWriter.write(out, dataset, syntax);
+        else
+            RDFDataMgr.write(out, dataset, syntax);
+    }
+
+    /**
+     * Collect triples and quads into a {@link DatasetGraph}, up to {@code max}. After
+     * that, send what has been collected, and the rest, to {@code dest}, and set
+     * {@code data} to null.
+     */
+    private static class CollectOrStream implements StreamRDF {
+        private final StreamRDF dest;
+        private final long max;
+        private long count = 0;
+        private StreamRDF stream;
+        DatasetGraph data = DatasetGraphFactory.create();
+        boolean streamed = false;
+
+        CollectOrStream(StreamRDF dest, long max) {
+            this.dest = dest;
+            this.max = max;
+            this.stream = StreamRDFLib.dataset(data);
+        }
+
+        private void count() {
+            if ( ! streamed && ++count > max ) {
+                streamed = true;
+                StreamRDFOps.sendDatasetToStream(data, dest);
+                data = null;
+                stream = dest;
+            }
+        }
+
+        @Override public void start()                   {}
+        @Override public void triple(Triple triple)     { count(); stream.triple(triple); }
+        @Override public void quad(Quad quad)           { count(); stream.quad(quad); }
+        @Override public void base(String base)         { stream.base(base); }
+        @Override public void prefix(String prefix, String iri) { stream.prefix(prefix, iri); }
+        @Override public void finish()                  {}
     }
 }
@@ -0,0 +1,503 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.*;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.riot.web.HttpNames;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * A cache of parsed RDF from HTTP GET requests, using conditional requests.
+ * <p>
+ * Responses are cached, keyed by URL, {@link HttpClient} and request headers, when
+ * they have a validator ({@code ETag} or {@code Last-Modified}) or a
+ * {@code Cache-Control max-age}. Requests with an {@code Authorization} header are
+ * not cached.
+ * While an entry is fresh (within max-age), it is used without any request. After that,
+ * the request is sent with {@code If-None-Match} and {@code If-Modified-Since}
+ * and a {@code 304 Not Modified} response uses the cached data without parsing.
+ * {@code Cache-Control: no-store} responses are not cached.
+ * <p>
+ * The in-memory tier holds up to {@code maxTriples} triples and quads in total,
+ * evicting the least recently used entries. A response with more than
+ * {@code maxTriples} triples and quads is not cached; it is passed on as it is parsed.
+ * If a directory is given, entries are also written to disk and read back when not in
+ * memory. The disk tier is not size-bounded. Files are named by a hash of the key,
+ * which includes the {@link HttpClient}, so entries on disk are only used by the same JVM.
+ * <p>
+ * The cache is used by {@link HttpRDF} (and so {@link org.apache.jena.sparql.exec.http.GSP})
+ * GET operations when set as {@link HttpEnv#httpRDFCache}. POST, PUT and DELETE through
+ * {@link HttpLib} remove the entries for the service URL.
+ */
+public class HttpRDFCache {
+
+    private static final String hETag               = "ETag";
+    private static final String hLastModified       = "Last-Modified";
+    private static final String hCacheControl       = "Cache-Control";
+    private static final String hIfNoneMatch        = "If-None-Match";
+    private static final String hIfModifiedSince    = "If-Modified-Since";
+
+    private final long maxTriples;
+    private final Path directory;
+    // Access-ordered for LRU. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** A memory-only cache holding up to {@code maxTriples} triples and quads. */
+    public static HttpRDFCache create(long maxTriples) {
+        return new HttpRDFCache(maxTriples, null);
+    }
+
+    /** A cache holding up to {@code maxTriples} triples and quads in memory, and all entries in {@code directory}. */
+    public static HttpRDFCache create(long maxTriples, Path directory) {
+        return new HttpRDFCache(maxTriples, Objects.requireNonNull(directory));
+    }
+
+    private HttpRDFCache(long maxTriples, Path directory) {
+        if ( maxTriples <= 0 )
+            throw new IllegalArgumentException("maxTriples must be positive: "+maxTriples);
+        this.maxTriples = maxTriples;
+        this.directory = directory;
+        if ( directory != null ) {
+            try { Files.createDirectories(directory); }
+            catch (IOException ex) { throw new UncheckedIOException(ex); }
+        }
+    }
+
+    /** Number of requests answered from a fresh entry without contacting the server. */
+    public long hits()              { return hits.sum(); }
+    /** Number of requests answered by the server with a full response. */
+    public long misses()            { return misses.sum(); }
+    /** Number of requests answered from the cache after a {@code 304 Not Modified} response. */
+    public long revalidations()     { return revalidations.sum(); }
+    /** Number of entries read from the disk tier. */
+    public long diskHits()          { return diskHits.sum(); }
+    /** Number of entries evicted from the memory tier. */
+    public long evictions()         { return evictions.sum(); }
+
+    /** Number of entries in the memory tier. */
+    public synchronized int size()  { return entries.size(); }
+
+    /** Remove all entries, including those on disk. */
+    public synchronized void clear() {
+        new ArrayList<>(entries.values()).forEach(this::remove);
+        if ( directory != null ) {
+            try ( var files = Files.list(directory) ) {
+                files.forEach(HttpRDFCache::delete);
+            } catch (IOException ex) {
+                Log.warn(this, "Failed to clear cache directory: "+ex.getMessage());
+            }
+        }
+    }
+
+    /** Remove entries for a URL, and any other URL with the same service URL (the URL without query string). */
+    public synchronized void invalidate(String url) {
+        String serviceURL = serviceURL(url);
+        List<Entry> x = new ArrayList<>();
+        entries.values().forEach(e->{ if ( serviceURL.equals(serviceURL(e.url)) ) x.add(e); });
+        x.forEach(this::remove);
+        if ( directory != null ) {
+            try ( var files = Files.list(directory) ) {
+                files.filter(p->p.toString().endsWith(".properties")).forEach(p->{
+                    Properties props = readProperties(p);
+                    if ( props != null && serviceURL.equals(serviceURL(props.getProperty("url", ""))) )
+                        deleteBase(props.getProperty("hash"));
+                });
+            } catch (IOException ex) {
+                Log.warn(this, "Failed to invalidate cache directory: "+ex.getMessage());
+            }
+        }
+    }
+
+    /** GET, using the cache, and send the RDF to the {@link StreamRDF}. */
+    /*package*/ void httpGetToStream(HttpClient httpClient, String url, Consumer<HttpRequest.Builder> modifier, StreamRDF dest) {
+        HttpRequest request = HttpLib.newGetRequest(httpClient, url, modifier);
+        if ( request.headers().firstValue(HttpNames.hAuthorization).isPresent() ) {
+            // Responses depend on the credentials. Do not cache.
+            misses.increment();
+            HttpResponse<InputStream> response = HttpLib.execute(httpClient, request);
+            HttpRDF.httpResponseToStreamRDF(url, response, dest);
+            return;
+        }
+        String key = key(url, httpClient, request);
+        Entry entry = find(key);
+        if ( entry != null ) {
+            if ( entry.isFresh() ) {
+                hits.increment();
+                entry.sendTo(dest);
+                return;
+            }
+            Consumer<HttpRequest.Builder> conditional = entry::conditionalHeaders;
+            request = HttpLib.newGetRequest(httpClient, url, modifier == null ? conditional : modifier.andThen(conditional));
+        }
+        HttpResponse<InputStream> response = HttpLib.execute(httpClient, request);
+        if ( entry != null && response.statusCode() == 304 ) {
+            HttpLib.finish(response);
+            revalidations.increment();
+            Entry entry2 = entry.revalidated(response);
+            put(entry2);
+            entry2.sendTo(dest);
+            return;
+        }
+        misses.increment();
+        CacheControl cc = CacheControl.parse(response);
+        Optional<String> etag = response.headers().firstValue(hETag);
+        Optional<String> lastModified = response.headers().firstValue(hLastModified);
+        boolean cacheable = response.statusCode() == 200 && ! cc.noStore
+                && ( etag.isPresent() || lastModified.isPresent() || cc.maxAge > 0 );
+        if ( ! cacheable ) {
+            if ( entry != null )
+                remove(entry);
+            HttpRDF.httpResponseToStreamRDF(url, response, dest);
+            return;
+        }
+        Collect collect = new Collect(dest, maxTriples);
+        HttpRDF.httpResponseToStreamRDF(url, response, collect);
+        if ( collect.data == null ) {
+            // Too large to cache.
+            if ( entry != null )
+                remove(entry);
+            return;
+        }
+        Entry entry2 = new Entry(key, url, collect.data, etag.orElse(null), lastModified.orElse(null), cc.expiresAt());
+        put(entry2);
+    }
+
+    private static final Map<HttpClient, Long> clientIds = new WeakHashMap<>();
+    private static long clientCounter = 0;
+
+    private static long clientId(HttpClient httpClient) {
+        synchronized(clientIds) {
+            return clientIds.computeIfAbsent(httpClient, c->++clientCounter);
+        }
+    }
+
+    /** The cache key: URL, {@link HttpClient} and all the request headers. */
+    private static String key(String url, HttpClient httpClient, HttpRequest request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(url).append("\n").append(clientId(httpClient));
+        // HttpHeaders.map() is sorted by header name, case insensitive.
+        request.headers().map().forEach((name, values)->{
+            sb.append("\n").append(name.toLowerCase(Locale.ROOT)).append(": ").append(String.join(", ", values));
+        });
+        return sb.toString();
+    }
+
+    private Entry find(String key) {
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if ( entry != null )
+                return entry;
+        }
+        if ( directory == null )
+            return null;
+        Entry entry = readEntry(key);
+        if ( entry != null ) {
+            diskHits.increment();
+            putMemory(entry);
+        }
+        return entry;
+    }
+
+    private void put(Entry entry) {
+        putMemory(entry);
+        if ( directory != null )
+            writeEntry(entry);
+    }
+
+    private synchronized void putMemory(Entry entry) {
+        Entry old = entries.remove(entry.key);
+        if ( old != null )
+            weight -= old.weight;
+        if ( entry.weight > maxTriples )
+            return;
+        entries.put(entry.key, entry);
+        weight += entry.weight;
+        Iterator<Entry> iter = entries.values().iterator();
+        while ( weight > maxTriples && iter.hasNext() ) {
+            Entry e = iter.next();
+            iter.remove();
+            weight -= e.weight;
+            evictions.increment();
+        }
+    }
+
+    private synchronized void remove(Entry entry) {
+        if ( entries.remove(entry.key) != null )
+            weight -= entry.weight;
+        if ( directory != null )
+            deleteFiles(entry.key);
+    }
+
+    private static String serviceURL(String url) {
+        int i = url.indexOf('?');
+        return ( i < 0 ) ? url : url.substring(0, i);
+    }
+
+    // ---- Disk tier: "hash.rt" (RDF Thrift) and "hash.properties".
+
+    private String fileBase(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(2*hash.length);
+            for ( byte b : hash ) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void writeEntry(Entry entry) {
+        String base = fileBase(entry.key);
+        Path dataFile = directory.resolve(base+".rt");
+        Path propsFile = directory.resolve(base+".properties");
+        Properties props = new Properties();
+        // Not the key itself, which has the request headers.
+        props.setProperty("hash", base);
+        props.setProperty("url", entry.url);
+        if ( entry.etag != null )
+            props.setProperty("etag", entry.etag);
+        if ( entry.lastModified != null )
+            props.setProperty("lastModified", entry.lastModified);
+        props.setProperty("expiresAt", Long.toString(entry.expiresAt));
+        try {
+            try ( OutputStream out = Files.newOutputStream(dataFile) ) {
+                RDFDataMgr.write(out, entry.data, RDFFormat.RDF_THRIFT);
+            }
+            try ( OutputStream out = Files.newOutputStream(propsFile) ) {
+                props.store(out, null);
+            }
+        } catch (IOException | RiotException ex) {
+            Log.warn(this, "Failed to write cache entry for "+entry.url+": "+ex.getMessage());
+            delete(dataFile);
+            delete(propsFile);
+        }
+    }
+
+    private Entry readEntry(String key) {
+        String base = fileBase(key);
+        Path dataFile = directory.resolve(base+".rt");
+        Path propsFile = directory.resolve(base+".properties");
+        if ( ! Files.exists(propsFile) || ! Files.exists(dataFile) )
+            return null;
+        Properties props = readProperties(propsFile);
+        if ( props == null || ! base.equals(props.getProperty("hash")) )
+            return null;
+        DatasetGraph data = DatasetGraphFactory.create();
+        try ( InputStream in = Files.newInputStream(dataFile) ) {
+            RDFParser.source(in).lang(RDFLanguages.RDFTHRIFT).parse(data);
+        } catch (IOException | RiotException ex) {
+            Log.warn(this, "Failed to read cache entry for "+props.getProperty("url")+": "+ex.getMessage());
+            deleteFiles(key);
+            return null;
+        }
+        long expiresAt = Long.parseLong(props.getProperty("expiresAt", "-1"));
+        return new Entry(key, props.getProperty("url"), data, props.getProperty("etag"), props.getProperty("lastModified"), expiresAt);
+    }
+
+    private static Properties readProperties(Path file) {
+        Properties props = new Properties();
+        try ( InputStream in = Files.newInputStream(file) ) {
+            props.load(in);
+            return props;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void deleteFiles(String key) {
+        deleteBase(fileBase(key));
+    }
+
+    private void deleteBase(String base) {
+        if ( base == null )
+            return;
+        delete(directory.resolve(base+".rt"));
+        delete(directory.resolve(base+".properties"));
+    }
+
+    private static void delete(Path file) {
+        try { Files.deleteIfExists(file); } catch (IOException ex) {}
+    }
+
+    /** A cached response: the parsed RDF and the validators. */
+    private static class Entry {
+        final String key;
+        final String url;
+        final DatasetGraph data;
+        final long weight;
+        final String etag;
+        final String lastModified;
+        // Milliseconds since the epoch; -1 means "always revalidate".
+        final long expiresAt;
+
+        Entry(String key, String url, DatasetGraph data, String etag, String lastModified, long expiresAt) {
+            this(key, url, data, size(data), etag, lastModified, expiresAt);
+        }
+
+        private Entry(String key, String url, DatasetGraph data, long weight, String etag, String lastModified, long expiresAt) {
+            this.key = key;
+            this.url = url;
+            this.data = data;
+            this.weight = weight;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        private static long size(DatasetGraph data) {
+            long n = data.getDefaultGraph().size();
+            Iterator<Node> iter = data.listGraphNodes();
+            while ( iter.hasNext() )
+                n += data.getGraph(iter.next()).size();
+            return n;
+        }
+
+        boolean isFresh() {
+            return expiresAt >= 0 && System.currentTimeMillis() < expiresAt;
+        }
+
+        void conditionalHeaders(HttpRequest.Builder builder) {
+            if ( etag != null )
+                builder.setHeader(hIfNoneMatch, etag);
+            if ( lastModified != null )
+                builder.setHeader(hIfModifiedSince, lastModified);
+        }
+
+        /** New entry after a 304, which may carry updated validators and freshness. */
+        Entry revalidated(HttpResponse<?> response) {
+            CacheControl cc = CacheControl.parse(response);
+            String etag2 = response.headers().firstValue(hETag).orElse(etag);
+            String lastModified2 = response.headers().firstValue(hLastModified).orElse(lastModified);
+            return new Entry(key, url, data, weight, etag2, lastModified2, cc.expiresAt());
+        }
+
+        void sendTo(StreamRDF dest) {
+            StreamRDFOps.sendDatasetToStream(data, dest);
+        }
+    }
+
+    /** The parts of {@code Cache-Control} used by the cache. */
+    private static class CacheControl {
+        final boolean noStore;
+        final boolean noCache;
+        // Seconds; -1 for none.
+        final long maxAge;
+
+        CacheControl(boolean noStore, boolean noCache, long maxAge) {
+            this.noStore = noStore;
+            this.noCache = noCache;
+            this.maxAge = maxAge;
+        }
+
+        static CacheControl parse(HttpResponse<?> response) {
+            boolean noStore = false;
+            boolean noCache = false;
+            long maxAge = -1;
+            for ( String header : response.headers().allValues(hCacheControl) ) {
+                for ( String directive : header.split(",") ) {
+                    String d = directive.trim().toLowerCase(Locale.ROOT);
+                    if ( d.equals("no-store") )
+                        noStore = true;
+                    else if ( d.equals("no-cache") )
+                        noCache = true;
+                    else if ( d.startsWith("max-age=") ) {
+                        try {
+                            maxAge = Long.parseLong(d.substring("max-age=".length()).replace("\"", ""));
+                        } catch (NumberFormatException ex) {}
+                    }
+                }
+            }
+            return new CacheControl(noStore, noCache, maxAge);
+        }
+
+        long expiresAt() {
+            if ( noCache || maxAge <= 0 )
+                return -1;
+            return System.currentTimeMillis() + 1000 * maxAge;
+        }
+    }
+
+    /** Send to two {@link StreamRDF StreamRDFs}. */
+    /**
+     * Send to a {@link StreamRDF} and collect into a {@link DatasetGraph}, until there
+     * are more than {@code max} triples and quads, when collecting stops and
+     * {@code data} is set to null.
+     */
+    private static class Collect implements StreamRDF {
+        private final StreamRDF dest;
+        private final long max;
+        private long count = 0;
+        DatasetGraph data = DatasetGraphFactory.create();
+        private StreamRDF collector = StreamRDFLib.dataset(data);
+
+        Collect(StreamRDF dest, long max) {
+            this.dest = dest;
+            this.max = max;
+        }
+
+        private void count() {
+            if ( collector != null && ++count > max ) {
+                collector = null;
+                data = null;
+            }
+        }
+
+        @Override public void start()                   { dest.start(); }
+        @Override public void triple(Triple triple)     { dest.triple(triple); count(); if ( collector != null ) collector.triple(triple); }
+        @Override public void quad(Quad quad)           { dest.quad(quad); count(); if ( collector != null ) collector.quad(quad); }
+        @Override public void base(String base)         { dest.base(base); }
+        @Override public void prefix(String prefix, String iri) { dest.prefix(prefix, iri); if ( collector != null ) collector.prefix(prefix, iri); }
+        @Override public void finish()                  { dest.finish(); }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Open connections to an HTTP server before they are needed, so that the first
+ * real request does not pay for DNS lookup, TCP connect, TLS handshake and HTTP/2
+ * negotiation.
+ * <p>
+ * {@code N} concurrent cheap requests ({@code HEAD} by default, or {@code OPTIONS})
+ * are sent to the URL with the {@link HttpClient} that will be used later. With
+ * HTTP/1.1 this leaves up to {@code N} connections in the client's pool; with HTTP/2
+ * the requests share one connection. The response status does not matter: any
+ * response means the connection is established.
+ * <p>
+ * {@link HttpClient} does not expose its connection phases so the {@link Report}
+ * gives:
+ * <ul>
+ * <li>DNS: the time to resolve the host name (this also fills the JVM DNS cache)</li>
+ * <li>Connect: the time of the first requests less the time of a request on a warm connection,
+ *     which is the cost of TCP connect, TLS and HTTP version negotiation</li>
+ * <li>Request: the time of a request on a warm connection</li>
+ * </ul>
+ */
+public class HttpWarmup {
+
+    /** The result of warming up the connections to one URL. */
+    public static class Report {
+        private final String url;
+        private final int requested;
+        private final int connected;
+        private final Version version;
+        private final long dnsNanos;
+        private final long coldNanos;
+        private final long warmNanos;
+        private final Throwable failure;
+
+        private Report(String url, int requested, int connected, Version version,
+                       long dnsNanos, long coldNanos, long warmNanos, Throwable failure) {
+            this.url = url;
+            this.requested = requested;
+            this.connected = connected;
+            this.version = version;
+            this.dnsNanos = dnsNanos;
+            this.coldNanos = coldNanos;
+            this.warmNanos = warmNanos;
+            this.failure = failure;
+        }
+
+        public String url()         { return url; }
+
+        /** Number of warmup requests sent, not including the warm request. */
+        public int requested()      { return requested; }
+
+        /** Number of warmup requests that had a response. */
+        public int connected()      { return connected; }
+
+        /** Whether any warmup request had a response. */
+        public boolean isSuccess()  { return connected > 0; }
+
+        /** The HTTP version of the responses, or null if there were none. */
+        public Version version()    { return version; }
+
+        /** Time to resolve the host name, in nanoseconds. */
+        public long dnsNanos()      { return dnsNanos; }
+
+        /**
+         * Estimated time for TCP connect, TLS and HTTP negotiation, in nanoseconds.
+         * This is the mean time of the first requests less the time of a request on
+         * a warm connection.
+         */
+        public long connectNanos()  { return Math.max(0, coldNanos - warmNanos); }
+
+        /** Time of a request on a warm connection, in nanoseconds, or -1 if there was no response. */
+        public long requestNanos()  { return warmNanos; }
+
+        /** The first error, if any of the requests failed, else null. */
+        public Throwable failure()  { return failure; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(url).append(" : ").append(connected).append("/").append(requested);
+            if ( version != null )
+                sb.append(" ").append(version);
+            sb.append(" dns=").append(millis(dnsNanos)).append("ms");
+            if ( isSuccess() )
+                sb.append(" connect=").append(millis(connectNanos())).append("ms")
+                  .append(" request=").append(millis(warmNanos)).append("ms");
+            if ( failure != null )
+                sb.append(" failure=").append(failure.getMessage());
+            return sb.toString();
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.1f", nanos/1e6);
+        }
+    }
+
+    /** Warm up one connection to the URL with a {@code HEAD} request, waiting for the result. */
+    public static Report warmup(HttpClient httpClient, String url) {
+        return warmup(httpClient, url, 1);
+    }
+
+    /** Warm up {@code connections} connections to the URL with {@code HEAD} requests, waiting for the result. */
+    public static Report warmup(HttpClient httpClient, String url, int connections) {
+        return warmupAsync(httpClient, url, connections, "HEAD").join();
+    }
+
+    /**
+     * Warm up {@code connections} connections to the URL in the background, using requests
+     * with the given method, which should be "HEAD" or "OPTIONS".
+     * The {@link CompletableFuture} does not complete exceptionally: failures are recorded
+     * in the {@link Report}.
+     */
+    public static CompletableFuture<Report> warmupAsync(HttpClient httpClient, String url, int connections, String method) {
+        Objects.requireNonNull(httpClient);
+        Objects.requireNonNull(url);
+        Objects.requireNonNull(method);
+        if ( connections <= 0 )
+            throw new IllegalArgumentException("Connections must be positive: "+connections);
+        URI uri = HttpLib.toRequestURI(url);
+        return CompletableFuture.supplyAsync(()->resolve(uri.getHost()))
+                .thenCompose(dnsNanos->{
+                    List<CompletableFuture<Attempt>> attempts = new ArrayList<>(connections);
+                    for ( int i = 0 ; i < connections ; i++ )
+                        attempts.add(send(httpClient, uri, method));
+                    return CompletableFuture.allOf(attempts.toArray(new CompletableFuture<?>[0]))
+                            .thenCompose(x->{
+                                List<Attempt> cold = new ArrayList<>(connections);
+                                attempts.forEach(a->cold.add(a.join()));
+                                boolean anyConnected = cold.stream().anyMatch(a->a.failure == null);
+                                CompletableFuture<Attempt> warm = anyConnected
+                                        ? send(httpClient, uri, method)
+                                        : CompletableFuture.completedFuture(null);
+                                return warm.thenApply(w->report(url, dnsNanos, cold, w));
+                            });
+                });
+    }
+
+    // One request: the time taken, and the response version or the error.
+    private static class Attempt {
+        final long nanos;
+        final Version version;
+        final Throwable failure;
+        Attempt(long nanos, Version version, Throwable failure) {
+            this.nanos = nanos;
+            this.version = version;
+            this.failure = failure;
+        }
+    }
+
+    private static CompletableFuture<Attempt> send(HttpClient httpClient, URI uri, String method) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .method(method, BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        long start = System.nanoTime();
+        try {
+            return httpClient.sendAsync(request, BodyHandlers.discarding())
+                    .handle((response, ex)->{
+                        long nanos = System.nanoTime() - start;
+                        if ( ex != null )
+                            return new Attempt(nanos, null, ex);
+                        return new Attempt(nanos, response.version(), null);
+                    });
+        } catch (RuntimeException ex) {
+            return CompletableFuture.completedFuture(new Attempt(System.nanoTime() - start, null, ex));
+        }
+    }
+
+    private static long resolve(String host) {
+        long start = System.nanoTime();
+        if ( host != null ) {
+            try {
+                InetAddress.getAllByName(host);
+            } catch (UnknownHostException ex) {
+                // The requests will fail and report the error.
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Report report(String url, long dnsNanos, List<Attempt> cold, Attempt warm) {
+        int connected = 0;
+        long coldTotal = 0;
+        Version version = null;
+        Throwable failure = null;
+        for ( Attempt a : cold ) {
+            if ( a.failure != null ) {
+                if ( failure == null )
+                    failure = a.failure;
+                continue;
+            }
+            connected++;
+            coldTotal += a.nanos;
+            version = a.version;
+        }
+        long coldNanos = ( connected == 0 ) ? -1 : coldTotal/connected;
+        long warmNanos = -1;
+        if ( warm != null && warm.failure == null )
+            warmNanos = warm.nanos;
+        else if ( connected > 0 )
+            // No warm time: attribute it all to connecting.
+            warmNanos = 0;
+        return new Report(url, cold.size(), connected, version, dnsNanos, coldNanos, warmNanos, failure);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.web.HttpException;
+
+/**
+ * Single-flight coalescing of identical concurrent requests.
+ * <p>
+ * Requests are keyed by (method, URL, request headers, hash of the request body)
+ * and the {@link HttpClient} used. The first caller for a key performs the exchange;
+ * callers that arrive while it is in progress wait for, and share, the same result.
+ * The result must not be modified after it is returned by the action; it is shared
+ * between threads. Nothing is kept after the exchange completes - this is not a cache.
+ * <p>
+ * Coalescing is used by {@link HttpRDF} GET operations (the parsed data is shared and
+ * sent to each caller's destination) and by
+ * {@link org.apache.jena.sparql.exec.http.QueryExecHTTP} SELECT queries (the results are
+ * shared as an in-memory row set, each caller getting its own iterator) when set as
+ * {@link HttpEnv#requestCoalescer}. A result with more than {@link #maxSize()} triples
+ * and quads, or rows, is not shared: the caller that made the exchange streams it,
+ * and the waiting callers each make their own request.
+ */
+public class RequestCoalescer {
+
+    /** Default for {@link #maxSize()}. */
+    public static final long dftMaxSize = 10_000;
+
+    private final long maxSize;
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public static RequestCoalescer create() { return new RequestCoalescer(dftMaxSize); }
+
+    /** A {@code RequestCoalescer} that shares results of up to {@code maxSize} triples and quads, or rows. */
+    public static RequestCoalescer create(long maxSize) { return new RequestCoalescer(maxSize); }
+
+    private RequestCoalescer(long maxSize) {
+        if ( maxSize < 0 )
+            throw new IllegalArgumentException("maxSize must not be negative: "+maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /** The largest result, in triples and quads or rows, that is shared. */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Perform the action for the key, or if there is already an action in progress for
+     * the key, wait for that result. An exception from the action is thrown to all the
+     * callers waiting for it.
+     */
+    @SuppressWarnings("unchecked")
+    public <X> X execute(Key key, Supplier<X> action) {
+        Objects.requireNonNull(key);
+        CompletableFuture<Object> ours = new CompletableFuture<>();
+        CompletableFuture<Object> other = inFlight.putIfAbsent(key, ours);
+        if ( other != null ) {
+            coalesced.increment();
+            return (X)await(other);
+        }
+        executed.increment();
+        try {
+            X x = action.get();
+            ours.complete(x);
+            return x;
+        } catch (RuntimeException | Error ex) {
+            ours.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            throw new HttpException(cause);
+        }
+    }
+
+    /** The key for a request with no body. */
+    public static Key key(HttpClient httpClient, HttpRequest request) {
+        return key(httpClient, request, null);
+    }
+
+    /**
+     * The key for a request. {@code body} is the request body, before any
+     * {@code Content-Encoding}, or null for no body.
+     */
+    public static Key key(HttpClient httpClient, HttpRequest request, String body) {
+        // Header names are case insensitive.
+        Map<String, List<String>> headers = new TreeMap<>();
+        request.headers().map().forEach((name, values)->headers.put(name.toLowerCase(Locale.ROOT), values));
+        return new Key(httpClient, request.method(), request.uri(), headers, bodyHash(body));
+    }
+
+    private static byte[] bodyHash(String body) {
+        if ( body == null )
+            return null;
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** Number of exchanges performed. */
+    public long executed()  { return executed.sum(); }
+
+    /** Number of requests that shared the result of another exchange; that is, requests saved. */
+    public long coalesced() { return coalesced.sum(); }
+
+    /** Number of exchanges in progress. */
+    public int inFlight()   { return inFlight.size(); }
+
+    public void resetCounters() {
+        executed.reset();
+        coalesced.reset();
+    }
+
+    /** Key for coalescing. The {@link HttpClient} is compared by identity. */
+    public static final class Key {
+        private final HttpClient httpClient;
+        private final String method;
+        private final URI uri;
+        private final Map<String, List<String>> headers;
+        private final byte[] bodyHash;
+        private final int hashCode;
+
+        private Key(HttpClient httpClient, String method, URI uri, Map<String, List<String>> headers, byte[] bodyHash) {
+            this.httpClient = httpClient;
+            this.method = Objects.requireNonNull(method);
+            this.uri = Objects.requireNonNull(uri);
+            this.headers = Objects.requireNonNull(headers);
+            this.bodyHash = bodyHash;
+            this.hashCode = Objects.hash(System.identityHashCode(httpClient), method, uri, headers, Arrays.hashCode(bodyHash));
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !(obj instanceof Key) )
+                return false;
+            Key other = (Key)obj;
+            return httpClient == other.httpClient && method.equals(other.method) && uri.equals(other.uri)
+                   && headers.equals(other.headers) && Arrays.equals(bodyHash, other.bodyHash);
+        }
+
+        @Override
+        public String toString() {
+            // Not the headers, which may include credentials.
+            List<String> accept = headers.get("accept");
+            return method+" "+uri+( accept == null ? "" : " "+accept );
+        }
+    }
+}
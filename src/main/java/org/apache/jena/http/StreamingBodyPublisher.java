@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BodyPublisher} that runs a writer, such as an RDF serializer, as the
+ * request is sent. The body has no {@code Content-Length} (HTTP/1.1 uses chunked
+ * transfer) and the whole body is never held in memory.
+ * <p>
+ * The writer runs on its own thread and writes to an {@link OutputStream}. Output is
+ * passed on in buffers of {@code bufferSize} bytes. At most {@code maxBuffers} are
+ * waiting to be sent; after that the writer blocks until the {@link Subscriber} asks
+ * for more (backpressure).
+ * <p>
+ * The writer may be called more than once if the HTTP client needs to resend the
+ * request (for example, when responding to an authentication challenge).
+ */
+public class StreamingBodyPublisher implements BodyPublisher {
+
+    private static final int dftBufferSize = 64*1024;
+    private static final int dftMaxBuffers = 4;
+
+    /**
+     * Maximum number of writers running at once in the system pool.
+     * Further writers wait for a thread; their requests are slower to send, not refused.
+     */
+    public static final int writerThreadsMax = 32;
+
+    // Writer threads. The threads are daemon threads and are reclaimed when idle.
+    private static final ExecutorService writerThreads = createWriterThreads();
+
+    private static ExecutorService createWriterThreads() {
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(writerThreadsMax, writerThreadsMax, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<>(), r->{
+            Thread thread = new Thread(r, "HttpBodyWriter-"+threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // Marker for end of stream.
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final Consumer<OutputStream> writer;
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final Executor executor;
+
+    /** Create a {@link BodyPublisher} that calls the {@code writer} to produce the body. */
+    public static BodyPublisher create(Consumer<OutputStream> writer) {
+        return new StreamingBodyPublisher(writer, dftBufferSize, dftMaxBuffers, writerThreads);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} that calls the {@code writer} to produce the body,
+     * running the writer on the {@code executor}. If the executor is null, a system pool of threads is used.
+     */
+    public static BodyPublisher create(Consumer<OutputStream> writer, Executor executor) {
+        return create(writer, dftBufferSize, dftMaxBuffers, executor);
+    }
+
+    /**
+     * Create a {@link BodyPublisher} that calls the {@code writer} to produce the body,
+     * with explicit buffer settings. If the executor is null, a system pool of threads is used.
+     */
+    public static BodyPublisher create(Consumer<OutputStream> writer, int bufferSize, int maxBuffers, Executor executor) {
+        return new StreamingBodyPublisher(writer, bufferSize, maxBuffers, executor == null ? writerThreads : executor);
+    }
+
+    private StreamingBodyPublisher(Consumer<OutputStream> writer, int bufferSize, int maxBuffers, Executor executor) {
+        this.writer = Objects.requireNonNull(writer);
+        if ( bufferSize <= 0 )
+            throw new IllegalArgumentException("Buffer size must be positive: "+bufferSize);
+        if ( maxBuffers <= 0 )
+            throw new IllegalArgumentException("Maximum buffers must be positive: "+maxBuffers);
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.executor = executor;
+    }
+
+    /** Unknown length: send chunked. */
+    @Override
+    public long contentLength() { return -1; }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        WriterSubscription subscription = new WriterSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        try {
+            executor.execute(subscription::produce);
+        } catch (RejectedExecutionException ex) {
+            subscription.failed(ex);
+        }
+    }
+
+    private class WriterSubscription implements Subscription {
+        private final Subscriber<? super ByteBuffer> subscriber;
+        private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(maxBuffers+1);
+        private final AtomicLong demand = new AtomicLong(0);
+        // Ensures only one thread is delivering to the subscriber at a time.
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private volatile boolean cancelled = false;
+        private volatile boolean finished = false;
+        private volatile Throwable error = null;
+
+        WriterSubscription(Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /** Run the writer (on the writer thread) */
+        void produce() {
+            try ( OutputStream out = new QueueOutputStream() ) {
+                writer.accept(out);
+            } catch (Throwable th) {
+                if ( ! cancelled )
+                    error = th;
+            }
+            enqueue(END);
+            drain();
+        }
+
+        void failed(Throwable th) {
+            error = th;
+            enqueue(END);
+            drain();
+        }
+
+        /** Blocking enqueue, giving up if cancelled. */
+        private void enqueue(ByteBuffer bb) {
+            try {
+                while ( ! cancelled ) {
+                    if ( queue.offer(bb, 100, TimeUnit.MILLISECONDS) )
+                        return;
+                }
+            } catch (InterruptedException ex) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if ( n <= 0 ) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request("+n+")"));
+                return;
+            }
+            // Add, capping at Long.MAX_VALUE.
+            demand.getAndUpdate(x -> (x + n < 0) ? Long.MAX_VALUE : x + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            queue.clear();
+        }
+
+        /** Deliver buffers while there is demand. */
+        private void drain() {
+            if ( wip.getAndIncrement() != 0 )
+                return;
+            do {
+                while ( ! cancelled && ! finished ) {
+                    ByteBuffer bb = queue.peek();
+                    if ( bb == null )
+                        break;
+                    if ( bb == END ) {
+                        // Completion does not need demand.
+                        queue.poll();
+                        finished = true;
+                        if ( error != null )
+                            subscriber.onError(error);
+                        else
+                            subscriber.onComplete();
+                        break;
+                    }
+                    if ( demand.get() == 0 )
+                        break;
+                    queue.poll();
+                    demand.decrementAndGet();
+                    subscriber.onNext(bb);
+                }
+            } while ( wip.decrementAndGet() != 0 );
+        }
+
+        /** OutputStream that passes full buffers to the queue. */
+        private class QueueOutputStream extends OutputStream {
+            private byte[] buffer = new byte[bufferSize];
+            private int idx = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                checkCancelled();
+                if ( idx == buffer.length )
+                    sendBuffer();
+                buffer[idx++] = (byte)b;
+            }
+
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                checkCancelled();
+                while ( len > 0 ) {
+                    if ( idx == buffer.length )
+                        sendBuffer();
+                    int n = Math.min(len, buffer.length - idx);
+                    System.arraycopy(bytes, off, buffer, idx, n);
+                    idx += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+
+            // Flush is a no-op - sending a partial buffer would only create small chunks.
+
+            @Override
+            public void close() throws IOException {
+                if ( idx > 0 && ! cancelled )
+                    sendBuffer();
+                buffer = null;
+            }
+
+            private void sendBuffer() throws IOException {
+                // The buffer is handed over; start a new one.
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, idx);
+                buffer = new byte[bufferSize];
+                idx = 0;
+                enqueue(bb);
+                checkCancelled();
+                drain();
+            }
+
+            private void checkCancelled() throws IOException {
+                if ( cancelled )
+                    throw new IOException("HTTP request body cancelled");
+            }
+        }
+    }
+}
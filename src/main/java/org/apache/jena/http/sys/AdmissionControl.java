@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http.sys;
+
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.web.HttpException;
+
+/**
+ * Admission control for requests to a service: a limit on the number of requests
+ * in progress (a bulkhead) and token bucket rate limits on requests per second and
+ * request body bytes per second.
+ * <p>
+ * A request that is over a limit waits in a first-come, first-served queue. If a
+ * {@code timeout} is set, a request that has waited that long fails with an
+ * {@link HttpException}. A request is in progress until the response body has been
+ * read or closed. The bytes limit uses the request body length when it is known;
+ * a request larger than the burst size waits for a full bucket.
+ * <p>
+ * Admission control is set per service with {@link RegistryAdmissionControl}. One
+ * {@code AdmissionControl} registered for a prefix applies to all the requests for
+ * URLs with that prefix.
+ * <pre>
+ *   AdmissionControl ac = AdmissionControl.newBuilder().maxInFlight(8).requestRate(50).timeout(Duration.ofSeconds(30)).build();
+ *   RegistryAdmissionControl.get().addPrefix("http://fuseki.example/", ac);
+ * </pre>
+ * Wait times are recorded in microseconds.
+ */
+public class AdmissionControl {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r->{
+        Thread thread = new Thread(r, "HttpAdmission");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxInFlight;
+    private final double requestRate;
+    private final double requestBurst;
+    private final double byteRate;
+    private final double byteBurst;
+    private final Duration timeout;
+
+    // Guarded by "this".
+    private int inFlight = 0;
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private double requestTokens;
+    private double byteTokens;
+    private long lastRefill;
+    private ScheduledFuture<?> dispatchTask = null;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    private AdmissionControl(Builder builder) {
+        this.maxInFlight = builder.maxInFlight;
+        this.requestRate = builder.requestRate;
+        this.requestBurst = builder.requestBurst > 0 ? builder.requestBurst : Math.max(1, builder.requestRate);
+        this.byteRate = builder.byteRate;
+        this.byteBurst = builder.byteBurst > 0 ? builder.byteBurst : Math.max(1, builder.byteRate);
+        this.timeout = builder.timeout;
+        this.requestTokens = requestBurst;
+        this.byteTokens = byteBurst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /** Number of requests admitted. */
+    public long admitted()                  { return admitted.sum(); }
+
+    /** Number of requests that had to wait. */
+    public long queued()                    { return queued.sum(); }
+
+    /** Number of requests that waited longer than the timeout. */
+    public long timedOut()                  { return timedOut.sum(); }
+
+    /** Time waiting to be admitted, in microseconds. */
+    public LatencyHistogram waitTime()      { return waitTime; }
+
+    /** Number of requests in progress. */
+    public synchronized int inFlight()      { return inFlight; }
+
+    /** Number of requests waiting. */
+    public synchronized int queueDepth()    { return queue.size(); }
+
+    /**
+     * Wait until a request, with a body of {@code bodyLength} bytes (0 if none or unknown),
+     * can be sent. The returned {@link Permit} must be released when the request
+     * has finished.
+     * @throws HttpException on timeout or interrupt.
+     */
+    public Permit acquire(long bodyLength) {
+        CompletableFuture<Permit> future = acquireAsync(bodyLength);
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if ( ! future.cancel(false) && ! future.isCompletedExceptionally() )
+                // Admitted anyway.
+                future.join().release();
+            synchronized(this) {
+                queue.removeIf(w -> w.future == future);
+            }
+            throw new HttpException("Interrupted waiting for admission", ex);
+        } catch (ExecutionException ex) {
+            if ( ex.getCause() instanceof HttpException )
+                throw (HttpException)ex.getCause();
+            throw new HttpException(ex.getCause());
+        }
+    }
+
+    /**
+     * Return a {@code CompletableFuture} that completes with a {@link Permit} when a
+     * request with a body of {@code bodyLength} bytes can be sent. No thread is
+     * blocked while waiting. The {@code CompletableFuture} completes exceptionally
+     * with an {@link HttpException} on timeout.
+     */
+    public CompletableFuture<Permit> acquireAsync(long bodyLength) {
+        Waiter waiter = new Waiter(Math.max(0, bodyLength));
+        List<Waiter> granted;
+        synchronized(this) {
+            if ( queue.isEmpty() && tryGrant(waiter.bytes) ) {
+                admitted.increment();
+                waitTime.record(0);
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            queue.add(waiter);
+            granted = dispatch();
+        }
+        queued.increment();
+        if ( timeout != null ) {
+            ScheduledFuture<?> timer = scheduler.schedule(()->timeout(waiter), timeout.toNanos(), TimeUnit.NANOSECONDS);
+            waiter.future.whenComplete((p, ex)->timer.cancel(false));
+        }
+        complete(granted);
+        return waiter.future;
+    }
+
+    // ---- Implementation. tryGrant, refill, rateDelay, dispatch and scheduleDispatch are called holding the lock.
+
+    private boolean tryGrant(long bytes) {
+        if ( maxInFlight > 0 && inFlight >= maxInFlight )
+            return false;
+        refill();
+        if ( requestRate > 0 && requestTokens < 1 )
+            return false;
+        if ( byteRate > 0 && bytes > 0 && byteTokens < Math.min(bytes, byteBurst) )
+            return false;
+        inFlight++;
+        if ( requestRate > 0 )
+            requestTokens -= 1;
+        if ( byteRate > 0 )
+            byteTokens -= bytes;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double seconds = (now - lastRefill) / 1e9;
+        lastRefill = now;
+        if ( requestRate > 0 )
+            requestTokens = Math.min(requestBurst, requestTokens + seconds * requestRate);
+        if ( byteRate > 0 )
+            byteTokens = Math.min(byteBurst, byteTokens + seconds * byteRate);
+    }
+
+    /** Time until the rate limits allow a request, in nanoseconds. Called after {@link #refill}. */
+    private long rateDelay(long bytes) {
+        double seconds = 0;
+        if ( requestRate > 0 && requestTokens < 1 )
+            seconds = (1 - requestTokens) / requestRate;
+        if ( byteRate > 0 && bytes > 0 ) {
+            double needed = Math.min(bytes, byteBurst) - byteTokens;
+            if ( needed > 0 )
+                seconds = Math.max(seconds, needed / byteRate);
+        }
+        return (long)Math.ceil(seconds * 1e9);
+    }
+
+    /** Admit waiting requests, in order, while the limits allow. */
+    private List<Waiter> dispatch() {
+        List<Waiter> granted = null;
+        while ( ! queue.isEmpty() ) {
+            Waiter waiter = queue.peek();
+            if ( waiter.future.isDone() ) {
+                // Cancelled.
+                queue.poll();
+                continue;
+            }
+            if ( ! tryGrant(waiter.bytes) ) {
+                // Blocked by rate, not by the number in progress: try again later.
+                if ( maxInFlight <= 0 || inFlight < maxInFlight )
+                    scheduleDispatch(rateDelay(waiter.bytes));
+                break;
+            }
+            queue.poll();
+            if ( granted == null )
+                granted = new ArrayList<>();
+            granted.add(waiter);
+        }
+        return granted;
+    }
+
+    private void scheduleDispatch(long delayNanos) {
+        if ( dispatchTask != null && ! dispatchTask.isDone() )
+            return;
+        dispatchTask = scheduler.schedule(()->{
+            List<Waiter> granted;
+            synchronized(this) {
+                dispatchTask = null;
+                granted = dispatch();
+            }
+            complete(granted);
+        }, Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+    }
+
+    // Complete outside the lock: completion runs dependent actions.
+    private void complete(List<Waiter> granted) {
+        if ( granted == null )
+            return;
+        long now = System.nanoTime();
+        for ( Waiter waiter : granted ) {
+            Permit permit = new Permit();
+            if ( waiter.future.complete(permit) ) {
+                admitted.increment();
+                waitTime.record(TimeUnit.NANOSECONDS.toMicros(now - waiter.start));
+            } else {
+                permit.release();
+            }
+        }
+    }
+
+    private void timeout(Waiter waiter) {
+        boolean removed;
+        List<Waiter> granted;
+        synchronized(this) {
+            removed = queue.remove(waiter);
+            granted = removed ? dispatch() : null;
+        }
+        if ( removed ) {
+            timedOut.increment();
+            waiter.future.completeExceptionally(new HttpException("Timeout waiting for admission: "+timeout));
+        }
+        complete(granted);
+    }
+
+    private void released() {
+        List<Waiter> granted;
+        synchronized(this) {
+            inFlight--;
+            granted = dispatch();
+        }
+        complete(granted);
+    }
+
+    private static class Waiter {
+        final long bytes;
+        final long start = System.nanoTime();
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+        Waiter(long bytes) { this.bytes = bytes; }
+    }
+
+    /** Permission to send a request. Release when the request has finished. */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit() {}
+
+        /** Release the permit. Releasing more than once has no effect. */
+        public void release() {
+            if ( released.compareAndSet(false, true) )
+                released();
+        }
+
+        public boolean isReleased() {
+            return released.get();
+        }
+
+        /**
+         * Wrap a {@link BodyHandler} so that the permit is released when the response
+         * body has been read, has failed, or is closed before the end.
+         */
+        public <T> BodyHandler<T> bodyHandler(BodyHandler<T> bodyHandler) {
+            return responseInfo -> new ReleaseBodySubscriber<>(this, bodyHandler.apply(responseInfo));
+        }
+    }
+
+    private static class ReleaseBodySubscriber<T> implements BodySubscriber<T> {
+        private final Permit permit;
+        private final BodySubscriber<T> other;
+
+        ReleaseBodySubscriber(Permit permit, BodySubscriber<T> other) {
+            this.permit = permit;
+            this.other = other;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return other.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            other.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) { subscription.request(n); }
+
+                @Override
+                public void cancel() {
+                    permit.release();
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            other.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            permit.release();
+            other.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            permit.release();
+            other.onComplete();
+        }
+    }
+
+    public static class Builder {
+        private int maxInFlight = 0;
+        private double requestRate = 0;
+        private double requestBurst = 0;
+        private double byteRate = 0;
+        private double byteBurst = 0;
+        private Duration timeout = null;
+
+        private Builder() {}
+
+        /** Maximum number of requests in progress. 0 for no limit (default). */
+        public Builder maxInFlight(int maxInFlight) {
+            if ( maxInFlight < 0 )
+                throw new IllegalArgumentException("Negative maxInFlight: "+maxInFlight);
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /** Requests per second. 0 for no limit (default). */
+        public Builder requestRate(double requestsPerSecond) {
+            if ( requestsPerSecond < 0 )
+                throw new IllegalArgumentException("Negative request rate: "+requestsPerSecond);
+            this.requestRate = requestsPerSecond;
+            return this;
+        }
+
+        /** Number of requests that can be sent at once after an idle period. Default: one second's worth. */
+        public Builder requestBurst(double requests) {
+            this.requestBurst = requests;
+            return this;
+        }
+
+        /** Request body bytes per second. 0 for no limit (default). */
+        public Builder byteRate(double bytesPerSecond) {
+            if ( bytesPerSecond < 0 )
+                throw new IllegalArgumentException("Negative byte rate: "+bytesPerSecond);
+            this.byteRate = bytesPerSecond;
+            return this;
+        }
+
+        /** Number of bytes that can be sent at once after an idle period. Default: one second's worth. */
+        public Builder byteBurst(double bytes) {
+            this.byteBurst = bytes;
+            return this;
+        }
+
+        /** Maximum time to wait to be admitted. Null for no limit (default). */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public AdmissionControl build() {
+            return new AdmissionControl(this);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http.sys;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.logging.Log;
+
+/**
+ * A circuit breaker for requests to a service.
+ * <p>
+ * The breaker is {@link State#CLOSED} normally. It records the outcome of the last
+ * {@code windowSize} requests; a request is a failure if there is no response (for
+ * example, a connection timeout) or the response status is 5xx, and is slow if it takes
+ * longer than {@code slowCallDuration} to get the response. When there have been at
+ * least {@code minimumCalls} requests and the failure rate or the slow call rate
+ * reaches its threshold, the breaker becomes {@link State#OPEN}.
+ * <p>
+ * While open, requests fail immediately with {@link CircuitBreakerOpenException}.
+ * After {@code openDuration}, the breaker becomes {@link State#HALF_OPEN} and lets
+ * {@code halfOpenCalls} trial requests through. If they all succeed, and are not slow,
+ * the breaker closes; otherwise it opens again.
+ * <p>
+ * Circuit breakers are set per service with {@link RegistryCircuitBreaker}. A breaker
+ * registered for a prefix is shared by all the URLs with that prefix.
+ * <pre>
+ *   CircuitBreaker breaker = CircuitBreaker.newBuilder().failureRateThreshold(0.5).openDuration(Duration.ofSeconds(30)).build();
+ *   RegistryCircuitBreaker.get().add("http://example/dataset/sparql", breaker);
+ * </pre>
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Called when the state of a circuit breaker changes. */
+    @FunctionalInterface
+    public interface Listener {
+        public void stateChange(CircuitBreaker circuitBreaker, State from, State to);
+    }
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder rejected = new LongAdder();
+
+    // Guarded by "this".
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    // Sliding window of outcomes.
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int windowCount = 0;
+    private int windowIndex = 0;
+    private int failureCount = 0;
+    private int slowCount = 0;
+    // Half-open trial calls.
+    private int trialsStarted = 0;
+    private int trialsFinished = 0;
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    private CircuitBreaker(Builder builder) {
+        this.name = builder.name;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallNanos = ( builder.slowCallDuration == null ) ? -1 : builder.slowCallDuration.toNanos();
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        this.openNanos = builder.openDuration.toNanos();
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.failures = new boolean[builder.windowSize];
+        this.slowCalls = new boolean[builder.windowSize];
+    }
+
+    public String name() { return name; }
+
+    public void addListener(Listener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** The current state. An open breaker whose open time has passed reports {@link State#HALF_OPEN}. */
+    public State state() {
+        State from;
+        synchronized(this) {
+            from = state;
+            if ( ! checkHalfOpen() )
+                return state;
+        }
+        notify(from, State.HALF_OPEN);
+        return State.HALF_OPEN;
+    }
+
+    /** Whether a request would be refused now. This does not use a half-open trial call. */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    /** Number of requests refused because the breaker was open. */
+    public long rejected() { return rejected.sum(); }
+
+    /** Failure rate over the current window (0 to 1). */
+    public synchronized double failureRate() {
+        return windowCount == 0 ? 0 : (double)failureCount / windowCount;
+    }
+
+    /** Slow call rate over the current window (0 to 1). */
+    public synchronized double slowCallRate() {
+        return windowCount == 0 ? 0 : (double)slowCount / windowCount;
+    }
+
+    /**
+     * Ask to make a request. Returns false if the breaker is open, or is half-open and
+     * all the trial calls have started. If this returns true, the outcome must be
+     * recorded with {@link #onSuccess} or {@link #onFailure}.
+     */
+    public boolean tryAcquire() {
+        State from;
+        boolean toHalfOpen;
+        boolean allowed;
+        synchronized(this) {
+            from = state;
+            toHalfOpen = checkHalfOpen();
+            switch(state) {
+                case CLOSED:
+                    allowed = true;
+                    break;
+                case HALF_OPEN:
+                    allowed = trialsStarted < halfOpenCalls;
+                    if ( allowed )
+                        trialsStarted++;
+                    break;
+                case OPEN: default:
+                    allowed = false;
+            }
+            if ( ! allowed )
+                rejected.increment();
+        }
+        if ( toHalfOpen )
+            notify(from, State.HALF_OPEN);
+        return allowed;
+    }
+
+    /**
+     * Ask to make a request, throwing {@link CircuitBreakerOpenException} if it is refused.
+     */
+    public void acquire(String request) {
+        if ( ! tryAcquire() )
+            throw new CircuitBreakerOpenException("Circuit breaker open: "+request);
+    }
+
+    /** A request allowed by {@link #tryAcquire} was not sent. No outcome is recorded. */
+    public synchronized void cancel() {
+        if ( state == State.HALF_OPEN && trialsStarted > trialsFinished )
+            trialsStarted--;
+    }
+
+    /** Record a response. A 5xx status is a failure. */
+    public void onResponse(int statusCode, long durationNanos) {
+        if ( statusCode >= 500 )
+            onFailure(durationNanos);
+        else
+            onSuccess(durationNanos);
+    }
+
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos);
+    }
+
+    public void onFailure(long durationNanos) {
+        record(true, durationNanos);
+    }
+
+    private void record(boolean failure, long durationNanos) {
+        boolean slow = slowCallNanos >= 0 && durationNanos > slowCallNanos;
+        State from;
+        State to;
+        synchronized(this) {
+            from = state;
+            switch(state) {
+                case CLOSED:
+                    add(failure, slow);
+                    if ( windowCount >= minimumCalls && exceedsThreshold() )
+                        open();
+                    break;
+                case HALF_OPEN:
+                    trialsFinished++;
+                    if ( failure || slow )
+                        open();
+                    else if ( trialsFinished >= halfOpenCalls )
+                        close();
+                    break;
+                case OPEN:
+                    // A call started before the breaker opened.
+                    break;
+            }
+            to = state;
+        }
+        if ( from != to )
+            notify(from, to);
+    }
+
+    private boolean exceedsThreshold() {
+        if ( (double)failureCount / windowCount >= failureRateThreshold )
+            return true;
+        return slowCallNanos >= 0 && (double)slowCount / windowCount >= slowCallRateThreshold;
+    }
+
+    private void add(boolean failure, boolean slow) {
+        if ( windowCount == failures.length ) {
+            // Full: remove the oldest.
+            if ( failures[windowIndex] )
+                failureCount--;
+            if ( slowCalls[windowIndex] )
+                slowCount--;
+        } else {
+            windowCount++;
+        }
+        failures[windowIndex] = failure;
+        slowCalls[windowIndex] = slow;
+        if ( failure )
+            failureCount++;
+        if ( slow )
+            slowCount++;
+        windowIndex = (windowIndex + 1) % failures.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        resetWindow();
+    }
+
+    // Holding the lock. Move from OPEN to HALF_OPEN if the open time has passed.
+    private boolean checkHalfOpen() {
+        if ( state != State.OPEN || System.nanoTime() - openedAt < openNanos )
+            return false;
+        state = State.HALF_OPEN;
+        trialsStarted = 0;
+        trialsFinished = 0;
+        return true;
+    }
+
+    private void resetWindow() {
+        windowCount = 0;
+        windowIndex = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+
+    /** Return to the closed state, with no recorded outcomes. */
+    public void reset() {
+        State from;
+        synchronized(this) {
+            from = state;
+            close();
+        }
+        if ( from != State.CLOSED )
+            notify(from, State.CLOSED);
+    }
+
+    private void notify(State from, State to) {
+        for ( Listener listener : listeners ) {
+            try {
+                listener.stateChange(this, from, to);
+            } catch (Throwable th) {
+                Log.warn(CircuitBreaker.class, "Exception from CircuitBreaker listener: "+th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker["+( name == null ? "" : name+" " )+state()+"]";
+    }
+
+    public static class Builder {
+        private String name = null;
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallDuration = null;
+        private double slowCallRateThreshold = 1.0;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 1;
+
+        private Builder() {}
+
+        /** Name, for logging and listeners. */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /** Failure rate (0 to 1) at which the breaker opens. Default 0.5. */
+        public Builder failureRateThreshold(double rate) {
+            checkRate(rate);
+            this.failureRateThreshold = rate;
+            return this;
+        }
+
+        /** Time to get a response above which a call is slow. Default: none. */
+        public Builder slowCallDuration(Duration duration) {
+            this.slowCallDuration = duration;
+            return this;
+        }
+
+        /** Slow call rate (0 to 1) at which the breaker opens. Default 1.0 (all calls slow). */
+        public Builder slowCallRateThreshold(double rate) {
+            checkRate(rate);
+            this.slowCallRateThreshold = rate;
+            return this;
+        }
+
+        /** Number of recent calls used to calculate the rates. Default 20. */
+        public Builder windowSize(int windowSize) {
+            if ( windowSize <= 0 )
+                throw new IllegalArgumentException("Window size must be positive: "+windowSize);
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /** Minimum number of calls before the breaker can open. Default 10. */
+        public Builder minimumCalls(int minimumCalls) {
+            if ( minimumCalls <= 0 )
+                throw new IllegalArgumentException("Minimum calls must be positive: "+minimumCalls);
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /** Time the breaker stays open before allowing trial calls. Default 30s. */
+        public Builder openDuration(Duration duration) {
+            this.openDuration = Objects.requireNonNull(duration);
+            return this;
+        }
+
+        public Builder openDuration(long duration, TimeUnit unit) {
+            return openDuration(Duration.ofNanos(unit.toNanos(duration)));
+        }
+
+        /** Number of trial calls when half-open. Default 1. */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if ( halfOpenCalls <= 0 )
+                throw new IllegalArgumentException("Half-open calls must be positive: "+halfOpenCalls);
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        private static void checkRate(double rate) {
+            if ( rate <= 0 || rate > 1 )
+                throw new IllegalArgumentException("Rate must be in (0,1]: "+rate);
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
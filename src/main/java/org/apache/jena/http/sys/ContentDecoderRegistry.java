@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Registry of {@link ContentDecoder ContentDecoders}, keyed by the
+ * {@code Content-Encoding} name (<a href="https://www.iana.org/assignments/http-parameters/http-parameters.xhtml#content-coding">IANA registry</a>).
+ * <p>
+ * "gzip" and "deflate" are built-in. Other encodings, such as "br" (brotli, RFC 7932) and "zstd" (RFC 8878),
+ * need a decompressor library and are added by the application, for example:
+ * <pre>
+ *   ContentDecoderRegistry.get().register("br", BrotliInputStream::new);
+ *   ContentDecoderRegistry.get().register("zstd", ZstdInputStream::new);
+ * </pre>
+ * The registered encodings are used to form the {@code Accept-Encoding} request header
+ * when response compression is enabled (see {@link RegistryAcceptEncoding}).
+ */
+public class ContentDecoderRegistry {
+
+    private static ContentDecoderRegistry singleton = new ContentDecoderRegistry();
+    public static ContentDecoderRegistry get() { return singleton; }
+
+    private final Map<String, ContentDecoder> registry = new ConcurrentHashMap<>();
+    private volatile String acceptEncoding = null;
+
+    public ContentDecoderRegistry() {
+        register("gzip",    input->new GZIPInputStream(input, 8*1024));
+        register("deflate", input->new InflaterInputStream(input));
+        // Legacy names.
+        registry.put("x-gzip",  registry.get("gzip"));
+        registry.put("inflate", registry.get("deflate"));
+    }
+
+    /** Register a {@link ContentDecoder}, replacing any previous registration for the encoding. */
+    public void register(String encoding, ContentDecoder decoder) {
+        Objects.requireNonNull(encoding);
+        Objects.requireNonNull(decoder);
+        registry.put(key(encoding), decoder);
+        acceptEncoding = null;
+    }
+
+    public void unregister(String encoding) {
+        registry.remove(key(encoding));
+        acceptEncoding = null;
+    }
+
+    /** Return the {@link ContentDecoder} for an encoding, or null if there isn't one. */
+    public ContentDecoder find(String encoding) {
+        return registry.get(key(encoding));
+    }
+
+    public boolean isRegistered(String encoding) {
+        return registry.containsKey(key(encoding));
+    }
+
+    /**
+     * The value for an {@code Accept-Encoding} header that lists the encodings that can be decoded.
+     * Legacy names are not included.
+     */
+    public String acceptEncoding() {
+        String x = acceptEncoding;
+        if ( x == null ) {
+            StringBuilder sb = new StringBuilder();
+            // Preferred order - brotli and zstd usually compress RDF better than gzip.
+            for ( String enc : new String[] {"zstd", "br", "gzip", "deflate"} ) {
+                if ( registry.containsKey(enc) )
+                    append(sb, enc);
+            }
+            registry.keySet().stream().sorted().forEach(enc->{
+                switch(enc) {
+                    case "zstd": case "br": case "gzip": case "deflate":
+                    case "x-gzip": case "inflate":
+                        break;
+                    default:
+                        append(sb, enc);
+                }
+            });
+            x = sb.toString();
+            acceptEncoding = x;
+        }
+        return x;
+    }
+
+    private static void append(StringBuilder sb, String enc) {
+        if ( sb.length() > 0 )
+            sb.append(", ");
+        sb.append(enc);
+    }
+
+    private static String key(String encoding) {
+        return encoding.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Registry of {@link ContentEncoder ContentEncoders} for compressing HTTP request bodies,
+ * keyed by the {@code Content-Encoding} name.
+ * <p>
+ * "gzip" and "deflate" are built-in. Other encodings, such as "zstd", need a compressor
+ * library and are added by the application, for example:
+ * <pre>
+ *   ContentEncoderRegistry.get().register("zstd", ZstdOutputStream::new);
+ * </pre>
+ * The server must support the encoding; HTTP does not negotiate request encodings.
+ *
+ * @see ContentDecoderRegistry
+ */
+public class ContentEncoderRegistry {
+
+    private static ContentEncoderRegistry singleton = new ContentEncoderRegistry();
+    public static ContentEncoderRegistry get() { return singleton; }
+
+    private final Map<String, ContentEncoder> registry = new ConcurrentHashMap<>();
+
+    public ContentEncoderRegistry() {
+        register("gzip",    output->new GZIPOutputStream(output, 8*1024));
+        register("deflate", output->new DeflaterOutputStream(output));
+    }
+
+    /** Register a {@link ContentEncoder}, replacing any previous registration for the encoding. */
+    public void register(String encoding, ContentEncoder encoder) {
+        Objects.requireNonNull(encoding);
+        Objects.requireNonNull(encoder);
+        registry.put(key(encoding), encoder);
+    }
+
+    public void unregister(String encoding) {
+        registry.remove(key(encoding));
+    }
+
+    /** Return the {@link ContentEncoder} for an encoding, or null if there isn't one. */
+    public ContentEncoder find(String encoding) {
+        return registry.get(key(encoding));
+    }
+
+    public boolean isRegistered(String encoding) {
+        return registry.containsKey(key(encoding));
+    }
+
+    private static String key(String encoding) {
+        return encoding.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -46,6 +46,7 @@ public abstract class ExecHTTPBuilder<X, Y> {
     protected String acceptHeader;
     protected long timeout = -1;
     protected TimeUnit timeoutUnit = null;
+    protected String contentEncoding = null;
 
     protected int urlLimit = HttpEnv.urlLimit;
     protected QuerySendMode sendMode = QuerySendMode.systemtDefault;
@@ -174,6 +175,18 @@ public abstract class ExecHTTPBuilder<X, Y> {
         return thisBuilder();
     }
 
+    /**
+     * Compress the query request body, when the query is sent with HTTP POST, using the
+     * {@code Content-Encoding} (e.g. "gzip"). The server must support the encoding.
+     * GET requests are not affected. The default, null, is to send the request uncompressed.
+     *
+     * @see ContentEncoderRegistry
+     */
+    public Y contentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return thisBuilder();
+    }
+
     /** Merge in {@link Params} from another object. */
     public Y params(Params other) {
         if ( other != null )
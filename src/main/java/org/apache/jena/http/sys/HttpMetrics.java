@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistics for HTTP requests by service URL (the request URL without
+ * the query string) and by {@link HttpOperation}. All recording is lock-free.
+ * <p>
+ * Collection is off until {@link #enable()} is called.
+ * <pre>
+ *   HttpMetrics.get().enable();
+ *   ...
+ *   HttpMetrics.Stats stats = HttpMetrics.get().endpoint("http://host/dataset/sparql");
+ *   long p99 = stats.latency().p99();
+ * </pre>
+ * Times are recorded in microseconds.
+ */
+public class HttpMetrics implements HttpRequestListener {
+
+    private static HttpMetrics singleton = new HttpMetrics();
+    public static HttpMetrics get() { return singleton; }
+
+    private final Map<String, Stats> byEndpoint = new ConcurrentHashMap<>();
+    private final Map<HttpOperation, Stats> byOperation = new EnumMap<>(HttpOperation.class);
+    private volatile boolean enabled = false;
+
+    public HttpMetrics() {
+        for ( HttpOperation op : HttpOperation.values() )
+            byOperation.put(op, new Stats());
+    }
+
+    /** Start collecting statistics. */
+    public synchronized void enable() {
+        if ( ! enabled ) {
+            HttpMonitor.addListener(this);
+            enabled = true;
+        }
+    }
+
+    /** Stop collecting statistics. Statistics so far are kept. */
+    public synchronized void disable() {
+        if ( enabled ) {
+            HttpMonitor.removeListener(this);
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Statistics for a service URL, or null if there have been no requests to it. */
+    public Stats endpoint(String serviceURL) {
+        return byEndpoint.get(serviceURL);
+    }
+
+    /** Statistics for all service URLs, sorted by URL. */
+    public Map<String, Stats> endpoints() {
+        return Collections.unmodifiableMap(new TreeMap<>(byEndpoint));
+    }
+
+    /** Statistics for an operation kind, across all service URLs. */
+    public Stats operation(HttpOperation operation) {
+        return byOperation.get(operation);
+    }
+
+    /** Clear all statistics. */
+    public void reset() {
+        byEndpoint.values().forEach(Stats::reset);
+        byOperation.values().forEach(Stats::reset);
+    }
+
+    private Stats stats(HttpRequestInfo info) {
+        return byEndpoint.computeIfAbsent(info.serviceURL(), k->new Stats());
+    }
+
+    @Override
+    public void requestStart(HttpRequestInfo info) {
+        stats(info).start(info);
+        operation(info.operation()).start(info);
+    }
+
+    @Override
+    public void bodyComplete(HttpRequestInfo info) {
+        stats(info).end(info, false);
+        operation(info.operation()).end(info, false);
+    }
+
+    @Override
+    public void error(HttpRequestInfo info, Throwable throwable) {
+        stats(info).end(info, true);
+        operation(info.operation()).end(info, true);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /** Statistics for a group of requests. */
+    public static class Stats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final AtomicLong inFlight = new AtomicLong(0);
+        private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+
+        /*package*/ Stats() {}
+
+        private void start(HttpRequestInfo info) {
+            requests.increment();
+            inFlight.incrementAndGet();
+            if ( info.bytesOut() > 0 )
+                bytesOut.add(info.bytesOut());
+        }
+
+        private void end(HttpRequestInfo info, boolean isError) {
+            inFlight.decrementAndGet();
+            if ( isError )
+                errors.increment();
+            if ( info.isCancelled() )
+                cancelled.increment();
+            if ( info.statusCode() >= 0 )
+                statusCodes.computeIfAbsent(info.statusCode(), k->new LongAdder()).increment();
+            bytesIn.add(info.bytesIn());
+            latency.record(micros(info.duration()));
+            if ( info.timeToFirstByte() >= 0 )
+                timeToFirstByte.record(micros(info.timeToFirstByte()));
+        }
+
+        private void reset() {
+            requests.reset();
+            errors.reset();
+            cancelled.reset();
+            bytesIn.reset();
+            bytesOut.reset();
+            statusCodes.clear();
+            latency.reset();
+            timeToFirstByte.reset();
+            // inFlight is left as it is - those requests are still running.
+        }
+
+        /** Number of requests started. */
+        public long requests()      { return requests.sum(); }
+        /** Number of requests that failed without a complete response. */
+        public long errors()        { return errors.sum(); }
+        /** Number of responses where the application did not read the whole body. */
+        public long cancelled()     { return cancelled.sum(); }
+        /** Number of requests started and not yet finished. */
+        public long inFlight()      { return inFlight.get(); }
+        /** Response body bytes received, before content decoding. */
+        public long bytesIn()       { return bytesIn.sum(); }
+        /** Request body bytes sent, where the length was known. */
+        public long bytesOut()      { return bytesOut.sum(); }
+
+        /** Count of responses with a given status code. */
+        public long status(int statusCode) {
+            LongAdder x = statusCodes.get(statusCode);
+            return x == null ? 0 : x.sum();
+        }
+
+        /** Counts of responses by status code. */
+        public Map<Integer, Long> statusCodes() {
+            Map<Integer, Long> map = new TreeMap<>();
+            statusCodes.forEach((k,v)->map.put(k, v.sum()));
+            return map;
+        }
+
+        /** Time from sending the request to the end of the response body, in microseconds. */
+        public LatencyHistogram latency()           { return latency; }
+
+        /** Time from sending the request to the first byte of the response body, in microseconds. */
+        public LatencyHistogram timeToFirstByte()   { return timeToFirstByte; }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d inFlight=%d bytesIn=%d bytesOut=%d status=%s latency[%s] ttfb[%s]",
+                                 requests(), errors(), inFlight(), bytesIn(), bytesOut(), statusCodes(), latency, timeToFirstByte);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow.Subscription;
+import java.util.function.Consumer;
+
+import org.apache.jena.atlas.logging.Log;
+
+/**
+ * The registered {@link HttpRequestListener HttpRequestListeners}, and the calls that
+ * {@code HttpLib} makes as each request progresses.
+ * <p>
+ * When there are no listeners, {@link #start} returns null and no other work is done.
+ */
+public class HttpMonitor {
+
+    private static final List<HttpRequestListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static void addListener(HttpRequestListener listener) {
+        Objects.requireNonNull(listener);
+        listeners.add(listener);
+    }
+
+    public static void removeListener(HttpRequestListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static boolean hasListeners() {
+        return ! listeners.isEmpty();
+    }
+
+    /**
+     * Start monitoring a request. Returns null if there are no listeners.
+     * If {@code operation} is null, the request is classified by {@link HttpOperation#classify}.
+     */
+    public static HttpRequestInfo start(HttpRequest request, HttpOperation operation) {
+        if ( listeners.isEmpty() )
+            return null;
+        if ( operation == null )
+            operation = HttpOperation.classify(request);
+        HttpRequestInfo info = new HttpRequestInfo(request, operation);
+        notify(x->x.requestStart(info));
+        return info;
+    }
+
+    /** Wrap a {@link BodyHandler} to track the response body. */
+    public static <T> BodyHandler<T> bodyHandler(HttpRequestInfo info, BodyHandler<T> bodyHandler) {
+        if ( info == null )
+            return bodyHandler;
+        return responseInfo -> {
+            info.response(responseInfo.statusCode());
+            return new MonitorBodySubscriber<>(info, bodyHandler.apply(responseInfo));
+        };
+    }
+
+    /** The response has been returned by the {@code HttpClient}. */
+    public static void response(HttpRequestInfo info, HttpResponse<?> response) {
+        if ( info == null )
+            return;
+        notify(x->x.responseHeaders(info, response));
+    }
+
+    /** The request failed. */
+    public static void error(HttpRequestInfo info, Throwable throwable) {
+        if ( info == null )
+            return;
+        if ( info.finish() )
+            notify(x->x.error(info, throwable));
+    }
+
+    private static void firstByte(HttpRequestInfo info) {
+        notify(x->x.firstByte(info));
+    }
+
+    private static void complete(HttpRequestInfo info) {
+        if ( info.finish() )
+            notify(x->x.bodyComplete(info));
+    }
+
+    private static void notify(Consumer<HttpRequestListener> action) {
+        for ( HttpRequestListener listener : listeners ) {
+            try {
+                action.accept(listener);
+            } catch (Throwable th) {
+                Log.warn(HttpMonitor.class, "Exception from HttpRequestListener: "+th.getMessage(), th);
+            }
+        }
+    }
+
+    /** Pass through a {@link BodySubscriber}, counting bytes and noting the end of the body. */
+    private static class MonitorBodySubscriber<T> implements BodySubscriber<T> {
+        private final HttpRequestInfo info;
+        private final BodySubscriber<T> other;
+
+        MonitorBodySubscriber(HttpRequestInfo info, BodySubscriber<T> other) {
+            this.info = info;
+            this.other = other;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return other.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            other.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) { subscription.request(n); }
+
+                @Override
+                public void cancel() {
+                    // The application closed the body early.
+                    if ( ! info.isFinished() ) {
+                        info.cancelled();
+                        complete(info);
+                    }
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long n = 0;
+            for ( ByteBuffer bb : item )
+                n += bb.remaining();
+            if ( info.received(n) )
+                firstByte(info);
+            other.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error(info, throwable);
+            other.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            complete(info);
+            other.onComplete();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.net.http.HttpRequest;
+import java.util.Locale;
+
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpNames;
+
+/**
+ * The kind of operation an HTTP request is performing, for monitoring.
+ * SPARQL query and update executions state their operation; other requests
+ * are classified from the HTTP request ({@link #classify}).
+ */
+public enum HttpOperation {
+    /** SPARQL Query Protocol */
+    QUERY,
+    /** SPARQL Update Protocol */
+    UPDATE,
+    /** SPARQL Graph Store Protocol, or other RDF data GET/PUT/POST/DELETE */
+    GSP,
+    /** Any other HTTP request */
+    HTTP;
+
+    /** Classify a request by looking at the method, URL and headers. */
+    public static HttpOperation classify(HttpRequest request) {
+        String contentType = request.headers().firstValue(HttpNames.hContentType).orElse(null);
+        if ( contentType != null ) {
+            int i = contentType.indexOf(';');
+            if ( i >= 0 )
+                contentType = contentType.substring(0, i);
+            contentType = contentType.trim().toLowerCase(Locale.ROOT);
+            if ( contentType.equals(WebContent.contentTypeSPARQLUpdate) )
+                return UPDATE;
+            if ( contentType.equals(WebContent.contentTypeSPARQLQuery) )
+                return QUERY;
+        }
+        String qs = request.uri().getRawQuery();
+        if ( qs != null ) {
+            if ( hasParam(qs, HttpNames.paramQuery) )
+                return QUERY;
+            if ( hasParam(qs, HttpNames.paramUpdate) )
+                return UPDATE;
+            if ( hasParam(qs, HttpNames.paramGraph) || hasParam(qs, HttpNames.paramGraphDefault) )
+                return GSP;
+        }
+        if ( contentType != null && RDFLanguages.contentTypeToLang(contentType) != null )
+            return GSP;
+        return HTTP;
+    }
+
+    private static boolean hasParam(String queryString, String paramName) {
+        return queryString.startsWith(paramName+"=") || queryString.equals(paramName)
+            || queryString.contains("&"+paramName+"=") || queryString.endsWith("&"+paramName)
+            || queryString.startsWith(paramName+"&") || queryString.contains("&"+paramName+"&");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Information about one HTTP request, as it progresses, passed to {@link HttpRequestListener}s.
+ * Times are from {@link System#nanoTime()}; a time is -1 if that step has not happened.
+ */
+public final class HttpRequestInfo {
+    private final HttpRequest request;
+    private final HttpOperation operation;
+    private final String serviceURL;
+    private final long bytesOut;
+    private final long startNanos;
+
+    private volatile int statusCode = -1;
+    private volatile long headersNanos = -1;
+    private volatile long firstByteNanos = -1;
+    private volatile long endNanos = -1;
+    // Written by the one thread receiving the body.
+    private volatile long bytesIn = 0;
+    private volatile boolean cancelled = false;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    /*package*/ HttpRequestInfo(HttpRequest request, HttpOperation operation) {
+        this.request = request;
+        this.operation = operation;
+        this.serviceURL = serviceURL(request.uri());
+        this.bytesOut = request.bodyPublisher().map(BodyPublisher::contentLength).orElse(0L);
+        this.startNanos = System.nanoTime();
+    }
+
+    /** The URL without the query string or fragment. */
+    private static String serviceURL(URI uri) {
+        String s = uri.toString();
+        int i = s.indexOf('?');
+        if ( i < 0 )
+            i = s.indexOf('#');
+        return ( i < 0 ) ? s : s.substring(0, i);
+    }
+
+    public HttpRequest request()        { return request; }
+    public HttpOperation operation()    { return operation; }
+    /** The request URL without any query string. */
+    public String serviceURL()          { return serviceURL; }
+    public String method()              { return request.method(); }
+    /** The status code of the response, or -1 if there has been no response yet. */
+    public int statusCode()             { return statusCode; }
+
+    /** Length of the request body, or -1 if not known (streaming body). */
+    public long bytesOut()              { return bytesOut; }
+    /** Bytes of response body received so far (before any content decoding). */
+    public long bytesIn()               { return bytesIn; }
+    /** The application stopped reading the response body before the end. */
+    public boolean isCancelled()        { return cancelled; }
+
+    public long startNanos()            { return startNanos; }
+    public long headersNanos()          { return headersNanos; }
+    public long firstByteNanos()        { return firstByteNanos; }
+    public long endNanos()              { return endNanos; }
+
+    /** Time from start to the response headers, in nanoseconds, or -1. */
+    public long timeToHeaders()         { return elapsed(headersNanos); }
+    /** Time from start to the first byte of the response body, in nanoseconds, or -1. */
+    public long timeToFirstByte()       { return elapsed(firstByteNanos); }
+    /** Time from start to completion or error, in nanoseconds, or -1. */
+    public long duration()              { return elapsed(endNanos); }
+
+    private long elapsed(long nanos) {
+        return nanos < 0 ? -1 : nanos - startNanos;
+    }
+
+    /*package*/ void response(int statusCode) {
+        this.statusCode = statusCode;
+        this.headersNanos = System.nanoTime();
+    }
+
+    /** Record bytes received; return true if these are the first bytes. */
+    /*package*/ boolean received(long n) {
+        bytesIn += n;
+        if ( firstByteNanos < 0 && n > 0 ) {
+            firstByteNanos = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    /*package*/ void cancelled() {
+        cancelled = true;
+    }
+
+    /** Mark as finished. Returns true on the first call only. */
+    /*package*/ boolean finish() {
+        if ( ! finished.compareAndSet(false, true) )
+            return false;
+        endNanos = System.nanoTime();
+        return true;
+    }
+
+    /*package*/ boolean isFinished() {
+        return finished.get();
+    }
+
+    @Override
+    public String toString() {
+        return operation+" "+request.method()+" "+serviceURL+( statusCode < 0 ? "" : " -> "+statusCode );
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.net.http.HttpResponse;
+
+/**
+ * Listener for the lifecycle of HTTP requests made by Jena.
+ * All HTTP requests go through {@code HttpLib.execute} or {@code HttpLib.asyncExecute}
+ * and those operations call the listeners registered with {@link HttpMonitor}.
+ * <p>
+ * Calls are made on the thread performing the step, which may be an {@code HttpClient}
+ * thread, so implementations must be thread-safe and quick. Exceptions thrown by a
+ * listener are logged and otherwise ignored.
+ * <p>
+ * For each request, {@link #requestStart} is called, then either
+ * {@link #error} or {@link #responseHeaders} followed by {@link #firstByte}
+ * (if the response has a body) and then one of {@link #bodyComplete} or {@link #error}.
+ */
+public interface HttpRequestListener {
+    /** The request is about to be sent. */
+    public default void requestStart(HttpRequestInfo info) {}
+
+    /** The response status and headers have been received. */
+    public default void responseHeaders(HttpRequestInfo info, HttpResponse<?> response) {}
+
+    /** The first bytes of the response body have been received. */
+    public default void firstByte(HttpRequestInfo info) {}
+
+    /**
+     * The response body has been received, or the application stopped reading it
+     * ({@link HttpRequestInfo#isCancelled()}).
+     */
+    public default void bodyComplete(HttpRequestInfo info) {}
+
+    /** The request failed: no response, or the response body was not completely received. */
+    public default void error(HttpRequestInfo info, Throwable throwable) {}
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as times in microseconds.
+ * <p>
+ * Buckets are powers of two, each split into 8 linear sub-buckets, so a
+ * percentile is accurate to within 12.5% of the value. Recording is one atomic
+ * increment; reading does not stop recording and so is approximate under
+ * concurrent updates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public LatencyHistogram() {}
+
+    /** Record a value. Negative values are treated as 0. */
+    public void record(long value) {
+        if ( value < 0 )
+            value = 0;
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long m = max.get();
+        while ( value > m && ! max.compareAndSet(m, value) )
+            m = max.get();
+    }
+
+    public long count()     { return count.get(); }
+    public long max()       { return max.get(); }
+
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double)total.get() / n;
+    }
+
+    /**
+     * The value at percentile {@code p} (0 to 100), as the upper bound of the bucket
+     * containing it. Returns 0 if there are no values.
+     */
+    public long percentile(double p) {
+        if ( p < 0 || p > 100 )
+            throw new IllegalArgumentException("Percentile out of range: "+p);
+        long n = 0;
+        long[] snapshot = new long[NUM_BUCKETS];
+        for ( int i = 0 ; i < NUM_BUCKETS ; i++ ) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if ( n == 0 )
+            return 0;
+        long target = Math.max(1, (long)Math.ceil(p / 100.0 * n));
+        long acc = 0;
+        for ( int i = 0 ; i < NUM_BUCKETS ; i++ ) {
+            acc += snapshot[i];
+            if ( acc >= target )
+                return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public long p50()   { return percentile(50); }
+    public long p95()   { return percentile(95); }
+    public long p99()   { return percentile(99); }
+
+    public void reset() {
+        for ( int i = 0 ; i < NUM_BUCKETS ; i++ )
+            counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /*package*/ static int index(long value) {
+        if ( value < SUB )
+            return (int)value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BITS;
+        int sub = (int)((value >>> shift) & (SUB - 1));
+        return (shift + 1) * SUB + sub;
+    }
+
+    /*package*/ static long lowerBound(int idx) {
+        if ( idx < SUB )
+            return idx;
+        int shift = idx / SUB - 1;
+        int sub = idx % SUB;
+        return ((long)(SUB + sub)) << shift;
+    }
+
+    /*package*/ static long upperBound(int idx) {
+        if ( idx + 1 >= NUM_BUCKETS )
+            return Long.MAX_VALUE;
+        return lowerBound(idx + 1) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%d p95=%d p99=%d max=%d", count(), p50(), p95(), p99(), max());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of threads for parsing HTTP response bodies, so that parsing does
+ * not run on the {@code HttpClient} threads which are needed for network I/O.
+ * <p>
+ * There are at most {@code threads} parsing at once and at most {@code queueSize}
+ * waiting. When the queue is full, the task runs on the submitting thread. This
+ * slows down the submitter, usually an {@code HttpClient} thread, so fewer responses
+ * arrive until the pool catches up; a burst of responses is slower, not failed.
+ * A task is only rejected, with a {@link RejectedExecutionException}, after
+ * {@link #shutdown}.
+ * <p>
+ * Times are recorded in microseconds.
+ */
+public class ParseExecutor implements Executor {
+
+    private static final AtomicInteger poolCounter = new AtomicInteger(0);
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    /** Create a {@code ParseExecutor} with one thread per processor and a queue of 1000 tasks. */
+    public static ParseExecutor create() {
+        return create(Runtime.getRuntime().availableProcessors(), 1000);
+    }
+
+    public static ParseExecutor create(int threads, int queueSize) {
+        return new ParseExecutor(threads, queueSize);
+    }
+
+    private ParseExecutor(int threads, int queueSize) {
+        if ( threads <= 0 )
+            throw new IllegalArgumentException("Threads must be positive: "+threads);
+        if ( queueSize <= 0 )
+            throw new IllegalArgumentException("Queue size must be positive: "+queueSize);
+        String prefix = "HttpParse-"+poolCounter.incrementAndGet()+"-";
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        ThreadFactory threadFactory = r->{
+            Thread thread = new Thread(r, prefix+threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        RejectedExecutionHandler whenFull = (r, exec)->{
+            if ( exec.isShutdown() )
+                throw new RejectedExecutionException("ParseExecutor is shutdown");
+            callerRuns.increment();
+            r.run();
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(queueSize), threadFactory, whenFull);
+        // Threads are reclaimed when idle.
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        submitted.increment();
+        long queued = System.nanoTime();
+        executor.execute(()->{
+            long start = System.nanoTime();
+            waitTime.record(TimeUnit.NANOSECONDS.toMicros(start - queued));
+            active.incrementAndGet();
+            try {
+                task.run();
+                completed.increment();
+            } catch (RuntimeException | Error ex) {
+                failed.increment();
+                throw ex;
+            } finally {
+                active.decrementAndGet();
+                runTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        });
+    }
+
+    /** Number of tasks submitted. */
+    public long submitted()         { return submitted.sum(); }
+    /** Number of tasks that finished normally. */
+    public long completed()         { return completed.sum(); }
+    /** Number of tasks that threw an exception. */
+    public long failed()            { return failed.sum(); }
+    /** Number of tasks run on the submitting thread because the queue was full. */
+    public long callerRuns()        { return callerRuns.sum(); }
+    /** Number of tasks running now. */
+    public int active()             { return active.get(); }
+    /** Number of tasks waiting to run. */
+    public int queued()             { return executor.getQueue().size(); }
+    /** Time tasks waited before running. */
+    public LatencyHistogram waitTime()  { return waitTime; }
+    /** Time tasks took to run. */
+    public LatencyHistogram runTime()   { return runTime; }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ParseExecutor[submitted=%d completed=%d failed=%d callerRuns=%d active=%d queued=%d]",
+                             submitted(), completed(), failed(), callerRuns(), active(), queued());
+    }
+}
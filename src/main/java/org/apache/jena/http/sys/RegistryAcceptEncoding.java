@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+/**
+ * A registry of {@code Accept-Encoding} header values to send to specific services.
+ * This is how compressed responses are requested for a remote service.
+ * <p>
+ * The value {@link #COMPRESSED} means "all the encodings in the
+ * {@link ContentDecoderRegistry}". The value "identity" turns off a wider (prefix) registration.
+ * <p>
+ * The key can be a prefix which must end in "/"
+ *
+ * @see org.apache.jena.http.HttpEnv#getAcceptEncoding(String)
+ */
+public class RegistryAcceptEncoding extends AbstractRegistryByServiceURL<String> {
+
+    /** Request any encoding that has a registered {@link ContentDecoder}. */
+    public static final String COMPRESSED = "*compressed*";
+
+    private static RegistryAcceptEncoding singleton = new RegistryAcceptEncoding();
+    public static RegistryAcceptEncoding get() { return singleton; }
+
+    public RegistryAcceptEncoding() { }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http.sys;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.web.HttpException;
+
+/**
+ * Retry settings for idempotent HTTP requests (GET, HEAD, PUT, DELETE).
+ * <p>
+ * A request is retried when sending fails with an {@link IOException} (such as
+ * a connection reset) or the response has a retryable status code (by default 429,
+ * 502, 503, 504). The delay before retry {@code n} is
+ * {@code initialBackoff * multiplier^(n-1)}, capped at {@code maxBackoff}, and reduced
+ * by a random amount up to the {@code jitter} fraction. A {@code Retry-After} response
+ * header is used instead, if present, unless it is longer than {@code maxRetryAfter}
+ * in which case the response is returned without retrying.
+ * <p>
+ * A policy has a retry budget, shared by all requests using the policy, so that
+ * retries do not multiply the load on a server that is struggling. Each request adds
+ * {@code budgetRatio} to the budget; each retry uses 1. The budget starts at, and
+ * is capped at, {@code budgetReserve}.
+ * <p>
+ * Policies are set per service with {@link RegistryRetryPolicy}, or for all services
+ * with {@link org.apache.jena.http.HttpEnv#dftRetryPolicy}.
+ * <pre>
+ *   RetryPolicy policy = RetryPolicy.newBuilder().maxAttempts(4).initialBackoff(Duration.ofMillis(200)).build();
+ *   RegistryRetryPolicy.get().addPrefix("http://fuseki.example/", policy);
+ * </pre>
+ */
+public class RetryPolicy {
+    // Budget held in thousandths of a retry.
+    private static final long UNIT = 1000;
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final Duration maxRetryAfter;
+    private final Set<Integer> retryStatusCodes;
+    private final boolean retryOnIOException;
+    private final long budgetRatio;
+    private final long budgetReserve;
+
+    private final AtomicLong budget;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesDenied = new LongAdder();
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.maxRetryAfter = builder.maxRetryAfter;
+        this.retryStatusCodes = Set.copyOf(builder.retryStatusCodes);
+        this.retryOnIOException = builder.retryOnIOException;
+        this.budgetRatio = Math.round(builder.budgetRatio * UNIT);
+        this.budgetReserve = builder.budgetReserve * UNIT;
+        this.budget = new AtomicLong(budgetReserve);
+    }
+
+    public int maxAttempts()            { return maxAttempts; }
+
+    /** Number of retries made. */
+    public long retries()               { return retries.sum(); }
+
+    /** Number of retries not made because the retry budget was used up. */
+    public long retriesDenied()         { return retriesDenied.sum(); }
+
+    /** Note a new request; adds to the retry budget. */
+    public void requestStarted() {
+        if ( budgetRatio > 0 )
+            budget.getAndUpdate(x -> Math.min(budgetReserve, x + budgetRatio));
+    }
+
+    /** Whether a response status code is one to retry. */
+    public boolean isRetryStatus(int statusCode) {
+        return retryStatusCodes.contains(statusCode);
+    }
+
+    /** Whether a failure to get a response is one to retry. */
+    public boolean isRetryException(HttpException ex) {
+        return retryOnIOException && ex.getCause() instanceof IOException;
+    }
+
+    /**
+     * Decide whether attempt {@code attempt} (starting at 1) can be followed by another.
+     * If so, one retry is taken from the budget.
+     */
+    public boolean tryRetry(int attempt) {
+        if ( attempt >= maxAttempts )
+            return false;
+        for (;;) {
+            long x = budget.get();
+            if ( x < UNIT ) {
+                retriesDenied.increment();
+                return false;
+            }
+            if ( budget.compareAndSet(x, x - UNIT) ) {
+                retries.increment();
+                return true;
+            }
+        }
+    }
+
+    /** Delay after attempt {@code attempt} (starting at 1), with jitter. */
+    public Duration backoff(int attempt) {
+        double delay = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        delay = Math.min(delay, maxBackoff.toMillis());
+        if ( jitter > 0 )
+            delay = delay * (1 - jitter * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(Math.round(delay));
+    }
+
+    /**
+     * Delay after attempt {@code attempt}, using the {@code Retry-After} header value if not null.
+     * Returns null if the server asked for a delay longer than {@code maxRetryAfter}.
+     */
+    public Duration delay(int attempt, String retryAfter) {
+        if ( retryAfter == null )
+            return backoff(attempt);
+        Duration d = parseRetryAfter(retryAfter);
+        if ( d == null )
+            return backoff(attempt);
+        if ( d.compareTo(maxRetryAfter) > 0 )
+            return null;
+        return d;
+    }
+
+    /**
+     * Parse a {@code Retry-After} header: either delay-seconds or an HTTP-date.
+     * Returns null if the value is not valid.
+     */
+    public static Duration parseRetryAfter(String retryAfter) {
+        String s = retryAfter.trim();
+        if ( s.isEmpty() )
+            return null;
+        if ( Character.isDigit(s.charAt(0)) ) {
+            try {
+                return Duration.ofSeconds(Long.parseLong(s));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        try {
+            ZonedDateTime when = ZonedDateTime.parse(s, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration d = Duration.between(ZonedDateTime.now(when.getZone()), when);
+            return d.isNegative() ? Duration.ZERO : d;
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RetryPolicy[maxAttempts=%d, backoff=%s..%s x%s, jitter=%s, status=%s]",
+                             maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, retryStatusCodes);
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(10);
+        private double multiplier = 2.0;
+        private double jitter = 0.5;
+        private Duration maxRetryAfter = Duration.ofSeconds(60);
+        private Set<Integer> retryStatusCodes = Set.of(429, 502, 503, 504);
+        private boolean retryOnIOException = true;
+        private double budgetRatio = 0.2;
+        private int budgetReserve = 10;
+
+        private Builder() {}
+
+        /** Total number of attempts, including the first. Default 3. */
+        public Builder maxAttempts(int maxAttempts) {
+            if ( maxAttempts < 1 )
+                throw new IllegalArgumentException("maxAttempts must be at least 1: "+maxAttempts);
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /** Delay before the first retry. Default 100ms. */
+        public Builder initialBackoff(Duration initialBackoff) {
+            this.initialBackoff = Objects.requireNonNull(initialBackoff);
+            return this;
+        }
+
+        /** Maximum delay between attempts. Default 10s. */
+        public Builder maxBackoff(Duration maxBackoff) {
+            this.maxBackoff = Objects.requireNonNull(maxBackoff);
+            return this;
+        }
+
+        /** Backoff growth factor. Default 2. */
+        public Builder multiplier(double multiplier) {
+            if ( multiplier < 1 )
+                throw new IllegalArgumentException("multiplier must be at least 1: "+multiplier);
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /** Fraction (0 to 1) of the delay that is random. Default 0.5. */
+        public Builder jitter(double jitter) {
+            if ( jitter < 0 || jitter > 1 )
+                throw new IllegalArgumentException("jitter must be between 0 and 1: "+jitter);
+            this.jitter = jitter;
+            return this;
+        }
+
+        /** Longest {@code Retry-After} to wait for. Default 60s. */
+        public Builder maxRetryAfter(Duration maxRetryAfter) {
+            this.maxRetryAfter = Objects.requireNonNull(maxRetryAfter);
+            return this;
+        }
+
+        /** Response status codes to retry. Default 429, 502, 503, 504. */
+        public Builder retryStatusCodes(Integer... statusCodes) {
+            this.retryStatusCodes = Set.of(statusCodes);
+            return this;
+        }
+
+        /** Whether to retry when no response was received. Default true. */
+        public Builder retryOnIOException(boolean retryOnIOException) {
+            this.retryOnIOException = retryOnIOException;
+            return this;
+        }
+
+        /**
+         * Retry budget: retries earned per request, and the number of retries
+         * available at the start and at most. Default 0.2 and 10.
+         */
+        public Builder budget(double ratio, int reserve) {
+            if ( ratio < 0 || reserve < 0 )
+                throw new IllegalArgumentException("Budget settings must not be negative");
+            this.budgetRatio = ratio;
+            this.budgetReserve = reserve;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
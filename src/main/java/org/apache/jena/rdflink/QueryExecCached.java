@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryType;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.RowSetMem;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+import org.apache.jena.sparql.exec.RowSetStream;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * A {@link QueryExec} that uses a {@link QueryResultCache} for SELECT, ASK,
+ * CONSTRUCT and DESCRIBE results. The remote {@code QueryExec} is only created
+ * if the result is not in the cache. Other operations are passed to the remote
+ * {@code QueryExec} and not cached.
+ */
+/*package*/ class QueryExecCached implements QueryExec {
+
+    private final QueryResultCache cache;
+    private final String dataset;
+    private final Function<QueryType, String> keyMaker;
+    private final Supplier<QueryExec> maker;
+    // Generation of the dataset before any request.
+    private final long generation;
+    private final Query query;
+    private QueryExec qExec = null;
+    private boolean closed = false;
+
+    /*package*/ QueryExecCached(QueryResultCache cache, String dataset, Query query,
+                                Function<QueryType, String> keyMaker, Supplier<QueryExec> maker) {
+        this.cache = cache;
+        this.dataset = dataset;
+        this.query = query;
+        this.keyMaker = keyMaker;
+        this.maker = maker;
+        this.generation = cache.generation(dataset);
+    }
+
+    private QueryExec remote() {
+        if ( qExec == null )
+            qExec = maker.get();
+        return qExec;
+    }
+
+    @Override
+    public RowSet select() {
+        String key = keyMaker.apply(QueryType.SELECT);
+        RowSetRewindable rows = (RowSetRewindable)cache.get(key);
+        if ( rows == null ) {
+            RowSet remoteRows = remote().select();
+            List<Var> vars = remoteRows.getResultVars();
+            // Buffer rows while the result may fit in the cache.
+            long budget = cache.maxBytes() - 2*key.length();
+            long size = QueryResultCache.rowSetOverhead;
+            List<Binding> buffer = new ArrayList<>();
+            while ( remoteRows.hasNext() ) {
+                Binding row = remoteRows.next();
+                buffer.add(row);
+                size += QueryResultCache.estimate(row, vars);
+                if ( size > budget )
+                    // Too large to cache. Return the rows read so far, then stream the rest.
+                    return new RowSetStream(Iter.concat(buffer.iterator(), remoteRows), vars);
+            }
+            rows = RowSetMem.create(new RowSetStream(buffer.iterator(), vars));
+            cache.put(dataset, key, rows, generation);
+        }
+        // Own iterator, shared rows.
+        return RowSetMem.create(rows);
+    }
+
+    @Override
+    public boolean ask() {
+        String key = keyMaker.apply(QueryType.ASK);
+        Boolean b = (Boolean)cache.get(key);
+        if ( b == null ) {
+            b = remote().ask();
+            cache.put(dataset, key, b, generation);
+        }
+        return b;
+    }
+
+    @Override
+    public Graph construct(Graph graph) {
+        return graphResult(QueryType.CONSTRUCT, graph);
+    }
+
+    @Override
+    public Graph describe(Graph graph) {
+        return graphResult(QueryType.DESCRIBE, graph);
+    }
+
+    private Graph graphResult(QueryType queryType, Graph graph) {
+        String key = keyMaker.apply(queryType);
+        Graph cached = (Graph)cache.get(key);
+        if ( cached == null ) {
+            Graph result = GraphFactory.createDefaultGraph();
+            if ( queryType == QueryType.DESCRIBE )
+                remote().describe(result);
+            else
+                remote().construct(result);
+            cache.put(dataset, key, result, generation);
+            cached = result;
+        }
+        // The caller gets a copy.
+        cached.find().forEachRemaining(graph::add);
+        return graph;
+    }
+
+    @Override
+    public Iterator<Triple> constructTriples() {
+        return remote().constructTriples();
+    }
+
+    @Override
+    public Iterator<Quad> constructQuads() {
+        return remote().constructQuads();
+    }
+
+    @Override
+    public DatasetGraph constructDataset(DatasetGraph dataset) {
+        return remote().constructDataset(dataset);
+    }
+
+    @Override
+    public Iterator<Triple> describeTriples() {
+        return remote().describeTriples();
+    }
+
+    @Override
+    public JsonArray execJson() {
+        return remote().execJson();
+    }
+
+    @Override
+    public Iterator<JsonObject> execJsonItems() {
+        return remote().execJsonItems();
+    }
+
+    @Override
+    public DatasetGraph getDataset() {
+        return null;
+    }
+
+    @Override
+    public Context getContext() {
+        return remote().getContext();
+    }
+
+    @Override
+    public Query getQuery() {
+        return ( query != null ) ? query : remote().getQuery();
+    }
+
+    @Override
+    public void abort() {
+        if ( qExec != null )
+            qExec.abort();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if ( qExec != null )
+            qExec.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
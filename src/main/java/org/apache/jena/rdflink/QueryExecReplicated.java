@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.rdflink.QueryReplicas.Replica;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * A {@link QueryExec} that sends the query to one of a set of {@link QueryReplicas}.
+ * <p>
+ * If hedging, the request runs on the executor; if there is no response within the
+ * hedge delay of the replica, the query is also sent to another replica. The first
+ * successful response is used and the other request is aborted. If the executor
+ * rejects a request because it is busy, the query is not hedged: the first request
+ * runs on the calling thread, or the hedged request is not sent.
+ */
+/*package*/ class QueryExecReplicated implements QueryExec {
+
+    private final QueryReplicas replicas;
+    private final Function<String, QueryExec> maker;
+    private final Executor hedgeExecutor;
+
+    private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+    private Query query = null;
+    private Context context = null;
+
+    /** One request to one replica. */
+    private static class Attempt {
+        final Replica replica;
+        final QueryExec qExec;
+        private boolean finished = false;
+        private volatile boolean aborted = false;
+
+        Attempt(Replica replica, QueryExec qExec) {
+            this.replica = replica;
+            this.qExec = qExec;
+            replica.start();
+        }
+
+        synchronized void finish() {
+            if ( finished )
+                return;
+            finished = true;
+            replica.finish();
+        }
+
+        void abortAndClose() {
+            aborted = true;
+            try { qExec.abort(); } catch (RuntimeException ex) {}
+            try { qExec.close(); } catch (RuntimeException ex) {}
+            finish();
+        }
+
+        <X> X exec(Function<QueryExec, X> action) {
+            long start = System.nanoTime();
+            try {
+                X x = action.apply(qExec);
+                replica.response(System.nanoTime() - start);
+                return x;
+            } catch (RuntimeException ex) {
+                // An aborted hedge request is not a failure of the replica.
+                if ( ! aborted )
+                    replica.failure(System.nanoTime() - start);
+                throw ex;
+            }
+        }
+    }
+
+    /*package*/ QueryExecReplicated(QueryReplicas replicas, Function<String, QueryExec> maker, Executor hedgeExecutor) {
+        this.replicas = replicas;
+        this.maker = maker;
+        this.hedgeExecutor = hedgeExecutor;
+    }
+
+    private Attempt start(Replica replica) {
+        QueryExec qExec = maker.apply(replica.url());
+        Attempt attempt = new Attempt(replica, qExec);
+        attempts.add(attempt);
+        if ( query == null ) {
+            query = qExec.getQuery();
+            context = qExec.getContext();
+        }
+        return attempt;
+    }
+
+    private <X> X exec(Function<QueryExec, X> action) {
+        if ( closed )
+            throw new QueryCancelledException();
+        Attempt first = start(replicas.choose(null));
+        if ( ! hedging() )
+            return first.exec(action);
+        return execHedged(first, action);
+    }
+
+    private <X> X execHedged(Attempt first, Function<QueryExec, X> action) {
+        CompletableFuture<X> f1;
+        try {
+            f1 = CompletableFuture.supplyAsync(()->first.exec(action), hedgeExecutor);
+        } catch (RejectedExecutionException ex) {
+            // Executor busy: do not hedge.
+            replicas.hedgeSkipped();
+            return first.exec(action);
+        }
+        try {
+            return f1.get(replicas.hedgeDelay(first.replica), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            // Slow: hedge.
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new QueryCancelledException();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        }
+
+        Replica other = replicas.choose(first.replica);
+        Attempt second = start(other);
+        CompletableFuture<X> f2;
+        try {
+            f2 = CompletableFuture.supplyAsync(()->second.exec(action), hedgeExecutor);
+        } catch (RejectedExecutionException ex) {
+            // Executor busy: wait for the first request.
+            second.abortAndClose();
+            attempts.remove(second);
+            replicas.hedgeSkipped();
+            return await(f1);
+        }
+
+        // First success wins; fails if both fail.
+        CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger(0);
+        f1.whenComplete((x, th)->decide(winner, first, th, failures));
+        f2.whenComplete((x, th)->decide(winner, second, th, failures));
+        Attempt won;
+        try {
+            won = winner.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new QueryCancelledException();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        }
+        Attempt lost = ( won == first ) ? second : first;
+        replicas.hedged(won == second);
+        lost.abortAndClose();
+        attempts.remove(lost);
+        // The losing request may still return a response; close it when it does.
+        CompletableFuture<X> lostResult = ( won == first ) ? f2 : f1;
+        lostResult.whenComplete((x, th)->lost.abortAndClose());
+        return ( won == first ) ? f1.join() : f2.join();
+    }
+
+    private <X> X await(CompletableFuture<X> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new QueryCancelledException();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        }
+    }
+
+    private static void decide(CompletableFuture<Attempt> winner, Attempt attempt, Throwable th, AtomicInteger failures) {
+        if ( th == null ) {
+            winner.complete(attempt);
+            return;
+        }
+        if ( failures.incrementAndGet() == 2 )
+            winner.completeExceptionally(th);
+    }
+
+    private static RuntimeException unwrap(Throwable th) {
+        if ( th instanceof CompletionException && th.getCause() != null )
+            th = th.getCause();
+        if ( th instanceof RuntimeException )
+            return (RuntimeException)th;
+        if ( th instanceof Error )
+            throw (Error)th;
+        return new QueryCancelledException();
+    }
+
+    @Override
+    public DatasetGraph getDataset() {
+        return null;
+    }
+
+    @Override
+    public Context getContext() {
+        return context;
+    }
+
+    @Override
+    public Query getQuery() {
+        return query;
+    }
+
+    @Override
+    public RowSet select() {
+        return exec(QueryExec::select);
+    }
+
+    // Hedged requests must not both write into the caller's graph or dataset.
+    private boolean hedging() {
+        return hedgeExecutor != null && replicas.replicas().size() > 1;
+    }
+
+    @Override
+    public Graph construct(Graph graph) {
+        if ( ! hedging() )
+            return exec(qExec->qExec.construct(graph));
+        Graph result = exec(QueryExec::construct);
+        result.find().forEachRemaining(graph::add);
+        return graph;
+    }
+
+    @Override
+    public Iterator<Triple> constructTriples() {
+        return exec(QueryExec::constructTriples);
+    }
+
+    @Override
+    public Iterator<Quad> constructQuads() {
+        return exec(QueryExec::constructQuads);
+    }
+
+    @Override
+    public DatasetGraph constructDataset(DatasetGraph dataset) {
+        if ( ! hedging() )
+            return exec(qExec->qExec.constructDataset(dataset));
+        DatasetGraph result = exec(QueryExec::constructDataset);
+        result.find().forEachRemaining(dataset::add);
+        return dataset;
+    }
+
+    @Override
+    public Graph describe(Graph graph) {
+        if ( ! hedging() )
+            return exec(qExec->qExec.describe(graph));
+        Graph result = exec(QueryExec::describe);
+        result.find().forEachRemaining(graph::add);
+        return graph;
+    }
+
+    @Override
+    public Iterator<Triple> describeTriples() {
+        return exec(QueryExec::describeTriples);
+    }
+
+    @Override
+    public boolean ask() {
+        return exec(QueryExec::ask);
+    }
+
+    @Override
+    public JsonArray execJson() {
+        return exec(QueryExec::execJson);
+    }
+
+    @Override
+    public Iterator<JsonObject> execJsonItems() {
+        return exec(QueryExec::execJsonItems);
+    }
+
+    @Override
+    public void abort() {
+        for ( Attempt attempt : attempts )
+            attempt.abortAndClose();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for ( Attempt attempt : attempts ) {
+            try { attempt.qExec.close(); } catch (RuntimeException ex) {}
+            attempt.finish();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
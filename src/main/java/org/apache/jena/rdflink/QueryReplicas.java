@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.http.sys.LatencyHistogram;
+
+/**
+ * A set of equivalent SPARQL query endpoints (read replicas), and the choice of
+ * which one to send a query to.
+ * <p>
+ * {@link LoadBalance#LEAST_OUTSTANDING} chooses the replica with the fewest queries
+ * in progress. {@link LoadBalance#EWMA} chooses the replica with the lowest
+ * exponentially weighted moving average response time, scaled by the number of
+ * queries in progress. Ties go to replicas in turn.
+ * <p>
+ * The hedge delay for a replica is the 95th percentile of its response times, once
+ * there are enough samples, and the initial hedge delay before that.
+ */
+public class QueryReplicas {
+
+    public enum LoadBalance { LEAST_OUTSTANDING, EWMA }
+
+    // Weight of the latest sample in the moving average.
+    private static final double ALPHA = 0.3;
+    // Number of samples before the 95th percentile is used for the hedge delay.
+    private static final int MIN_SAMPLES = 20;
+
+    private final List<Replica> replicas;
+    private final LoadBalance loadBalance;
+    private final long initialHedgeNanos;
+    private final AtomicInteger next = new AtomicInteger(0);
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgesSkipped = new LongAdder();
+
+    public QueryReplicas(List<String> endpoints, LoadBalance loadBalance, Duration initialHedgeDelay) {
+        Objects.requireNonNull(endpoints);
+        if ( endpoints.isEmpty() )
+            throw new IllegalArgumentException("No query endpoints");
+        List<Replica> x = new ArrayList<>(endpoints.size());
+        for ( String url : endpoints )
+            x.add(new Replica(Objects.requireNonNull(url)));
+        this.replicas = Collections.unmodifiableList(x);
+        this.loadBalance = Objects.requireNonNull(loadBalance);
+        this.initialHedgeNanos = initialHedgeDelay.toNanos();
+    }
+
+    public List<Replica> replicas()     { return replicas; }
+
+    public LoadBalance loadBalance()    { return loadBalance; }
+
+    /** The hedge delay used before there are latency measurements for a replica. */
+    public Duration initialHedgeDelay() { return Duration.ofNanos(initialHedgeNanos); }
+
+    /** Number of hedged (second) requests sent. */
+    public long hedges()                { return hedges.sum(); }
+
+    /** Number of hedged requests that finished before the original request. */
+    public long hedgeWins()             { return hedgeWins.sum(); }
+
+    /** Number of queries not hedged because the hedge executor was busy. */
+    public long hedgesSkipped()         { return hedgesSkipped.sum(); }
+
+    /*package*/ void hedgeSkipped() {
+        hedgesSkipped.increment();
+    }
+
+    /*package*/ void hedged(boolean won) {
+        hedges.increment();
+        if ( won )
+            hedgeWins.increment();
+    }
+
+    /** Choose a replica, not {@code exclude}. Returns null if there is no other replica. */
+    public Replica choose(Replica exclude) {
+        int N = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), N);
+        Replica best = null;
+        double bestScore = Double.MAX_VALUE;
+        for ( int i = 0 ; i < N ; i++ ) {
+            Replica r = replicas.get((start + i) % N);
+            if ( r == exclude )
+                continue;
+            double score = score(r);
+            if ( score < bestScore ) {
+                best = r;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private double score(Replica r) {
+        switch(loadBalance) {
+            case EWMA:
+                return r.ewma * (r.outstanding.get() + 1);
+            case LEAST_OUTSTANDING: default:
+                return r.outstanding.get();
+        }
+    }
+
+    /** The time to wait for a response from a replica before sending a hedged request, in nanoseconds. */
+    public long hedgeDelay(Replica replica) {
+        if ( replica.latency.count() < MIN_SAMPLES )
+            return initialHedgeNanos;
+        return TimeUnit.MICROSECONDS.toNanos(replica.latency.p95());
+    }
+
+    /** A query endpoint, with its statistics. Times are recorded in microseconds. */
+    public static class Replica {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger(0);
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        // Microseconds. Updates are not atomic; a lost update only makes the average less precise.
+        private volatile double ewma = 0;
+
+        private Replica(String url) {
+            this.url = url;
+        }
+
+        public String url()                 { return url; }
+
+        /** Number of queries in progress. */
+        public int outstanding()            { return outstanding.get(); }
+
+        public long requests()              { return requests.sum(); }
+
+        public long failures()              { return failures.sum(); }
+
+        /** Response times, in microseconds. */
+        public LatencyHistogram latency()   { return latency; }
+
+        /** Moving average response time, in microseconds. */
+        public double ewma()                { return ewma; }
+
+        /*package*/ void start() {
+            outstanding.incrementAndGet();
+            requests.increment();
+        }
+
+        /*package*/ void finish() {
+            outstanding.decrementAndGet();
+        }
+
+        /*package*/ void response(long nanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            latency.record(micros);
+            double x = ewma;
+            ewma = ( x == 0 ) ? micros : ALPHA * micros + (1 - ALPHA) * x;
+        }
+
+        /*package*/ void failure(long nanos) {
+            failures.increment();
+            // Penalize: a failing replica is treated as slow.
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            ewma = Math.max(2 * ewma, micros);
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+}
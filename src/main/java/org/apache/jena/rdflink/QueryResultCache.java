@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+
+/**
+ * A client-side cache of SPARQL query results for {@link RDFLinkRemote}.
+ * <p>
+ * Results are keyed by query endpoint, query (the serialized form of the parsed query,
+ * if the link parses queries) and {@code Accept} header. SELECT results are held as
+ * a {@link RowSetRewindable}, CONSTRUCT and DESCRIBE results as a {@link Graph}, and
+ * ASK results as a boolean. Other forms of query execution are not cached.
+ * <p>
+ * The cache holds up to {@code maxEntries} entries and an estimated {@code maxBytes}
+ * bytes, evicting the least recently used entries. Each entry expires after the
+ * time-to-live.
+ * <p>
+ * Entries are grouped by dataset (the link destination). An update, or a GSP
+ * operation that changes data, through any link using this cache and with the same
+ * destination removes the entries for the dataset. Changes made other ways are only
+ * seen after entries expire, or after {@link #invalidate(String)} or {@link #clear()}.
+ * <pre>
+ *   QueryResultCache cache = QueryResultCache.create(10_000, 100_000_000, Duration.ofMinutes(5));
+ *   RDFLink link = RDFLinkRemote.newBuilder()
+ *       .destination("http://host:3030/ds")
+ *       .resultCache(cache)
+ *       .build();
+ * </pre>
+ */
+public class QueryResultCache {
+
+    private final long maxEntries;
+    private final long maxBytes;
+    private final long ttlMillis;
+
+    // Access-ordered for LRU. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    // Changes counter, per dataset. Guarded by "this".
+    private final Map<String, Long> generations = new HashMap<>();
+    // Changes counter for the whole cache, incremented by clear(). Guarded by "this".
+    private long epoch = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /** Create a cache of up to {@code maxEntries} results and an estimated {@code maxBytes}, each kept for at most {@code ttl}. */
+    public static QueryResultCache create(long maxEntries, long maxBytes, Duration ttl) {
+        return new QueryResultCache(maxEntries, maxBytes, ttl);
+    }
+
+    private QueryResultCache(long maxEntries, long maxBytes, Duration ttl) {
+        if ( maxEntries <= 0 )
+            throw new IllegalArgumentException("maxEntries must be positive: "+maxEntries);
+        if ( maxBytes <= 0 )
+            throw new IllegalArgumentException("maxBytes must be positive: "+maxBytes);
+        Objects.requireNonNull(ttl);
+        if ( ttl.isNegative() || ttl.isZero() )
+            throw new IllegalArgumentException("Time-to-live must be positive: "+ttl);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /** Number of queries answered from the cache. */
+    public long hits()              { return hits.sum(); }
+    /** Number of queries sent to the server. */
+    public long misses()            { return misses.sum(); }
+    /** Number of entries evicted because the cache was full. */
+    public long evictions()         { return evictions.sum(); }
+    /** Number of times entries for a dataset were removed because of a change. */
+    public long invalidations()     { return invalidations.sum(); }
+
+    /** Proportion of queries answered from the cache; 0 if there have been no queries. */
+    public double hitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return ( total == 0 ) ? 0 : (double)h/total;
+    }
+
+    /** Number of entries. */
+    public synchronized int size()      { return entries.size(); }
+
+    /** Estimated size of the cached results, in bytes. */
+    public synchronized long bytes()    { return bytes; }
+
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        invalidations.reset();
+    }
+
+    /**
+     * Remove all entries.
+     * Queries that were running at the time do not add their results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        epoch++;
+    }
+
+    /**
+     * Remove the entries for a dataset (the destination of a link).
+     * Queries that were running at the time do not add their results.
+     */
+    public synchronized void invalidate(String dataset) {
+        Objects.requireNonNull(dataset);
+        invalidations.increment();
+        generations.merge(dataset, 1L, Long::sum);
+        Iterator<Entry> iter = entries.values().iterator();
+        while ( iter.hasNext() ) {
+            Entry e = iter.next();
+            if ( dataset.equals(e.dataset) ) {
+                iter.remove();
+                bytes -= e.bytes;
+            }
+        }
+    }
+
+    /**
+     * The current generation of a dataset; this changes when the dataset is invalidated
+     * or the cache is cleared. Both counters only increase so the sum changes on either.
+     */
+    /*package*/ synchronized long generation(String dataset) {
+        return epoch + generations.getOrDefault(dataset, 0L);
+    }
+
+    /** The estimated size limit for the cache; a larger result is not cached. */
+    /*package*/ long maxBytes() {
+        return maxBytes;
+    }
+
+    /** Get a result, or null. Counts a hit or a miss. */
+    /*package*/ Object get(String key) {
+        Object value = null;
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if ( entry != null ) {
+                if ( System.currentTimeMillis() < entry.expiresAt )
+                    value = entry.value;
+                else {
+                    entries.remove(key);
+                    bytes -= entry.bytes;
+                }
+            }
+        }
+        if ( value != null )
+            hits.increment();
+        else
+            misses.increment();
+        return value;
+    }
+
+    /**
+     * Add a result, unless the dataset has changed since {@code generation},
+     * which was obtained before the query was sent.
+     */
+    /*package*/ void put(String dataset, String key, Object value, long generation) {
+        long size = estimate(value) + 2*key.length();
+        if ( size > maxBytes )
+            return;
+        synchronized(this) {
+            if ( generation(dataset) != generation )
+                return;
+            Entry old = entries.remove(key);
+            if ( old != null )
+                bytes -= old.bytes;
+            entries.put(key, new Entry(dataset, value, size, System.currentTimeMillis()+ttlMillis));
+            bytes += size;
+            Iterator<Entry> iter = entries.values().iterator();
+            while ( ( bytes > maxBytes || entries.size() > maxEntries ) && iter.hasNext() ) {
+                Entry e = iter.next();
+                iter.remove();
+                bytes -= e.bytes;
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class Entry {
+        final String dataset;
+        final Object value;
+        final long bytes;
+        // Milliseconds since the epoch.
+        final long expiresAt;
+
+        Entry(String dataset, Object value, long bytes, long expiresAt) {
+            this.dataset = dataset;
+            this.value = value;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // ---- Size estimates. These are approximate: for bounding the cache, not accounting.
+
+    private static long estimate(Object value) {
+        if ( value instanceof RowSetRewindable )
+            return estimate((RowSetRewindable)value);
+        if ( value instanceof Graph )
+            return estimate((Graph)value);
+        return 16;
+    }
+
+    // Fixed part of the estimate of a RowSetRewindable.
+    /*package*/ static final long rowSetOverhead = 64;
+
+    private static long estimate(RowSetRewindable rowSet) {
+        long size = rowSetOverhead;
+        rowSet.reset();
+        List<Var> vars = rowSet.getResultVars();
+        while ( rowSet.hasNext() )
+            size += estimate(rowSet.next(), vars);
+        rowSet.reset();
+        return size;
+    }
+
+    /*package*/ static long estimate(Binding row, List<Var> vars) {
+        long size = 32;
+        for ( Var v : vars )
+            size += estimate(row.get(v));
+        return size;
+    }
+
+    private static long estimate(Graph graph) {
+        long size = 128;
+        Iterator<Triple> iter = graph.find();
+        while ( iter.hasNext() ) {
+            Triple t = iter.next();
+            // Triple and index entries.
+            size += 96 + estimate(t.getSubject()) + estimate(t.getPredicate()) + estimate(t.getObject());
+        }
+        return size;
+    }
+
+    private static long estimate(Node node) {
+        if ( node == null )
+            return 0;
+        if ( node.isURI() )
+            return 40 + 2*node.getURI().length();
+        if ( node.isLiteral() )
+            return 64 + 2*(node.getLiteralLexicalForm().length() + node.getLiteralLanguage().length());
+        return 48;
+    }
+}
@@ -87,19 +87,20 @@ public class RDFLinkFuseki extends RDFLinkRemote {
             base.outputQuads, base.outputTriples,
             base.acceptDataset, base.acceptGraph,
             base.acceptSparqlResults, base.acceptSelectResult, base.acceptAskResult,
-            base.parseCheckQueries, base.parseCheckUpdates);
+            base.parseCheckQueries, base.parseCheckUpdates, base.contentEncoding);
     }
 
     protected RDFLinkFuseki(Transactional txnLifecycle, HttpClient httpClient, String destination,
                                   String queryURL, String updateURL, String gspURL, RDFFormat outputQuads, RDFFormat outputTriples,
                                   String acceptDataset, String acceptGraph,
                                   String acceptSparqlResults, String acceptSelectResult, String acceptAskResult,
-                                  boolean parseCheckQueries, boolean parseCheckUpdates) {
+                                  boolean parseCheckQueries, boolean parseCheckUpdates, String contentEncoding) {
         super(txnLifecycle, httpClient,
               destination, queryURL, updateURL, gspURL,
               outputQuads, outputTriples,
               acceptDataset, acceptGraph,
-              acceptSparqlResults, acceptSelectResult, acceptAskResult, parseCheckQueries, parseCheckUpdates);
+              acceptSparqlResults, acceptSelectResult, acceptAskResult, parseCheckQueries, parseCheckUpdates,
+              contentEncoding);
     }
 
     // Fuseki specific operations.
@@ -18,14 +18,23 @@
 
 package org.apache.jena.rdflink;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import org.apache.jena.atlas.lib.InternalErrorException;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.http.HttpEnv;
+import org.apache.jena.http.HttpWarmup;
 import org.apache.jena.query.*;
 import org.apache.jena.rdfconnection.JenaConnectionException;
 import org.apache.jena.rdflink.RDFLinkRemote;
@@ -37,7 +46,9 @@ import org.apache.jena.sparql.core.TransactionalLock;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.exec.QueryExec;
 import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.UpdateExec;
 import org.apache.jena.sparql.exec.http.GSP;
+import org.apache.jena.sparql.exec.http.PreparedQueryHTTP;
 import org.apache.jena.sparql.exec.http.QueryExecHTTPBuilder;
 import org.apache.jena.sparql.exec.http.UpdateExecHTTP;
 import org.apache.jena.system.Txn;
@@ -77,6 +88,12 @@ public class RDFLinkRemote implements RDFLink {
     protected final boolean parseCheckQueries;
     // Whether to check SPARQL updates given as strings by parsing them.
     protected final boolean parseCheckUpdates;
+    // Compression of request bodies (null for none).
+    protected final String contentEncoding;
+    // Background connection warmup, started by the builder (null for none).
+    private volatile CompletableFuture<List<HttpWarmup.Report>> preconnect = null;
+    // Client-side cache of query results (null for none).
+    private volatile QueryResultCache resultCache = null;
 
     /** Create a {@link RDFLinkRemoteBuilder}. */
     public static RDFLinkRemoteBuilder newBuilder() {
@@ -97,7 +114,7 @@ public class RDFLinkRemote implements RDFLink {
                             String acceptDataset, String acceptGraph,
                             String acceptSparqlResults,
                             String acceptSelectResult, String acceptAskResult,
-                            boolean parseCheckQueries, boolean parseCheckUpdates) {
+                            boolean parseCheckQueries, boolean parseCheckUpdates, String contentEncoding) {
         // Any defaults.
         HttpClient hc =  httpClient!=null ? httpClient : HttpEnv.getDftHttpClient();
         if ( txnLifecycle == null )
@@ -118,6 +135,7 @@ public class RDFLinkRemote implements RDFLink {
         this.acceptAskResult = acceptAskResult;
         this.parseCheckQueries = parseCheckQueries;
         this.parseCheckUpdates = parseCheckUpdates;
+        this.contentEncoding = contentEncoding;
     }
 
     @Override
@@ -145,6 +163,97 @@ public class RDFLinkRemote implements RDFLink {
         return svcGraphStore;
     }
 
+    /**
+     * Open a connection to each endpoint of this link, so the first real operation
+     * does not pay the cost of DNS lookup, connecting, TLS and HTTP/2 negotiation.
+     * Returns the time spent in each phase, for each endpoint.
+     * @see HttpWarmup
+     */
+    public List<HttpWarmup.Report> warmup() {
+        return warmupAsync(1, "HEAD").join();
+    }
+
+    /**
+     * Open {@code connections} connections to each endpoint of this link in the background,
+     * with requests of the given method ("HEAD" or "OPTIONS").
+     * Connections are pooled per server so endpoints on the same server are warmed up once.
+     */
+    public CompletableFuture<List<HttpWarmup.Report>> warmupAsync(int connections, String method) {
+        List<CompletableFuture<HttpWarmup.Report>> reports = new ArrayList<>();
+        Set<String> servers = new HashSet<>();
+        for ( String url : endpoints() ) {
+            if ( servers.add(server(url)) )
+                reports.add(HttpWarmup.warmupAsync(httpClient, url, connections, method));
+        }
+        return CompletableFuture.allOf(reports.toArray(new CompletableFuture<?>[0]))
+                .thenApply(x->{
+                    List<HttpWarmup.Report> results = new ArrayList<>(reports.size());
+                    reports.forEach(r->results.add(r.join()));
+                    return results;
+                });
+    }
+
+    /**
+     * The connection warmup started when the link was built
+     * (see {@link RDFLinkRemoteBuilder#preconnect(int)}), or null if there isn't one.
+     */
+    public CompletableFuture<List<HttpWarmup.Report>> getPreconnect() {
+        return preconnect;
+    }
+
+    /*package*/ void startPreconnect(int connections, String method) {
+        preconnect = warmupAsync(connections, method);
+    }
+
+    /**
+     * The {@link QueryResultCache} for this link, or null if results are not cached.
+     * @see RDFLinkRemoteBuilder#resultCache(QueryResultCache)
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /*package*/ void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    // Cache entries are grouped by dataset so changes through this link, or another link
+    // with the same cache and destination, remove them.
+    private String cacheDataset() {
+        return ( destination != null ) ? destination : svcQuery;
+    }
+
+    // Perform an operation that changes the data, then invalidate cached query results.
+    private void changed(Runnable action) {
+        try {
+            action.run();
+        } finally {
+            QueryResultCache cache = resultCache;
+            if ( cache != null )
+                cache.invalidate(cacheDataset());
+        }
+    }
+
+    // scheme://host:port - the unit of connection pooling.
+    private static String server(String url) {
+        try {
+            URI uri = new URI(url);
+            return uri.getScheme()+"://"+uri.getHost()+":"+uri.getPort();
+        } catch (URISyntaxException ex) {
+            return url;
+        }
+    }
+
+    /** The distinct endpoint URLs of this link. */
+    protected Set<String> endpoints() {
+        Set<String> endpoints = new LinkedHashSet<>();
+        for ( String url : new String[] {svcQuery, svcUpdate, svcGraphStore, destination} ) {
+            if ( url != null )
+                endpoints.add(url);
+        }
+        return endpoints;
+    }
+
     // This class overrides each of these to pass down the query type as well.
     // Then we can derive the accept header if customized without needing to parse
     // the query. This allows an arbitrary string for a query and allows the remote
@@ -239,29 +348,69 @@ public class RDFLinkRemote implements RDFLink {
         checkQuery();
         if ( query == null && queryString == null )
             throw new InternalErrorException("Both query and query string are null");
+        Query parsed = query;
         if ( query == null ) {
             if ( parseCheckQueries )
-                QueryFactory.create(queryString);
+                parsed = QueryFactory.create(queryString);
         }
 
         // Use the query string as provided if possible, otherwise serialize the query.
         String queryStringToSend = ( queryString != null ) ? queryString : query.toString();
-        return createQExec(query, queryStringToSend, queryType);
+        QueryResultCache cache = resultCache;
+        if ( cache == null )
+            return createQExec(query, queryStringToSend, queryType);
+        // Cache key: the serialized parsed query is the normalized form.
+        String keyBase = svcQuery+"\n"+( parsed != null ? parsed.toString() : queryStringToSend );
+        return new QueryExecCached(cache, cacheDataset(), query,
+                                   qt->keyBase+"\n"+qt+"\n"+requestAcceptHeader(qt),
+                                   ()->createQExec(query, queryStringToSend, queryType));
     }
 
     // Create the QExec
-    private QueryExec createQExec(Query query, String queryStringToSend, QueryType queryType) {
+    protected QueryExec createQExec(Query query, String queryStringToSend, QueryType queryType) {
+        return createQExec(svcQuery, query, queryStringToSend, queryType);
+    }
+
+    // Create the QExec for a specific query service.
+    protected QueryExec createQExec(String serviceURL, Query query, String queryStringToSend, QueryType queryType) {
         QueryExecHTTPBuilder builder = QueryExecHTTPBuilder.newBuilder()
-            .service(svcQuery)
+            .service(serviceURL)
             .httpClient(httpClient)
+            .contentEncoding(contentEncoding)
             .queryString(queryStringToSend);
 
         QueryType qt = queryType;
         if ( query != null && qt == null )
             qt = query.queryType();
+        builder.acceptHeader(requestAcceptHeader(qt));
+        return builder.build();
+    }
+
+    /**
+     * Prepare a query for repeated execution with different values for the parameter
+     * variables. The query is parsed once. The {@link PreparedQueryHTTP} uses the
+     * query endpoint, HTTP client and accept header settings of this link, and can be
+     * used from many threads.
+     */
+    public PreparedQueryHTTP prepare(String queryString, String... parameters) {
+        Objects.requireNonNull(queryString);
+        checkQuery();
+        Query query = QueryFactory.create(queryString);
+        return PreparedQueryHTTP.newBuilder()
+            .service(svcQuery)
+            .httpClient(httpClient)
+            .contentEncoding(contentEncoding)
+            .query(query)
+            .parameters(parameters)
+            .acceptHeader(requestAcceptHeader(query.queryType()))
+            .build();
+    }
+
+    // The accept header for a query type - use the most specific setting.
+    private String requestAcceptHeader(QueryType queryType) {
+        QueryType qt = queryType;
         if ( qt == null )
             qt = QueryType.UNKNOWN;
-        // Set the accept header - use the most specific method.
         String requestAcceptHeader = null;
         switch(qt) {
             case SELECT :
@@ -292,9 +441,7 @@ public class RDFLinkRemote implements RDFLink {
         // Make sure it was set somehow.
         if ( requestAcceptHeader == null )
             throw new JenaConnectionException("No Accept header");
-        if ( requestAcceptHeader != null )
-            builder.acceptHeader(requestAcceptHeader);
-        return builder.build();
+        return requestAcceptHeader;
     }
 
     private void acc(StringBuilder sBuff, String acceptString) {
@@ -328,12 +475,13 @@ public class RDFLinkRemote implements RDFLink {
         }
         // Use the update string as provided if possible, otherwise serialize the update.
         String updateStringToSend = ( updateString != null ) ? updateString  : update.toString();
-        UpdateExecHTTP.newBuilder()
+        UpdateExec exec = UpdateExecHTTP.newBuilder()
             .service(svcUpdate)
             .httpClient(httpClient)
+            .contentEncoding(contentEncoding)
             .updateString(updateStringToSend)
-            .build()
-            .execute();
+            .build();
+        changed(exec::execute);
     }
 
 //    /** Convert HTTP status codes to exceptions */
@@ -376,48 +524,48 @@ public class RDFLinkRemote implements RDFLink {
     public void load(String file) {
         checkGSP();
         // Use file extension for the ContentType
-        gsp().POST(file);
+        changed(()->gsp().POST(file));
     }
 
     @Override
     public void load(Node graphName, String file) {
         checkGSP();
-        gsp(graphName).POST(file);
+        changed(()->gsp(graphName).POST(file));
     }
 
     @Override
     public void load(Graph graph) {
-        gsp().contentType(outputTriples).POST(graph);
+        changed(()->gsp().contentType(outputTriples).POST(graph));
     }
 
     @Override
     public void load(Node graphName, Graph graph) {
-        gsp(graphName).contentType(outputTriples).POST(graph);
+        changed(()->gsp(graphName).contentType(outputTriples).POST(graph));
     }
 
     @Override
     public void put(String file) {
         checkGSP();
         // Use file extension for the ContentType
-        gsp().PUT(file);
+        changed(()->gsp().PUT(file));
     }
 
     @Override
     public void put(Node graphName, String file) {
         checkGSP();
-        gsp(graphName).PUT(file);
+        changed(()->gsp(graphName).PUT(file));
     }
 
     @Override
     public void put(Graph graph) {
         checkGSP();
-        gsp().contentType(outputTriples).PUT(graph);
+        changed(()->gsp().contentType(outputTriples).PUT(graph));
     }
 
     @Override
     public void put(Node graphName, Graph graph) {
         checkGSP();
-        gsp(graphName).contentType(outputTriples).PUT(graph);
+        changed(()->gsp(graphName).contentType(outputTriples).PUT(graph));
     }
 
     // ---- GSP requests
@@ -435,19 +583,19 @@ public class RDFLinkRemote implements RDFLink {
     }
 
     private GSP gspRequest() {
-        return GSP.request(svcGraphStore).httpClient(httpClient);
+        return GSP.request(svcGraphStore).httpClient(httpClient).contentEncoding(contentEncoding);
     }
 
     @Override
     public void delete(Node graphName) {
         checkGSP();
-        gsp(graphName).DELETE();
+        changed(()->gsp(graphName).DELETE());
     }
 
     @Override
     public void delete() {
         checkGSP();
-        gsp().DELETE();
+        changed(()->gsp().DELETE());
     }
 
     @Override
@@ -459,25 +607,25 @@ public class RDFLinkRemote implements RDFLink {
     @Override
     public void loadDataset(String file) {
         checkDataset();
-        gspRequest().dataset().postDataset(file);
+        changed(()->gspRequest().dataset().postDataset(file));
     }
 
     @Override
     public void loadDataset(DatasetGraph dataset) {
         checkDataset();
-        gspRequest().dataset().postDataset(dataset);
+        changed(()->gspRequest().dataset().postDataset(dataset));
     }
 
     @Override
     public void putDataset(String file) {
         checkDataset();
-        gspRequest().dataset().putDataset(file);
+        changed(()->gspRequest().dataset().putDataset(file));
     }
 
     @Override
     public void putDataset(DatasetGraph dataset) {
         checkDataset();
-        gspRequest().dataset().putDataset(dataset);
+        changed(()->gspRequest().dataset().putDataset(dataset));
     }
 
     // -- Internal.
@@ -21,10 +21,15 @@ package org.apache.jena.rdflink;
 import static java.util.Objects.requireNonNull;
 
 import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
 
 import org.apache.jena.http.HttpEnv;
+import org.apache.jena.rdflink.QueryReplicas.LoadBalance;
 import org.apache.jena.rdflink.RDFLinkRemoteBuilder;
 import org.apache.jena.riot.*;
 import org.apache.jena.sparql.core.Transactional;
@@ -60,6 +65,20 @@ public class RDFLinkRemoteBuilder {
     // Whether to parse SPARQL Queries and Updates for checkign purposes.
     protected boolean       parseCheckQueries   = true;
     protected boolean       parseCheckUpdates   = true;
+    // Compression of request bodies: null for none.
+    protected String        contentEncoding     = null;
+
+    // Read replicas: null for none.
+    protected List<String>  sQueryReplicas      = null;
+    protected List<String>  queryReplicaURLs    = null;
+    protected LoadBalance   loadBalance         = LoadBalance.LEAST_OUTSTANDING;
+    protected boolean       hedgeReads          = false;
+    protected Duration      initialHedgeDelay   = Duration.ofMillis(100);
+    // Connections to open in the background when built: 0 for none.
+    protected int           preconnect          = 0;
+    protected String        preconnectMethod    = "HEAD";
+    // Client-side query result cache: null for none.
+    protected QueryResultCache resultCache      = null;
 
     protected RDFLinkRemoteBuilder() {
         // Default settings are the member declarations.
@@ -85,6 +104,16 @@ public class RDFLinkRemoteBuilder {
         acceptAskResult     = base.acceptAskResult;
         parseCheckQueries   = base.parseCheckQueries;
         parseCheckUpdates   = base.parseCheckUpdates;
+        contentEncoding     = base.contentEncoding;
+        resultCache         = base.getResultCache();
+        if ( base instanceof RDFLinkReplicated ) {
+            RDFLinkReplicated replicated = (RDFLinkReplicated)base;
+            sQueryReplicas = new ArrayList<>();
+            replicated.getQueryReplicas().replicas().forEach(r->sQueryReplicas.add(r.url()));
+            loadBalance = replicated.getQueryReplicas().loadBalance();
+            hedgeReads = replicated.isHedgeReads();
+            initialHedgeDelay = replicated.getQueryReplicas().initialHedgeDelay();
+        }
     }
 
     /** URL of the remote SPARQL endpoint.
@@ -268,6 +297,87 @@ public class RDFLinkRemoteBuilder {
         return this;
     }
 
+    /**
+     * Compress request bodies - SPARQL updates, files, graphs and datasets sent to
+     * the remote server, and queries sent with HTTP POST - using the
+     * {@code Content-Encoding} (e.g. "gzip"). The server must support the encoding.
+     * The default, null, is to send requests uncompressed.
+     */
+    public RDFLinkRemoteBuilder contentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return this;
+    }
+
+    /**
+     * Send queries to any of these equivalent SPARQL query endpoints (read replicas)
+     * instead of the query endpoint. Each can be a short name, relative to the
+     * destination URL, or a full URL. Updates and GSP operations are not affected.
+     * See {@link RDFLinkReplicated}.
+     */
+    public RDFLinkRemoteBuilder queryEndpoints(String... endpoints) {
+        return queryEndpoints(Arrays.asList(endpoints));
+    }
+
+    /** See {@link #queryEndpoints(String...)}. */
+    public RDFLinkRemoteBuilder queryEndpoints(List<String> endpoints) {
+        this.sQueryReplicas = ( endpoints == null ) ? null : new ArrayList<>(endpoints);
+        return this;
+    }
+
+    /** How to choose between query endpoints. Default: {@link LoadBalance#LEAST_OUTSTANDING}. */
+    public RDFLinkRemoteBuilder loadBalance(LoadBalance loadBalance) {
+        this.loadBalance = Objects.requireNonNull(loadBalance);
+        return this;
+    }
+
+    /**
+     * Whether to send a second request to another query endpoint when a query
+     * is slow. The delay is the 95th percentile response time of the endpoint.
+     */
+    public RDFLinkRemoteBuilder hedgeReads(boolean hedgeReads) {
+        this.hedgeReads = hedgeReads;
+        return this;
+    }
+
+    /**
+     * Hedge reads, using this delay until there are enough response times
+     * to calculate the 95th percentile.
+     */
+    public RDFLinkRemoteBuilder hedgeReads(Duration initialHedgeDelay) {
+        this.hedgeReads = true;
+        this.initialHedgeDelay = Objects.requireNonNull(initialHedgeDelay);
+        return this;
+    }
+
+    /**
+     * When the link is built, open {@code connections} connections to each server of the link
+     * in the background with {@code HEAD} requests, so that DNS lookup, TCP connect, TLS and
+     * HTTP/2 negotiation are done before the first real request.
+     * The time spent in each phase is available from {@link RDFLinkRemote#getPreconnect()}.
+     */
+    public RDFLinkRemoteBuilder preconnect(int connections) {
+        return preconnect(connections, "HEAD");
+    }
+
+    /** As {@link #preconnect(int)}, with requests of the given method ("HEAD" or "OPTIONS"). */
+    public RDFLinkRemoteBuilder preconnect(int connections, String method) {
+        if ( connections < 0 )
+            throw new IllegalArgumentException("Connections must not be negative: "+connections);
+        this.preconnect = connections;
+        this.preconnectMethod = Objects.requireNonNull(method);
+        return this;
+    }
+
+    /**
+     * Cache query results in the client (see {@link QueryResultCache}).
+     * Links with the same cache and destination share results, and changes
+     * through any of them remove the cached results for the dataset.
+     */
+    public RDFLinkRemoteBuilder resultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
     private Function<RDFLinkRemoteBuilder, RDFLink> creator = null;
     /** Provide an alternative function to make the {@link RDFLink} object.
      * <p>
@@ -284,8 +394,12 @@ public class RDFLinkRemoteBuilder {
 
         Function<RDFLinkRemoteBuilder, RDFLink> maker = creator ;
 
-        if ( maker == null )
-            maker = (b)->b.buildConnection();
+        if ( maker == null ) {
+            if ( sQueryReplicas != null && ! sQueryReplicas.isEmpty() )
+                maker = RDFLinkReplicated::maker;
+            else
+                maker = (b)->b.buildConnection();
+        }
 
         // Sort out service URLs.
         // Delay until here. The builder may be setting destination and service endpoint
@@ -294,8 +408,20 @@ public class RDFLinkRemoteBuilder {
         queryURL = LibRDFLink.formServiceURL(destination, sQuery);
         updateURL = LibRDFLink.formServiceURL(destination, sUpdate);
         gspURL = LibRDFLink.formServiceURL(destination, sGSP);
-
-        return maker.apply(this);
+        if ( sQueryReplicas != null ) {
+            queryReplicaURLs = new ArrayList<>(sQueryReplicas.size());
+            for ( String sReplica : sQueryReplicas )
+                queryReplicaURLs.add(LibRDFLink.formServiceURL(destination, sReplica));
+        }
+
+        RDFLink link = maker.apply(this);
+        if ( link instanceof RDFLinkRemote ) {
+            RDFLinkRemote linkRemote = (RDFLinkRemote)link;
+            linkRemote.setResultCache(resultCache);
+            if ( preconnect > 0 )
+                linkRemote.startPreconnect(preconnect, preconnectMethod);
+        }
+        return link;
     }
 
     protected RDFLinkRemote buildConnection() {
@@ -304,6 +430,6 @@ public class RDFLinkRemoteBuilder {
                                  outputQuads, outputTriples,
                                  acceptDataset, acceptGraph,
                                  acceptSparqlResults, acceptSelectResult, acceptAskResult,
-                                 parseCheckQueries, parseCheckUpdates);
+                                 parseCheckQueries, parseCheckUpdates, contentEncoding);
     }
 }
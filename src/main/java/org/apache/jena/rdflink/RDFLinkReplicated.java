@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryType;
+import org.apache.jena.rdflink.QueryReplicas.LoadBalance;
+import org.apache.jena.sparql.exec.QueryExec;
+
+/**
+ * An {@link RDFLinkRemote} that sends queries to a set of equivalent query endpoints
+ * (read replicas), balancing the load between them (see {@link QueryReplicas}).
+ * Updates and Graph Store Protocol operations go to the primary: the destination,
+ * update and GSP endpoints of the builder.
+ * <p>
+ * If hedged reads are enabled and a query has not had a response within the
+ * hedge delay, the query is also sent to another replica. The first response
+ * is used and the other request is aborted.
+ * <pre>
+ *   RDFLink link = RDFLinkRemote.newBuilder()
+ *       .destination("http://primary:3030/ds")
+ *       .queryEndpoints("http://replica1:3030/ds/query", "http://replica2:3030/ds/query")
+ *       .hedgeReads(true)
+ *       .build();
+ * </pre>
+ */
+public class RDFLinkReplicated extends RDFLinkRemote {
+
+    /**
+     * Maximum number of threads for hedged queries. A hedged query uses one thread
+     * for each request in progress. When all the threads are in use, queries are not hedged.
+     */
+    public static final int hedgeThreadsMax = 64;
+
+    // Hedged requests wait for responses on these threads.
+    private static final ExecutorService hedgeThreads = createHedgeThreads();
+
+    private static ExecutorService createHedgeThreads() {
+        AtomicInteger counter = new AtomicInteger(0);
+        // No queue: a task is rejected when all the threads are busy.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(hedgeThreadsMax, hedgeThreadsMax, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r->{
+            Thread thread = new Thread(r, "RDFLinkHedge-"+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final QueryReplicas queryReplicas;
+    private final boolean hedgeReads;
+
+    /*package*/ static RDFLinkReplicated maker(RDFLinkRemoteBuilder builder) {
+        return new RDFLinkReplicated(builder, builder.queryReplicaURLs, builder.loadBalance,
+                                     builder.hedgeReads, builder.initialHedgeDelay);
+    }
+
+    protected RDFLinkReplicated(RDFLinkRemoteBuilder base, List<String> queryEndpoints, LoadBalance loadBalance,
+                                boolean hedgeReads, Duration initialHedgeDelay) {
+        super(base.txnLifecycle, base.httpClient,
+              base.destination, queryEndpoints.get(0), base.updateURL, base.gspURL,
+              base.outputQuads, base.outputTriples,
+              base.acceptDataset, base.acceptGraph,
+              base.acceptSparqlResults, base.acceptSelectResult, base.acceptAskResult,
+              base.parseCheckQueries, base.parseCheckUpdates, base.contentEncoding);
+        this.queryReplicas = new QueryReplicas(queryEndpoints, loadBalance, initialHedgeDelay);
+        this.hedgeReads = hedgeReads;
+    }
+
+    /** The query endpoints, with their statistics. */
+    public QueryReplicas getQueryReplicas() {
+        return queryReplicas;
+    }
+
+    public boolean isHedgeReads() {
+        return hedgeReads;
+    }
+
+    @Override
+    protected Set<String> endpoints() {
+        Set<String> endpoints = new LinkedHashSet<>();
+        queryReplicas.replicas().forEach(r->endpoints.add(r.url()));
+        endpoints.addAll(super.endpoints());
+        return endpoints;
+    }
+
+    @Override
+    protected QueryExec createQExec(Query query, String queryStringToSend, QueryType queryType) {
+        return new QueryExecReplicated(queryReplicas,
+                                       serviceURL->createQExec(serviceURL, query, queryStringToSend, queryType),
+                                       hedgeReads ? hedgeThreads : null);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.atlas.lib.Closeable;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * A materialized {@link RowSet} that keeps rows in memory up to a budget, and writes
+ * the rest to a temporary file.
+ * <p>
+ * {@link #materialize(RowSet, long)} reads the whole of the source {@code RowSet}.
+ * Rows are kept in memory until their estimated size exceeds the budget; the remaining
+ * rows are written to a temporary file in RDF Thrift result set format. Iterating
+ * returns the rows in memory, then reads the file sequentially. The file is deleted
+ * at the end of iteration or on {@link #close()}.
+ * <p>
+ * The caller must read to the end or call {@link #close()} to remove the file, so
+ * this is used where the lifetime is managed, such as for SERVICE results where
+ * closing the query iterator closes the {@code RowSet}.
+ * {@link RowSet#materialize()} remains in-memory.
+ */
+public class RowSetSpillable implements RowSet, Closeable {
+
+    /** Default memory budget, in estimated bytes, for a materialized {@code RowSet}. A negative value means no limit. */
+    public static /* final */ long dftMemoryBudget = 64*1024*1024;
+    /** Directory for spill files; null means the system temporary directory. */
+    public static /* final */ Path spillDirectory = null;
+
+    private static final LongAdder spills = new LongAdder();
+    private static final LongAdder spilledRows = new LongAdder();
+    private static final LongAdder spilledBytes = new LongAdder();
+
+    /** Number of materializations that wrote rows to disk. */
+    public static long spills()         { return spills.sum(); }
+    /** Number of rows written to disk. */
+    public static long spilledRows()    { return spilledRows.sum(); }
+    /** Number of bytes written to disk. */
+    public static long spilledBytes()   { return spilledBytes.sum(); }
+
+    public static void resetCounters() {
+        spills.reset();
+        spilledRows.reset();
+        spilledBytes.reset();
+    }
+
+    private final List<Var> vars;
+    private Iterator<Binding> memRows;
+    private Path file;
+    private InputStream fileInput = null;
+    private Iterator<Binding> fileRows = null;
+    private long rowNumber = 0;
+
+    /** Materialize with the default memory budget. This consumes the {@code RowSet}. */
+    public static RowSet materialize(RowSet rowSet) {
+        return materialize(rowSet, dftMemoryBudget);
+    }
+
+    /**
+     * Materialize, with rows over the memory budget (estimated bytes) written to disk.
+     * This consumes the {@code RowSet}.
+     */
+    public static RowSet materialize(RowSet rowSet, long memoryBudget) {
+        if ( memoryBudget < 0 )
+            return RowSetMem.create(rowSet);
+        List<Var> vars = rowSet.getResultVars();
+        List<Binding> rows = new ArrayList<>();
+        long size = 0;
+        while ( rowSet.hasNext() ) {
+            Binding b = rowSet.next();
+            rows.add(b);
+            size += estimate(b);
+            if ( size > memoryBudget && rowSet.hasNext() )
+                return new RowSetSpillable(vars, rows, spill(rowSet));
+        }
+        return new RowSetSpillable(vars, rows, null);
+    }
+
+    // Write the rest of the RowSet to a temporary file.
+    private static Path spill(RowSet rowSet) {
+        Path path = null;
+        try {
+            path = ( spillDirectory == null )
+                ? Files.createTempFile("jena-rows-", ".rt")
+                : Files.createTempFile(spillDirectory, "jena-rows-", ".rt");
+            CountingRowSet counting = new CountingRowSet(rowSet);
+            try ( OutputStream out = new BufferedOutputStream(Files.newOutputStream(path)) ) {
+                ResultSetMgr.write(out, RowSet.adapt(counting), ResultSetLang.RS_Thrift);
+            }
+            spills.increment();
+            spilledRows.add(counting.count);
+            spilledBytes.add(Files.size(path));
+            return path;
+        } catch (IOException ex) {
+            delete(path);
+            throw new RuntimeIOException(ex);
+        } catch (RuntimeException ex) {
+            delete(path);
+            throw ex;
+        }
+    }
+
+    private RowSetSpillable(List<Var> vars, List<Binding> rows, Path file) {
+        this.vars = vars;
+        this.memRows = rows.iterator();
+        this.file = file;
+    }
+
+    /** Whether some rows are on disk. */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( memRows != null ) {
+            if ( memRows.hasNext() )
+                return true;
+            // Release the in-memory rows.
+            memRows = null;
+        }
+        if ( file == null )
+            return false;
+        if ( fileRows == null )
+            openFile();
+        if ( fileRows.hasNext() )
+            return true;
+        close();
+        return false;
+    }
+
+    @Override
+    public Binding next() {
+        if ( ! hasNext() )
+            throw new NoSuchElementException();
+        rowNumber++;
+        return ( memRows != null ) ? memRows.next() : fileRows.next();
+    }
+
+    private void openFile() {
+        try {
+            fileInput = new BufferedInputStream(Files.newInputStream(file));
+            ResultSet rs = ResultSetMgr.read(fileInput, ResultSetLang.RS_Thrift);
+            fileRows = RowSet.adapt(rs);
+        } catch (IOException ex) {
+            close();
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    @Override
+    public List<Var> getResultVars() {
+        return vars;
+    }
+
+    @Override
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public RowSet materialize() {
+        // Already materialized.
+        return this;
+    }
+
+    /** Release any temporary file. Further calls of {@code hasNext} return false. */
+    @Override
+    public void close() {
+        memRows = null;
+        if ( fileInput != null ) {
+            try { fileInput.close(); } catch (IOException ex) { /*ignore*/ }
+            fileInput = null;
+        }
+        if ( file != null ) {
+            delete(file);
+            file = null;
+        }
+        fileRows = null;
+    }
+
+    private static void delete(Path path) {
+        if ( path == null )
+            return;
+        try { Files.deleteIfExists(path); } catch (IOException ex) { /*ignore*/ }
+    }
+
+    // Approximate heap size of a row.
+    private static long estimate(Binding binding) {
+        long size = 48;
+        Iterator<Var> iter = binding.vars();
+        while ( iter.hasNext() ) {
+            Node n = binding.get(iter.next());
+            size += 32;
+            if ( n == null )
+                continue;
+            if ( n.isURI() )
+                size += 40 + 2*n.getURI().length();
+            else if ( n.isLiteral() )
+                size += 64 + 2*(n.getLiteralLexicalForm().length() + n.getLiteralLanguage().length());
+            else
+                size += 48;
+        }
+        return size;
+    }
+
+    /** Counts the rows passed on. */
+    private static class CountingRowSet implements RowSet {
+        private final RowSet rowSet;
+        long count = 0;
+
+        CountingRowSet(RowSet rowSet) { this.rowSet = rowSet; }
+
+        @Override public boolean hasNext()              { return rowSet.hasNext(); }
+        @Override public Binding next()                 { count++; return rowSet.next(); }
+        @Override public List<Var> getResultVars()      { return rowSet.getResultVars(); }
+        @Override public long getRowNumber()            { return rowSet.getRowNumber(); }
+    }
+}
@@ -27,11 +27,13 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.jena.atlas.web.ContentType;
 import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
+import org.apache.jena.http.AsyncHttpRDF;
 import org.apache.jena.http.HttpEnv;
 import org.apache.jena.http.HttpLib;
 import org.apache.jena.http.HttpRDF;
@@ -113,6 +115,10 @@ public class GSP {
     private RDFFormat           rdfFormat       = null;
     private HttpClient          httpClient      = null;
     private Map<String, String> httpHeaders     = new HashMap<>();
+    // null means "use the system default"
+    private Boolean             contentLength   = null;
+    // Compress request bodies. null means "no compression".
+    private String              contentEncoding = null;
 
     // One, and only one of these, must be set at the point the terminating operation is called.
     private boolean             datasetGraph    = false;
@@ -249,6 +255,46 @@ public class GSP {
         return this;
     }
 
+    /**
+     * Whether to send graphs and datasets with a {@code Content-Length} header, which
+     * means serializing the data before sending it, or to stream the data as it is
+     * serialized. Optional; if not set, {@link HttpEnv#sendContentLength} is used.
+     * <p>
+     * This does not apply to sending files.
+     */
+    public GSP contentLength(boolean contentLength) {
+        this.contentLength = contentLength;
+        return this;
+    }
+
+    /**
+     * Compress the body of POST and PUT requests, of files, graphs and datasets,
+     * using the {@code Content-Encoding} (e.g. "gzip"). The compression is done as the
+     * request is sent. The server must support the encoding.
+     * Optional; if not set, or set to null, request bodies are not compressed.
+     *
+     * @see org.apache.jena.http.sys.ContentEncoderRegistry
+     */
+    public GSP contentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return this;
+    }
+
+    private boolean sendContentLength() {
+        return contentLength != null ? contentLength : HttpEnv.sendContentLength;
+    }
+
+    /**
+     * HTTP headers for a POST or PUT request. This is a copy so that headers for the
+     * request body, such as Content-Encoding, are not sent with later requests.
+     */
+    private Map<String, String> pushHeaders() {
+        Map<String, String> headers = ( httpHeaders == null ) ? new HashMap<>() : new HashMap<>(httpHeaders);
+        if ( contentEncoding != null )
+            headers.put(HttpNames.hContentEncoding, contentEncoding);
+        return headers;
+    }
+
     private void validateGraphOperation() {
         Objects.requireNonNull(serviceEndpoint);
         if ( ! defaultGraph && graphName == null )
@@ -329,7 +375,7 @@ public class GSP {
         String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
         String fileExtContentType = contentTypeFromFilename(file);
         HttpClient hc = requestHttpClient(serviceEndpoint, url);
-        uploadTriples(hc, url, file, fileExtContentType, httpHeaders, Push.POST);
+        uploadTriples(hc, url, file, fileExtContentType, pushHeaders(), contentEncoding, Push.POST);
     }
 
 //    /**
@@ -353,7 +399,8 @@ public class GSP {
         RDFFormat requestFmt = rdfFormat(HttpEnv.dftTriplesFormat);
         String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
         HttpClient hc = requestHttpClient(serviceEndpoint, url);
-        HttpRDF.httpPostGraph(hc, url, graph, requestFmt, httpHeaders);
+        BodyPublisher body = HttpRDF.graphToHttpBody(graph, requestFmt, sendContentLength(), contentEncoding);
+        HttpRDF.httpPushBody(hc, url, Push.POST, body, requestFmt, pushHeaders());
     }
 
 //    /**
@@ -379,7 +426,7 @@ public class GSP {
         String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
         String fileExtContentType = contentTypeFromFilename(file);
         HttpClient hc = requestHttpClient(serviceEndpoint, url);
-        uploadTriples(hc, url, file, fileExtContentType, httpHeaders, Push.PUT);
+        uploadTriples(hc, url, file, fileExtContentType, pushHeaders(), contentEncoding, Push.PUT);
     }
 
 //    /**
@@ -405,7 +452,8 @@ public class GSP {
         RDFFormat requestFmt = rdfFormat(HttpEnv.dftTriplesFormat);
         String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
         HttpClient hc = requestHttpClient(serviceEndpoint, url);
-        HttpRDF.httpPutGraph(hc, url, graph, requestFmt, httpHeaders);
+        BodyPublisher body = HttpRDF.graphToHttpBody(graph, requestFmt, sendContentLength(), contentEncoding);
+        HttpRDF.httpPushBody(hc, url, Push.PUT, body, requestFmt, pushHeaders());
     }
 
 //    /**
@@ -468,7 +516,7 @@ public class GSP {
         validateDatasetOperation();
         String fileExtContentType = contentTypeFromFilename(file);
         HttpClient hc = requestHttpClient(serviceEndpoint, serviceEndpoint);
-        uploadQuads(hc, serviceEndpoint, file, fileExtContentType, httpHeaders, Push.POST);
+        uploadQuads(hc, serviceEndpoint, file, fileExtContentType, pushHeaders(), contentEncoding, Push.POST);
     }
 
     /** POST a dataset */
@@ -477,7 +525,8 @@ public class GSP {
         validateDatasetOperation();
         RDFFormat requestFmt = rdfFormat(HttpEnv.dftQuadsFormat);
         HttpClient hc = requestHttpClient(serviceEndpoint, serviceEndpoint);
-        HttpRDF.httpPostDataset(hc, serviceEndpoint, dataset, requestFmt, httpHeaders);
+        BodyPublisher body = HttpRDF.datasetToHttpBody(dataset, requestFmt, sendContentLength(), contentEncoding);
+        HttpRDF.httpPushBody(hc, serviceEndpoint, Push.POST, body, requestFmt, pushHeaders());
     }
 
     /**
@@ -491,7 +540,7 @@ public class GSP {
         validateDatasetOperation();
         String fileExtContentType = contentTypeFromFilename(file);
         HttpClient hc = requestHttpClient(serviceEndpoint, serviceEndpoint);
-        uploadQuads(hc, serviceEndpoint, file, fileExtContentType, httpHeaders, Push.PUT);
+        uploadQuads(hc, serviceEndpoint, file, fileExtContentType, pushHeaders(), contentEncoding, Push.PUT);
     }
 
     /** PUT a dataset */
@@ -500,7 +549,78 @@ public class GSP {
         validateDatasetOperation();
         RDFFormat requestFmt = rdfFormat(HttpEnv.dftQuadsFormat);
         HttpClient hc = requestHttpClient(serviceEndpoint, serviceEndpoint);
-        HttpRDF.httpPutDataset(hc, serviceEndpoint, dataset, requestFmt, httpHeaders);
+        BodyPublisher body = HttpRDF.datasetToHttpBody(dataset, requestFmt, sendContentLength(), contentEncoding);
+        HttpRDF.httpPushBody(hc, serviceEndpoint, Push.PUT, body, requestFmt, pushHeaders());
+    }
+
+    // ---- Asynchronous operations.
+    // These return a CompletableFuture which completes when the response has been received.
+    // See AsyncHttpRDF.getOrElseThrow.
+
+    /** Get a graph, asynchronously. */
+    public CompletableFuture<Graph> asyncGET() {
+        validateGraphOperation();
+        ensureAcceptHeader(WebContent.defaultGraphAcceptHeader);
+        String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
+        Graph graph = GraphFactory.createDefaultGraph();
+        HttpClient hc = requestHttpClient(serviceEndpoint, url);
+        return AsyncHttpRDF.asyncGetToStream(hc, url, httpHeaders, StreamRDFLib.graph(graph), null).thenApply(x->graph);
+    }
+
+    /** POST a graph, asynchronously. */
+    public CompletableFuture<Void> asyncPOST(Graph graph) {
+        return asyncPushGraph(Push.POST, graph);
+    }
+
+    /** PUT a graph, asynchronously. */
+    public CompletableFuture<Void> asyncPUT(Graph graph) {
+        return asyncPushGraph(Push.PUT, graph);
+    }
+
+    private CompletableFuture<Void> asyncPushGraph(Push style, Graph graph) {
+        validateGraphOperation();
+        RDFFormat requestFmt = rdfFormat(HttpEnv.dftTriplesFormat);
+        String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
+        HttpClient hc = requestHttpClient(serviceEndpoint, url);
+        BodyPublisher body = HttpRDF.graphToHttpBody(graph, requestFmt, sendContentLength(), contentEncoding, AsyncHttpRDF.getUploadExecutor());
+        return AsyncHttpRDF.asyncPushBody(hc, url, style, body, requestFmt, pushHeaders());
+    }
+
+    /** Delete a graph, asynchronously. */
+    public CompletableFuture<Void> asyncDELETE() {
+        validateGraphOperation();
+        String url = HttpLib.requestURL(serviceEndpoint, queryStringForGraph(graphName));
+        HttpClient hc = requestHttpClient(serviceEndpoint, url);
+        return AsyncHttpRDF.asyncDeleteGraph(hc, url);
+    }
+
+    /** GET dataset, asynchronously. */
+    public CompletableFuture<DatasetGraph> asyncGetDataset() {
+        internalDataset();
+        validateDatasetOperation();
+        ensureAcceptHeader(WebContent.defaultRDFAcceptHeader);
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        HttpClient hc = requestHttpClient(serviceEndpoint, serviceEndpoint);
+        return AsyncHttpRDF.asyncGetToStream(hc, serviceEndpoint, httpHeaders, StreamRDFLib.dataset(dsg), dsg).thenApply(x->dsg);
+    }
+
+    /** POST a dataset, asynchronously. */
+    public CompletableFuture<Void> asyncPostDataset(DatasetGraph dataset) {
+        return asyncPushDataset(Push.POST, dataset);
+    }
+
+    /** PUT a dataset, asynchronously. */
+    public CompletableFuture<Void> asyncPutDataset(DatasetGraph dataset) {
+        return asyncPushDataset(Push.PUT, dataset);
+    }
+
+    private CompletableFuture<Void> asyncPushDataset(Push style, DatasetGraph dataset) {
+        internalDataset();
+        validateDatasetOperation();
+        RDFFormat requestFmt = rdfFormat(HttpEnv.dftQuadsFormat);
+        HttpClient hc = requestHttpClient(serviceEndpoint, serviceEndpoint);
+        BodyPublisher body = HttpRDF.datasetToHttpBody(dataset, requestFmt, sendContentLength(), contentEncoding, AsyncHttpRDF.getUploadExecutor());
+        return AsyncHttpRDF.asyncPushBody(hc, serviceEndpoint, style, body, requestFmt, pushHeaders());
     }
 
     // SPARQL "CLEAR ALL"
@@ -513,7 +633,7 @@ public class GSP {
 
     /** Send a file of triples to a URL. */
     private static void uploadTriples(HttpClient httpClient, String gspUrl, String file, String fileExtContentType,
-                                      Map<String, String> headers, Push mode) {
+                                      Map<String, String> headers, String contentEncoding, Push mode) {
         Lang lang = RDFLanguages.contentTypeToLang(fileExtContentType);
         if ( lang == null )
             throw new ARQException("Not a recognized as an RDF format: "+fileExtContentType);
@@ -521,18 +641,19 @@ public class GSP {
             throw new ARQException("Can't load quads into a graph");
         if ( ! RDFLanguages.isTriples(lang) )
             throw new ARQException("Not an RDF format: "+file+" (lang="+lang+")");
-        pushFile(httpClient, gspUrl, file, fileExtContentType, headers, mode);
+        pushFile(httpClient, gspUrl, file, fileExtContentType, headers, contentEncoding, mode);
     }
 
     /**
      * Send a file of quads to a URL. The Content-Type is inferred from the file
      * extension.
      */
-    private static void uploadQuads(HttpClient httpClient, String endpoint, String file, String fileExtContentType, Map<String, String> headers, Push mode) {
+    private static void uploadQuads(HttpClient httpClient, String endpoint, String file, String fileExtContentType,
+                                    Map<String, String> headers, String contentEncoding, Push mode) {
         Lang lang = RDFLanguages.contentTypeToLang(fileExtContentType);
         if ( !RDFLanguages.isQuads(lang) && !RDFLanguages.isTriples(lang) )
             throw new ARQException("Not an RDF format: " + file + " (lang=" + lang + ")");
-        pushFile(httpClient, endpoint, file, fileExtContentType, headers, mode);
+        pushFile(httpClient, endpoint, file, fileExtContentType, headers, contentEncoding, mode);
     }
 
     /** Header string or default value. */
@@ -571,15 +692,20 @@ public class GSP {
         return ct == null ? null : ct.getContentTypeStr();
     }
 
-    /** Send a file. fileContentType takes precedence over this.contentType.*/
+    /**
+     * Send a file. fileContentType takes precedence over this.contentType.
+     * If contentEncoding is not null, the file is compressed as it is sent.
+     */
     protected static void pushFile(HttpClient httpClient, String endpoint, String file, String fileContentType,
-                                   Map<String, String> httpHeaders, Push style) {
+                                   Map<String, String> httpHeaders, String contentEncoding, Push style) {
         try {
             Path path = Paths.get(file);
             if ( fileContentType != null )
             //if ( ! httpHeaders.containsKey(HttpNames.hContentType) )
                 httpHeaders.put(HttpNames.hContentType, fileContentType);
-            BodyPublisher body = BodyPublishers.ofFile(path);
+            BodyPublisher body = ( contentEncoding == null )
+                ? BodyPublishers.ofFile(path)
+                : HttpLib.encodedBody(contentEncoding, path);
             HttpLib.httpPushData(httpClient, style, endpoint, HttpLib.setHeaders(httpHeaders), body);
         } catch (FileNotFoundException ex) {
             throw new NotFoundException(file);
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.json.JsonParseException;
+import org.apache.jena.atlas.json.JsonValue;
+import org.apache.jena.query.QueryExecException;
+
+/**
+ * Iterator over the objects of a JSON array, read incrementally from an {@link InputStream}.
+ * <p>
+ * Only the current item is held in memory. The text of each item is found by scanning
+ * (tracking nesting and strings) and then parsed. The input stream is closed when the
+ * end of the array is reached, on an error, or by {@link #close}.
+ */
+public class IteratorJsonItems implements Iterator<JsonObject>, Closeable {
+
+    // Release the buffer after a large item.
+    private static final int maxRetainedBuffer = 64*1024;
+
+    private final Reader reader;
+    private StringBuilder buffer = new StringBuilder();
+    // Pushed back character, or -2 for none.
+    private int pushback = -2;
+    private boolean started = false;
+    private boolean finished = false;
+    private JsonObject slot = null;
+
+    public static IteratorJsonItems create(InputStream input) {
+        return new IteratorJsonItems(input);
+    }
+
+    private IteratorJsonItems(InputStream input) {
+        // JSON is UTF-8.
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 16*1024);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( slot != null )
+            return true;
+        if ( finished )
+            return false;
+        try {
+            slot = readItem();
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        if ( slot == null )
+            close();
+        return slot != null;
+    }
+
+    @Override
+    public JsonObject next() {
+        if ( ! hasNext() )
+            throw new NoSuchElementException();
+        JsonObject x = slot;
+        slot = null;
+        return x;
+    }
+
+    @Override
+    public void close() {
+        if ( finished )
+            return;
+        finished = true;
+        buffer = null;
+        try { reader.close(); } catch (IOException ex) { /*ignore*/ }
+    }
+
+    // Read the next item, or return null at the end of the array.
+    private JsonObject readItem() {
+        int ch = skipWhitespace();
+        if ( ! started ) {
+            if ( ch != '[' )
+                throw new JsonParseException("Expected a JSON array", -1, -1);
+            started = true;
+            ch = skipWhitespace();
+            if ( ch == ']' )
+                return null;
+        } else {
+            if ( ch == ']' )
+                return null;
+            if ( ch != ',' )
+                throw new JsonParseException("Expected ',' or ']' in a JSON array", -1, -1);
+            ch = skipWhitespace();
+        }
+        if ( ch == -1 )
+            throw new JsonParseException("Unexpected end of input in a JSON array", -1, -1);
+        if ( buffer.capacity() > maxRetainedBuffer )
+            buffer = new StringBuilder();
+        buffer.setLength(0);
+        readValue(ch);
+        JsonValue value = JSON.parseAny(buffer.toString());
+        if ( ! value.isObject() )
+            throw new QueryExecException("Item in an array from a JSON query isn't an object");
+        return value.getAsObject();
+    }
+
+    // Copy the text of one JSON value, starting with ch, to the buffer.
+    private void readValue(int ch) {
+        if ( ch != '{' && ch != '[' ) {
+            // Scalar: up to the next separator.
+            while ( ch != -1 && ch != ',' && ch != ']' && ! Character.isWhitespace(ch) ) {
+                buffer.append((char)ch);
+                ch = read();
+            }
+            pushback = ch;
+            return;
+        }
+        int depth = 0;
+        boolean inString = false;
+        for (;;) {
+            if ( ch == -1 )
+                throw new JsonParseException("Unexpected end of input in a JSON array item", -1, -1);
+            buffer.append((char)ch);
+            if ( inString ) {
+                if ( ch == '\\' ) {
+                    int ch2 = read();
+                    if ( ch2 == -1 )
+                        throw new JsonParseException("Unexpected end of input in a JSON string", -1, -1);
+                    buffer.append((char)ch2);
+                } else if ( ch == '"' ) {
+                    inString = false;
+                }
+            } else {
+                switch (ch) {
+                    case '"': inString = true; break;
+                    case '{': case '[': depth++; break;
+                    case '}': case ']': depth--; break;
+                    default:
+                }
+                if ( depth == 0 )
+                    return;
+            }
+            ch = read();
+        }
+    }
+
+    private int skipWhitespace() {
+        int ch = read();
+        while ( ch != -1 && Character.isWhitespace(ch) )
+            ch = read();
+        return ch;
+    }
+
+    private int read() {
+        if ( pushback != -2 ) {
+            int ch = pushback;
+            pushback = -2;
+            return ch;
+        }
+        try {
+            return reader.read();
+        } catch (IOException ex) {
+            IO.exception(ex);
+            return -1;
+        }
+    }
+}
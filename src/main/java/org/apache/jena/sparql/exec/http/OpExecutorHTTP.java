@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.Table;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.op.OpTriple;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.main.OpExecutor;
+import org.apache.jena.sparql.engine.main.OpExecutorFactory;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * {@link OpExecutor} that executes SERVICE with a bind join: the incoming bindings
+ * are sent to the remote service in blocks, not one request per binding.
+ * <p>
+ * The block size is set with the context symbol {@link Service2#httpServiceBatchSize}
+ * (default {@link Service2#dftServiceBatchSize}); a size of 1 or less turns batching off.
+ * Blocks are also limited so that requests can be sent by HTTP GET when possible
+ * (see {@link org.apache.jena.http.HttpEnv#urlLimit}).
+ * Only SERVICE patterns where this gives the same results as one request per binding
+ * are batched: basic graph patterns with join, union and filter.
+ * <p>
+ * SERVICE clauses that do not depend on each other, within a join or a sequence,
+ * are sent at the same time, using a pool of at most {@link #serviceThreads} threads.
+ * This is controlled by the context symbol {@link Service2#httpServiceParallel} (default true).
+ * <p>
+ * Use {@link #register(Context)} to use this executor for queries with that context,
+ * for example {@code OpExecutorHTTP.register(ARQ.getContext())}.
+ */
+public class OpExecutorHTTP extends OpExecutor {
+
+    public static final OpExecutorFactory factory = OpExecutorHTTP::new;
+
+    /** Maximum number of SERVICE requests running at the same time, across all queries. */
+    public static final int serviceThreads = 8;
+
+    // Threads are daemon threads and are reclaimed when idle.
+    private static final ExecutorService executor = createExecutor();
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(serviceThreads, serviceThreads, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<>(), r->{
+            Thread thread = new Thread(r, "HttpService");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /** Use {@code OpExecutorHTTP} for query execution with this context. */
+    public static void register(Context context) {
+        QC.setFactory(context, factory);
+    }
+
+    protected OpExecutorHTTP(ExecutionContext execCxt) {
+        super(execCxt);
+    }
+
+    @Override
+    protected QueryIterator execute(OpService opService, QueryIterator input) {
+        int batchSize = Service2.batchSizeFromContext(execCxt.getContext());
+        if ( batchSize <= 1 || ! opService.getService().isURI() || ! batchable(opService.getSubOp()) )
+            return super.execute(opService, input);
+        return new QueryIterServiceBatch(input, opService, batchSize, execCxt);
+    }
+
+    /**
+     * Whether joining a block of bindings (as VALUES) with the SERVICE pattern gives
+     * the same results as substituting each binding into the pattern.
+     * This is so for basic graph patterns combined by join, union and filter, where every
+     * variable used in a filter is set by the pattern being filtered. It is not so for
+     * LIMIT/OFFSET, aggregates, DISTINCT/REDUCED, sub-queries with projection, or a filter
+     * on a variable that only an incoming binding sets: these use one request per binding.
+     */
+    private static boolean batchable(Op op) {
+        if ( op instanceof OpBGP || op instanceof OpTriple )
+            return true;
+        if ( op instanceof OpJoin )
+            return batchable(((OpJoin)op).getLeft()) && batchable(((OpJoin)op).getRight());
+        if ( op instanceof OpUnion )
+            return batchable(((OpUnion)op).getLeft()) && batchable(((OpUnion)op).getRight());
+        if ( op instanceof OpSequence ) {
+            for ( Op x : ((OpSequence)op).getElements() ) {
+                if ( ! batchable(x) )
+                    return false;
+            }
+            return true;
+        }
+        if ( op instanceof OpFilter ) {
+            OpFilter opFilter = (OpFilter)op;
+            Set<Var> exprVars = opFilter.getExprs().getVarsMentioned();
+            return OpVars.visibleVars(opFilter.getSubOp()).containsAll(exprVars)
+                && batchable(opFilter.getSubOp());
+        }
+        return false;
+    }
+
+    @Override
+    protected QueryIterator execute(OpJoin opJoin, QueryIterator input) {
+        if ( ! parallel(input) )
+            return super.execute(opJoin, input);
+        // The parts of a join are evaluated independently.
+        List<Op> elements = new ArrayList<>();
+        joinElements(opJoin, elements);
+        List<OpService> services = new ArrayList<>();
+        for ( Op op : elements ) {
+            if ( isRemote(op) )
+                services.add((OpService)op);
+        }
+        if ( services.size() < 2 )
+            return super.execute(opJoin, input);
+        return new QueryIterServiceParallel(services, executor, tables->{
+            List<Op> parts = replace(elements, services, tables);
+            Op op = parts.get(0);
+            for ( int i = 1 ; i < parts.size() ; i++ )
+                op = OpJoin.create(op, parts.get(i));
+            return exec(op, input);
+        }, execCxt);
+    }
+
+    @Override
+    protected QueryIterator execute(OpSequence opSequence, QueryIterator input) {
+        if ( ! parallel(input) )
+            return super.execute(opSequence, input);
+        // A SERVICE that does not use variables of earlier elements
+        // is not changed by the bindings from the earlier elements.
+        List<Op> elements = opSequence.getElements();
+        List<OpService> services = new ArrayList<>();
+        Set<Var> seen = new HashSet<>();
+        for ( Op op : elements ) {
+            // All variables of the SERVICE, including those only used in a FILTER,
+            // which a substituted binding from an earlier element would change.
+            if ( isRemote(op) && Collections.disjoint(seen, OpVars.mentionedVars(op)) )
+                services.add((OpService)op);
+            seen.addAll(OpVars.visibleVars(op));
+        }
+        if ( services.size() < 2 )
+            return super.execute(opSequence, input);
+        return new QueryIterServiceParallel(services, executor, tables->{
+            OpSequence op = OpSequence.create();
+            replace(elements, services, tables).forEach(op::add);
+            return exec(op, input);
+        }, execCxt);
+    }
+
+    // Only at the start of evaluation, when there are no incoming bindings.
+    private boolean parallel(QueryIterator input) {
+        return input instanceof QueryIterRoot
+            && execCxt.getContext().isTrueOrUndef(Service2.httpServiceParallel);
+    }
+
+    private static boolean isRemote(Op op) {
+        return op instanceof OpService && ((OpService)op).getService().isURI();
+    }
+
+    private static void joinElements(Op op, List<Op> elements) {
+        if ( op instanceof OpJoin ) {
+            joinElements(((OpJoin)op).getLeft(), elements);
+            joinElements(((OpJoin)op).getRight(), elements);
+        } else
+            elements.add(op);
+    }
+
+    // Replace the SERVICE operations with their results.
+    private static List<Op> replace(List<Op> elements, List<OpService> services, List<Table> tables) {
+        Map<Op, Table> results = new IdentityHashMap<>();
+        for ( int i = 0 ; i < services.size() ; i++ )
+            results.put(services.get(i), tables.get(i));
+        List<Op> parts = new ArrayList<>(elements.size());
+        for ( Op op : elements ) {
+            Table table = results.get(op);
+            parts.add( table == null ? op : OpTable.create(table) );
+        }
+        return parts;
+    }
+}
@@ -21,23 +21,25 @@ package org.apache.jena.sparql.exec.http;
 import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 import org.apache.jena.http.HttpLib;
 
-/** A collection of parameters for HTTP protocol use. */
+/**
+ * A collection of parameters for HTTP protocol use.
+ * <p>
+ * Parameters are kept in the order added. Each parameter is encoded for HTTP at most
+ * once, and the encoding is shared with copies made by {@link #create(Params)}, so
+ * forming the query string of a request repeatedly is cheap.
+ */
 public class Params
 {
-    // As seen.
-    private List<Param> paramList = new ArrayList<>();
-
-    // string -> list -> string
-    private Map<String, List<String>> params = new HashMap<>();
+    // As seen. Looking up by name is a scan - there are usually very few parameters.
+    private final List<Param> paramList;
 
     /** Create a Params object */
-    private Params() { }
+    private Params() { paramList = new ArrayList<>(); }
 
     /** Pattern: {@code String URL = Params.create().add("name", "value")... .httpString(endpoint);} */
     public static Params create() { return new Params(); }
@@ -53,11 +55,13 @@ public class Params
      * @param other
      */
     private Params(Params other) {
+        // Room for the query and a few more.
+        paramList = new ArrayList<>(other.paramList.size()+4);
         merge(other);
     }
 
     public void merge(Params other) {
-        params.putAll(other.params);
+        // Param objects are immutable and can be shared.
         paramList.addAll(other.paramList);
     }
 
@@ -69,9 +73,11 @@ public class Params
      * @return this Params for continued operation
      */
     public Params add(String name, String value) {
-        Param p = new Param(name, value);
-        paramList.add(p);
-        params.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+        return add(new Param(name, value));
+    }
+
+    /*package*/ Params add(Param param) {
+        paramList.add(param);
         return this;
     }
 
@@ -84,7 +90,13 @@ public class Params
     /** @deprecated Use {@link #add(String)} */
     @Deprecated public Params addParam(String name) { return add(name); }
 
-    public boolean containsParam(String name) { return params.containsKey(name); }
+    public boolean containsParam(String name) {
+        for ( Param p : paramList ) {
+            if ( Objects.equals(p.getName(), name) )
+                return true;
+        }
+        return false;
+    }
 
     public String getValue(String name) {
         List<String> x = getMV(name);
@@ -100,10 +112,7 @@ public class Params
     }
 
     public void remove(String name) {
-        // Absolute record
-        paramList.removeIf(p -> p.getName().equals(name));
-        // Map
-        params.remove(name);
+        paramList.removeIf(p -> Objects.equals(p.getName(), name));
     }
 
     /** Exactly as seen */
@@ -120,7 +129,34 @@ public class Params
 
     /** URL query string, without leading "?" */
     public String httpString() {
-        return format(new StringBuilder(), paramList).toString();
+        if ( paramList.isEmpty() )
+            return "";
+        if ( paramList.size() == 1 )
+            return paramList.get(0).encoded();
+        return appendHttpString(new StringBuilder(httpStringLength())).toString();
+    }
+
+    /** The length of {@link #httpString()}, without creating the string. */
+    public int httpStringLength() {
+        int length = 0;
+        for ( Param p : paramList )
+            length += p.encoded().length();
+        // Separators.
+        if ( paramList.size() > 1 )
+            length += paramList.size()-1;
+        return length;
+    }
+
+    /** Append the URL query string, without leading "?", to a {@link StringBuilder}. */
+    public StringBuilder appendHttpString(StringBuilder result) {
+        boolean first = true;
+        for ( Param p : paramList ) {
+            if ( ! first )
+                result.append('&');
+            first = false;
+            result.append(p.encoded());
+        }
+        return result;
     }
 
 //    /** URL query string, without leading "?" */
@@ -134,24 +170,6 @@ public class Params
 //        return format(sBuff, paramList).toString();
 //    }
 
-    /**
-     * Return a string that is suitable for HTTP use.
-     */
-    private static StringBuilder format(StringBuilder result, List <Param> parameters) {
-        parameters.forEach(param->{
-            String encodedName = encode(param.getName());
-            String encodedValue = encode(param.getValue());
-            if ( result.length() > 0 )
-                result.append("&");
-            result.append(encodedName);
-            if (encodedValue != null) {
-                result.append("=");
-                result.append(encodedValue);
-            }
-        });
-        return result;
-    }
-
     private static String encode(String name) {
         if ( name == null )
             return name;
@@ -164,7 +182,15 @@ public class Params
     }
 
     private List<String> getMV(String name) {
-        return params.get(name);
+        List<String> x = null;
+        for ( Param p : paramList ) {
+            if ( Objects.equals(p.getName(), name) ) {
+                if ( x == null )
+                    x = new ArrayList<>(1);
+                x.add(p.getValue());
+            }
+        }
+        return x;
     }
 
     static class MultiValueException extends RuntimeException {
@@ -174,9 +200,31 @@ public class Params
     }
 
     // Pair, with more appropriate method names.
+    // The HTTP encoded form "name=value" is calculated when first needed.
     static class Param extends org.apache.jena.atlas.lib.Pair<String, String> {
+        // Benign race: any thread calculates the same string.
+        private String encoded = null;
+
         public Param(String name, String value) { super(name, value); }
+
+        // With the value already encoded.
+        /*package*/ Param(String name, String value, String encodedValue) {
+            super(name, value);
+            this.encoded = encode(name)+"="+encodedValue;
+        }
+
         public String getName()  { return getLeft();  }
         public String getValue() { return getRight(); }
+
+        /** The HTTP encoded form "name=value", or "name" if there is no value. */
+        String encoded() {
+            String x = encoded;
+            if ( x == null ) {
+                String encodedName = encode(getName());
+                x = ( getValue() == null ) ? encodedName : encodedName+"="+encode(getValue());
+                encoded = x;
+            }
+            return x;
+        }
     }
 }
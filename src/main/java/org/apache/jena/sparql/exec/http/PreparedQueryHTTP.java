@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.net.http.HttpClient;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.http.HttpLib;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.query.QueryType;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.http.HttpParams;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.FmtUtils;
+
+/**
+ * A remote query that is parsed, checked, serialized and encoded once, then executed
+ * many times with different values for its parameter variables.
+ * <p>
+ * The values are either substituted for the variables in the query (the default) or
+ * sent in a {@code VALUES} block after the query
+ * (see {@link PreparedQueryHTTPBuilder#useValues()}). Each execution only formats and
+ * encodes the values.
+ * <p>
+ * A {@code PreparedQueryHTTP} is immutable and can be used by many threads at once.
+ * Each call of {@link #exec(Binding)} returns a new, single-use, {@link QueryExec}.
+ * <pre>
+ *   PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder()
+ *       .service("http://host/dataset/query")
+ *       .queryString("SELECT ?name { ?person :name ?name }")
+ *       .parameters("person")
+ *       .build();
+ *   Binding binding = BindingFactory.binding(Var.alloc("person"), person);
+ *   try ( QueryExec qExec = prepared.exec(binding) ) {
+ *       RowSet rowSet = qExec.select();
+ *       ...
+ *   }
+ * </pre>
+ * With substitution, a parameter variable is no longer in the query so it is not in
+ * the results of {@code SELECT *}, and it must not be named in the {@code SELECT} clause.
+ */
+public class PreparedQueryHTTP {
+
+    public static PreparedQueryHTTPBuilder newBuilder() { return PreparedQueryHTTPBuilder.newBuilder(); }
+
+    // Placeholder IRI for parameters when making the template.
+    private static final String placeholder = "urn:x-arq:prepared:";
+
+    private final Query query;
+    private final List<Var> parameters;
+    private final boolean useValues;
+
+    // The query string split at the places where values go.
+    // Substitution: the value of slots[i] goes between segments[i] and segments[i+1].
+    // VALUES: one row, of all the parameters, goes between segments[0] and segments[1].
+    private final String[] segments;
+    private final String[] encodedSegments;
+    private final Var[] slots;
+
+    // Settings for each QueryExecHTTP.
+    private final String service;
+    private final int urlLimit;
+    private final HttpClient httpClient;
+    private final Map<String, String> httpHeaders;
+    private final Params params;
+    private final Context context;
+    private final List<String> defaultGraphURIs;
+    private final List<String> namedGraphURIs;
+    private final QuerySendMode sendMode;
+    private final String acceptHeader;
+    private final String contentEncoding;
+    private final long timeout;
+    private final TimeUnit timeoutUnit;
+
+    /*package*/ PreparedQueryHTTP(String serviceURL, Query query, List<Var> parameters, boolean useValues, int urlLimit,
+                                  HttpClient httpClient, Map<String, String> httpHeaders, Params params, Context context,
+                                  List<String> defaultGraphURIs, List<String> namedGraphURIs,
+                                  QuerySendMode sendMode, String acceptHeader, String contentEncoding,
+                                  long timeout, TimeUnit timeoutUnit) {
+        this.service = serviceURL;
+        this.query = query;
+        this.parameters = List.copyOf(parameters);
+        this.useValues = useValues;
+        this.urlLimit = urlLimit;
+        this.httpClient = httpClient;
+        this.httpHeaders = httpHeaders;
+        this.params = params;
+        this.context = context;
+        this.defaultGraphURIs = defaultGraphURIs;
+        this.namedGraphURIs = namedGraphURIs;
+        this.sendMode = sendMode;
+        this.acceptHeader = acceptHeader;
+        this.contentEncoding = contentEncoding;
+        this.timeout = timeout;
+        this.timeoutUnit = timeoutUnit;
+
+        List<String> segmentList = new ArrayList<>();
+        List<Var> slotList = new ArrayList<>();
+        if ( useValues )
+            valuesTemplate(query, this.parameters, segmentList);
+        else
+            substitutionTemplate(query, this.parameters, segmentList, slotList);
+        this.segments = segmentList.toArray(new String[0]);
+        this.slots = slotList.toArray(new Var[0]);
+        this.encodedSegments = new String[segments.length];
+        for ( int i = 0 ; i < segments.length ; i++ )
+            encodedSegments[i] = HttpLib.urlEncodeQueryString(segments[i]);
+    }
+
+    // Query string with VALUES (?p1 ?p2 ...) { ( ... ) } added.
+    private static void valuesTemplate(Query query, List<Var> parameters, List<String> segments) {
+        if ( query.hasValues() )
+            throw new QueryException("Query already has a VALUES block: can't add parameter values");
+        StringBuilder sb = new StringBuilder(query.toString());
+        sb.append("VALUES (");
+        parameters.forEach(v->sb.append(" ").append(v));
+        sb.append(" ) {\n  (");
+        segments.add(sb.toString());
+        segments.add(" )\n}\n");
+    }
+
+    // Substitute a placeholder IRI for each parameter, serialize, and split the string at the placeholders.
+    private static void substitutionTemplate(Query query, List<Var> parameters, List<String> segments, List<Var> slots) {
+        if ( query.isSelectType() && ! query.isQueryResultStar() ) {
+            for ( Var v : parameters ) {
+                if ( query.getProjectVars().contains(v) )
+                    throw new QueryException("Parameter "+v+" is in the SELECT clause: use VALUES instead");
+            }
+        }
+        Map<Var, Node> substitutions = new HashMap<>();
+        for ( int i = 0 ; i < parameters.size() ; i++ )
+            substitutions.put(parameters.get(i), NodeFactory.createURI(placeholder+i));
+        String qs = QueryTransformOps.transform(query, substitutions).toString();
+        String marker = "<"+placeholder;
+        int idx = 0;
+        for (;;) {
+            int start = qs.indexOf(marker, idx);
+            if ( start < 0 )
+                break;
+            int end = qs.indexOf('>', start);
+            int slot = Integer.parseInt(qs.substring(start+marker.length(), end));
+            segments.add(qs.substring(idx, start));
+            slots.add(parameters.get(slot));
+            idx = end+1;
+        }
+        segments.add(qs.substring(idx));
+    }
+
+    /** The parsed query, without any parameter values. */
+    public Query getQuery() {
+        return query;
+    }
+
+    public QueryType queryType() {
+        return query.queryType();
+    }
+
+    /** The parameter variables. */
+    public List<Var> getParameters() {
+        return parameters;
+    }
+
+    /** Whether parameter values are sent in a VALUES block. */
+    public boolean isUseValues() {
+        return useValues;
+    }
+
+    /**
+     * Create a {@link QueryExec} for the query with the values in the binding for the parameters.
+     * For substitution, all the parameters must have a value; with {@code VALUES}, a parameter
+     * with no value is {@code UNDEF}. Other variables in the binding are ignored.
+     */
+    public QueryExec exec(Binding binding) {
+        Objects.requireNonNull(binding);
+        StringBuilder raw = new StringBuilder(segments[0].length()+256);
+        StringBuilder encoded = new StringBuilder(encodedSegments[0].length()+256);
+        raw.append(segments[0]);
+        encoded.append(encodedSegments[0]);
+        if ( useValues ) {
+            for ( Var v : parameters ) {
+                Node n = binding.get(v);
+                String str = " "+( n == null ? "UNDEF" : term(v, n) );
+                raw.append(str);
+                encoded.append(HttpLib.urlEncodeQueryString(str));
+            }
+            raw.append(segments[1]);
+            encoded.append(encodedSegments[1]);
+        } else {
+            for ( int i = 0 ; i < slots.length ; i++ ) {
+                Var v = slots[i];
+                Node n = binding.get(v);
+                if ( n == null )
+                    throw new QueryExecException("No value for parameter "+v);
+                String str = term(v, n);
+                raw.append(str);
+                encoded.append(HttpLib.urlEncodeQueryString(str));
+                raw.append(segments[i+1]);
+                encoded.append(encodedSegments[i+1]);
+            }
+        }
+        String queryString = raw.toString();
+        // The query was checked when prepared and the values are RDF terms so it is not parsed again.
+        QueryExecHTTP qExec = new QueryExecHTTP(service, null, queryString, urlLimit,
+                                                httpClient, new HashMap<>(httpHeaders), params, context,
+                                                defaultGraphURIs, namedGraphURIs,
+                                                sendMode, acceptHeader, contentEncoding,
+                                                timeout, timeoutUnit);
+        qExec.setQueryParam(new Params.Param(HttpParams.pQuery, queryString, encoded.toString()));
+        return qExec;
+    }
+
+    private static String term(Var v, Node n) {
+        if ( n.isBlank() )
+            throw new QueryExecException("Blank node for parameter "+v+": not allowed in a remote query");
+        if ( ! n.isURI() && ! n.isLiteral() )
+            throw new QueryExecException("Not an RDF term for parameter "+v+": "+n);
+        return FmtUtils.stringForNode(n);
+    }
+
+    @Override
+    public String toString() {
+        return service+" "+parameters+"\n"+query;
+    }
+}
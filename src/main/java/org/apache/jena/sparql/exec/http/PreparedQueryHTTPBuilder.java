@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import static org.apache.jena.http.HttpLib.copyArray;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.jena.http.HttpEnv;
+import org.apache.jena.http.sys.ExecHTTPBuilder;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.Var;
+
+/** Builder for a {@link PreparedQueryHTTP}. */
+public class PreparedQueryHTTPBuilder extends ExecHTTPBuilder<PreparedQueryHTTP, PreparedQueryHTTPBuilder> {
+
+    public static PreparedQueryHTTPBuilder newBuilder() { return new PreparedQueryHTTPBuilder(); }
+
+    private List<Var> parameters = new ArrayList<>();
+    private boolean useValues = false;
+
+    private PreparedQueryHTTPBuilder() {}
+
+    /** Add parameter variables, by name (without "?"). */
+    public PreparedQueryHTTPBuilder parameters(String... varNames) {
+        for ( String name : varNames )
+            parameters.add(Var.alloc(Objects.requireNonNull(name)));
+        return this;
+    }
+
+    /** Add parameter variables. */
+    public PreparedQueryHTTPBuilder parameters(Var... vars) {
+        for ( Var v : vars )
+            parameters.add(Objects.requireNonNull(v));
+        return this;
+    }
+
+    /**
+     * Send parameter values in a {@code VALUES} block after the query.
+     * The parameter variables stay in the query and in its results.
+     */
+    public PreparedQueryHTTPBuilder useValues() {
+        this.useValues = true;
+        return this;
+    }
+
+    /** Substitute parameter values for the variables in the query. This is the default. */
+    public PreparedQueryHTTPBuilder useSubstitution() {
+        this.useValues = false;
+        return this;
+    }
+
+    /** Build a {@link PreparedQueryHTTP}. The query string is parsed, and must be legal SPARQL. */
+    @Override
+    public PreparedQueryHTTP build() {
+        Objects.requireNonNull(serviceURL, "No service URL");
+        if ( queryString == null && query == null )
+            throw new QueryException("No query for PreparedQueryHTTP");
+        Query q = ( query != null ) ? query : QueryFactory.create(queryString);
+        HttpClient hClient = HttpEnv.getHttpClient(serviceURL, httpClient);
+        return new PreparedQueryHTTP(serviceURL, q, parameters, useValues, urlLimit,
+                                     hClient, Collections.unmodifiableMap(new HashMap<>(httpHeaders)), Params.create(params),
+                                     context == null ? null : context.copy(),
+                                     copyArray(defaultGraphURIs), copyArray(namedGraphURIs),
+                                     sendMode, acceptHeader, contentEncoding,
+                                     timeout, timeoutUnit);
+    }
+
+    @Override
+    protected PreparedQueryHTTPBuilder thisBuilder() {
+        return this;
+    }
+}
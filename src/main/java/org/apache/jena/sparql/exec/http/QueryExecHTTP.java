@@ -24,14 +24,17 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.jena.atlas.RuntimeIOException;
 import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
@@ -42,6 +45,8 @@ import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.http.HttpEnv;
 import org.apache.jena.http.HttpLib;
+import org.apache.jena.http.RequestCoalescer;
+import org.apache.jena.http.sys.HttpOperation;
 import org.apache.jena.query.*;
 import org.apache.jena.riot.*;
 import org.apache.jena.riot.resultset.ResultSetLang;
@@ -51,9 +56,14 @@ import org.apache.jena.sparql.ARQException;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphFactory;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.http.HttpParams;
 import org.apache.jena.sparql.exec.QueryExec;
 import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.RowSetMem;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+import org.apache.jena.sparql.exec.RowSetStream;
 import org.apache.jena.sparql.util.Context;
 
 /**
@@ -79,12 +89,15 @@ public class QueryExecHTTP implements QueryExec {
 
     private final QuerySendMode sendMode;
     private int urlLimit = HttpEnv.urlLimit;
+    // Compression of POST request bodies.
+    private final String contentEncoding;
 
     // Protocol
     private List<String> defaultGraphURIs = new ArrayList<>();
     private List<String> namedGraphURIs = new ArrayList<>();
 
-    private boolean closed = false;
+    // Set by abort() and close(), which may be called from another thread.
+    private volatile boolean closed = false;
 
     // Timeouts
     private long connectTimeout = -1;
@@ -106,7 +119,12 @@ public class QueryExecHTTP implements QueryExec {
     private String httpResponseContentType = null;
     // Releasing HTTP input streams is important. We remember this for SELECT result
     // set streaming, and will close it when the execution is closed
-    private InputStream retainedConnection = null;
+    private volatile InputStream retainedConnection = null;
+
+    // The body of the last query request, before any Content-Encoding (null for GET).
+    private String requestBody = null;
+    // The encoded query parameter, made when first needed.
+    private Params.Param queryParam = null;
 
     private HttpClient httpClient = HttpEnv.getDftHttpClient();
 
@@ -115,7 +133,7 @@ public class QueryExecHTTP implements QueryExec {
     public QueryExecHTTP(String serviceURL, Query query, String queryString, int urlLimit,
                          HttpClient httpClient, Map<String, String> httpHeaders, Params params, Context context,
                          List<String> defaultGraphURIs, List<String> namedGraphURIs,
-                         QuerySendMode sendMode, String acceptHeader,
+                         QuerySendMode sendMode, String acceptHeader, String contentEncoding,
                          long timeout, TimeUnit timeoutUnit) {
         this.context = ( context == null ) ? ARQ.getContext().copy() : context.copy();
         this.service = serviceURL;
@@ -126,6 +144,7 @@ public class QueryExecHTTP implements QueryExec {
         this.defaultGraphURIs = defaultGraphURIs;
         this.namedGraphURIs = namedGraphURIs;
         this.sendMode = sendMode;
+        this.contentEncoding = contentEncoding;
         this.acceptHeader = acceptHeader;
         // Important - handled as special case because the defaults vary by query type.
         if ( httpHeaders.containsKey(HttpNames.hAccept) ) {
@@ -155,8 +174,54 @@ public class QueryExecHTTP implements QueryExec {
 
     private RowSet execRowSet() {
         String thisAcceptHeader = dft(acceptHeader, selectAcceptheader);
+        RequestCoalescer coalescer = HttpEnv.requestCoalescer;
+        if ( coalescer != null )
+            return execRowSetCoalesced(coalescer, thisAcceptHeader);
 
         HttpResponse<InputStream> response = query(thisAcceptHeader);
+        return readRowSet(response);
+    }
+
+    // Identical concurrent SELECT requests share one in-memory row set.
+    // Each caller gets its own iterator over the shared rows.
+    // A result with more than coalescer.maxSize() rows is not shared: the caller that
+    // made the exchange streams it, and the waiting callers each make their own request.
+    private RowSet execRowSetCoalesced(RequestCoalescer coalescer, String thisAcceptHeader) {
+        HttpRequest request = queryRequest(thisAcceptHeader);
+        RequestCoalescer.Key key = RequestCoalescer.key(httpClient, request, requestBody);
+        RowSet[] streaming = new RowSet[1];
+        SharedRowSet shared = coalescer.execute(key, ()->{
+            HttpResponse<InputStream> response = executeQuery(request);
+            try {
+                RowSet rowSet = readRowSet(response);
+                List<Binding> rows = new ArrayList<>();
+                while ( rowSet.hasNext() && rows.size() < coalescer.maxSize() )
+                    rows.add(rowSet.next());
+                List<Var> vars = rowSet.getResultVars();
+                if ( rowSet.hasNext() ) {
+                    // Too large to share. Stream the rest; the connection is closed on close().
+                    streaming[0] = new RowSetStream(Iter.concat(rows.iterator(), rowSet), vars);
+                    return null;
+                }
+                return new SharedRowSet(RowSetMem.create(new RowSetStream(rows.iterator(), vars)), httpResponseContentType);
+            } finally {
+                if ( streaming[0] == null ) {
+                    retainedConnection = null;
+                    finish(response);
+                }
+            }
+        });
+        if ( streaming[0] != null )
+            return streaming[0];
+        if ( shared == null ) {
+            HttpResponse<InputStream> response = query(thisAcceptHeader);
+            return readRowSet(response);
+        }
+        httpResponseContentType = shared.contentType;
+        return RowSetMem.create(shared.rows);
+    }
+
+    private RowSet readRowSet(HttpResponse<InputStream> response) {
         InputStream in = HttpLib.handleResponseInputStream(response);
         // Don't assume the endpoint actually gives back the content type we asked for
         String actualContentType = response.headers().firstValue(HttpNames.hContentType).orElse(null);
@@ -175,6 +240,11 @@ public class QueryExecHTTP implements QueryExec {
         }
 
         retainedConnection = in; // This will be closed on close()
+        if ( closed ) {
+            // Aborted before the response was retained.
+            HttpLib.abort(in);
+            throw new QueryCancelledException();
+        }
 
         if (actualContentType == null || actualContentType.equals(""))
             actualContentType = WebContent.contentTypeResultsXML;
@@ -360,14 +430,15 @@ public class QueryExecHTTP implements QueryExec {
 
     @Override
     public Iterator<JsonObject> execJsonItems() {
-        JsonArray array = execJson().getAsArray();
-        List<JsonObject> x = new ArrayList<>(array.size());
-        array.forEach(elt->{
-            if ( ! elt.isObject())
-                throw new QueryExecException("Item in an array from a JSON query isn't an object");
-            x.add(elt.getAsObject());
-        });
-        return x.iterator();
+        checkNotClosed();
+        check(QueryType.CONSTRUCT_JSON);
+        String thisAcceptHeader = dft(acceptHeader, WebContent.contentTypeJSON);
+        HttpResponse<InputStream> response = query(thisAcceptHeader);
+        InputStream in = HttpLib.handleResponseInputStream(response);
+        // Items are parsed as the iterator is used.
+        // The response is read to the end, or closed when this QueryExecHTTP is closed.
+        retainedConnection = in;
+        return IteratorJsonItems.create(in);
     }
 
     private void checkNotClosed() {
@@ -427,6 +498,14 @@ public class QueryExecHTTP implements QueryExec {
 
     // Make a query.
     private HttpResponse<InputStream> query(String reqAcceptHeader) {
+        HttpRequest request = queryRequest(reqAcceptHeader);
+        // Status code has not been processed on the return from execute*
+        return executeQuery(request);
+    }
+
+    // Build the query request. Sets requestBody.
+    // Package access for BenchQueryRequest.
+    /*package*/ HttpRequest queryRequest(String reqAcceptHeader) {
         if (closed)
             throw new ARQException("HTTP execution already closed");
 
@@ -446,28 +525,45 @@ public class QueryExecHTTP implements QueryExec {
         // Same as UpdateExecutionHTTP
         HttpLib.modifyByService(service, context, thisParams,  httpHeaders);
 
-        QuerySendMode actualSendMode = actualSendMode();
+        Params.Param queryParam = queryParam();
+        QuerySendMode actualSendMode = actualSendMode(thisParams, queryParam);
         HttpRequest.Builder builder;
         switch(actualSendMode) {
             case asGetAlways :
+                thisParams.add(queryParam);
                 builder = executeQueryGet(thisParams, reqAcceptHeader);
+                requestBody = null;
                 break;
             case asPostForm :
-                builder = executeQueryPostForm(thisParams, reqAcceptHeader);
+                thisParams.add(queryParam);
+                requestBody = thisParams.httpString();
+                builder = executeQueryPostForm(requestBody, reqAcceptHeader);
                 break;
             case asPostBody :
                 builder = executeQueryPostBody(thisParams, reqAcceptHeader);
+                requestBody = queryString;
                 break;
             default :
                 // Should not happen!
                 throw new HttpException("Send mode not recognized for query request: "+sendMode);
         }
-        HttpRequest request = builder.build();
-        // Status code has not been processed on the return from execute*
-        return executeQuery(request);
+        return builder.build();
+    }
+
+    // Provide the "query=" parameter, already encoded (see PreparedQueryHTTP).
+    /*package*/ void setQueryParam(Params.Param queryParam) {
+        this.queryParam = queryParam;
+    }
+
+    // The "query=" parameter. The query string is encoded once, when first needed,
+    // and used to decide between GET and POST as well as to form the request.
+    private Params.Param queryParam() {
+        if ( queryParam == null )
+            queryParam = new Params.Param(HttpParams.pQuery, queryString);
+        return queryParam;
     }
 
-    private QuerySendMode actualSendMode() {
+    private QuerySendMode actualSendMode(Params thisParams, Params.Param queryParam) {
         int thisLengthLimit = urlLimit;
         switch(sendMode) {
             // Not switchable.
@@ -483,60 +579,78 @@ public class QueryExecHTTP implements QueryExec {
         }
 
         // Only QuerySendMode.asGetWithLimitBody and QuerySendMode.asGetWithLimitForm here.
-        String requestURL = service;
-        // Don't add yet
-        //thisParams.addParam(HttpParams.pQuery, queryString);
-        String qs = params.httpString();
-        // ?query=
-
-        // URL Length, including service (for safety)
-        int length = service.length()+1+HttpParams.pQuery.length()+1+qs.length();
+        // URL Length, including service (for safety), calculated without forming the URL.
+        // service ? params & query=...
+        int length = service.length()+1+queryParam.encoded().length();
+        if ( thisParams.count() > 0 )
+            length += thisParams.httpStringLength()+1;
         if ( length <= thisLengthLimit )
             return QuerySendMode.asGetAlways;
 
         return (sendMode==QuerySendMode.asGetWithLimitBody) ? QuerySendMode.asPostBody : QuerySendMode.asPostForm;
     }
 
+    // The service URL with the parameters, formed in one buffer.
+    private String requestURL(Params thisParams) {
+        if ( thisParams.count() == 0 )
+            return service;
+        StringBuilder sb = new StringBuilder(service.length()+1+thisParams.httpStringLength());
+        sb.append(service).append(service.indexOf('?') < 0 ? '?' : '&');
+        return thisParams.appendHttpString(sb).toString();
+    }
+
     private HttpRequest.Builder executeQueryGet(Params thisParams, String acceptHeader) {
         Objects.requireNonNull(service);
         Objects.requireNonNull(thisParams);
         Objects.requireNonNull(httpClient);
 
-        thisParams.add(HttpParams.pQuery, queryString);
-        String requestURL = requestURL(service, thisParams.httpString());
+        String requestURL = requestURL(thisParams);
 
         HttpRequest.Builder builder = HttpLib.newBuilder(requestURL, httpHeaders, readTimeout, readTimeoutUnit);
         acceptHeader(builder, acceptHeader);
         return builder.GET();
     }
 
-    private HttpRequest.Builder executeQueryPostForm(Params thisParams, String acceptHeader) {
+    private HttpRequest.Builder executeQueryPostForm(String formBody, String acceptHeader) {
         String requestURL = service;
-        thisParams.add(HttpParams.pQuery, queryString);
-        String formBody = thisParams.httpString();
 
         HttpRequest.Builder builder = HttpLib.newBuilder(requestURL, httpHeaders, readTimeout, readTimeoutUnit);
         acceptHeader(builder, acceptHeader);
         // Use an HTML form.
         contentTypeHeader(builder, WebContent.contentTypeHTMLForm);
+        contentEncodingHeader(builder, contentEncoding);
         // Already UTF-8 encoded to ASCII.
-        return builder.POST(BodyPublishers.ofString(formBody, StandardCharsets.US_ASCII));
+        return builder.POST(body(formBody, StandardCharsets.US_ASCII));
     }
 
     // Use SPARQL query body and MIME type.
     private HttpRequest.Builder executeQueryPostBody(Params thisParams, String acceptHeader) {
         // Use thisParams (for default-graph-uri etc)
-        String requestURL = requestURL(service, thisParams.httpString());
+        String requestURL = requestURL(thisParams);
 
         HttpRequest.Builder builder = HttpLib.newBuilder(requestURL, httpHeaders, readTimeout, readTimeoutUnit);
         contentTypeHeader(builder, WebContent.contentTypeSPARQLQuery);
+        contentEncodingHeader(builder, contentEncoding);
         acceptHeader(builder, acceptHeader);
-        return builder.POST(BodyPublishers.ofString(queryString));
+        return builder.POST(body(queryString, StandardCharsets.UTF_8));
+    }
+
+    // Compress if required. ASCII (forms) is a subset of UTF-8.
+    private BodyPublisher body(String string, Charset charset) {
+        if ( contentEncoding == null )
+            return BodyPublishers.ofString(string, charset);
+        return encodedBody(contentEncoding, string);
     }
 
     private HttpResponse<InputStream> executeQuery(HttpRequest request) {
         logQuery(queryString, request);
-        return execute(httpClient, request);
+        HttpResponse<InputStream> response = execute(httpClient, request, HttpOperation.QUERY);
+        if ( closed ) {
+            // Aborted while waiting for the response.
+            HttpLib.abort(response.body());
+            throw new QueryCancelledException();
+        }
+        return response;
     }
 
     private static void logQuery(String queryString, HttpRequest request) {}
@@ -551,6 +665,9 @@ public class QueryExecHTTP implements QueryExec {
     @Override
     public void abort() {
         try {
+            // Do not read any more of the response.
+            if ( retainedConnection != null )
+                HttpLib.abort(retainedConnection);
             close();
         } catch (Exception ex) {
             Log.warn(this, "Error during abort", ex);
@@ -562,12 +679,10 @@ public class QueryExecHTTP implements QueryExec {
         closed = true;
         if (retainedConnection != null) {
             try {
-                // This call may take a long time if the response has not been consumed
-                // as HTTP client will consume the remaining response so it can re-use the
-                // connection. If we're closing when we're not at the end of the stream then
-                // issue a warning to the logs
-                if (retainedConnection.read() != -1)
-                    Log.warn(this, "HTTP response not fully consumed, if HTTP Client is reusing connections (its default behaviour) then it will consume the remaining response data which may take a long time and cause this application to become unresponsive");
+                // If the response has not been consumed, read a limited amount to
+                // get to the end so the connection can be reused, else abort the
+                // exchange (see HttpEnv.finishDrainBytes, HttpEnv.finishDrainMillis).
+                HttpLib.finish(retainedConnection);
                 retainedConnection.close();
             } catch (RuntimeIOException | java.io.IOException e) {
                 // If we are closing early and the underlying stream is chunk encoded
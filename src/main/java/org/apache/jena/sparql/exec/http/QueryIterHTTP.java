@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import org.apache.jena.atlas.io.IndentedWriter;
+import org.apache.jena.atlas.lib.Closeable;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.jena.sparql.engine.iterator.QueryIter;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.serializer.SerializationContext;
+
+/**
+ * A {@code QueryIterator} over the live results of a remote query. Rows are
+ * read from the HTTP response as the iterator is used. Closing the iterator
+ * closes the {@link QueryExec} and so the HTTP response; cancelling it aborts
+ * the HTTP exchange.
+ * <p>
+ * Also used for SERVICE results partly written to disk, so that closing the
+ * iterator early deletes the file.
+ */
+class QueryIterHTTP extends QueryIter {
+
+    private final QueryExec qExec;
+    private final RowSet rowSet;
+
+    /*package*/ QueryIterHTTP(QueryExec qExec, RowSet rowSet) {
+        super(null);
+        this.qExec = qExec;
+        this.rowSet = rowSet;
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        try {
+            return rowSet.hasNext();
+        } catch (HttpException ex) {
+            throw QueryExceptionHTTP.rewrap(ex);
+        }
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        try {
+            return rowSet.next();
+        } catch (HttpException ex) {
+            throw QueryExceptionHTTP.rewrap(ex);
+        }
+    }
+
+    @Override
+    protected void closeIterator() {
+        // A materialized RowSet may hold a temporary file.
+        if ( rowSet instanceof Closeable )
+            ((Closeable)rowSet).close();
+        qExec.close();
+    }
+
+    @Override
+    protected void requestCancel() {
+        qExec.abort();
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt) {
+        out.print(Lib.className(this));
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.util.*;
+
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.graph.Node;
+import org.apache.jena.http.HttpEnv;
+import org.apache.jena.http.HttpLib;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpAsQuery;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.table.TableN;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.iterator.QueryIter1;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.FmtUtils;
+
+/**
+ * Bind join for SERVICE: the incoming bindings are sent in blocks, as a VALUES
+ * block joined with the SERVICE pattern, and the results are joined locally to
+ * the bindings they came from.
+ * <p>
+ * Each row of the VALUES block carries a row number so that each result is
+ * matched to its incoming bindings exactly. Incoming bindings with the same values
+ * for the variables of the SERVICE pattern share a row.
+ * <p>
+ * A block ends after {@code batchSize} incoming bindings, or when another row would
+ * make the request too long to send with HTTP GET ({@link HttpEnv#urlLimit}). If
+ * the SERVICE query is too long for GET without any VALUES block, it is sent by POST
+ * and only {@code batchSize} applies.
+ */
+class QueryIterServiceBatch extends QueryIter1 {
+
+    private final OpService opService;
+    private final Context context;
+    private final int batchSize;
+    // Variables of the SERVICE pattern, in a fixed order.
+    private final List<Var> patternVars;
+    private final Var rowVar;
+    // Space for the VALUES block, in encoded characters; -1 for no limit.
+    private final long valuesLimit;
+
+    private Binding pending = null;
+    private Iterator<Binding> current = null;
+
+    /*package*/ QueryIterServiceBatch(QueryIterator input, OpService opService, int batchSize, ExecutionContext execCxt) {
+        super(input, execCxt);
+        this.opService = opService;
+        this.context = execCxt.getContext();
+        this.batchSize = batchSize;
+        this.patternVars = new ArrayList<>(OpVars.visibleVars(opService.getSubOp()));
+        this.rowVar = rowVar(patternVars);
+        this.valuesLimit = valuesLimit(opService);
+    }
+
+    private static Var rowVar(Collection<Var> vars) {
+        String name = "__row";
+        for ( int i = 0 ; vars.contains(Var.alloc(name)) ; i++ )
+            name = "__row"+i;
+        return Var.alloc(name);
+    }
+
+    private static long valuesLimit(OpService opService) {
+        String serviceURL = opService.getService().getURI();
+        String queryString = OpAsQuery.asQuery(opService.getSubOp()).toString();
+        // service?query=... with room for the VALUES keyword and variables.
+        long length = serviceURL.length() + 7 + HttpLib.urlEncodeQueryString(queryString).length() + 100;
+        if ( length > HttpEnv.urlLimit )
+            // Sent by POST anyway.
+            return -1;
+        return HttpEnv.urlLimit - length;
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        for (;;) {
+            if ( current != null && current.hasNext() )
+                return true;
+            if ( pending == null && ! getInput().hasNext() )
+                return false;
+            current = nextBlock();
+        }
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        return current.next();
+    }
+
+    /** Read a block of incoming bindings, call the service, and join the results. */
+    private Iterator<Binding> nextBlock() {
+        Map<List<Node>, Integer> rowIndex = new HashMap<>();
+        List<List<Binding>> rowInputs = new ArrayList<>();
+        List<List<Node>> rows = new ArrayList<>();
+        BitSet boundVars = new BitSet(patternVars.size());
+        long valuesLength = 0;
+
+        for ( int count = 0 ; count < batchSize ; ) {
+            Binding binding;
+            if ( pending != null ) {
+                binding = pending;
+                pending = null;
+            } else if ( getInput().hasNext() )
+                binding = getInput().nextBinding();
+            else
+                break;
+
+            List<Node> key = new ArrayList<>(patternVars.size());
+            for ( Var v : patternVars )
+                key.add(binding.get(v));
+            Integer idx = rowIndex.get(key);
+            if ( idx == null ) {
+                if ( valuesLimit >= 0 ) {
+                    long rowLength = encodedLength(key, rows.size());
+                    if ( count > 0 && valuesLength + rowLength > valuesLimit ) {
+                        // Does not fit; start the next block with it.
+                        pending = binding;
+                        break;
+                    }
+                    valuesLength += rowLength;
+                }
+                idx = rows.size();
+                rowIndex.put(key, idx);
+                rows.add(key);
+                rowInputs.add(new ArrayList<>(1));
+                for ( int i = 0 ; i < key.size() ; i++ ) {
+                    if ( key.get(i) != null )
+                        boundVars.set(i);
+                }
+            }
+            rowInputs.get(idx).add(binding);
+            count++;
+        }
+        return execBlock(rows, rowInputs, boundVars);
+    }
+
+    private Iterator<Binding> execBlock(List<List<Node>> rows, List<List<Binding>> rowInputs, BitSet boundVars) {
+        // VALUES (?__row ?bound1 ?bound2 ...)
+        List<Var> vars = new ArrayList<>();
+        vars.add(rowVar);
+        boundVars.stream().forEach(i->vars.add(patternVars.get(i)));
+        TableN table = new TableN(vars);
+        for ( int idx = 0 ; idx < rows.size() ; idx++ ) {
+            List<Node> row = rows.get(idx);
+            BindingBuilder builder = Binding.builder();
+            builder.add(rowVar, NodeValue.makeInteger(idx).asNode());
+            boundVars.stream().forEach(i->{
+                Node n = row.get(i);
+                if ( n != null )
+                    builder.add(patternVars.get(i), n);
+            });
+            table.addBinding(builder.build());
+        }
+        Op opRemote = OpJoin.create(OpTable.create(table), opService.getSubOp());
+        OpService opBatch = new OpService(opService.getService(), opRemote, false);
+
+        List<Binding> results = new ArrayList<>();
+        QueryIterator qIter = null;
+        try {
+            qIter = Service2.exec(opBatch, context);
+            while ( qIter.hasNext() ) {
+                Binding result = qIter.next();
+                int idx = rowNumber(result.get(rowVar), rows.size());
+                if ( idx < 0 )
+                    continue;
+                for ( Binding input : rowInputs.get(idx) )
+                    results.add(merge(input, result));
+            }
+        } catch (RuntimeException ex) {
+            if ( ! opService.getSilent() )
+                throw ex;
+            Log.warn(this, "SERVICE " + opService.getService().getURI() + " : " + ex.getMessage());
+            // SILENT: the incoming bindings, unchanged.
+            results.clear();
+            rowInputs.forEach(results::addAll);
+        } finally {
+            if ( qIter != null )
+                qIter.close();
+        }
+        return results.iterator();
+    }
+
+    private static int rowNumber(Node node, int size) {
+        if ( node == null || ! node.isLiteral() )
+            return -1;
+        try {
+            int idx = Integer.parseInt(node.getLiteralLexicalForm());
+            return ( idx >= 0 && idx < size ) ? idx : -1;
+        } catch (NumberFormatException ex) { return -1; }
+    }
+
+    private Binding merge(Binding input, Binding result) {
+        BindingBuilder builder = Binding.builder(input);
+        Iterator<Var> vars = result.vars();
+        while ( vars.hasNext() ) {
+            Var v = vars.next();
+            if ( ! v.equals(rowVar) && ! input.contains(v) )
+                builder.add(v, result.get(v));
+        }
+        return builder.build();
+    }
+
+    // Length of "(idx term1 term2 ...)" when encoded for a URL.
+    private static long encodedLength(List<Node> row, int idx) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('(').append(idx);
+        for ( Node n : row ) {
+            sb.append(' ');
+            sb.append( n == null ? "UNDEF" : FmtUtils.stringForNode(n) );
+        }
+        sb.append(')');
+        return HttpLib.urlEncodeQueryString(sb.toString()).length();
+    }
+
+    @Override
+    protected void requestSubCancel() {}
+
+    @Override
+    protected void closeSubIterator() {
+        current = null;
+        pending = null;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.jena.atlas.io.IndentedWriter;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.sparql.algebra.Table;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.table.TableN;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIter;
+import org.apache.jena.sparql.serializer.SerializationContext;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * Run several SERVICE requests at the same time, then continue with their results.
+ * <p>
+ * The requests start when the iterator is created. The first use of the iterator
+ * waits for all the results, and then calls {@code rest} with a table of the results
+ * of each SERVICE, in order. Cancelling or closing the iterator aborts requests
+ * that are still running.
+ */
+class QueryIterServiceParallel extends QueryIter {
+
+    private final List<Request> requests;
+    private final Function<List<Table>, QueryIterator> rest;
+    private volatile boolean cancelled = false;
+    private QueryIterator current = null;
+
+    /*package*/ QueryIterServiceParallel(List<OpService> services, Executor executor,
+                                         Function<List<Table>, QueryIterator> rest, ExecutionContext execCxt) {
+        super(execCxt);
+        this.rest = rest;
+        Context context = execCxt.getContext();
+        this.requests = new ArrayList<>(services.size());
+        for ( OpService opService : services ) {
+            Request request = new Request(opService, context);
+            requests.add(request);
+            try {
+                executor.execute(request.task);
+            } catch (RejectedExecutionException ex) {
+                // Run in this thread.
+                request.task.run();
+            }
+        }
+    }
+
+    /** One SERVICE request, and its HTTP query execution once it has been created. */
+    private static class Request {
+        final FutureTask<Table> task;
+        private QueryExecHTTP qExec = null;
+        private boolean aborted = false;
+
+        Request(OpService opService, Context context) {
+            this.task = new FutureTask<>(()->execService(opService, context, this::started));
+        }
+
+        private synchronized void started(QueryExecHTTP qExec) {
+            this.qExec = qExec;
+            if ( aborted )
+                qExec.abort();
+        }
+
+        /** Abort the HTTP exchange, and interrupt the request if it is waiting for a response. */
+        void abort() {
+            QueryExecHTTP x;
+            synchronized(this) {
+                aborted = true;
+                x = qExec;
+            }
+            if ( x != null )
+                x.abort();
+            task.cancel(true);
+        }
+    }
+
+    private static Table execService(OpService opService, Context context, Consumer<QueryExecHTTP> onRequest) {
+        TableN table = new TableN();
+        QueryIterator qIter = null;
+        try {
+            qIter = Service2.exec(opService, context, onRequest);
+            while ( qIter.hasNext() )
+                table.addBinding(qIter.next());
+        } catch (RuntimeException ex) {
+            if ( ! opService.getSilent() )
+                throw ex;
+            // SILENT: one solution with no bindings.
+            table = new TableN();
+            table.addBinding(BindingFactory.root());
+        } finally {
+            if ( qIter != null )
+                qIter.close();
+        }
+        return table;
+    }
+
+    private QueryIterator current() {
+        if ( current == null ) {
+            List<Table> tables = new ArrayList<>(requests.size());
+            try {
+                for ( Request request : requests )
+                    tables.add(request.task.get());
+            } catch (InterruptedException | CancellationException ex) {
+                cancelRequests();
+                throw new QueryCancelledException();
+            } catch (ExecutionException ex) {
+                cancelRequests();
+                Throwable cause = ex.getCause();
+                if ( cause instanceof RuntimeException )
+                    throw (RuntimeException)cause;
+                if ( cause instanceof Error )
+                    throw (Error)cause;
+                throw new CompletionException(cause);
+            }
+            if ( cancelled )
+                throw new QueryCancelledException();
+            current = rest.apply(tables);
+        }
+        return current;
+    }
+
+    private void cancelRequests() {
+        requests.forEach(Request::abort);
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        return current().hasNext();
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        return current().next();
+    }
+
+    @Override
+    protected void closeIterator() {
+        cancelRequests();
+        if ( current != null )
+            current.close();
+    }
+
+    @Override
+    protected void requestCancel() {
+        cancelled = true;
+        cancelRequests();
+        QueryIterator qIter = current;
+        if ( qIter != null )
+            qIter.cancel();
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt) {
+        out.print(Lib.className(this));
+        out.print(" services="+requests.size());
+    }
+}
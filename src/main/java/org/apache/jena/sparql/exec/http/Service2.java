@@ -19,14 +19,19 @@
 package org.apache.jena.sparql.exec.http;
 
 import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.http.HttpEnv;
 import org.apache.jena.http.RegistryHttpClient;
+import org.apache.jena.http.sys.CircuitBreaker;
 import org.apache.jena.query.ARQ;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecException;
@@ -36,10 +41,16 @@ import org.apache.jena.sparql.algebra.Op ;
 import org.apache.jena.sparql.algebra.OpAsQuery ;
 import org.apache.jena.sparql.algebra.op.OpService ;
 import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
 import org.apache.jena.sparql.engine.http.HttpParams;
 import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
 import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
 import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.RowSetMem;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+import org.apache.jena.sparql.exec.RowSetSpillable;
+import org.apache.jena.sparql.exec.RowSetStream;
 import org.apache.jena.sparql.syntax.Element;
 import org.apache.jena.sparql.syntax.ElementSubQuery;
 import org.apache.jena.sparql.util.Context ;
@@ -60,6 +71,22 @@ public class Service2 {
     public static final Symbol httpServiceAllowed = SystemARQ.allocSymbol("httpServiceAllowed");
     // Not connection timeout which is now in HttpClient
     public static final Symbol httpQueryTimeout = SystemARQ.allocSymbol("httpQueryTimeout");
+    // Memory budget (estimated bytes) for SERVICE results; above this, results are kept on disk.
+    public static final Symbol httpServiceMemoryLimit = SystemARQ.allocSymbol("httpServiceMemoryLimit");
+    // Stream SERVICE results, rather than read them all before continuing.
+    // true/false for all services, or a collection of service URLs.
+    public static final Symbol httpServiceStreaming = SystemARQ.allocSymbol("httpServiceStreaming");
+    // Number of incoming bindings sent in one request by OpExecutorHTTP.
+    public static final Symbol httpServiceBatchSize = SystemARQ.allocSymbol("httpServiceBatchSize");
+    public static /* final */ int dftServiceBatchSize = 100;
+    // Send independent SERVICE requests at the same time (OpExecutorHTTP). Default true.
+    public static final Symbol httpServiceParallel = SystemARQ.allocSymbol("httpServiceParallel");
+    // SERVICE result cache: a ServiceResultCache, or true for a cache for each query execution.
+    public static final Symbol httpServiceCache = SystemARQ.allocSymbol("httpServiceCache");
+    // Where the cache for a query execution is kept.
+    private static final Symbol httpServiceExecutionCache = SystemARQ.allocSymbol("httpServiceExecutionCache");
+    // Fail fast for services that failed recently: a ServiceNegativeCache, or true for ServiceNegativeCache.get(). Default off.
+    public static final Symbol httpServiceNegativeCache = SystemARQ.allocSymbol("httpServiceNegativeCache");
     // ContextBuilder?
 
     private static Context emptyContext = Context.emptyContext();
@@ -88,6 +115,14 @@ public class Service2 {
     }
 
     public static QueryIterator exec(OpService op, Context context) {
+        return exec(op, context, null);
+    }
+
+    /**
+     * Execute a SERVICE. If not null, {@code onRequest} is called with the
+     * {@link QueryExecHTTP} before the request is sent, so that it can be aborted.
+     */
+    /*package*/ static QueryIterator exec(OpService op, Context context, Consumer<QueryExecHTTP> onRequest) {
         if ( context == null )
             context = emptyContext;
 
@@ -103,6 +138,14 @@ public class Service2 {
             throw new QueryExecException("Service URI not bound: " + op.getService());
         String serviceURL = op.getService().getURI();
 
+        // SERVICE SILENT and the service is known to be unavailable: don't wait.
+        // The result of a failed SERVICE SILENT is one solution with no bindings.
+        if ( silent ) {
+            CircuitBreaker circuitBreaker = HttpEnv.getCircuitBreaker(serviceURL);
+            if ( circuitBreaker != null && circuitBreaker.isOpen() )
+                return QueryIterPlainWrapper.create(Iter.singleton(BindingFactory.root()));
+        }
+
         Op opRemote = op.getSubOp();
         Query query;
         if ( false ) {
@@ -126,6 +169,23 @@ public class Service2 {
         Params serviceParams = getServiceParamsFromContext(serviceURL, context);
 
         HttpClient httpClient = chooseHttpClient(serviceURL, context);
+
+        ServiceResultCache cache = serviceCache(context);
+        String cacheKey = null;
+        if ( cache != null ) {
+            cacheKey = ServiceResultCache.key(serviceURL, httpClient, query.toString(), serviceParams);
+            RowSetRewindable rows = cache.get(cacheKey);
+            if ( rows != null )
+                return QueryIterPlainWrapper.create(RowSetMem.create(rows));
+        }
+
+        // The service failed recently: don't wait.
+        ServiceNegativeCache negativeCache = negativeCache(context);
+        if ( negativeCache != null && negativeCache.checkDown(serviceURL, httpClient) ) {
+            if ( silent )
+                return QueryIterPlainWrapper.create(Iter.singleton(BindingFactory.root()));
+            throw QueryExceptionHTTP.rewrap(new HttpException("Service unavailable after a recent failure: "+serviceURL));
+        }
         // -- End setup
 
         // Build the execution
@@ -138,16 +198,54 @@ public class Service2 {
                 .httpClient(httpClient)
                 .sendMode(QuerySendMode.asGetWithLimitBody)
                 .build();
+        if ( onRequest != null )
+            onRequest.accept(qExec);
         try {
+            RowSet rowSet = qExec.select();
+            if ( cache != null ) {
+                // Cached results are held in memory. Read up to the cache limit.
+                List<Binding> buffer = new ArrayList<>();
+                long maxRows = cache.maxRows();
+                while ( buffer.size() <= maxRows && rowSet.hasNext() )
+                    buffer.add(rowSet.next());
+                if ( buffer.size() <= maxRows ) {
+                    RowSetRewindable rows = RowSetMem.create(new RowSetStream(buffer.iterator(), rowSet.getResultVars()));
+                    cache.put(cacheKey, rows);
+                    return QueryIterPlainWrapper.create(RowSetMem.create(rows));
+                }
+                // Too large to cache: continue as if there were no cache.
+                rowSet = new RowSetStream(Iter.concat(buffer.iterator(), rowSet), rowSet.getResultVars());
+            }
+            if ( streamingFromContext(serviceURL, context) )
+                // Results are read as the iterator is used.
+                // Closing or cancelling the iterator ends the HTTP exchange.
+                return new QueryIterHTTP(qExec, rowSet);
             // Detach from the network stream.
-            RowSet rowSet = qExec.select().materialize();
+            rowSet = RowSetSpillable.materialize(rowSet, memoryLimitFromContext(context));
+            if ( rowSet instanceof RowSetSpillable && ((RowSetSpillable)rowSet).isSpilled() )
+                // Closing the iterator deletes the spill file.
+                return new QueryIterHTTP(qExec, rowSet);
             QueryIterator qIter = QueryIterPlainWrapper.create(rowSet);
             return qIter;
         } catch (HttpException ex) {
+            if ( negativeCache != null )
+                negativeCache.failure(serviceURL, ex);
             throw QueryExceptionHTTP.rewrap(ex);
         }
     }
 
+    private static ServiceNegativeCache negativeCache(Context context) {
+        // Off unless set.
+        Object obj = context.get(httpServiceNegativeCache);
+        if ( obj == null )
+            return null;
+        if ( obj instanceof ServiceNegativeCache )
+            return (ServiceNegativeCache)obj;
+        if ( context.isTrue(httpServiceNegativeCache) )
+            return ServiceNegativeCache.get();
+        return null;
+    }
+
     private static HttpClient chooseHttpClient(String serviceURL, Context context) {
         // -- RegistryHttpClient : preferred way to set a custom HttpClient
         HttpClient httpClient = RegistryHttpClient.get().find(serviceURL);
@@ -180,6 +278,81 @@ public class Service2 {
         return parseTimeout(context.get(httpQueryTimeout));
     }
 
+    private static ServiceResultCache serviceCache(Context context) {
+        Object obj = context.get(httpServiceCache);
+        if ( obj == null )
+            return null;
+        if ( obj instanceof ServiceResultCache )
+            return (ServiceResultCache)obj;
+        boolean perExecution = ( obj instanceof Boolean ) ? (Boolean)obj
+                             : ( obj instanceof String ) ? Boolean.parseBoolean((String)obj)
+                             : false;
+        if ( ! perExecution )
+            return null;
+        synchronized(context) {
+            ServiceResultCache cache = context.get(httpServiceExecutionCache);
+            if ( cache == null ) {
+                cache = ServiceResultCache.createForExecution();
+                context.set(httpServiceExecutionCache, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * The SERVICE result cache of a query execution, or null if there isn't one.
+     * Use with the context of the query execution, for example
+     * {@code QueryExec.getContext()}, to see the hit counts.
+     */
+    public static ServiceResultCache executionServiceCache(Context context) {
+        return context.get(httpServiceExecutionCache);
+    }
+
+    /** Whether to stream the results from a service. */
+    /*package*/ static boolean streamingFromContext(String serviceURL, Context context) {
+        Object obj = context.get(httpServiceStreaming);
+        if ( obj == null )
+            return false;
+        if ( obj instanceof Boolean )
+            return (Boolean)obj;
+        if ( obj instanceof String )
+            return Boolean.parseBoolean((String)obj);
+        if ( obj instanceof Collection )
+            return ((Collection<?>)obj).contains(serviceURL);
+        Log.warn(Service2.class, "Can't interpret streaming setting: " + obj);
+        return false;
+    }
+
+    /** Block size for bind joins, defaulting to {@link #dftServiceBatchSize}. */
+    /*package*/ static int batchSizeFromContext(Context context) {
+        Object obj = context.get(httpServiceBatchSize);
+        if ( obj == null )
+            return dftServiceBatchSize;
+        try {
+            if ( obj instanceof Number )
+                return ((Number)obj).intValue();
+            if ( obj instanceof String )
+                return Integer.parseInt((String)obj);
+        } catch (Exception ex) {}
+        Log.warn(Service2.class, "Can't interpret batch size: " + obj);
+        return dftServiceBatchSize;
+    }
+
+    /** Memory budget for SERVICE results, defaulting to {@link RowSetSpillable#dftMemoryBudget}. */
+    /*package*/ static long memoryLimitFromContext(Context context) {
+        Object obj = context.get(httpServiceMemoryLimit);
+        if ( obj == null )
+            return RowSetSpillable.dftMemoryBudget;
+        try {
+            if ( obj instanceof Number )
+                return ((Number)obj).longValue();
+            if ( obj instanceof String )
+                return Long.parseLong((String)obj);
+        } catch (Exception ex) {}
+        Log.warn(Service2.class, "Can't interpret memory limit: " + obj);
+        return RowSetSpillable.dftMemoryBudget;
+    }
+
     /** Find the timeout. Return -1L for no setting. */
     /*package*/ static long parseTimeout(Object obj) {
         if ( obj == null )
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.http.HttpLib;
+import org.apache.jena.http.sys.CircuitBreakerOpenException;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.web.HttpSC;
+
+/**
+ * Services that have recently failed, so that SERVICE calls to them fail fast
+ * instead of waiting for a connect timeout each time.
+ * <p>
+ * A service is marked down when the connection to it fails (connection refused or
+ * connect timeout) or the response status is 502, 503 or 504, which indicate the
+ * service is not available. Other errors, such as a 500 for one bad query or a slow
+ * response, do not mark the service down. It stays down for
+ * {@code initialBackoff}. While it is down, SERVICE SILENT returns one solution with no
+ * bindings straight away, and SERVICE without SILENT fails straight away.
+ * <p>
+ * When the period ends, one background request ({@code ASK{}}) checks the service,
+ * and calls still fail fast until it completes. If the check succeeds, the service is
+ * no longer down. If it fails, the service is down again for twice the previous
+ * period, up to {@code maxBackoff}.
+ * <p>
+ * This is off by default. Set the context symbol {@link Service2#httpServiceNegativeCache}
+ * to a {@code ServiceNegativeCache}, or to true to use the shared cache {@link #get()}.
+ */
+public class ServiceNegativeCache {
+
+    private static ServiceNegativeCache singleton = create(Duration.ofSeconds(10), Duration.ofMinutes(5));
+    public static ServiceNegativeCache get() { return singleton; }
+
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Map<String, Down> down = new ConcurrentHashMap<>();
+
+    private final LongAdder failFast = new LongAdder();
+    private final LongAdder markedDown = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+
+    private static class Down {
+        // Guarded by "this".
+        long backoffNanos;
+        long until;
+        boolean probing = false;
+
+        Down(long backoffNanos) {
+            this.backoffNanos = backoffNanos;
+            this.until = System.nanoTime() + backoffNanos;
+        }
+    }
+
+    /** Create a cache where services are down for {@code initialBackoff}, doubling up to {@code maxBackoff}. */
+    public static ServiceNegativeCache create(Duration initialBackoff, Duration maxBackoff) {
+        return new ServiceNegativeCache(initialBackoff, maxBackoff);
+    }
+
+    private ServiceNegativeCache(Duration initialBackoff, Duration maxBackoff) {
+        Objects.requireNonNull(initialBackoff);
+        Objects.requireNonNull(maxBackoff);
+        if ( initialBackoff.isNegative() || initialBackoff.isZero() )
+            throw new IllegalArgumentException("Backoff must be positive: "+initialBackoff);
+        if ( maxBackoff.compareTo(initialBackoff) < 0 )
+            throw new IllegalArgumentException("Maximum backoff is less than the initial backoff: "+maxBackoff);
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /** Number of SERVICE calls that failed fast, or returned no results for SILENT. */
+    public long failFast()      { return failFast.sum(); }
+    /** Number of times a service was marked down after a failed SERVICE call. */
+    public long markedDown()    { return markedDown.sum(); }
+    /** Number of background checks sent. */
+    public long probes()        { return probes.sum(); }
+
+    public void resetCounters() {
+        failFast.reset();
+        markedDown.reset();
+        probes.reset();
+    }
+
+    /** Whether a service is marked down. */
+    public boolean isDown(String serviceURL) {
+        return down.containsKey(serviceURL);
+    }
+
+    /**
+     * Mark a service as down for the initial period. If it is already down, this does
+     * not change the period: calls started before the service was marked down can
+     * fail afterwards.
+     */
+    public void markDown(String serviceURL) {
+        Down d = new Down(initialBackoffNanos);
+        if ( down.putIfAbsent(serviceURL, d) == null )
+            markedDown.increment();
+    }
+
+    /** The service is available. */
+    public void markUp(String serviceURL) {
+        down.remove(serviceURL);
+    }
+
+    /** Remove all entries. */
+    public void clear() {
+        down.clear();
+    }
+
+    /**
+     * Whether to fail a SERVICE call now. If the down period has ended, this starts
+     * a background check using the {@code HttpClient}.
+     */
+    /*package*/ boolean checkDown(String serviceURL, HttpClient httpClient) {
+        Down d = down.get(serviceURL);
+        if ( d == null )
+            return false;
+        boolean probe = false;
+        synchronized(d) {
+            if ( System.nanoTime() - d.until >= 0 && ! d.probing ) {
+                d.probing = true;
+                probe = true;
+            }
+        }
+        if ( probe )
+            probe(serviceURL, httpClient, d);
+        failFast.increment();
+        return true;
+    }
+
+    /** Record the outcome of a SERVICE request that failed. */
+    /*package*/ void failure(String serviceURL, HttpException ex) {
+        if ( ex instanceof CircuitBreakerOpenException )
+            // No request was sent.
+            return;
+        int status = ex.getStatusCode();
+        // No connection. A timeout after connecting is not counted: the service may just be slow.
+        Throwable cause = ex.getCause();
+        boolean noConnection = status < 0 &&
+                ( cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException );
+        if ( noConnection || unavailable(status) )
+            markDown(serviceURL);
+    }
+
+    /** Status codes for a service, or a gateway to it, that is not available. */
+    private static boolean unavailable(int status) {
+        return status == HttpSC.BAD_GATEWAY_502
+            || status == HttpSC.SERVICE_UNAVAILABLE_503
+            || status == HttpSC.GATEWAY_TIMEOUT_504;
+    }
+
+    private void probe(String serviceURL, HttpClient httpClient, Down d) {
+        probes.increment();
+        try {
+            String sep = serviceURL.contains("?") ? "&" : "?";
+            URI uri = URI.create(serviceURL+sep+"query="+HttpLib.urlEncodeQueryString("ASK{}"));
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Accept", WebContent.contentTypeResultsJSON)
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            httpClient.sendAsync(request, BodyHandlers.discarding())
+                .whenComplete((response, th)->{
+                    if ( th == null && ! unavailable(response.statusCode()) )
+                        down.remove(serviceURL, d);
+                    else
+                        endProbe(d);
+                });
+        } catch (RuntimeException ex) {
+            endProbe(d);
+        }
+    }
+
+    private void endProbe(Down d) {
+        synchronized(d) {
+            d.probing = false;
+            backoff(d);
+        }
+    }
+
+    // Holding the lock on d.
+    private void backoff(Down d) {
+        d.backoffNanos = Math.min(2*d.backoffNanos, maxBackoffNanos);
+        d.until = System.nanoTime() + d.backoffNanos;
+    }
+}
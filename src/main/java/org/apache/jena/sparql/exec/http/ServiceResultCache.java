@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.sparql.exec.RowSetRewindable;
+
+/**
+ * A cache of SERVICE results, keyed by service URL, the {@link HttpClient} used
+ * (which may carry credentials), the remote query and the additional request parameters.
+ * <p>
+ * The cache holds up to {@code maxEntries} results and {@code maxRows} rows in total,
+ * evicting the least recently used entries. Each entry expires after the time-to-live,
+ * if there is one.
+ * <p>
+ * A cache is used for SERVICE by setting the context symbol
+ * {@link Service2#httpServiceCache}. A shared cache, used across query executions:
+ * <pre>
+ *   ServiceResultCache cache = ServiceResultCache.create(1000, 1_000_000, Duration.ofSeconds(30));
+ *   ARQ.getContext().set(Service2.httpServiceCache, cache);
+ * </pre>
+ * Setting the symbol to {@code true} uses a cache for each query execution, without
+ * a time-to-live (see {@link Service2#executionServiceCache}).
+ */
+public class ServiceResultCache {
+
+    /** Default maximum number of entries for a per-execution cache. */
+    public static /* final */ long dftMaxEntries = 10_000;
+    /** Default maximum number of rows for a per-execution cache. */
+    public static /* final */ long dftMaxRows = 1_000_000;
+
+    private final long maxEntries;
+    private final long maxRows;
+    // -1 for no expiry.
+    private final long ttlMillis;
+
+    // Access-ordered for LRU. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long rows = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache of up to {@code maxEntries} results and {@code maxRows} rows,
+     * each kept for at most {@code ttl}. A null {@code ttl} means entries do not expire.
+     */
+    public static ServiceResultCache create(long maxEntries, long maxRows, Duration ttl) {
+        return new ServiceResultCache(maxEntries, maxRows, ttl);
+    }
+
+    /** A cache for one query execution: the default size limits, no time-to-live. */
+    /*package*/ static ServiceResultCache createForExecution() {
+        return new ServiceResultCache(dftMaxEntries, dftMaxRows, null);
+    }
+
+    private ServiceResultCache(long maxEntries, long maxRows, Duration ttl) {
+        if ( maxEntries <= 0 )
+            throw new IllegalArgumentException("maxEntries must be positive: "+maxEntries);
+        if ( maxRows <= 0 )
+            throw new IllegalArgumentException("maxRows must be positive: "+maxRows);
+        if ( ttl != null && ( ttl.isNegative() || ttl.isZero() ) )
+            throw new IllegalArgumentException("Time-to-live must be positive: "+ttl);
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        this.ttlMillis = ( ttl == null ) ? -1 : ttl.toMillis();
+    }
+
+    /** Number of SERVICE calls answered from the cache. */
+    public long hits()              { return hits.sum(); }
+    /** Number of SERVICE calls sent to the remote service. */
+    public long misses()            { return misses.sum(); }
+    /** Number of entries evicted because the cache was full. */
+    public long evictions()         { return evictions.sum(); }
+
+    /** Number of entries. */
+    public synchronized int size()      { return entries.size(); }
+
+    /** Number of rows in the cached results. */
+    public synchronized long rows()     { return rows; }
+
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /** Remove all entries. */
+    public synchronized void clear() {
+        entries.clear();
+        rows = 0;
+    }
+
+    // Identifies each HttpClient in cache keys, so that results are not shared between
+    // clients with different credentials. Weak keys: HttpClient uses identity equality.
+    private static final Map<HttpClient, Long> clientIds = new WeakHashMap<>();
+    private static long clientCounter = 0;
+
+    private static long clientId(HttpClient httpClient) {
+        synchronized(clientIds) {
+            return clientIds.computeIfAbsent(httpClient, c->++clientCounter);
+        }
+    }
+
+    /** The cache key. */
+    /*package*/ static String key(String serviceURL, HttpClient httpClient, String queryString, Params params) {
+        String paramString = ( params == null ) ? "" : params.httpString();
+        return serviceURL + "\n" + clientId(httpClient) + "\n" + paramString + "\n" + queryString;
+    }
+
+    /** The maximum number of rows; a larger result is not cached. */
+    /*package*/ long maxRows() {
+        return maxRows;
+    }
+
+    /** Get a result, or null. Counts a hit or a miss. */
+    /*package*/ RowSetRewindable get(String key) {
+        RowSetRewindable value = null;
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if ( entry != null ) {
+                if ( entry.expiresAt < 0 || System.currentTimeMillis() < entry.expiresAt )
+                    value = entry.value;
+                else {
+                    entries.remove(key);
+                    rows -= entry.rows;
+                }
+            }
+        }
+        if ( value != null )
+            hits.increment();
+        else
+            misses.increment();
+        return value;
+    }
+
+    /** Add a result. The {@code RowSetRewindable} is shared, and should not be used by the caller. */
+    /*package*/ void put(String key, RowSetRewindable value) {
+        long size = value.size();
+        if ( size > maxRows )
+            return;
+        long expiresAt = ( ttlMillis < 0 ) ? -1 : System.currentTimeMillis()+ttlMillis;
+        synchronized(this) {
+            Entry old = entries.remove(key);
+            if ( old != null )
+                rows -= old.rows;
+            entries.put(key, new Entry(value, size, expiresAt));
+            rows += size;
+            Iterator<Entry> iter = entries.values().iterator();
+            while ( ( rows > maxRows || entries.size() > maxEntries ) && iter.hasNext() ) {
+                Entry e = iter.next();
+                iter.remove();
+                rows -= e.rows;
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class Entry {
+        final RowSetRewindable value;
+        final long rows;
+        // Milliseconds since the epoch; -1 for no expiry.
+        final long expiresAt;
+
+        Entry(RowSetRewindable value, long rows, long expiresAt) {
+            this.value = value;
+            this.rows = rows;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -26,12 +26,14 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.jena.http.HttpEnv;
 import org.apache.jena.http.HttpLib;
+import org.apache.jena.http.sys.HttpOperation;
 import org.apache.jena.riot.WebContent;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.sparql.engine.http.HttpParams;
@@ -50,6 +52,7 @@ public class UpdateExecHTTP implements UpdateExec {
     private final Map<String, String> httpHeaders;
     private final HttpClient httpClient;
     private final UpdateSendMode sendMode;
+    private final String contentEncoding;
     private final Params params;
     private final List<String> usingGraphURIs;
     private final List<String> usingNamedGraphURIs;
@@ -59,7 +62,7 @@ public class UpdateExecHTTP implements UpdateExec {
                                List<String> usingGraphURIs,
                                List<String> usingNamedGraphURIs,
                                Map<String, String> httpHeaders, UpdateSendMode sendMode,
-                               Context context) {
+                               String contentEncoding, Context context) {
         this.context = context;
         this.service = serviceURL;
         //this.update = update;
@@ -71,6 +74,7 @@ public class UpdateExecHTTP implements UpdateExec {
         this.usingNamedGraphURIs = usingNamedGraphURIs;
         this.httpHeaders = httpHeaders;
         this.sendMode = sendMode;
+        this.contentEncoding = contentEncoding;
     }
 
 //    @Override
@@ -115,7 +119,7 @@ public class UpdateExecHTTP implements UpdateExec {
             String qs = thisParams.httpString();
             requestURL = requestURL(requestURL, qs);
         }
-        executeUpdate(requestURL, BodyPublishers.ofString(str), WebContent.contentTypeSPARQLUpdate);
+        executeUpdate(requestURL, body(str, StandardCharsets.UTF_8), WebContent.contentTypeSPARQLUpdate);
     }
 
     private void executePostForm(Params thisParams) {
@@ -123,15 +127,23 @@ public class UpdateExecHTTP implements UpdateExec {
         thisParams.add(HttpParams.pUpdate, updateString);
         String formString = thisParams.httpString();
         // Everything goes into the form body, no use of the request URI query string.
-        executeUpdate(requestURL, BodyPublishers.ofString(formString, StandardCharsets.US_ASCII), WebContent.contentTypeHTMLForm);
+        executeUpdate(requestURL, body(formString, StandardCharsets.US_ASCII), WebContent.contentTypeHTMLForm);
+    }
+
+    // Form strings are already encoded to ASCII which is a subset of UTF-8.
+    private BodyPublisher body(String string, Charset charset) {
+        if ( contentEncoding == null )
+            return BodyPublishers.ofString(string, charset);
+        return HttpLib.encodedBody(contentEncoding, string);
     }
 
     private String executeUpdate(String requestURL, BodyPublisher body, String contentType) {
         HttpRequest.Builder builder = HttpLib.newBuilder(requestURL, httpHeaders, -1L, null);
         builder = contentTypeHeader(builder, contentType);
+        builder = contentEncodingHeader(builder, contentEncoding);
         HttpRequest request = builder.POST(body).build();
         logUpdate(updateString, request);
-        HttpResponse<InputStream> response = HttpLib.execute(httpClient, request);
+        HttpResponse<InputStream> response = HttpLib.execute(httpClient, request, HttpOperation.UPDATE);
         return handleResponseRtnString(response);
     }
 
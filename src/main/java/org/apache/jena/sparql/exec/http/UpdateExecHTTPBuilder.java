@@ -40,7 +40,7 @@ public class UpdateExecHTTPBuilder {
     private String serviceURL;
     private String updateString;
     private Params params = Params.create();
-    private boolean allowCompression;
+    private String contentEncoding = null;
     private Map<String, String> httpHeaders = new HashMap<>();
     private HttpClient httpClient;
     private UpdateSendMode sendMode = UpdateSendMode.systemtDefault;
@@ -119,6 +119,18 @@ public class UpdateExecHTTPBuilder {
     }
 
 
+    /**
+     * Compress the update request body with the {@code Content-Encoding} (e.g. "gzip").
+     * The server must support the encoding.
+     * The default, null, is to send the request uncompressed.
+     *
+     * @see org.apache.jena.http.sys.ContentEncoderRegistry
+     */
+    public UpdateExecHTTPBuilder contentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return this;
+    }
+
     // The old code, UpdateProcessRemote, didn't support this so may be not
     // provide it as its not being used.
 
@@ -190,6 +202,6 @@ public class UpdateExecHTTPBuilder {
                                   copyArray(usingGraphURIs),
                                   copyArray(usingNamedGraphURIs),
                                   new HashMap<>(httpHeaders),
-                                  sendMode, cxt);
+                                  sendMode, contentEncoding, cxt);
     }
 }
@@ -21,6 +21,7 @@ package org.apache.jena;
 import org.apache.jena.http.TS_JenaHttp;
 import org.apache.jena.integration.TS_RDFLinkIntegration;
 import org.apache.jena.rdflink.TS_RDFLink;
+import org.apache.jena.sparql.exec.TestRowSetSpillable;
 import org.apache.jena.sparql.exec.http.TS_SparqlExec;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -28,6 +29,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
     TS_JenaHttp.class
+    , TestRowSetSpillable.class
     , TS_SparqlExec.class
     , TS_RDFLink.class
     , TS_RDFLinkIntegration.class
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.sparql.exec.http.QueryExecHTTP;
+import org.apache.jena.test.conn.EnvTest;
+
+/**
+ * Benchmark: throughput and thread count for the {@link HttpEnv} {@link HttpClient} profiles,
+ * with many concurrent blocking query executions against an in-process server.
+ * <p>
+ * Threads are reported in two ways. "Executor tasks" is the peak number of tasks running
+ * at once on the profile's executor, counted by wrapping the executor; for a thread-per-task
+ * executor, with virtual threads or not, this is the number of threads. To wrap the executor,
+ * the {@link HttpClient} is rebuilt from {@link HttpEnv#httpClientBuilder()} with the
+ * profile's executor. The {@value HttpEnv#profileDefault} profile has no executor set
+ * (the JDK creates one internally) so it is run with its own {@link HttpClient} and this
+ * figure is not available. "Platform threads" is the peak JVM thread count from
+ * {@link ThreadMXBean} over the baseline before the run, not counting the caller threads
+ * created by the benchmark. Virtual threads are not included in this figure; it also
+ * includes any threads the in-process server adds.
+ * <p>
+ * This is not part of the test suite. Run with {@code main}; optional arguments are
+ * the number of caller threads (default 200) and the number of queries per caller (default 50).
+ */
+public class BenchHttpClientProfiles {
+
+    public static void main(String... args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int queriesPerCaller = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        String[] profiles = { HttpEnv.profileDefault, HttpEnv.profileHighConcurrency, HttpEnv.profileBounded };
+
+        EnvTest env = EnvTest.create("/ds");
+        try {
+            String queryURL = env.datasetPath("/query");
+            // Warm up: JIT and server.
+            for ( String profile : profiles )
+                run(HttpEnv.getProfile(profile), queryURL, 20, 20);
+            System.out.printf("Callers=%d, queries per caller=%d\n", callers, queriesPerCaller);
+            for ( String profile : profiles ) {
+                Result r = run(HttpEnv.getProfile(profile), queryURL, callers, queriesPerCaller);
+                String tasks = ( r.executorTasks < 0 ) ? "n/a" : Integer.toString(r.executorTasks);
+                System.out.printf("%-18s %8.0f queries/s  executor tasks=%s  platform threads over baseline=%d\n",
+                                  profile, r.throughput, tasks, r.extraThreads);
+            }
+        } finally {
+            EnvTest.stop(env);
+        }
+    }
+
+    private static class Result {
+        final double throughput;
+        final int executorTasks;
+        final int extraThreads;
+        Result(double throughput, int executorTasks, int extraThreads) {
+            this.throughput = throughput;
+            this.executorTasks = executorTasks;
+            this.extraThreads = extraThreads;
+        }
+    }
+
+    private static Result run(HttpClient profileClient, String queryURL, int callers, int queriesPerCaller) throws Exception {
+        // Count the tasks running on the profile's executor, if it has one.
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(-1);
+        HttpClient httpClient = profileClient.executor().map(executor->{
+            maxRunning.set(0);
+            Executor counting = task->executor.execute(()->{
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try { task.run(); } finally { running.decrementAndGet(); }
+            });
+            return HttpEnv.httpClientBuilder().executor(counting).build();
+        }).orElse(profileClient);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int baseline = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+        ExecutorService callerThreads = Executors.newFixedThreadPool(callers);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for ( int i = 0 ; i < callers ; i++ ) {
+            futures.add(callerThreads.submit(()->{
+                for ( int j = 0 ; j < queriesPerCaller ; j++ ) {
+                    try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder()
+                            .service(queryURL).httpClient(httpClient).queryString("ASK{}").build() ) {
+                        qExec.ask();
+                    }
+                }
+            }));
+        }
+        for ( Future<?> f : futures )
+            f.get();
+        long elapsed = System.nanoTime() - start;
+        callerThreads.shutdown();
+        callerThreads.awaitTermination(10, TimeUnit.SECONDS);
+        double seconds = elapsed / 1e9;
+        // Not the benchmark's own caller threads.
+        int extraThreads = Math.max(0, threads.getPeakThreadCount() - baseline - callers);
+        return new Result(callers * queriesPerCaller / seconds, maxRunning.get(), extraThreads);
+    }
+}
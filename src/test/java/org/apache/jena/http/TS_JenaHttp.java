@@ -28,6 +28,14 @@ import org.junit.runners.Suite;
     , TestHttpRDF.class
     , TestAsyncHttpRDF.class
     , TestAuthRemote.class
+    , TestContentDecoder.class
+    , TestHttpMetrics.class
+    , TestRetryPolicy.class
+    , TestHttpRDFCache.class
+    , TestHttpLib.class
+    , TestRequestCoalescer.class
+    , TestAdmissionControl.class
+    , TestCircuitBreaker.class
 })
 
 public class TS_JenaHttp { }
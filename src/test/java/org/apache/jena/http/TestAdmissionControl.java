@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.http.sys.AdmissionControl;
+import org.apache.jena.http.sys.RegistryAdmissionControl;
+import org.apache.jena.riot.WebContent;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestAdmissionControl {
+
+    private static HttpServer server;
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", TestAdmissionControl::handle);
+        server.start();
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @After public void after() {
+        RegistryAdmissionControl.get().clear();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = "<http://example/s> <http://example/p> 1 .".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", WebContent.contentTypeTurtle);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+    }
+
+    private static String url() {
+        return "http://localhost:"+server.getAddress().getPort()+"/data";
+    }
+
+    @Test public void maxInFlight() throws Exception {
+        AdmissionControl ac = AdmissionControl.newBuilder().maxInFlight(2).build();
+        AdmissionControl.Permit p1 = ac.acquire(0);
+        AdmissionControl.Permit p2 = ac.acquire(0);
+        CompletableFuture<AdmissionControl.Permit> f3 = ac.acquireAsync(0);
+        assertFalse(f3.isDone());
+        assertEquals(2, ac.inFlight());
+        assertEquals(1, ac.queueDepth());
+        p1.release();
+        AdmissionControl.Permit p3 = f3.get(5, TimeUnit.SECONDS);
+        assertEquals(0, ac.queueDepth());
+        assertEquals(2, ac.inFlight());
+        // Release is idempotent.
+        p1.release();
+        assertEquals(2, ac.inFlight());
+        p2.release();
+        p3.release();
+        assertEquals(0, ac.inFlight());
+        assertEquals(3, ac.admitted());
+        assertEquals(1, ac.queued());
+        assertEquals(3, ac.waitTime().count());
+    }
+
+    @Test public void fifo() throws Exception {
+        AdmissionControl ac = AdmissionControl.newBuilder().maxInFlight(1).build();
+        AdmissionControl.Permit p1 = ac.acquire(0);
+        CompletableFuture<AdmissionControl.Permit> f2 = ac.acquireAsync(0);
+        CompletableFuture<AdmissionControl.Permit> f3 = ac.acquireAsync(0);
+        p1.release();
+        assertTrue(f2.isDone());
+        assertFalse(f3.isDone());
+        f2.get().release();
+        assertTrue(f3.isDone());
+        f3.get().release();
+    }
+
+    @Test public void timeout() {
+        AdmissionControl ac = AdmissionControl.newBuilder().maxInFlight(1).timeout(Duration.ofMillis(50)).build();
+        AdmissionControl.Permit p1 = ac.acquire(0);
+        try {
+            ac.acquire(0);
+            fail("Expected a timeout");
+        } catch (HttpException ex) {}
+        assertEquals(1, ac.timedOut());
+        assertEquals(0, ac.queueDepth());
+        p1.release();
+        assertEquals(0, ac.inFlight());
+    }
+
+    @Test public void requestRate() {
+        AdmissionControl ac = AdmissionControl.newBuilder().requestRate(20).requestBurst(1).build();
+        long start = System.nanoTime();
+        for ( int i = 0 ; i < 3 ; i++ )
+            ac.acquire(0).release();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 2 waits of 50ms.
+        assertTrue("Time: "+millis, millis >= 80);
+    }
+
+    @Test public void byteRate() {
+        AdmissionControl ac = AdmissionControl.newBuilder().byteRate(1000).byteBurst(100).build();
+        long start = System.nanoTime();
+        ac.acquire(100).release();
+        ac.acquire(100).release();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Time: "+millis, millis >= 80);
+        // No body - not limited by bytes.
+        ac.acquire(0).release();
+    }
+
+    @Test public void httpGet() {
+        AdmissionControl ac = AdmissionControl.newBuilder().maxInFlight(1).timeout(Duration.ofSeconds(5)).build();
+        RegistryAdmissionControl.get().add(url(), ac);
+        for ( int i = 0 ; i < 3 ; i++ ) {
+            Graph graph = HttpRDF.httpGetGraph(url());
+            assertEquals(1, graph.size());
+        }
+        assertEquals(3, ac.admitted());
+        assertEquals(0, ac.inFlight());
+    }
+
+    @Test public void asyncGet() throws Exception {
+        AdmissionControl ac = AdmissionControl.newBuilder().maxInFlight(1).build();
+        RegistryAdmissionControl.get().addPrefix("http://localhost:"+server.getAddress().getPort()+"/", ac);
+        CompletableFuture<Graph> f1 = AsyncHttpRDF.asyncGetGraph(url());
+        CompletableFuture<Graph> f2 = AsyncHttpRDF.asyncGetGraph(url());
+        assertEquals(1, f1.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, f2.get(5, TimeUnit.SECONDS).size());
+        assertEquals(2, ac.admitted());
+        assertEquals(0, ac.inFlight());
+    }
+}
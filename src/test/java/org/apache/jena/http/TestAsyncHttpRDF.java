@@ -18,12 +18,29 @@
 
 package org.apache.jena.http;
 
+import static org.apache.jena.fuseki.test.FusekiTest.expect404;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.http.sys.AdmissionControl;
+import org.apache.jena.http.sys.ParseExecutor;
+import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphFactory;
 import org.apache.jena.sparql.graph.GraphFactory;
@@ -86,4 +103,149 @@ public class TestAsyncHttpRDF {
         AsyncHttpRDF.getOrElseThrow(cf);
         assertEquals(3, Iter.count(dsg.find()));
     }
+
+    @Test public void asyncHttpRDF_put_post_delete() {
+        String gURL = url("/ds?graph=http://example/async");
+        try {
+            AsyncHttpRDF.getOrElseThrow(AsyncHttpRDF.asyncPutGraph(gURL, SSE.parseGraph("(graph (:s :p 1))")));
+            AsyncHttpRDF.getOrElseThrow(AsyncHttpRDF.asyncPostGraph(gURL, SSE.parseGraph("(graph (:s :p 2))")));
+            Graph graph = AsyncHttpRDF.getOrElseThrow(AsyncHttpRDF.asyncGetGraph(gURL));
+            assertEquals(2, graph.size());
+        } finally {
+            AsyncHttpRDF.getOrElseThrow(AsyncHttpRDF.asyncDeleteGraph(gURL));
+        }
+        expect404(()->HttpRDF.httpGetGraph(gURL));
+    }
+
+    @Test public void asyncHttpRDF_put_many() {
+        int N = 50;
+        List<CompletableFuture<Void>> cfs = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ ) {
+            Graph graph = SSE.parseGraph("(graph (:s :p "+i+"))");
+            cfs.add(AsyncHttpRDF.asyncPutGraph(url("/ds?graph=http://example/async"+i), graph));
+        }
+        AsyncHttpRDF.getOrElseThrow(CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0])));
+        cfs.clear();
+        for ( int i = 0 ; i < N ; i++ )
+            cfs.add(AsyncHttpRDF.asyncDeleteGraph(url("/ds?graph=http://example/async"+i)));
+        AsyncHttpRDF.getOrElseThrow(CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0])));
+        DatasetGraph dsg = AsyncHttpRDF.getOrElseThrow(AsyncHttpRDF.asyncGetDatasetGraph(url("/ds")));
+        assertEquals(3, Iter.count(dsg.find()));
+    }
+
+    @Test public void asyncHttpRDF_uploadExecutor() {
+        // Many uploads in flight, serialized by two threads.
+        int N = 100;
+        Executor dft = AsyncHttpRDF.getUploadExecutor();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        AtomicInteger count = new AtomicInteger(0);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try {
+            AsyncHttpRDF.setUploadExecutor(task->{
+                count.incrementAndGet();
+                pool.execute(()->{
+                    threads.add(Thread.currentThread());
+                    task.run();
+                });
+            });
+            List<CompletableFuture<Void>> cfs = new ArrayList<>();
+            for ( int i = 0 ; i < N ; i++ ) {
+                Graph graph = SSE.parseGraph("(graph (:s :p "+i+"))");
+                cfs.add(AsyncHttpRDF.asyncPutGraph(url("/ds?graph=http://example/upload"+i), graph));
+            }
+            AsyncHttpRDF.getOrElseThrow(CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0])));
+        } finally {
+            AsyncHttpRDF.setUploadExecutor(dft);
+            pool.shutdown();
+        }
+        assertTrue(count.get() >= N);
+        assertTrue(threads.size() <= 2);
+        List<CompletableFuture<Void>> cfs = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ )
+            cfs.add(AsyncHttpRDF.asyncDeleteGraph(url("/ds?graph=http://example/upload"+i)));
+        AsyncHttpRDF.getOrElseThrow(CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0])));
+    }
+
+    @Test public void asyncHttpRDF_uploadAdmission() {
+        // Many uploads, at most two in progress even with an unbounded writer pool.
+        int N = 50;
+        Executor dftExecutor = AsyncHttpRDF.getUploadExecutor();
+        AdmissionControl dftAdmission = AsyncHttpRDF.getUploadAdmission();
+        AdmissionControl admission = AdmissionControl.newBuilder().maxInFlight(2).build();
+        ExecutorService pool = Executors.newCachedThreadPool();
+        AtomicInteger writers = new AtomicInteger(0);
+        AtomicInteger maxWriters = new AtomicInteger(0);
+        try {
+            AsyncHttpRDF.setUploadAdmission(admission);
+            AsyncHttpRDF.setUploadExecutor(task->pool.execute(()->{
+                maxWriters.accumulateAndGet(writers.incrementAndGet(), Math::max);
+                try { task.run(); } finally { writers.decrementAndGet(); }
+            }));
+            List<CompletableFuture<Void>> cfs = new ArrayList<>();
+            for ( int i = 0 ; i < N ; i++ ) {
+                Graph graph = SSE.parseGraph("(graph (:s :p "+i+"))");
+                cfs.add(AsyncHttpRDF.asyncPutGraph(url("/ds?graph=http://example/admit"+i), graph));
+            }
+            AsyncHttpRDF.getOrElseThrow(CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0])));
+        } finally {
+            AsyncHttpRDF.setUploadAdmission(dftAdmission);
+            AsyncHttpRDF.setUploadExecutor(dftExecutor);
+            pool.shutdown();
+        }
+        assertEquals(N, admission.admitted());
+        assertEquals(0, admission.inFlight());
+        assertTrue("Writers: "+maxWriters.get(), maxWriters.get() <= 2);
+        List<CompletableFuture<Void>> cfs = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ )
+            cfs.add(AsyncHttpRDF.asyncDeleteGraph(url("/ds?graph=http://example/admit"+i)));
+        AsyncHttpRDF.getOrElseThrow(CompletableFuture.allOf(cfs.toArray(new CompletableFuture<?>[0])));
+    }
+
+    @Test public void asyncHttpRDF_push_404() {
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        expect404(()->AsyncHttpRDF.getOrElseThrow(
+                AsyncHttpRDF.asyncPutDataset(HttpEnv.getDftHttpClient(), env.serverPath("no-such-dataset"), dsg, RDFFormat.NQUADS, null)));
+    }
+
+    @Test public void asyncHttpRDF_parseExecutor() {
+        Executor dft = AsyncHttpRDF.getParseExecutor();
+        ParseExecutor executor = ParseExecutor.create(2, 10);
+        try {
+            AsyncHttpRDF.setParseExecutor(executor);
+            var cf = AsyncHttpRDF.asyncGetGraph(url("/ds?default"));
+            var graph = AsyncHttpRDF.getOrElseThrow(cf);
+            assertEquals(1, graph.size());
+            // The future completes inside the parse task so the
+            // task completion counters may not have been updated yet.
+            assertEquals(1, executor.submitted());
+        } finally {
+            AsyncHttpRDF.setParseExecutor(dft);
+            executor.shutdown();
+        }
+    }
+
+    @Test public void parseExecutor_callerRunsWhenFull() throws Exception {
+        ParseExecutor executor = ParseExecutor.create(1, 1);
+        CountDownLatch block = new CountDownLatch(1);
+        try {
+            executor.execute(()->{
+                try { block.await(); } catch (InterruptedException ex) {}
+            });
+            // Wait for the first task to start so the queue is empty.
+            while ( executor.active() == 0 )
+                Thread.sleep(1);
+            executor.execute(()->{});
+            // Queue full - runs on this thread.
+            Thread[] ranOn = new Thread[1];
+            CompletableFuture<Void> cf = CompletableFuture.completedFuture(null)
+                    .thenRunAsync(()->ranOn[0] = Thread.currentThread(), executor);
+            assertTrue(cf.isDone());
+            assertFalse(cf.isCompletedExceptionally());
+            assertEquals(Thread.currentThread(), ranOn[0]);
+            assertEquals(1, executor.callerRuns());
+        } finally {
+            block.countDown();
+            executor.shutdown();
+        }
+    }
 }
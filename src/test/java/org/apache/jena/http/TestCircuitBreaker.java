@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.http.sys.CircuitBreaker;
+import org.apache.jena.http.sys.CircuitBreaker.State;
+import org.apache.jena.http.sys.CircuitBreakerOpenException;
+import org.apache.jena.http.sys.RegistryCircuitBreaker;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestCircuitBreaker {
+
+    @After public void after() {
+        RegistryCircuitBreaker.get().clear();
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failure) {
+        assertTrue(breaker.tryAcquire());
+        if ( failure )
+            breaker.onFailure(0);
+        else
+            breaker.onSuccess(0);
+    }
+
+    @Test public void closed_to_open() {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().windowSize(4).minimumCalls(4).failureRateThreshold(0.5).build();
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, false);
+        assertEquals(State.CLOSED, breaker.state());
+        call(breaker, true);
+        // 2 of 4.
+        assertEquals(State.OPEN, breaker.state());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.rejected());
+    }
+
+    @Test public void window_slides() {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().windowSize(2).minimumCalls(2).failureRateThreshold(1.0).build();
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, true);
+        assertEquals(State.CLOSED, breaker.state());
+        call(breaker, true);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test public void half_open_to_closed() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(1).openDuration(Duration.ofMillis(20)).build();
+        call(breaker, true);
+        assertEquals(State.OPEN, breaker.state());
+        Thread.sleep(50);
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.state());
+        // Only one trial call.
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(0);
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(0.0, breaker.failureRate(), 0);
+    }
+
+    @Test public void half_open_to_open() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(1).openDuration(Duration.ofMillis(20)).build();
+        call(breaker, true);
+        Thread.sleep(50);
+        call(breaker, true);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test public void half_open_cancel() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(1).openDuration(Duration.ofMillis(20)).build();
+        call(breaker, true);
+        Thread.sleep(50);
+        assertTrue(breaker.tryAcquire());
+        breaker.cancel();
+        // The trial call is available again.
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test public void slow_calls() {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(2).windowSize(2)
+                .slowCallDuration(Duration.ofMillis(100)).slowCallRateThreshold(0.5).build();
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(Duration.ofMillis(10).toNanos());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(Duration.ofMillis(200).toNanos());
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test public void status_codes() {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(2).windowSize(2).failureRateThreshold(0.5).build();
+        assertTrue(breaker.tryAcquire());
+        breaker.onResponse(404, 0);
+        assertEquals(State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        breaker.onResponse(503, 0);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test public void listener() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().name("test").minimumCalls(1).openDuration(Duration.ofMillis(20)).build();
+        List<String> events = new ArrayList<>();
+        breaker.addListener((cb, from, to)->events.add(from+"->"+to));
+        call(breaker, true);
+        Thread.sleep(50);
+        call(breaker, false);
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), events);
+    }
+
+    private static String noServerURL() throws IOException {
+        int port;
+        try ( ServerSocket socket = new ServerSocket(0) ) {
+            port = socket.getLocalPort();
+        }
+        return "http://localhost:"+port+"/data";
+    }
+
+    @Test public void httpFailFast() throws Exception {
+        String url = noServerURL();
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(2).build();
+        RegistryCircuitBreaker.get().add(url, breaker);
+        for ( int i = 0 ; i < 2 ; i++ ) {
+            try {
+                HttpRDF.httpGetGraph(url);
+                fail("Expected an exception");
+            } catch (HttpException ex) {
+                assertFalse(ex instanceof CircuitBreakerOpenException);
+            }
+        }
+        assertEquals(State.OPEN, breaker.state());
+        try {
+            HttpRDF.httpGetGraph(url);
+            fail("Expected an exception");
+        } catch (CircuitBreakerOpenException ex) {}
+
+        CompletableFuture<?> cf = AsyncHttpRDF.asyncGetGraph(url);
+        try {
+            cf.get();
+            fail("Expected an exception");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof CircuitBreakerOpenException);
+        }
+        assertEquals(2, breaker.rejected());
+    }
+}
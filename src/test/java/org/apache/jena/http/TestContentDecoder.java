@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.http.sys.ContentDecoderRegistry;
+import org.apache.jena.http.sys.RegistryAcceptEncoding;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestContentDecoder {
+
+    private static String DATA = "<http://example/s> <http://example/p> \"abc\" .\n";
+
+    @After public void after() {
+        RegistryAcceptEncoding.get().clear();
+        ContentDecoderRegistry.get().unregister("x-test");
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream x = new ByteArrayOutputStream();
+        try ( OutputStream out = new GZIPOutputStream(x) ) { out.write(bytes); }
+        return x.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream x = new ByteArrayOutputStream();
+        try ( OutputStream out = new DeflaterOutputStream(x) ) { out.write(bytes); }
+        return x.toByteArray();
+    }
+
+    private static String decode(String encoding, byte[] bytes) {
+        InputStream in = HttpLib.decodeInputStream(encoding, new ByteArrayInputStream(bytes));
+        return IO.readWholeFileAsUTF8(in);
+    }
+
+    private static byte[] bytes() { return DATA.getBytes(StandardCharsets.UTF_8); }
+
+    @Test public void decode_identity() {
+        assertEquals(DATA, decode("", bytes()));
+        assertEquals(DATA, decode("identity", bytes()));
+    }
+
+    @Test public void decode_gzip() throws IOException {
+        assertEquals(DATA, decode("gzip", gzip(bytes())));
+        assertEquals(DATA, decode("x-gzip", gzip(bytes())));
+    }
+
+    @Test public void decode_deflate() throws IOException {
+        assertEquals(DATA, decode("deflate", deflate(bytes())));
+    }
+
+    @Test public void decode_multiple() throws IOException {
+        // Applied deflate, then gzip.
+        assertEquals(DATA, decode("deflate, gzip", gzip(deflate(bytes()))));
+    }
+
+    @Test public void decode_empty() {
+        assertEquals("", decode("gzip", new byte[0]));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void decode_unknown() {
+        decode("x-unknown", bytes());
+    }
+
+    @Test public void decode_registered() {
+        ContentDecoderRegistry.get().register("x-test", input->input);
+        assertEquals(DATA, decode("x-test", bytes()));
+        assertTrue(ContentDecoderRegistry.get().acceptEncoding().contains("x-test"));
+    }
+
+    @Test public void acceptEncoding_registry() {
+        String url = "http://example/dataset/query";
+        assertNull(HttpEnv.getAcceptEncoding(url));
+        RegistryAcceptEncoding.get().addPrefix("http://example/", RegistryAcceptEncoding.COMPRESSED);
+        String x = HttpEnv.getAcceptEncoding(url);
+        assertTrue(x.contains("gzip"));
+        RegistryAcceptEncoding.get().add(url, "identity");
+        assertNull(HttpEnv.getAcceptEncoding(url));
+    }
+
+    @Test public void encode_decode_gzip() {
+        byte[] bytes = HttpLib.encodedBytes("gzip", out->{
+            try { out.write(bytes()); } catch (IOException ex) { IO.exception(ex); }
+        });
+        assertEquals(DATA, decode("gzip", bytes));
+    }
+
+    @Test public void encode_decode_deflate() {
+        byte[] bytes = HttpLib.encodedBytes("deflate", out->{
+            try { out.write(bytes()); } catch (IOException ex) { IO.exception(ex); }
+        });
+        assertEquals(DATA, decode("deflate", bytes));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestHttpLib {
+
+    /** Input stream that records close. */
+    private static class TrackInputStream extends ByteArrayInputStream {
+        boolean closed = false;
+        TrackInputStream(int size) { super(new byte[size]); }
+        @Override public void close() throws IOException { closed = true; super.close(); }
+        int remaining() { return count - pos; }
+    }
+
+    @Test public void drain_01() {
+        TrackInputStream in = new TrackInputStream(1000);
+        assertTrue(HttpLib.drainOrAbort(in, 10_000, -1));
+        assertFalse(in.closed);
+        assertEquals(0, in.remaining());
+    }
+
+    @Test public void drain_02() {
+        TrackInputStream in = new TrackInputStream(100_000);
+        assertFalse(HttpLib.drainOrAbort(in, 1000, -1));
+        assertTrue(in.closed);
+        assertTrue(in.remaining() > 0);
+    }
+
+    @Test public void drain_03() {
+        // No limit.
+        TrackInputStream in = new TrackInputStream(100_000);
+        assertTrue(HttpLib.drainOrAbort(in, -1, -1));
+        assertFalse(in.closed);
+    }
+
+    @Test public void drain_04() {
+        // Exact limit.
+        TrackInputStream in = new TrackInputStream(1000);
+        assertTrue(HttpLib.drainOrAbort(in, 1000, -1));
+    }
+
+    @Test public void drain_time() {
+        // Slow, endless input.
+        InputStream in = new InputStream() {
+            @Override public int read() throws IOException {
+                return read(new byte[1], 0, 1);
+            }
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                try { Thread.sleep(5); } catch (InterruptedException ex) {}
+                return Math.min(len, 10);
+            }
+        };
+        assertFalse(HttpLib.drainOrAbort(in, -1, 20));
+    }
+
+    @Test(timeout = 5000)
+    public void drain_time_blocked() {
+        // A read that blocks until the stream is closed.
+        CountDownLatch closed = new CountDownLatch(1);
+        InputStream in = new InputStream() {
+            @Override public int read() throws IOException {
+                return read(new byte[1], 0, 1);
+            }
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                try { closed.await(); } catch (InterruptedException ex) {}
+                throw new IOException("closed");
+            }
+            @Override public void close() {
+                closed.countDown();
+            }
+        };
+        assertFalse(HttpLib.drainOrAbort(in, -1, 20));
+        assertEquals(0, closed.getCount());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import static org.apache.jena.fuseki.test.FusekiTest.expect404;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.http.sys.HttpMetrics;
+import org.apache.jena.http.sys.HttpOperation;
+import org.apache.jena.http.sys.LatencyHistogram;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.exec.http.GSP;
+import org.apache.jena.sparql.exec.http.QueryExecHTTP;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.test.conn.EnvTest;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestHttpMetrics {
+    private static EnvTest env;
+
+    @BeforeClass public static void beforeClass() {
+        env = EnvTest.create("/ds");
+    }
+
+    @Before public void before() {
+        env.clear();
+        HttpMetrics.get().reset();
+        HttpMetrics.get().enable();
+    }
+
+    @After public void after() {
+        HttpMetrics.get().disable();
+    }
+
+    @AfterClass public static void afterClass() {
+        EnvTest.stop(env);
+    }
+
+    private static String queryURL()        { return env.datasetPath("/query"); }
+    private static String gspServiceURL()   { return env.datasetPath("/data"); }
+
+    @Test public void histogram_01() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.p50());
+        for ( int i = 1 ; i <= 100 ; i++ )
+            h.record(i);
+        assertEquals(100, h.count());
+        assertEquals(100, h.max());
+        // Within the bucket precision.
+        assertTrue(h.p50() >= 50 && h.p50() < 57);
+        assertTrue(h.p99() >= 99 && h.p99() <= 100);
+    }
+
+    @Test public void histogram_02() {
+        // Bucket boundaries are contiguous.
+        for ( long v = 0 ; v < 100_000 ; v++ ) {
+            int idx = LatencyHistogram.index(v);
+            assertTrue(LatencyHistogram.lowerBound(idx) <= v);
+            assertTrue(v <= LatencyHistogram.upperBound(idx));
+        }
+        int idx = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(idx));
+    }
+
+    @Test public void classify_01() {
+        assertEquals(HttpOperation.QUERY, classify("http://host/ds?query=ASK%7B%7D", null));
+        assertEquals(HttpOperation.UPDATE, classify("http://host/ds", WebContent.contentTypeSPARQLUpdate));
+        assertEquals(HttpOperation.GSP, classify("http://host/ds?default", null));
+        assertEquals(HttpOperation.GSP, classify("http://host/ds?graph=http://example/g", null));
+        assertEquals(HttpOperation.GSP, classify("http://host/ds", WebContent.contentTypeTurtle+"; charset=utf-8"));
+        assertEquals(HttpOperation.HTTP, classify("http://host/ds", null));
+    }
+
+    private static HttpOperation classify(String url, String contentType) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url));
+        if ( contentType != null )
+            builder.header("Content-Type", contentType).POST(BodyPublishers.noBody());
+        return HttpOperation.classify(builder.build());
+    }
+
+    @Test public void metrics_query() {
+        try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().service(queryURL()).queryString("ASK{}").build() ) {
+            qExec.ask();
+        }
+        HttpMetrics.Stats stats = HttpMetrics.get().endpoint(queryURL());
+        assertNotNull(stats);
+        assertEquals(1, stats.requests());
+        assertEquals(0, stats.inFlight());
+        assertEquals(1, stats.status(200));
+        assertTrue(stats.bytesIn() > 0);
+        assertEquals(1, stats.latency().count());
+        assertEquals(1, HttpMetrics.get().operation(HttpOperation.QUERY).requests());
+    }
+
+    @Test public void metrics_gsp() {
+        Graph graph = GraphFactory.createDefaultGraph();
+        graph.add(SSE.parseTriple("(:s :p :o)"));
+        GSP.request(gspServiceURL()).defaultGraph().PUT(graph);
+        GSP.request(gspServiceURL()).defaultGraph().GET();
+        HttpMetrics.Stats stats = HttpMetrics.get().endpoint(gspServiceURL());
+        assertEquals(2, stats.requests());
+        assertEquals(0, stats.inFlight());
+        assertEquals(2, HttpMetrics.get().operation(HttpOperation.GSP).requests());
+        assertTrue(stats.timeToFirstByte().count() >= 1);
+    }
+
+    @Test public void metrics_404() {
+        String url = env.serverPath("does-not-exist");
+        expect404(()->HttpOp2.httpGetString(url));
+        HttpMetrics.Stats stats = HttpMetrics.get().endpoint(url);
+        assertEquals(1, stats.status(404));
+        assertEquals(0, stats.inFlight());
+    }
+}
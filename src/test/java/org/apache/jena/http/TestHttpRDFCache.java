@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestHttpRDFCache {
+
+    // A server with controllable validators.
+    private static HttpServer server;
+    private static volatile String etag;
+    private static volatile String cacheControl;
+    private static volatile String data;
+    private static volatile String ifNoneMatch;
+    private static AtomicInteger requests = new AtomicInteger();
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", TestHttpRDFCache::handle);
+        server.start();
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @Before public void before() {
+        etag = "\"v1\"";
+        cacheControl = null;
+        data = "<http://example/s> <http://example/p> 1 .";
+        ifNoneMatch = null;
+        requests.set(0);
+    }
+
+    @After public void after() {
+        HttpEnv.httpRDFCache = null;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        if ( ! exchange.getRequestMethod().equals("GET") ) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if ( etag != null )
+            exchange.getResponseHeaders().set("ETag", etag);
+        if ( cacheControl != null )
+            exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        if ( etag != null && etag.equals(ifNoneMatch) ) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", WebContent.contentTypeTurtle);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+    }
+
+    private static String url() {
+        return "http://localhost:"+server.getAddress().getPort()+"/data";
+    }
+
+    @Test public void cache_revalidate() {
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        Graph g1 = HttpRDF.httpGetGraph(url());
+        assertNull(ifNoneMatch);
+        Graph g2 = HttpRDF.httpGetGraph(url());
+        assertEquals("\"v1\"", ifNoneMatch);
+        assertEquals(2, requests.get());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.revalidations());
+        assertTrue(g1.isIsomorphicWith(g2));
+    }
+
+    @Test public void cache_changed() {
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        etag = "\"v2\"";
+        data = "<http://example/s> <http://example/p> 2 .";
+        Graph g2 = HttpRDF.httpGetGraph(url());
+        assertEquals(2, cache.misses());
+        assertTrue(g2.isIsomorphicWith(SSE.parseGraph("(graph (:s :p 2))")));
+    }
+
+    @Test public void cache_maxAge() {
+        cacheControl = "max-age=60";
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        Graph g2 = HttpRDF.httpGetGraph(url());
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.hits());
+        assertEquals(1, g2.size());
+    }
+
+    @Test public void cache_noStore() {
+        cacheControl = "no-store";
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        HttpRDF.httpGetGraph(url());
+        assertNull(ifNoneMatch);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test public void cache_accept() {
+        // Different Accept header, different entry.
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        HttpRDF.httpGetGraph(HttpEnv.getDftHttpClient(), url(), WebContent.contentTypeTurtle);
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test public void cache_headers() {
+        // Different request header, different entry.
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetToStream(HttpEnv.getDftHttpClient(), url(), Map.of("X-Tenant", "a"), StreamRDFLib.sinkNull());
+        HttpRDF.httpGetToStream(HttpEnv.getDftHttpClient(), url(), Map.of("X-Tenant", "b"), StreamRDFLib.sinkNull());
+        assertNull(ifNoneMatch);
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test public void cache_httpClient() {
+        // Different HttpClient, different entry.
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        HttpRDF.httpGetGraph(HttpEnv.httpClientBuilder().build(), url());
+        assertNull(ifNoneMatch);
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test public void cache_authorization() {
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        Map<String, String> headers = Map.of("Authorization", HttpLib.basicAuth("user", "password"));
+        HttpRDF.httpGetToStream(HttpEnv.getDftHttpClient(), url(), headers, StreamRDFLib.sinkNull());
+        HttpRDF.httpGetToStream(HttpEnv.getDftHttpClient(), url(), headers, StreamRDFLib.sinkNull());
+        assertNull(ifNoneMatch);
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void cache_tooLarge() {
+        data = "<http://example/s> <http://example/p> 1 . <http://example/s> <http://example/p> 2 .";
+        HttpRDFCache cache = HttpRDFCache.create(1);
+        HttpEnv.httpRDFCache = cache;
+        Graph g1 = HttpRDF.httpGetGraph(url());
+        Graph g2 = HttpRDF.httpGetGraph(url());
+        assertEquals(2, g1.size());
+        assertEquals(2, g2.size());
+        assertNull(ifNoneMatch);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test public void cache_evict() {
+        HttpRDFCache cache = HttpRDFCache.create(1);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        HttpRDF.httpGetGraph(HttpEnv.getDftHttpClient(), url(), WebContent.contentTypeTurtle);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test public void cache_invalidate() {
+        HttpRDFCache cache = HttpRDFCache.create(1000);
+        HttpEnv.httpRDFCache = cache;
+        HttpRDF.httpGetGraph(url());
+        assertEquals(1, cache.size());
+        HttpRDF.httpPutGraph(url(), SSE.parseGraph("(graph (:s :p 3))"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void cache_disk() throws IOException {
+        Path dir = Files.createTempDirectory("jena-http-cache");
+        try {
+            HttpRDFCache cache1 = HttpRDFCache.create(1000, dir);
+            HttpEnv.httpRDFCache = cache1;
+            HttpRDF.httpGetGraph(url());
+            // New cache, same directory.
+            HttpRDFCache cache2 = HttpRDFCache.create(1000, dir);
+            HttpEnv.httpRDFCache = cache2;
+            Graph g = HttpRDF.httpGetGraph(url());
+            assertEquals(1, cache2.diskHits());
+            assertEquals(1, cache2.revalidations());
+            assertEquals(1, g.size());
+            cache2.clear();
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+}
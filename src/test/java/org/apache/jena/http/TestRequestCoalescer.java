@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.http.QueryExecHTTP;
+import org.junit.*;
+
+public class TestRequestCoalescer {
+
+    // A server where responses wait for the gate to open.
+    private static HttpServer server;
+    private static volatile CountDownLatch gate;
+    private static AtomicInteger requests = new AtomicInteger();
+
+    private static final String DATA = "<http://example/s> <http://example/p> 1 .";
+    private static final String RESULTS = String.join("\n",
+        "{ \"head\": { \"vars\": [ \"x\" ] },",
+        "  \"results\": { \"bindings\": [ { \"x\": { \"type\": \"literal\", \"value\": \"1\" } },",
+        "                              { \"x\": { \"type\": \"literal\", \"value\": \"2\" } } ] } }");
+
+    private RequestCoalescer coalescer;
+    private ExecutorService executor;
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", exchange->respond(exchange, WebContent.contentTypeTurtle, DATA));
+        server.createContext("/query", exchange->respond(exchange, WebContent.contentTypeResultsJSON, RESULTS));
+        server.start();
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @Before public void before() {
+        gate = new CountDownLatch(1);
+        requests.set(0);
+        coalescer = RequestCoalescer.create();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After public void after() {
+        gate.countDown();
+        HttpEnv.requestCoalescer = null;
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String content) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        try {
+            gate.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {}
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+    }
+
+    private static String url(String path) {
+        return "http://localhost:"+server.getAddress().getPort()+path;
+    }
+
+    // Run the task N times in parallel, opening the gate when all but one are waiting on the first.
+    private <X> List<X> runConcurrent(int N, Callable<X> task) throws Exception {
+        List<Future<X>> futures = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ )
+            futures.add(executor.submit(task));
+        long limit = System.currentTimeMillis() + 5000;
+        while ( coalescer.coalesced() < N-1 && System.currentTimeMillis() < limit )
+            Thread.sleep(5);
+        gate.countDown();
+        List<X> results = new ArrayList<>();
+        for ( Future<X> f : futures )
+            results.add(f.get(5, TimeUnit.SECONDS));
+        return results;
+    }
+
+    @Test public void coalesce_basic() throws Exception {
+        RequestCoalescer.Key key = key("http://example/data", "text/turtle");
+        List<Object> results = runConcurrent(4, ()->coalescer.execute(key, ()->{
+            try { gate.await(5, TimeUnit.SECONDS); } catch (InterruptedException ex) {}
+            return new Object();
+        }));
+        assertEquals(1, coalescer.executed());
+        assertEquals(3, coalescer.coalesced());
+        for ( Object obj : results )
+            assertSame(results.get(0), obj);
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test public void coalesce_sequential() {
+        RequestCoalescer.Key key = key("http://example/data", "text/turtle");
+        coalescer.execute(key, ()->"A");
+        coalescer.execute(key, ()->"B");
+        // Not a cache.
+        assertEquals(2, coalescer.executed());
+        assertEquals(0, coalescer.coalesced());
+    }
+
+    @Test public void coalesce_error() throws Exception {
+        RequestCoalescer.Key key = key("http://example/data", "text/turtle");
+        List<Future<Object>> futures = new ArrayList<>();
+        for ( int i = 0 ; i < 3 ; i++ )
+            futures.add(executor.submit(()->coalescer.execute(key, ()->{
+                try { gate.await(5, TimeUnit.SECONDS); } catch (InterruptedException ex) {}
+                throw new IllegalStateException();
+            })));
+        long limit = System.currentTimeMillis() + 5000;
+        while ( coalescer.coalesced() < 2 && System.currentTimeMillis() < limit )
+            Thread.sleep(5);
+        gate.countDown();
+        for ( Future<Object> f : futures ) {
+            try {
+                f.get(5, TimeUnit.SECONDS);
+                fail("Expected an exception");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test public void key_equality() {
+        assertEquals(key("http://example/data", "text/turtle"), key("http://example/data", "text/turtle"));
+        assertNotEquals(key("http://example/data", "text/turtle"), key("http://example/data", "application/rdf+xml"));
+        assertNotEquals(key("http://example/data", "text/turtle"), key("http://example/other", "text/turtle"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://example/query")).POST(HttpRequest.BodyPublishers.noBody()).build();
+        RequestCoalescer.Key k1 = RequestCoalescer.key(HttpEnv.getDftHttpClient(), request, "ASK{}");
+        RequestCoalescer.Key k2 = RequestCoalescer.key(HttpEnv.getDftHttpClient(), request, "ASK{}");
+        RequestCoalescer.Key k3 = RequestCoalescer.key(HttpEnv.getDftHttpClient(), request, "SELECT * {}");
+        assertEquals(k1, k2);
+        assertNotEquals(k1, k3);
+    }
+
+    @Test public void key_headers() {
+        HttpRequest request1 = HttpRequest.newBuilder(URI.create("http://example/data")).header("Authorization", "Basic dXNlcjE6cHc=").GET().build();
+        HttpRequest request2 = HttpRequest.newBuilder(URI.create("http://example/data")).header("Authorization", "Basic dXNlcjI6cHc=").GET().build();
+        HttpRequest request3 = HttpRequest.newBuilder(URI.create("http://example/data")).header("authorization", "Basic dXNlcjE6cHc=").GET().build();
+        RequestCoalescer.Key k1 = RequestCoalescer.key(HttpEnv.getDftHttpClient(), request1);
+        RequestCoalescer.Key k2 = RequestCoalescer.key(HttpEnv.getDftHttpClient(), request2);
+        RequestCoalescer.Key k3 = RequestCoalescer.key(HttpEnv.getDftHttpClient(), request3);
+        assertNotEquals(k1, k2);
+        assertEquals(k1, k3);
+        assertEquals(k1.hashCode(), k3.hashCode());
+    }
+
+    private static RequestCoalescer.Key key(String url, String accept) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Accept", accept).GET().build();
+        return RequestCoalescer.key(HttpEnv.getDftHttpClient(), request);
+    }
+
+    @Test public void coalesce_httpGetGraph() throws Exception {
+        HttpEnv.requestCoalescer = coalescer;
+        List<Graph> graphs = runConcurrent(4, ()->HttpRDF.httpGetGraph(url("/data")));
+        assertEquals(1, requests.get());
+        assertEquals(3, coalescer.coalesced());
+        for ( Graph g : graphs )
+            assertEquals(1, g.size());
+        // Each caller has its own graph.
+        assertNotSame(graphs.get(0), graphs.get(1));
+    }
+
+    @Test public void coalesce_select() throws Exception {
+        HttpEnv.requestCoalescer = coalescer;
+        List<Long> counts = runConcurrent(4, ()->{
+            try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().service(url("/query")).queryString("SELECT * {}").build() ) {
+                RowSet rowSet = qExec.select();
+                long x = 0;
+                while ( rowSet.hasNext() ) {
+                    rowSet.next();
+                    x++;
+                }
+                return x;
+            }
+        });
+        assertEquals(1, requests.get());
+        assertEquals(3, coalescer.coalesced());
+        for ( Long x : counts )
+            assertEquals(2L, x.longValue());
+    }
+
+    @Test public void coalesce_httpGetGraph_tooLarge() throws Exception {
+        coalescer = RequestCoalescer.create(0);
+        HttpEnv.requestCoalescer = coalescer;
+        List<Graph> graphs = runConcurrent(4, ()->HttpRDF.httpGetGraph(url("/data")));
+        // Not shared: each waiting caller makes its own request.
+        assertEquals(4, requests.get());
+        assertEquals(3, coalescer.coalesced());
+        for ( Graph g : graphs )
+            assertEquals(1, g.size());
+    }
+
+    @Test public void coalesce_select_tooLarge() throws Exception {
+        coalescer = RequestCoalescer.create(1);
+        HttpEnv.requestCoalescer = coalescer;
+        List<Long> counts = runConcurrent(4, ()->{
+            try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().service(url("/query")).queryString("SELECT * {}").build() ) {
+                RowSet rowSet = qExec.select();
+                long x = 0;
+                while ( rowSet.hasNext() ) {
+                    rowSet.next();
+                    x++;
+                }
+                return x;
+            }
+        });
+        assertEquals(4, requests.get());
+        for ( Long x : counts )
+            assertEquals(2L, x.longValue());
+    }
+
+    @Test public void no_coalescer() {
+        gate.countDown();
+        HttpRDF.httpGetGraph(url("/data"));
+        HttpRDF.httpGetGraph(url("/data"));
+        assertEquals(2, requests.get());
+        assertEquals(0, coalescer.executed());
+    }
+}
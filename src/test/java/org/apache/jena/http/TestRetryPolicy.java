@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.http.sys.RegistryRetryPolicy;
+import org.apache.jena.http.sys.RetryPolicy;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestRetryPolicy {
+
+    // A server that responds 503 with a Retry-After header to the first "failures"
+    // requests, then 200.
+    private static HttpServer server;
+    private static AtomicInteger requests = new AtomicInteger();
+    private static volatile int failures;
+    private static volatile String retryAfter;
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ds", TestRetryPolicy::handle);
+        server.start();
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @Before public void before() {
+        requests.set(0);
+        failures = 0;
+        retryAfter = "0";
+    }
+
+    @After public void after() {
+        RegistryRetryPolicy.get().clear();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        if ( requests.incrementAndGet() <= failures ) {
+            exchange.getResponseHeaders().set("Retry-After", retryAfter);
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = "OK".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+    }
+
+    private static String url() {
+        return "http://localhost:"+server.getAddress().getPort()+"/ds";
+    }
+
+    private static RetryPolicy.Builder fast() {
+        return RetryPolicy.newBuilder().initialBackoff(Duration.ofMillis(1)).maxBackoff(Duration.ofMillis(10));
+    }
+
+    @Test public void backoff_01() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .initialBackoff(Duration.ofMillis(100)).maxBackoff(Duration.ofMillis(300))
+                .multiplier(2).jitter(0).build();
+        assertEquals(Duration.ofMillis(100), policy.backoff(1));
+        assertEquals(Duration.ofMillis(200), policy.backoff(2));
+        assertEquals(Duration.ofMillis(300), policy.backoff(3));
+    }
+
+    @Test public void backoff_jitter() {
+        RetryPolicy policy = RetryPolicy.newBuilder().initialBackoff(Duration.ofMillis(100)).jitter(0.5).build();
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            long x = policy.backoff(1).toMillis();
+            assertTrue(x >= 50 && x <= 100);
+        }
+    }
+
+    @Test public void retryAfter_01() {
+        assertEquals(Duration.ofSeconds(5), RetryPolicy.parseRetryAfter("5"));
+        assertNull(RetryPolicy.parseRetryAfter("soon"));
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().minusMinutes(1));
+        assertEquals(Duration.ZERO, RetryPolicy.parseRetryAfter(date));
+    }
+
+    @Test public void retryAfter_02() {
+        RetryPolicy policy = RetryPolicy.newBuilder().maxRetryAfter(Duration.ofSeconds(10)).build();
+        assertEquals(Duration.ofSeconds(2), policy.delay(1, "2"));
+        // Too long - do not retry.
+        assertNull(policy.delay(1, "3600"));
+    }
+
+    @Test public void attempts() {
+        RetryPolicy policy = fast().maxAttempts(3).build();
+        assertTrue(policy.tryRetry(1));
+        assertTrue(policy.tryRetry(2));
+        assertFalse(policy.tryRetry(3));
+        assertEquals(2, policy.retries());
+    }
+
+    @Test public void budget() {
+        RetryPolicy policy = fast().maxAttempts(10).budget(0.5, 2).build();
+        assertTrue(policy.tryRetry(1));
+        assertTrue(policy.tryRetry(1));
+        assertFalse(policy.tryRetry(1));
+        assertEquals(1, policy.retriesDenied());
+        // Two requests earn one retry.
+        policy.requestStarted();
+        policy.requestStarted();
+        assertTrue(policy.tryRetry(1));
+        assertFalse(policy.tryRetry(1));
+    }
+
+    @Test public void retry_connect_get() throws IOException {
+        String url = "http://localhost:"+unusedPort()+"/ds/query";
+        RetryPolicy policy = fast().maxAttempts(3).build();
+        RegistryRetryPolicy.get().add(url, policy);
+        try {
+            HttpOp2.httpGetString(url);
+            fail("Expected HttpException");
+        } catch (HttpException ex) {}
+        assertEquals(2, policy.retries());
+    }
+
+    @Test public void retry_connect_post() throws IOException {
+        // POST is not retried.
+        String url = "http://localhost:"+unusedPort()+"/ds/update";
+        RetryPolicy policy = fast().maxAttempts(3).build();
+        RegistryRetryPolicy.get().add(url, policy);
+        try {
+            HttpOp2.httpPost(url, null, HttpLib.stringBody(""));
+            fail("Expected HttpException");
+        } catch (HttpException ex) {}
+        assertEquals(0, policy.retries());
+    }
+
+    @Test public void retry_503_retryAfter() {
+        failures = 1;
+        retryAfter = "1";
+        RetryPolicy policy = fast().maxAttempts(3).build();
+        RegistryRetryPolicy.get().add(url(), policy);
+        long start = System.nanoTime();
+        String x = HttpOp2.httpGetString(url());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("OK", x);
+        assertEquals(2, requests.get());
+        assertEquals(1, policy.retries());
+        // Waited for Retry-After, not the (1ms) backoff.
+        assertTrue("Retry-After not used: "+elapsedMillis+"ms", elapsedMillis >= 1000);
+    }
+
+    @Test public void retry_503_attempts() {
+        failures = 10;
+        RetryPolicy policy = fast().maxAttempts(3).build();
+        RegistryRetryPolicy.get().add(url(), policy);
+        try {
+            HttpOp2.httpGetString(url());
+            fail("Expected HttpException");
+        } catch (HttpException ex) {
+            assertEquals(503, ex.getStatusCode());
+        }
+        assertEquals(3, requests.get());
+        assertEquals(2, policy.retries());
+    }
+
+    @Test public void retry_503_budget() {
+        failures = 10;
+        // One retry in the budget, not refilled by the one request.
+        RetryPolicy policy = fast().maxAttempts(10).budget(0.1, 1).build();
+        RegistryRetryPolicy.get().add(url(), policy);
+        try {
+            HttpOp2.httpGetString(url());
+            fail("Expected HttpException");
+        } catch (HttpException ex) {
+            assertEquals(503, ex.getStatusCode());
+        }
+        assertEquals(2, requests.get());
+        assertEquals(1, policy.retries());
+        assertEquals(1, policy.retriesDenied());
+    }
+
+    private static int unusedPort() throws IOException {
+        try ( ServerSocket socket = new ServerSocket(0) ) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -30,7 +30,10 @@ import org.junit.runners.Suite ;
     // Addition tests added here.
     TestRDFLinkRemote.class,
     TestRDFLinkFuseki.class,
-    TestRDFLinkFusekiBinary.class
+    TestRDFLinkFusekiBinary.class,
+    TestRDFLinkReplicated.class,
+    TestRDFLinkWarmup.class,
+    TestRDFLinkResultCache.class
 })
 
 public class TS_RDFLinkIntegration {}
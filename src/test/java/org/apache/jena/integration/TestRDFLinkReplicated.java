@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.integration;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+
+import org.apache.jena.rdflink.QueryReplicas;
+import org.apache.jena.rdflink.QueryReplicas.Replica;
+import org.apache.jena.rdflink.RDFLink;
+import org.apache.jena.rdflink.RDFLinkRemote;
+import org.apache.jena.rdflink.RDFLinkReplicated;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.test.conn.EnvTest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestRDFLinkReplicated {
+    private static EnvTest primary;
+    private static EnvTest replica;
+
+    @BeforeClass public static void beforeClass() {
+        primary = EnvTest.create("/ds");
+        replica = EnvTest.create("/ds");
+    }
+
+    @Before public void before() {
+        primary.clear();
+        replica.clear();
+    }
+
+    @AfterClass public static void afterClass() {
+        EnvTest.stop(primary);
+        EnvTest.stop(replica);
+    }
+
+    private static RDFLink link() {
+        return RDFLinkRemote.newBuilder()
+                .destination(primary.datasetURL())
+                .queryEndpoints(primary.datasetURL(), replica.datasetURL())
+                .build();
+    }
+
+    @Test public void replicated_build() {
+        try ( RDFLink link = link() ) {
+            assertTrue(link instanceof RDFLinkReplicated);
+            QueryReplicas replicas = ((RDFLinkReplicated)link).getQueryReplicas();
+            assertEquals(2, replicas.replicas().size());
+        }
+    }
+
+    @Test public void replicated_reads_balanced() {
+        try ( RDFLink link = link() ) {
+            for ( int i = 0 ; i < 6 ; i++ )
+                assertFalse(link.queryAsk("ASK { ?s ?p ?o }"));
+            QueryReplicas replicas = ((RDFLinkReplicated)link).getQueryReplicas();
+            for ( Replica r : replicas.replicas() ) {
+                assertTrue(r.requests() > 0);
+                assertEquals(0, r.outstanding());
+            }
+        }
+    }
+
+    @Test public void replicated_writes_primary() {
+        try ( RDFLink link = link() ) {
+            link.update("INSERT DATA { <http://example/s> <http://example/p> 1 }");
+            link.load(SSE.parseGraph("(graph (:s :p 2))"));
+        }
+        Txn.executeRead(primary.dsg(), ()->assertEquals(2, primary.dsg().getDefaultGraph().size()));
+        Txn.executeRead(replica.dsg(), ()->assertTrue(replica.dsg().isEmpty()));
+    }
+
+    @Test public void replicated_hedged() {
+        try ( RDFLink link = RDFLinkRemote.newBuilder()
+                    .destination(primary.datasetURL())
+                    .queryEndpoints(primary.datasetURL(), replica.datasetURL())
+                    .hedgeReads(true)
+                    .build() ) {
+            for ( int i = 0 ; i < 4 ; i++ )
+                link.querySelect("SELECT * { ?s ?p ?o }", row->{});
+        }
+    }
+
+    @Test public void replicated_copy_builder() {
+        Duration delay = Duration.ofMillis(250);
+        try ( RDFLink link = RDFLinkRemote.newBuilder()
+                    .destination(primary.datasetURL())
+                    .queryEndpoints(primary.datasetURL(), replica.datasetURL())
+                    .hedgeReads(delay)
+                    .build();
+              RDFLink link2 = RDFLinkRemote.from((RDFLinkRemote)link).build() ) {
+            assertTrue(link2 instanceof RDFLinkReplicated);
+            RDFLinkReplicated replicated = (RDFLinkReplicated)link2;
+            assertTrue(replicated.isHedgeReads());
+            assertEquals(delay, replicated.getQueryReplicas().initialHedgeDelay());
+        }
+    }
+}
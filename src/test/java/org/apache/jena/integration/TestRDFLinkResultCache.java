@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.integration;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdflink.QueryResultCache;
+import org.apache.jena.rdflink.RDFLink;
+import org.apache.jena.rdflink.RDFLinkRemote;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.test.conn.EnvTest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestRDFLinkResultCache {
+    private static EnvTest env;
+    private QueryResultCache cache;
+
+    @BeforeClass public static void beforeClass() {
+        env = EnvTest.create("/ds");
+    }
+
+    @Before public void before() {
+        env.clear();
+        cache = QueryResultCache.create(100, 1_000_000, Duration.ofMinutes(1));
+    }
+
+    @AfterClass public static void afterClass() {
+        EnvTest.stop(env);
+    }
+
+    private RDFLink link() {
+        return RDFLinkRemote.newBuilder().destination(env.datasetURL()).resultCache(cache).build();
+    }
+
+    private static int count(RDFLink link) {
+        AtomicInteger n = new AtomicInteger();
+        link.querySelect("SELECT * { ?s ?p ?o }", row->n.incrementAndGet());
+        return n.get();
+    }
+
+    @Test public void cache_select() {
+        try ( RDFLink link = link() ) {
+            assertEquals(0, count(link));
+            assertEquals(0, count(link));
+            assertEquals(1, cache.hits());
+            assertEquals(1, cache.misses());
+        }
+    }
+
+    @Test public void cache_normalized() {
+        try ( RDFLink link = link() ) {
+            link.queryAsk("ASK { ?s ?p ?o }");
+            link.queryAsk("ASK   {?s ?p ?o}");
+            assertEquals(1, cache.hits());
+        }
+    }
+
+    @Test public void cache_ask_construct() {
+        try ( RDFLink link = link() ) {
+            assertFalse(link.queryAsk("ASK { ?s ?p ?o }"));
+            assertFalse(link.queryAsk("ASK { ?s ?p ?o }"));
+            Graph g1 = link.queryConstruct("CONSTRUCT WHERE { ?s ?p ?o }");
+            Graph g2 = link.queryConstruct("CONSTRUCT WHERE { ?s ?p ?o }");
+            assertTrue(g1.isEmpty());
+            assertNotSame(g1, g2);
+            assertEquals(2, cache.hits());
+        }
+    }
+
+    @Test public void cache_update_invalidates() {
+        try ( RDFLink link = link() ) {
+            assertEquals(0, count(link));
+            link.update("INSERT DATA { <http://example/s> <http://example/p> 1 }");
+            assertEquals(1, count(link));
+            assertEquals(0, cache.hits());
+            link.load(SSE.parseGraph("(graph (:s :p 2))"));
+            assertEquals(2, count(link));
+            assertEquals(0, cache.hits());
+            assertEquals(2, cache.invalidations());
+        }
+    }
+
+    @Test public void cache_sibling_invalidates() {
+        try ( RDFLink link1 = link(); RDFLink link2 = link() ) {
+            assertEquals(0, count(link1));
+            // Shared.
+            assertEquals(0, count(link2));
+            assertEquals(1, cache.hits());
+            link2.update("INSERT DATA { <http://example/s> <http://example/p> 1 }");
+            assertEquals(1, count(link1));
+        }
+    }
+
+    @Test public void cache_from() {
+        try ( RDFLink link = link() ) {
+            RDFLinkRemote link2 = (RDFLinkRemote)RDFLinkRemote.from((RDFLinkRemote)link).build();
+            assertSame(cache, link2.getResultCache());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.integration;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.jena.http.HttpEnv;
+import org.apache.jena.http.HttpWarmup;
+import org.apache.jena.rdflink.RDFLink;
+import org.apache.jena.rdflink.RDFLinkRemote;
+import org.apache.jena.test.conn.EnvTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestRDFLinkWarmup {
+    private static EnvTest env1;
+    private static EnvTest env2;
+
+    @BeforeClass public static void beforeClass() {
+        env1 = EnvTest.create("/ds");
+        env2 = EnvTest.create("/ds");
+    }
+
+    @AfterClass public static void afterClass() {
+        EnvTest.stop(env1);
+        EnvTest.stop(env2);
+    }
+
+    @Test public void warmup_link() {
+        try ( RDFLinkRemote link = (RDFLinkRemote)RDFLinkRemote.newBuilder().destination(env1.datasetURL()).build() ) {
+            assertNull(link.getPreconnect());
+            List<HttpWarmup.Report> reports = link.warmup();
+            // Query, update and GSP endpoints are on the same server.
+            assertEquals(1, reports.size());
+            HttpWarmup.Report report = reports.get(0);
+            assertTrue(report.isSuccess());
+            assertEquals(1, report.connected());
+            assertNotNull(report.version());
+            assertNull(report.failure());
+            assertTrue(report.requestNanos() >= 0);
+            // Still usable.
+            assertFalse(link.queryAsk("ASK { ?s ?p ?o }"));
+        }
+    }
+
+    @Test public void warmup_preconnect() {
+        try ( RDFLink link = RDFLinkRemote.newBuilder().destination(env1.datasetURL()).preconnect(3).build() ) {
+            List<HttpWarmup.Report> reports = ((RDFLinkRemote)link).getPreconnect().join();
+            assertEquals(1, reports.size());
+            assertEquals(3, reports.get(0).requested());
+            assertEquals(3, reports.get(0).connected());
+        }
+    }
+
+    @Test public void warmup_preconnect_options() {
+        try ( RDFLink link = RDFLinkRemote.newBuilder().destination(env1.datasetURL()).preconnect(1, "OPTIONS").build() ) {
+            List<HttpWarmup.Report> reports = ((RDFLinkRemote)link).getPreconnect().join();
+            assertTrue(reports.get(0).isSuccess());
+        }
+    }
+
+    @Test public void warmup_replicated() {
+        try ( RDFLink link = RDFLinkRemote.newBuilder()
+                    .destination(env1.datasetURL())
+                    .queryEndpoints(env1.datasetURL(), env2.datasetURL())
+                    .preconnect(2)
+                    .build() ) {
+            List<HttpWarmup.Report> reports = ((RDFLinkRemote)link).getPreconnect().join();
+            assertEquals(2, reports.size());
+            reports.forEach(r->assertEquals(2, r.connected()));
+        }
+    }
+
+    @Test public void warmup_unreachable() {
+        HttpWarmup.Report report = HttpWarmup.warmup(HttpEnv.getDftHttpClient(), "http://localhost:1/ds", 2);
+        assertFalse(report.isSuccess());
+        assertEquals(2, report.requested());
+        assertNotNull(report.failure());
+        assertNull(report.version());
+    }
+}
@@ -29,6 +29,8 @@ import org.junit.runners.Suite;
     , TestRDFLinkLocalMRSW.class
     , TestLibRDFLink.class
     , TestRDFLinkLocalTDB.class
+    , TestQueryReplicas.class
+    , TestQueryResultCache.class
 })
 
 public class TS_RDFLink {}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.rdflink.QueryReplicas.LoadBalance;
+import org.apache.jena.rdflink.QueryReplicas.Replica;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.util.Context;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class TestQueryReplicas {
+
+    private static ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterClass public static void afterClass() {
+        executor.shutdownNow();
+    }
+
+    private static QueryReplicas replicas(LoadBalance loadBalance, String... urls) {
+        return new QueryReplicas(Arrays.asList(urls), loadBalance, Duration.ofMillis(50));
+    }
+
+    @Test public void leastOutstanding() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/", "http://b/", "http://c/");
+        Replica r1 = replicas.choose(null);
+        r1.start();
+        Replica r2 = replicas.choose(null);
+        r2.start();
+        Replica r3 = replicas.choose(null);
+        r3.start();
+        // All different.
+        assertEquals(3, new HashSet<>(List.of(r1, r2, r3)).size());
+        r2.finish();
+        assertSame(r2, replicas.choose(null));
+    }
+
+    @Test public void ewma() {
+        QueryReplicas replicas = replicas(LoadBalance.EWMA, "http://a/", "http://b/");
+        Replica a = replicas.replicas().get(0);
+        Replica b = replicas.replicas().get(1);
+        a.response(TimeUnit.MILLISECONDS.toNanos(100));
+        b.response(TimeUnit.MILLISECONDS.toNanos(10));
+        for ( int i = 0 ; i < 4 ; i++ )
+            assertSame(b, replicas.choose(null));
+        assertSame(a, replicas.choose(b));
+    }
+
+    @Test public void exclude() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/");
+        Replica a = replicas.choose(null);
+        assertNull(replicas.choose(a));
+    }
+
+    @Test public void hedgeDelay() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/");
+        Replica a = replicas.replicas().get(0);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), replicas.hedgeDelay(a));
+        for ( int i = 0 ; i < 100 ; i++ )
+            a.response(TimeUnit.MILLISECONDS.toNanos(10));
+        long delay = TimeUnit.NANOSECONDS.toMillis(replicas.hedgeDelay(a));
+        assertTrue("Delay: "+delay, delay >= 10 && delay < 15);
+    }
+
+    @Test public void notHedged() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/", "http://b/");
+        Map<String, Long> delays = Map.of("http://a/", 0L, "http://b/", 0L);
+        List<FakeQueryExec> created = new ArrayList<>();
+        try ( QueryExec qExec = new QueryExecReplicated(replicas, url->fake(url, delays, created), null) ) {
+            assertTrue(qExec.ask());
+        }
+        assertEquals(1, created.size());
+        assertTrue(created.get(0).closed);
+        for ( Replica r : replicas.replicas() )
+            assertEquals(0, r.outstanding());
+    }
+
+    @Test public void hedged_slowFirst() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/", "http://b/");
+        // The first request is slow, the hedged request is fast.
+        List<FakeQueryExec> created = new ArrayList<>();
+        long start = System.nanoTime();
+        try ( QueryExec qExec = new QueryExecReplicated(replicas, url->{
+                    FakeQueryExec x = new FakeQueryExec(created.isEmpty() ? 5000 : 0);
+                    created.add(x);
+                    return x;
+                }, executor) ) {
+            assertTrue(qExec.ask());
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Time: "+millis, millis < 2000);
+        assertEquals(2, created.size());
+        // The slow request was aborted.
+        assertTrue(created.get(0).aborted);
+        assertEquals(1, replicas.hedges());
+        assertEquals(1, replicas.hedgeWins());
+        // Not counted as a failure.
+        for ( Replica r : replicas.replicas() )
+            assertEquals(0, r.failures());
+    }
+
+    @Test public void hedged_fastFirst() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/", "http://b/");
+        Map<String, Long> delays = Map.of("http://a/", 0L, "http://b/", 0L);
+        List<FakeQueryExec> created = new ArrayList<>();
+        try ( QueryExec qExec = new QueryExecReplicated(replicas, url->fake(url, delays, created), executor) ) {
+            assertTrue(qExec.ask());
+        }
+        assertEquals(1, created.size());
+        assertEquals(0, replicas.hedges());
+    }
+
+    @Test public void hedged_executorBusy() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/", "http://b/");
+        Map<String, Long> delays = Map.of("http://a/", 100L, "http://b/", 100L);
+        List<FakeQueryExec> created = new ArrayList<>();
+        Executor busy = task->{ throw new RejectedExecutionException(); };
+        try ( QueryExec qExec = new QueryExecReplicated(replicas, url->fake(url, delays, created), busy) ) {
+            // Runs on this thread, not hedged.
+            assertTrue(qExec.ask());
+        }
+        assertEquals(1, created.size());
+        assertEquals(0, replicas.hedges());
+        assertEquals(1, replicas.hedgesSkipped());
+    }
+
+    @Test public void hedged_executorBusyForHedge() {
+        QueryReplicas replicas = replicas(LoadBalance.LEAST_OUTSTANDING, "http://a/", "http://b/");
+        Map<String, Long> delays = Map.of("http://a/", 200L, "http://b/", 200L);
+        List<FakeQueryExec> created = new ArrayList<>();
+        // Accepts one task, the first request.
+        AtomicInteger count = new AtomicInteger(0);
+        Executor oneTask = task->{
+            if ( count.incrementAndGet() > 1 )
+                throw new RejectedExecutionException();
+            executor.execute(task);
+        };
+        try ( QueryExec qExec = new QueryExecReplicated(replicas, url->fake(url, delays, created), oneTask) ) {
+            assertTrue(qExec.ask());
+        }
+        assertEquals(0, replicas.hedges());
+        assertEquals(1, replicas.hedgesSkipped());
+        // The first request was not aborted.
+        assertFalse(created.get(0).aborted);
+        for ( Replica r : replicas.replicas() )
+            assertEquals(0, r.outstanding());
+    }
+
+    private static FakeQueryExec fake(String url, Map<String, Long> delays, List<FakeQueryExec> created) {
+        FakeQueryExec qExec = new FakeQueryExec(delays.get(url));
+        synchronized(created) {
+            created.add(qExec);
+        }
+        return qExec;
+    }
+
+    /** A QueryExec that answers ASK with true after a delay, unless aborted. */
+    private static class FakeQueryExec implements QueryExec {
+        private final long delayMillis;
+        private final CountDownLatch abortLatch = new CountDownLatch(1);
+        volatile boolean aborted = false;
+        volatile boolean closed = false;
+
+        FakeQueryExec(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public boolean ask() {
+            try {
+                if ( abortLatch.await(delayMillis, TimeUnit.MILLISECONDS) )
+                    throw new QueryCancelledException();
+            } catch (InterruptedException ex) {
+                throw new QueryCancelledException();
+            }
+            return true;
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            abortLatch.countDown();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override public boolean isClosed()                         { return closed; }
+
+        @Override public DatasetGraph getDataset()                  { return null; }
+        @Override public Context getContext()                       { return null; }
+        @Override public Query getQuery()                           { return null; }
+        @Override public RowSet select()                            { throw new UnsupportedOperationException(); }
+        @Override public Graph construct(Graph graph)               { throw new UnsupportedOperationException(); }
+        @Override public Iterator<Triple> constructTriples()        { throw new UnsupportedOperationException(); }
+        @Override public Iterator<Quad> constructQuads()            { throw new UnsupportedOperationException(); }
+        @Override public DatasetGraph constructDataset(DatasetGraph dataset) { throw new UnsupportedOperationException(); }
+        @Override public Graph describe(Graph graph)                { throw new UnsupportedOperationException(); }
+        @Override public Iterator<Triple> describeTriples()         { throw new UnsupportedOperationException(); }
+        @Override public JsonArray execJson()                       { throw new UnsupportedOperationException(); }
+        @Override public Iterator<JsonObject> execJsonItems()       { throw new UnsupportedOperationException(); }
+    }
+}
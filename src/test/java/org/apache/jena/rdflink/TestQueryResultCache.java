@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.rdflink;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSetMem;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+import org.apache.jena.sparql.exec.RowSetStream;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+
+public class TestQueryResultCache {
+
+    private static QueryResultCache cache(long maxEntries) {
+        return QueryResultCache.create(maxEntries, 1_000_000, Duration.ofMinutes(1));
+    }
+
+    @Test public void cache_get_put() {
+        QueryResultCache cache = cache(10);
+        assertNull(cache.get("k1"));
+        cache.put("ds", "k1", Boolean.TRUE, cache.generation("ds"));
+        assertEquals(Boolean.TRUE, cache.get("k1"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0.5, cache.hitRatio(), 0.0001);
+        assertEquals(1, cache.size());
+        assertTrue(cache.bytes() > 0);
+    }
+
+    @Test public void cache_rowset() {
+        QueryResultCache cache = cache(10);
+        Var x = Var.alloc("x");
+        List<Binding> bindings = List.of(BindingFactory.binding(x, SSE.parseNode("1")),
+                                         BindingFactory.binding(x, SSE.parseNode("2")));
+        RowSetRewindable rows = RowSetMem.create(new RowSetStream(bindings.iterator(), List.of(x)));
+        cache.put("ds", "k", rows, cache.generation("ds"));
+        // Estimating the size does not use up the rows.
+        assertEquals(2, rows.size());
+        assertTrue(rows.hasNext());
+        assertSame(rows, cache.get("k"));
+    }
+
+    @Test public void cache_graph() {
+        QueryResultCache cache = cache(10);
+        Graph graph = SSE.parseGraph("(graph (:s :p :o))");
+        long before = cache.bytes();
+        cache.put("ds", "k", graph, cache.generation("ds"));
+        assertTrue(cache.bytes() > before);
+        assertSame(graph, cache.get("k"));
+    }
+
+    @Test public void cache_lru() {
+        QueryResultCache cache = cache(2);
+        cache.put("ds", "k1", Boolean.TRUE, 0);
+        cache.put("ds", "k2", Boolean.TRUE, 0);
+        // Touch k1
+        cache.get("k1");
+        cache.put("ds", "k3", Boolean.TRUE, 0);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("k2"));
+        assertNotNull(cache.get("k1"));
+        assertNotNull(cache.get("k3"));
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test public void cache_bytes() {
+        QueryResultCache cache = QueryResultCache.create(100, 200, Duration.ofMinutes(1));
+        cache.put("ds", "k1", Boolean.TRUE, 0);
+        cache.put("ds", "k2", Boolean.TRUE, 0);
+        long b = cache.bytes();
+        assertTrue(b <= 200);
+        // Too big for the cache.
+        Graph graph = SSE.parseGraph("(graph (:s :p :o1) (:s :p :o2) (:s :p :o3))");
+        cache.put("ds", "k3", graph, 0);
+        assertNull(cache.get("k3"));
+    }
+
+    @Test public void cache_ttl() throws InterruptedException {
+        QueryResultCache cache = QueryResultCache.create(10, 1_000_000, Duration.ofMillis(20));
+        cache.put("ds", "k", Boolean.TRUE, 0);
+        Thread.sleep(50);
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void cache_invalidate() {
+        QueryResultCache cache = cache(10);
+        cache.put("ds1", "k1", Boolean.TRUE, 0);
+        cache.put("ds2", "k2", Boolean.TRUE, 0);
+        cache.invalidate("ds1");
+        assertNull(cache.get("k1"));
+        assertNotNull(cache.get("k2"));
+        assertEquals(1, cache.invalidations());
+    }
+
+    @Test public void cache_invalidate_running() {
+        QueryResultCache cache = cache(10);
+        // A query starts
+        long generation = cache.generation("ds");
+        // An update happens.
+        cache.invalidate("ds");
+        // The query result is not cached.
+        cache.put("ds", "k", Boolean.TRUE, generation);
+        assertEquals(0, cache.size());
+        cache.put("ds", "k", Boolean.TRUE, cache.generation("ds"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void cache_clear() {
+        QueryResultCache cache = cache(10);
+        cache.put("ds", "k", Boolean.TRUE, 0);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test public void cache_clear_running() {
+        QueryResultCache cache = cache(10);
+        // A query starts, on a dataset with no entries yet.
+        long generation = cache.generation("ds");
+        cache.clear();
+        // The query result is not cached.
+        cache.put("ds", "k", Boolean.TRUE, generation);
+        assertEquals(0, cache.size());
+    }
+
+    private static QueryExecCached cachedExec(QueryResultCache cache, DatasetGraph dsg, String queryString) {
+        return new QueryExecCached(cache, "ds", null, queryType->queryString,
+                                   ()->QueryExec.newBuilder().dataset(dsg).query(queryString).build());
+    }
+
+    @Test public void cache_select() {
+        QueryResultCache cache = cache(10);
+        DatasetGraph dsg = SSE.parseDatasetGraph("(dataset (graph (:s :p 1) (:s :p 2)))");
+        String queryString = "SELECT * { ?s ?p ?o }";
+        try ( QueryExec qExec = cachedExec(cache, dsg, queryString) ) {
+            assertEquals(2, Iter.count(qExec.select()));
+        }
+        assertEquals(1, cache.size());
+        try ( QueryExec qExec = cachedExec(cache, dsg, queryString) ) {
+            assertEquals(2, Iter.count(qExec.select()));
+        }
+        assertEquals(1, cache.hits());
+    }
+
+    @Test public void cache_select_too_large() {
+        // Room for a few rows only.
+        QueryResultCache cache = QueryResultCache.create(10, 400, Duration.ofMinutes(1));
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        for ( int i = 0 ; i < 100 ; i++ )
+            dsg.add(SSE.parseQuad("(_ :s :p "+i+")"));
+        String queryString = "SELECT * { ?s ?p ?o }";
+        try ( QueryExec qExec = cachedExec(cache, dsg, queryString) ) {
+            // All rows, partly buffered, partly streamed.
+            assertEquals(100, Iter.count(qExec.select()));
+        }
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestRowSetSpillable {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static Var vx = Var.alloc("x");
+    private static Var vy = Var.alloc("y");
+    private Path dir;
+
+    @Before public void before() {
+        dir = tmp.getRoot().toPath();
+        RowSetSpillable.spillDirectory = dir;
+        RowSetSpillable.resetCounters();
+    }
+
+    @After public void after() {
+        RowSetSpillable.spillDirectory = null;
+    }
+
+    private static List<Binding> rows(int N) {
+        List<Binding> rows = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ ) {
+            if ( i % 10 == 0 )
+                // Row with an unbound variable.
+                rows.add(BindingFactory.binding(vx, NodeFactory.createURI("http://example/s"+i)));
+            else
+                rows.add(BindingFactory.binding(vx, NodeFactory.createURI("http://example/s"+i),
+                                                vy, NodeFactory.createLiteral("value "+i)));
+        }
+        return rows;
+    }
+
+    private static RowSet rowSet(List<Binding> rows) {
+        return new RowSetStream(rows.iterator(), List.of(vx, vy));
+    }
+
+    private int spillFiles() {
+        return dir.toFile().list().length;
+    }
+
+    @Test public void materialize_memory() {
+        List<Binding> rows = rows(100);
+        RowSet rs = RowSetSpillable.materialize(rowSet(rows), 1024*1024);
+        assertEquals(0, RowSetSpillable.spills());
+        assertEquals(0, spillFiles());
+        assertEquals(List.of(vx, vy), rs.getResultVars());
+        assertEquals(rows, Iter.toList(rs));
+    }
+
+    @Test public void materialize_spill() {
+        List<Binding> rows = rows(1000);
+        RowSetSpillable rs = (RowSetSpillable)RowSetSpillable.materialize(rowSet(rows), 1000);
+        assertTrue(rs.isSpilled());
+        assertEquals(1, spillFiles());
+        assertEquals(1, RowSetSpillable.spills());
+        assertTrue(RowSetSpillable.spilledRows() > 900);
+        assertTrue(RowSetSpillable.spilledBytes() > 0);
+        assertEquals(List.of(vx, vy), rs.getResultVars());
+        List<Binding> results = Iter.toList(rs);
+        assertEquals(rows, results);
+        assertEquals(1000, rs.getRowNumber());
+        // Deleted when finished.
+        assertEquals(0, spillFiles());
+    }
+
+    @Test public void materialize_spill_close() {
+        RowSetSpillable rs = (RowSetSpillable)RowSetSpillable.materialize(rowSet(rows(1000)), 1000);
+        rs.next();
+        assertEquals(1, spillFiles());
+        rs.close();
+        assertEquals(0, spillFiles());
+        assertFalse(rs.hasNext());
+    }
+
+    @Test public void materialize_no_limit() {
+        List<Binding> rows = rows(1000);
+        RowSet rs = RowSetSpillable.materialize(rowSet(rows), -1);
+        assertEquals(0, RowSetSpillable.spills());
+        assertEquals(rows, Iter.toList(rs));
+    }
+
+    @Test public void materialize_default() {
+        long x = RowSetSpillable.dftMemoryBudget;
+        try {
+            RowSetSpillable.dftMemoryBudget = 100;
+            List<Binding> rows = rows(50);
+            RowSet rs = RowSetSpillable.materialize(rowSet(rows));
+            assertEquals(1, RowSetSpillable.spills());
+            assertEquals(rows, Iter.toList(rs));
+        } finally {
+            RowSetSpillable.dftMemoryBudget = x;
+        }
+        File[] files = dir.toFile().listFiles();
+        assertEquals(0, files.length);
+    }
+
+    @Test public void materialize_rowset_in_memory() {
+        long x = RowSetSpillable.dftMemoryBudget;
+        try {
+            RowSetSpillable.dftMemoryBudget = 100;
+            List<Binding> rows = rows(50);
+            // RowSet.materialize() does not spill.
+            RowSet rs = rowSet(rows).materialize();
+            assertEquals(0, RowSetSpillable.spills());
+            assertEquals(rows, Iter.toList(rs));
+        } finally {
+            RowSetSpillable.dftMemoryBudget = x;
+        }
+    }
+}
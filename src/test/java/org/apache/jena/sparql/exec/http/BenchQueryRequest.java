@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.exec.http;
+
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpRequest;
+
+import org.apache.jena.riot.WebContent;
+
+/**
+ * Benchmark: bytes allocated, and time, to build the HTTP request for a query with
+ * {@link QueryExecHTTP}. No request is sent.
+ * <p>
+ * Allocation is measured with {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes}
+ * for the benchmark thread around N request builds, so it includes the query execution
+ * builder, the {@link Params} copy and the URL or form body. Compare figures from runs
+ * before and after a change to the request construction code.
+ * <p>
+ * This is not part of the test suite. Run with {@code main}; the optional argument is
+ * the number of requests per measurement (default 100,000).
+ */
+public class BenchQueryRequest {
+
+    private static final String serviceURL = "http://localhost:3030/ds/query";
+    private static final String shortQuery = "SELECT * { ?s ?p ?o } LIMIT 10";
+    private static final String longQuery;
+    static {
+        StringBuilder sb = new StringBuilder("PREFIX : <http://example/>\nSELECT * {\n");
+        for ( int i = 0 ; i < 50 ; i++ )
+            sb.append("  ?s :p").append(i).append(" ?o").append(i).append(" .\n");
+        sb.append("}");
+        longQuery = sb.toString();
+    }
+
+    public static void main(String... args) {
+        int N = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if ( ! threads.isThreadAllocatedMemorySupported() ) {
+            System.err.println("Thread allocated memory measurement is not supported by this JVM");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        // Warm up: JIT.
+        for ( int i = 0 ; i < 3 ; i++ ) {
+            run(threads, N, shortQuery, 2048);
+            run(threads, N, longQuery, 2048);
+        }
+        System.out.printf("Requests=%d\n", N);
+        report("GET", run(threads, N, shortQuery, 2048));
+        report("GET->POST", run(threads, N, longQuery, 256));
+    }
+
+    private static void report(String label, double[] result) {
+        System.out.printf("%-10s %8.0f bytes/request  %8.2f us/request\n", label, result[0], result[1]);
+    }
+
+    /** Returns bytes allocated per request and microseconds per request. */
+    private static double[] run(com.sun.management.ThreadMXBean threads, int N, String queryString, int urlLimit) {
+        long threadId = Thread.currentThread().getId();
+        long sink = 0;
+        long bytes0 = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for ( int i = 0 ; i < N ; i++ ) {
+            try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder()
+                        .service(serviceURL)
+                        .queryString(queryString)
+                        .param("apikey", "abc123")
+                        .addDefaultGraphURI("http://example/g")
+                        .urlGetLimit(urlLimit)
+                        .build() ) {
+                HttpRequest request = qExec.queryRequest(WebContent.defaultSparqlResultsHeader);
+                sink += request.uri().toString().length();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytes0;
+        if ( sink == 0 )
+            System.out.println();
+        return new double[] { (double)bytes / N, elapsed / 1e3 / N };
+    }
+}
@@ -24,8 +24,12 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
       TestGSP.class
+    , TestParams.class
     , TestQueryExecHTTP.class
+    , TestIteratorJsonItems.class
+    , TestPreparedQueryHTTP.class
     , TestQueryExecCleanServer.class
+    , TestRequestBody.class
     , TestUpdateExecHTTP.class
     , TestServiceFunctions.class
     , TestService2.class
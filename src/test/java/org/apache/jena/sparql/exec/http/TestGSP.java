@@ -31,6 +31,7 @@ import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.http.AsyncHttpRDF;
 import org.apache.jena.http.HttpOp2;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
@@ -262,4 +263,54 @@ public class TestGSP {
             ()->GSP.request(gspServiceURL()+"junk").getDataset()
         );
     }
+
+    @Test public void gsp_put_get_streaming_01() {
+        // Big enough to need several buffers.
+        Graph bigGraph = GraphFactory.createDefaultGraph();
+        for ( int i = 0 ; i < 20_000 ; i++ )
+            bigGraph.add(SSE.parseTriple("(:s :p "+i+")"));
+        GSP.request(gspServiceURL())
+            .defaultGraph()
+            .contentLength(false)
+            .contentType(RDFFormat.NTRIPLES)
+            .PUT(bigGraph);
+        Graph g = GSP.request(gspServiceURL()).defaultGraph().GET();
+        assertEquals(bigGraph.size(), g.size());
+    }
+
+    @Test public void gsp_put_get_content_length_01() {
+        GSP.request(gspServiceURL())
+            .defaultGraph()
+            .contentLength(true)
+            .PUT(graph);
+        Graph g = GSP.request(gspServiceURL()).defaultGraph().GET();
+        assertTrue(graph.isIsomorphicWith(g));
+    }
+
+    @Test public void gsp_dataset_streaming_01() {
+        GSP.request(gspServiceURL()).contentLength(false).putDataset(dataset);
+        DatasetGraph dsg = GSP.request(gspServiceURL()).getDataset();
+        assertTrue(IsoMatcher.isomorphic(dataset, dsg));
+    }
+
+    @Test public void gsp_async_put_get_delete_01() {
+        AsyncHttpRDF.getOrElseThrow(GSP.request(gspServiceURL()).defaultGraph().asyncPUT(graph));
+        Graph g1 = AsyncHttpRDF.getOrElseThrow(GSP.request(gspServiceURL()).defaultGraph().asyncGET());
+        assertTrue(graph.isIsomorphicWith(g1));
+        AsyncHttpRDF.getOrElseThrow(GSP.request(gspServiceURL()).defaultGraph().asyncDELETE());
+        Graph g2 = GSP.request(gspServiceURL()).defaultGraph().GET();
+        assertTrue(g2.isEmpty());
+    }
+
+    @Test public void gsp_async_ds_put_get_01() {
+        AsyncHttpRDF.getOrElseThrow(GSP.request(gspServiceURL()).asyncPutDataset(dataset));
+        DatasetGraph dsg = AsyncHttpRDF.getOrElseThrow(GSP.request(gspServiceURL()).asyncGetDataset());
+        assertTrue(IsoMatcher.isomorphic(dataset, dsg));
+    }
+
+    @Test public void gsp_async_404() {
+        expect404(
+            ()->AsyncHttpRDF.getOrElseThrow(GSP.request(gspServiceURL()+"junk").defaultGraph().asyncPUT(graph))
+        );
+    }
 }
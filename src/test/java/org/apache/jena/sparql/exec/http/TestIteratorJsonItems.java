@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonException;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.query.QueryExecException;
+import org.junit.Test;
+
+public class TestIteratorJsonItems {
+
+    private static List<JsonObject> items(String json) {
+        InputStream in = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        List<JsonObject> x = new ArrayList<>();
+        try ( IteratorJsonItems iter = IteratorJsonItems.create(in) ) {
+            iter.forEachRemaining(x::add);
+        }
+        return x;
+    }
+
+    @Test public void jsonItems_empty() {
+        assertTrue(items("[]").isEmpty());
+        assertTrue(items("  [ \n ]  ").isEmpty());
+    }
+
+    @Test public void jsonItems_1() {
+        List<JsonObject> x = items("[ { \"a\" : 1 } ]");
+        assertEquals(1, x.size());
+        assertEquals(JSON.parse("{ \"a\" : 1 }"), x.get(0));
+    }
+
+    @Test public void jsonItems_2() {
+        String json = "[ { \"a\" : \"x]}\" , \"b\" : [1, {\"c\": \"\\\"{\"}] },{\"d\":null} ]";
+        List<JsonObject> x = items(json);
+        assertEquals(2, x.size());
+        assertEquals("x]}", x.get(0).get("a").getAsString().value());
+        assertTrue(x.get(1).hasKey("d"));
+    }
+
+    @Test public void jsonItems_unicode() {
+        List<JsonObject> x = items("[{\"name\":\"Zoë é\"}]");
+        assertEquals("Zoë é", x.get(0).get("name").getAsString().value());
+    }
+
+    @Test(expected=QueryExecException.class)
+    public void jsonItems_not_object() {
+        items("[ {}, 1 ]");
+    }
+
+    @Test(expected=JsonException.class)
+    public void jsonItems_not_array() {
+        items("{ }");
+    }
+
+    @Test(expected=JsonException.class)
+    public void jsonItems_truncated() {
+        items("[ { \"a\" : 1 }, { \"b\" ");
+    }
+
+    @Test public void jsonItems_close() {
+        InputStream in = new ByteArrayInputStream("[{},{},{}]".getBytes(StandardCharsets.UTF_8));
+        IteratorJsonItems iter = IteratorJsonItems.create(in);
+        assertTrue(iter.hasNext());
+        iter.next();
+        iter.close();
+        assertFalse(iter.hasNext());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.jena.http.HttpLib;
+import org.junit.Test;
+
+public class TestParams {
+
+    @Test public void params_httpString_0() {
+        Params params = Params.create();
+        assertEquals("", params.httpString());
+        assertEquals(0, params.httpStringLength());
+    }
+
+    @Test public void params_httpString_1() {
+        Params params = Params.create().add("query", "SELECT * { ?s ?p ?o }");
+        String x = params.httpString();
+        assertEquals("query="+HttpLib.urlEncodeQueryString("SELECT * { ?s ?p ?o }"), x);
+        assertEquals(x.length(), params.httpStringLength());
+    }
+
+    @Test public void params_httpString_2() {
+        Params params = Params.create().add("a", "1").add("flag").add("b", "xyz");
+        String x = params.httpString();
+        assertEquals("a=1&flag&b=xyz", x);
+        assertEquals(x.length(), params.httpStringLength());
+        StringBuilder sb = new StringBuilder("http://example/?");
+        assertEquals("http://example/?"+x, params.appendHttpString(sb).toString());
+    }
+
+    @Test public void params_copy() {
+        Params params1 = Params.create().add("a", "1");
+        Params params2 = Params.create(params1).add("a", "2");
+        assertEquals("1", params1.getValue("a"));
+        assertEquals(List.of("1", "2"), params2.getValues("a"));
+        assertEquals("a=1", params1.httpString());
+        assertEquals("a=1&a=2", params2.httpString());
+    }
+
+    @Test public void params_lookup() {
+        Params params = Params.create().add("a", "1").add("b", "2");
+        assertTrue(params.containsParam("a"));
+        assertFalse(params.containsParam("c"));
+        assertNull(params.getValues("c"));
+        params.remove("a");
+        assertFalse(params.containsParam("a"));
+        assertEquals(1, params.count());
+        assertEquals(List.of("b"), params.names());
+    }
+
+    @Test(expected=Params.MultiValueException.class)
+    public void params_multivalue() {
+        Params.create().add("a", "1").add("a", "2").getValue("a");
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.exec.http;
+
+import static org.apache.jena.sparql.sse.SSE.parseQuad;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.fuseki.main.FusekiServer;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.rdflink.RDFLink;
+import org.apache.jena.rdflink.RDFLinkRemote;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestPreparedQueryHTTP {
+    private static FusekiServer server = null;
+    private static String dsURL;
+
+    private static Var varS = Var.alloc("s");
+    private static Node s1 = NodeFactory.createURI("http://example/s1");
+    private static Node s2 = NodeFactory.createURI("http://example/s2");
+    private static Node s3 = NodeFactory.createURI("http://example/s3");
+
+    @BeforeClass public static void beforeClass() {
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        dsg.add(parseQuad("(_ :s1 :p 'one')"));
+        dsg.add(parseQuad("(_ :s2 :p 'two')"));
+        dsg.add(parseQuad("(_ :s2 :p 'deux')"));
+        server = FusekiServer.create()
+            .port(0)
+            .add("/ds", dsg)
+            .build();
+        server.start();
+        dsURL = "http://localhost:"+server.getPort()+"/ds";
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop();
+    }
+
+    private static final String QS = "SELECT ?o { ?s <http://example/p> ?o }";
+
+    private static int count(PreparedQueryHTTP prepared, Node s) {
+        Binding b = BindingFactory.binding(varS, s);
+        try ( QueryExec qExec = prepared.exec(b) ) {
+            RowSet rs = qExec.select();
+            int n = 0;
+            while(rs.hasNext()) { rs.next(); n++; }
+            return n;
+        }
+    }
+
+    @Test public void prepared_substitute() {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder().service(dsURL).queryString(QS).parameters("s").build();
+        assertFalse(prepared.isUseValues());
+        assertEquals(1, count(prepared, s1));
+        assertEquals(2, count(prepared, s2));
+        assertEquals(0, count(prepared, s3));
+    }
+
+    @Test public void prepared_values() {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder()
+                .service(dsURL).queryString("SELECT * { ?s <http://example/p> ?o }").parameters("s").useValues().build();
+        Binding b = BindingFactory.binding(varS, s2);
+        try ( QueryExec qExec = prepared.exec(b) ) {
+            RowSet rs = qExec.select();
+            assertTrue(rs.getResultVars().contains(varS));
+            assertEquals(s2, rs.next().get(varS));
+        }
+        assertEquals(0, count(prepared, s3));
+    }
+
+    @Test public void prepared_values_undef() {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder()
+                .service(dsURL).queryString(QS).parameters("s").useValues().build();
+        try ( QueryExec qExec = prepared.exec(BindingFactory.root()) ) {
+            RowSet rs = qExec.select();
+            int n = 0;
+            while(rs.hasNext()) { rs.next(); n++; }
+            assertEquals(3, n);
+        }
+    }
+
+    @Test public void prepared_post() {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder()
+                .service(dsURL).queryString(QS).parameters("s").urlGetLimit(20).build();
+        assertEquals(2, count(prepared, s2));
+        PreparedQueryHTTP preparedForm = PreparedQueryHTTP.newBuilder()
+                .service(dsURL).queryString(QS).parameters("s").sendMode(QuerySendMode.asPostForm).build();
+        assertEquals(2, count(preparedForm, s2));
+    }
+
+    @Test public void prepared_literal() {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder()
+                .service(dsURL).queryString("ASK { ?s <http://example/p> ?o }").parameters("o").build();
+        Var varO = Var.alloc("o");
+        try ( QueryExec qExec = prepared.exec(BindingFactory.binding(varO, NodeFactory.createLiteral("deux"))) ) {
+            assertTrue(qExec.ask());
+        }
+        try ( QueryExec qExec = prepared.exec(BindingFactory.binding(varO, NodeFactory.createLiteral("trois"))) ) {
+            assertFalse(qExec.ask());
+        }
+    }
+
+    @Test public void prepared_threads() throws Exception {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder().service(dsURL).queryString(QS).parameters("s").build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for ( int i = 0 ; i < 20 ; i++ ) {
+                Node s = (i % 2 == 0) ? s1 : s2;
+                results.add(executor.submit(()->count(prepared, s)));
+            }
+            for ( int i = 0 ; i < 20 ; i++ )
+                assertEquals((i % 2 == 0) ? 1 : 2, results.get(i).get().intValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected=QueryExecException.class)
+    public void prepared_no_value() {
+        PreparedQueryHTTP prepared = PreparedQueryHTTP.newBuilder().service(dsURL).queryString(QS).parameters("s").build();
+        prepared.exec(BindingFactory.root());
+    }
+
+    @Test(expected=QueryException.class)
+    public void prepared_projected() {
+        PreparedQueryHTTP.newBuilder().service(dsURL).queryString("SELECT ?s { ?s ?p ?o }").parameters("s").build();
+    }
+
+    @Test(expected=QueryException.class)
+    public void prepared_bad_syntax() {
+        PreparedQueryHTTP.newBuilder().service(dsURL).queryString("SELECT ?s {").parameters("s").build();
+    }
+
+    @Test public void prepared_link() {
+        try ( RDFLink link = RDFLinkRemote.newBuilder().destination(dsURL).build() ) {
+            PreparedQueryHTTP prepared = ((RDFLinkRemote)link).prepare(QS, "s");
+            assertEquals(2, count(prepared, s2));
+        }
+    }
+}
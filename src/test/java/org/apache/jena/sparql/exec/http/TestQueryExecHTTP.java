@@ -24,6 +24,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.json.JsonArray;
@@ -32,6 +34,9 @@ import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.fuseki.main.FusekiServer;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Triple;
+import org.apache.jena.http.sys.HttpMonitor;
+import org.apache.jena.http.sys.HttpRequestInfo;
+import org.apache.jena.http.sys.HttpRequestListener;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.Syntax;
@@ -119,6 +124,64 @@ public class TestQueryExecHTTP {
         }
     }
 
+    /** Run the action and return the HTTP methods of requests sent to the test dataset. */
+    private static List<String> httpMethods(Runnable action) {
+        List<String> methods = new CopyOnWriteArrayList<>();
+        HttpRequestListener listener = new HttpRequestListener() {
+            @Override public void requestStart(HttpRequestInfo info) {
+                if ( info.serviceURL().equals(dsURL) )
+                    methods.add(info.method());
+            }
+        };
+        HttpMonitor.addListener(listener);
+        try {
+            action.run();
+        } finally {
+            HttpMonitor.removeListener(listener);
+        }
+        return methods;
+    }
+
+    @Test
+    public void query_select_get_limit() {
+        // Longer than the URL limit: switches to POST.
+        List<String> methods = httpMethods(()->{
+            try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().urlGetLimit(40)
+                        .service(dsURL).queryString("SELECT * { ?s ?p ?o }").build() ) {
+                RowSet rs = qExec.select();
+                assertTrue(rs.hasNext());
+                rs.next();
+                assertFalse(rs.hasNext());
+            }
+        });
+        assertEquals(List.of("POST"), methods);
+    }
+
+    @Test
+    public void query_select_get_under_limit() {
+        // Within the URL limit: stays as GET.
+        List<String> methods = httpMethods(()->{
+            try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().urlGetLimit(1000)
+                        .service(dsURL).queryString("SELECT * { ?s ?p ?o }").build() ) {
+                RowSet rs = qExec.select();
+                assertEquals(1, Iter.count(rs));
+            }
+        });
+        assertEquals(List.of("GET"), methods);
+    }
+
+    @Test
+    public void query_select_get_limit_form() {
+        List<String> methods = httpMethods(()->{
+            try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().sendMode(QuerySendMode.asGetWithLimitForm).urlGetLimit(40)
+                        .service(dsURL).queryString("SELECT * { GRAPH ?g { ?s ?p ?o } }").build() ) {
+                RowSet rs = qExec.select();
+                assertEquals(2, Iter.count(rs));
+            }
+        });
+        assertEquals(List.of("POST"), methods);
+    }
+
     @Test
     public void query_select_accept_1() {
         try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder()
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.exec.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Request bodies as seen by the server. */
+public class TestRequestBody {
+
+    // A server that records the request headers and body.
+    private static HttpServer server;
+    private static volatile String transferEncoding;
+    private static volatile String contentLength;
+    private static volatile String contentEncoding;
+    private static volatile byte[] body;
+
+    @BeforeClass public static void beforeClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ds", TestRequestBody::handle);
+        server.start();
+    }
+
+    @AfterClass public static void afterClass() {
+        server.stop(0);
+    }
+
+    @Before public void before() {
+        transferEncoding = null;
+        contentLength = null;
+        contentEncoding = null;
+        body = null;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+        contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        body = exchange.getRequestBody().readAllBytes();
+        String response = null;
+        if ( exchange.getRequestURI().getPath().endsWith("/query") ) {
+            exchange.getResponseHeaders().set("Content-Type", WebContent.contentTypeResultsJSON);
+            response = "{ \"head\": {}, \"boolean\": true }";
+        } else if ( exchange.getRequestMethod().equals("GET") ) {
+            exchange.getResponseHeaders().set("Content-Type", WebContent.contentTypeNTriples);
+            response = "";
+        }
+        if ( response == null ) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+    }
+
+    private static String gunzip(byte[] bytes) {
+        try ( InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes)) ) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static String url(String path) {
+        return "http://localhost:"+server.getAddress().getPort()+"/ds"+path;
+    }
+
+    private static Graph graph(int N) {
+        Graph graph = GraphFactory.createDefaultGraph();
+        for ( int i = 0 ; i < N ; i++ )
+            graph.add(SSE.parseTriple("(:s :p "+i+")"));
+        return graph;
+    }
+
+    @Test public void upload_streamed() {
+        Graph graph = graph(1000);
+        GSP.request(url("/data")).defaultGraph().contentLength(false).contentType(RDFFormat.NTRIPLES).PUT(graph);
+        assertEquals("chunked", transferEncoding);
+        assertNull(contentLength);
+        assertEquals(1000, parse(body).size());
+    }
+
+    @Test public void upload_content_length() {
+        Graph graph = graph(1000);
+        GSP.request(url("/data")).defaultGraph().contentLength(true).contentType(RDFFormat.NTRIPLES).PUT(graph);
+        assertNull(transferEncoding);
+        assertEquals(Integer.toString(body.length), contentLength);
+    }
+
+    private static Graph parse(byte[] bytes) {
+        Graph graph = GraphFactory.createDefaultGraph();
+        RDFParser.source(new ByteArrayInputStream(bytes)).lang(Lang.NTRIPLES).parse(graph);
+        return graph;
+    }
+
+    @Test public void compressed_gsp() {
+        Graph graph = graph(100);
+        GSP gsp = GSP.request(url("/data")).defaultGraph().contentEncoding("gzip").contentType(RDFFormat.NTRIPLES);
+        gsp.PUT(graph);
+        assertEquals("gzip", contentEncoding);
+        assertEquals(100, parse(gunzip(body).getBytes(StandardCharsets.UTF_8)).size());
+        // Not on a later request with no body.
+        gsp.GET();
+        assertNull(contentEncoding);
+    }
+
+    @Test public void compressed_update() {
+        String updateString = "INSERT DATA { <http://example/s> <http://example/p> 1 }";
+        UpdateExecHTTP.newBuilder().service(url("/update")).updateString(updateString).contentEncoding("gzip").build().execute();
+        assertEquals("gzip", contentEncoding);
+        // In-memory body: compressed before sending, with a Content-Length.
+        assertEquals(Integer.toString(body.length), contentLength);
+        assertEquals(updateString, gunzip(body));
+    }
+
+    @Test public void compressed_query() {
+        String queryString = "ASK {}";
+        try ( QueryExecHTTP qExec = QueryExecHTTP.newBuilder().service(url("/query")).queryString(queryString)
+                    .postQuery().contentEncoding("gzip").build() ) {
+            assertTrue(qExec.ask());
+        }
+        assertEquals("gzip", contentEncoding);
+        assertEquals(Integer.toString(body.length), contentLength);
+        assertEquals(queryString, gunzip(body));
+    }
+}
@@ -20,35 +20,61 @@ package org.apache.jena.sparql.exec.http;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.sun.net.httpserver.HttpServer;
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.logging.LogCtl;
+import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.graph.Node ;
 import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.http.sys.CircuitBreaker;
+import org.apache.jena.http.sys.HttpMonitor;
+import org.apache.jena.http.sys.HttpRequestInfo;
+import org.apache.jena.http.sys.HttpRequestListener;
 import org.apache.jena.http.sys.HttpRequestModifier;
+import org.apache.jena.http.sys.RegistryCircuitBreaker;
 import org.apache.jena.http.sys.RegistryRequestModifier;
 import org.apache.jena.query.*;
 import org.apache.jena.rdflink.RDFLink;
 import org.apache.jena.rdflink.RDFLinkFactory;
+import org.apache.jena.riot.WebContent;
 import org.apache.jena.sparql.algebra.Algebra;
 import org.apache.jena.sparql.algebra.Op;
 import org.apache.jena.sparql.algebra.op.OpService ;
 import org.apache.jena.sparql.core.BasicPattern ;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphZero;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
 import org.apache.jena.sparql.engine.http.Service;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.engine.main.iterator.QueryIterService;
 import org.apache.jena.sparql.exec.QueryExec;
 import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.RowSetSpillable;
 import org.apache.jena.sparql.sse.SSE;
 import org.apache.jena.sparql.syntax.Element;
 import org.apache.jena.sparql.syntax.ElementGroup;
@@ -153,6 +179,86 @@ public class TestService2 {
         assertFalse(qIter.hasNext());
     }
 
+    @Test public void service_exec_spill() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            for ( int i = 0 ; i < 100 ; i++ )
+                dsg.add(SSE.parseQuad("(_ :s :p "+i+")"));
+        });
+        long spills = RowSetSpillable.spills();
+        OpService op = makeOpElt(env);
+        Context cxt = Context.create().set(Service2.httpServiceMemoryLimit, 500);
+        QueryIterator qIter = Service2.exec(op, cxt);
+        assertEquals(spills+1, RowSetSpillable.spills());
+        assertEquals(100, Iter.count(qIter));
+        qIter.close();
+    }
+
+    @Test public void service_exec_spill_close() throws IOException {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            for ( int i = 0 ; i < 100 ; i++ )
+                dsg.add(SSE.parseQuad("(_ :s :p "+i+")"));
+        });
+        Path dir = Files.createTempDirectory("jena-test-");
+        Path x = RowSetSpillable.spillDirectory;
+        try {
+            RowSetSpillable.spillDirectory = dir;
+            OpService op = makeOpElt(env);
+            Context cxt = Context.create().set(Service2.httpServiceMemoryLimit, 500);
+            QueryIterator qIter = Service2.exec(op, cxt);
+            assertEquals(1, dir.toFile().listFiles().length);
+            // Stop early.
+            qIter.next();
+            qIter.close();
+            assertEquals(0, dir.toFile().listFiles().length);
+        } finally {
+            RowSetSpillable.spillDirectory = x;
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test public void service_exec_streaming() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            dsg.add(SSE.parseQuad("(_ :s :p 1)"));
+            dsg.add(SSE.parseQuad("(_ :s :p 2)"));
+        });
+        OpService op = makeOpElt(env);
+        Context cxt = Context.create().set(Service2.httpServiceStreaming, true);
+        QueryIterator qIter = Service2.exec(op, cxt);
+        assertTrue(qIter instanceof QueryIterHTTP);
+        assertTrue(qIter.hasNext());
+        qIter.next();
+        // Close before the end.
+        qIter.close();
+        assertFalse(qIter.hasNext());
+    }
+
+    @Test public void service_exec_streaming_per_service() {
+        OpService op = makeOpElt(env);
+        Context cxt1 = Context.create().set(Service2.httpServiceStreaming, List.of(SERVICE));
+        QueryIterator qIter1 = Service2.exec(op, cxt1);
+        assertTrue(qIter1 instanceof QueryIterHTTP);
+        assertFalse(qIter1.hasNext());
+        qIter1.close();
+
+        Context cxt2 = Context.create().set(Service2.httpServiceStreaming, List.of("http://example/other"));
+        QueryIterator qIter2 = Service2.exec(op, cxt2);
+        assertFalse(qIter2 instanceof QueryIterHTTP);
+        qIter2.close();
+    }
+
+    @Test public void service_query_streaming() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->dsg.add(SSE.parseQuad("(_ :s :p :o)")));
+        String queryString = "SELECT * { SERVICE <"+SERVICE+"> { ?s ?p ?o }} ";
+        Context cxt = Context.create().set(Service2.httpServiceStreaming, "true");
+        try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+            assertEquals(1, Iter.count(qExec.select()));
+        }
+    }
+
     @Test public void service_query_QueryExecution() {
         // Via QueryExecution
         DatasetGraph dsg = env.dsg();
@@ -215,6 +321,31 @@ public class TestService2 {
         });
     }
 
+    @Test public void service_silent_circuit_open() {
+        CircuitBreaker breaker = CircuitBreaker.newBuilder().minimumCalls(1).build();
+        breaker.tryAcquire();
+        breaker.onFailure(0);
+        assertTrue(breaker.isOpen());
+        RegistryCircuitBreaker.get().add(SERVICE, breaker);
+        try {
+            OpService op = makeOp(env);
+            OpService opSilent = new OpService(op.getService(), op.getSubOp(), true);
+            QueryIterator qIter = Service2.exec(opSilent, new Context());
+            assertTrue(qIter.hasNext());
+            Binding binding = qIter.next();
+            assertFalse(qIter.hasNext());
+            assertTrue(binding.isEmpty());
+            // Not silent: fails without a request.
+            try {
+                Service2.exec(op, new Context());
+                fail("Expected an exception");
+            } catch (QueryExceptionHTTP ex) {}
+            assertEquals(1, breaker.rejected());
+        } finally {
+            RegistryCircuitBreaker.get().remove(SERVICE);
+        }
+    }
+
     @Test public void service_query_extra_params() {
         String queryString = "ASK { SERVICE <"+SERVICE+"?format=json> { BIND(now() AS ?now) } }";
         try ( RDFLink link = RDFLinkFactory.connect(localDataset()) ) {
@@ -436,6 +567,435 @@ public class TestService2 {
         }
     }
 
+    @Test public void service_batch() {
+        service_batch(20, "SELECT * { VALUES ?o { $values } SERVICE <"+SERVICE+"> { ?s :p ?o } }");
+    }
+
+    @Test public void service_batch_undef() {
+        // Some incoming rows do not bind ?o.
+        service_batch(20, "SELECT * { { VALUES ?o { $values } } UNION { BIND(:x AS ?z) } SERVICE <"+SERVICE+"> { ?s :p ?o } }");
+    }
+
+    @Test public void service_batch_off() {
+        service_batch(1, "SELECT * { VALUES ?o { $values } SERVICE <"+SERVICE+"> { ?s :p ?o } }");
+    }
+
+    @Test public void service_batch_filter() {
+        service_batch(20, "SELECT * { VALUES ?o { $values } SERVICE <"+SERVICE+"> { ?s :p ?o FILTER(?o < 100) } }");
+    }
+
+    // Not batched: the results would differ from one request per binding.
+
+    @Test public void service_batch_not_limit() {
+        service_batch(20, "SELECT * { VALUES ?o { $values } SERVICE <"+SERVICE+"> { SELECT * { ?s :p ?o } LIMIT 1 } }", false);
+    }
+
+    @Test public void service_batch_not_aggregate() {
+        service_batch(20, "SELECT * { VALUES ?o { $values } SERVICE <"+SERVICE+"> { SELECT (COUNT(*) AS ?c) { ?s :p ?o } } }", false);
+    }
+
+    @Test public void service_batch_not_filter_outer() {
+        // ?o is only set by the incoming bindings.
+        service_batch(20, "SELECT * { VALUES ?o { $values } SERVICE <"+SERVICE+"> { ?s :p ?x FILTER(?x = ?o) } }", false);
+    }
+
+    private void service_batch(int batchSize, String queryPattern) {
+        service_batch(batchSize, queryPattern, batchSize > 1);
+    }
+
+    private void service_batch(int batchSize, String queryPattern, boolean batched) {
+        int N = 250;
+        DatasetGraph dsg = env.dsg();
+        StringBuilder values = new StringBuilder();
+        dsg.executeWrite(()->{
+            for ( int i = 0 ; i < N ; i++ )
+                dsg.add(SSE.parseQuad("(_ :s :p "+i+")"));
+        });
+        // Duplicates and some values with no match.
+        for ( int i = 0 ; i < N ; i += 2 )
+            values.append(' ').append(i).append(' ').append(i).append(' ').append(N+i);
+        String queryString = "PREFIX : <http://example/> "+queryPattern.replace("$values", values.toString());
+
+        // Expected, without batching.
+        Context cxt0 = Context.create().set(Service2.httpServiceBatchSize, 1);
+        OpExecutorHTTP.register(cxt0);
+        Context cxt = Context.create().set(Service2.httpServiceBatchSize, batchSize);
+        OpExecutorHTTP.register(cxt);
+        AtomicInteger COUNTER = new AtomicInteger(0);
+        HttpRequestModifier counter = (params, httpHeaders) -> COUNTER.incrementAndGet();
+
+        runWithModifier(SERVICE, counter, ()->{
+            List<Binding> expected;
+            try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt0).build() ) {
+                expected = Iter.toList(qExec.select());
+            }
+            int requestsOneByOne = COUNTER.getAndSet(0);
+            List<Binding> actual;
+            try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+                actual = Iter.toList(qExec.select());
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            assertEquals(expected.size(), actual.size());
+            if ( batched )
+                assertTrue(COUNTER.get() < requestsOneByOne);
+            else
+                assertEquals(requestsOneByOne, COUNTER.get());
+        });
+    }
+
+    @Test public void service_parallel() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            dsg.add(SSE.parseQuad("(_ :s :p 1)"));
+            dsg.add(SSE.parseQuad("(_ :s :p 2)"));
+            dsg.add(SSE.parseQuad("(_ :x :q 3)"));
+        });
+        String queryString = "PREFIX : <http://example/> SELECT * { SERVICE <"+SERVICE+"> { ?s :p ?o } SERVICE <"+SERVICE+"> { ?x :q ?y } }";
+
+        // Each request waits until both have started.
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicBoolean together = new AtomicBoolean(true);
+        HttpRequestModifier modifier = (params, httpHeaders) -> {
+            latch.countDown();
+            try {
+                if ( ! latch.await(5, TimeUnit.SECONDS) )
+                    together.set(false);
+            } catch (InterruptedException ex) { together.set(false); }
+        };
+
+        Context cxt = Context.create();
+        OpExecutorHTTP.register(cxt);
+        runWithModifier(SERVICE, modifier, ()->{
+            try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+                assertEquals(2, Iter.count(qExec.select()));
+            }
+        });
+        assertTrue("Requests not concurrent", together.get());
+    }
+
+    @Test public void service_parallel_sequence_filter() {
+        // The second SERVICE uses ?limit, from the first, only in a FILTER,
+        // so it must run after the first, with ?limit substituted.
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            dsg.add(SSE.parseQuad("(_ :x :q 1)"));
+            dsg.add(SSE.parseQuad("(_ :s :p 1)"));
+            dsg.add(SSE.parseQuad("(_ :s :p 2)"));
+            dsg.add(SSE.parseQuad("(_ :s :p 3)"));
+        });
+        Op op = SSE.parseOp("(sequence"
+                            +" (service <"+SERVICE+"> (bgp (?x :q ?limit)))"
+                            +" (service <"+SERVICE+"> (filter (> ?o ?limit) (bgp (?s :p ?o)))))");
+        Context cxt = Context.create();
+        OpExecutorHTTP.register(cxt);
+        DatasetGraph local = localDataset();
+        ExecutionContext execCxt = new ExecutionContext(cxt, local.getDefaultGraph(), local, QC.getFactory(cxt));
+        QueryIterator qIter = QC.execute(op, QueryIterRoot.create(execCxt), execCxt);
+        try {
+            assertEquals(2, Iter.count(qIter));
+        } finally {
+            qIter.close();
+        }
+    }
+
+    @Test public void service_parallel_cancel() throws IOException, InterruptedException {
+        // A service that sends the start of the results, then stalls.
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", exchange->{
+            exchange.getResponseHeaders().set("Content-Type", WebContent.contentTypeResultsJSON);
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("{ \"head\": { \"vars\": [ \"s\" ] }, \"results\": { \"bindings\": [ ".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try { release.await(10, TimeUnit.SECONDS); } catch (InterruptedException ex) {}
+            exchange.close();
+        });
+        server.start();
+        String slowURL = "http://localhost:"+server.getAddress().getPort()+"/slow";
+
+        CountDownLatch reading = new CountDownLatch(2);
+        CountDownLatch ended = new CountDownLatch(2);
+        HttpRequestListener listener = new HttpRequestListener() {
+            @Override public void firstByte(HttpRequestInfo info)                   { reading.countDown(); }
+            @Override public void bodyComplete(HttpRequestInfo info)                { ended.countDown(); }
+            @Override public void error(HttpRequestInfo info, Throwable throwable)  { ended.countDown(); }
+        };
+        HttpMonitor.addListener(listener);
+        try {
+            Op op = SSE.parseOp("(sequence"
+                                +" (service <"+slowURL+"> (bgp (?s ?p ?o)))"
+                                +" (service <"+slowURL+"> (bgp (?x ?y ?z))))");
+            Context cxt = Context.create();
+            OpExecutorHTTP.register(cxt);
+            DatasetGraph local = localDataset();
+            ExecutionContext execCxt = new ExecutionContext(cxt, local.getDefaultGraph(), local, QC.getFactory(cxt));
+            QueryIterator qIter = QC.execute(op, QueryIterRoot.create(execCxt), execCxt);
+            try {
+                assertTrue("Requests not started", reading.await(5, TimeUnit.SECONDS));
+                qIter.cancel();
+                // The HTTP exchanges end without waiting for the service.
+                assertTrue("Requests not aborted", ended.await(2, TimeUnit.SECONDS));
+                try {
+                    qIter.hasNext();
+                    fail("Expected QueryCancelledException");
+                } catch (QueryCancelledException ex) {}
+            } finally {
+                qIter.close();
+            }
+        } finally {
+            HttpMonitor.removeListener(listener);
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    @Test public void service_parallel_silent() {
+        logOnlyErrors(QueryIterService.class, ()->{
+            DatasetGraph dsg = env.dsg();
+            dsg.executeWrite(()->dsg.add(SSE.parseQuad("(_ :s :p 1)")));
+            String queryString = "PREFIX : <http://example/> SELECT * { SERVICE <"+SERVICE+"> { ?s :p ?o } SERVICE SILENT <"+SERVICE+"JUNK> { ?x :q ?y } }";
+            Context cxt = Context.create();
+            OpExecutorHTTP.register(cxt);
+            try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+                List<Binding> results = Iter.toList(qExec.select());
+                assertEquals(1, results.size());
+                assertFalse(results.get(0).contains(Var.alloc("x")));
+            }
+        });
+    }
+
+    @Test(expected=QueryExceptionHTTP.class)
+    public void service_parallel_error() {
+        logOnlyErrors(Fuseki.class, ()->{
+            String queryString = "PREFIX : <http://example/> SELECT * { SERVICE <"+SERVICE+"> { ?s :p ?o } SERVICE <"+SERVICE+"JUNK> { ?x :q ?y } }";
+            Context cxt = Context.create();
+            OpExecutorHTTP.register(cxt);
+            try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+                Iter.count(qExec.select());
+            }
+        });
+    }
+
+    @Test public void service_cache_execution() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->dsg.add(SSE.parseQuad("(_ :s :p :o)")));
+        AtomicInteger COUNTER = new AtomicInteger(0);
+        HttpRequestModifier counter = (params, httpHeaders) -> COUNTER.incrementAndGet();
+        OpService op = makeOpElt(env);
+        Context cxt = Context.create().set(Service2.httpServiceCache, true);
+        runWithModifier(SERVICE, counter, ()->{
+            assertEquals(1, Iter.count(Service2.exec(op, cxt)));
+            assertEquals(1, Iter.count(Service2.exec(op, cxt)));
+        });
+        assertEquals(1, COUNTER.get());
+        ServiceResultCache cache = Service2.executionServiceCache(cxt);
+        assertNotNull(cache);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test public void service_cache_execution_scope() {
+        String queryString = "SELECT * { SERVICE <"+SERVICE+"> { ?s ?p ?o } }";
+        AtomicInteger COUNTER = new AtomicInteger(0);
+        HttpRequestModifier counter = (params, httpHeaders) -> COUNTER.incrementAndGet();
+        Context cxt = Context.create().set(Service2.httpServiceCache, "true");
+        runWithModifier(SERVICE, counter, ()->{
+            for ( int i = 0 ; i < 2 ; i++ ) {
+                try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+                    Iter.count(qExec.select());
+                }
+            }
+        });
+        // Not shared between executions.
+        assertEquals(2, COUNTER.get());
+    }
+
+    @Test public void service_cache_shared() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->dsg.add(SSE.parseQuad("(_ :s :p :o)")));
+        String queryString = "SELECT * { SERVICE <"+SERVICE+"> { ?s ?p ?o } }";
+        AtomicInteger COUNTER = new AtomicInteger(0);
+        HttpRequestModifier counter = (params, httpHeaders) -> COUNTER.incrementAndGet();
+        ServiceResultCache cache = ServiceResultCache.create(10, 100, Duration.ofMinutes(1));
+        Context cxt = Context.create().set(Service2.httpServiceCache, cache);
+        runWithModifier(SERVICE, counter, ()->{
+            for ( int i = 0 ; i < 3 ; i++ ) {
+                try ( QueryExec qExec = QueryExec.newBuilder().query(queryString).dataset(localDataset()).context(cxt).build() ) {
+                    assertEquals(1, Iter.count(qExec.select()));
+                }
+            }
+        });
+        assertEquals(1, COUNTER.get());
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.rows());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void service_cache_limits() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            dsg.add(SSE.parseQuad("(_ :s :p 1)"));
+            dsg.add(SSE.parseQuad("(_ :s :p 2)"));
+        });
+        OpService op = makeOpElt(env);
+        // Too many rows to cache.
+        ServiceResultCache cache = ServiceResultCache.create(10, 1, null);
+        Context cxt = Context.create().set(Service2.httpServiceCache, cache);
+        assertEquals(2, Iter.count(Service2.exec(op, cxt)));
+        assertEquals(0, cache.size());
+        assertEquals(2, Iter.count(Service2.exec(op, cxt)));
+        assertEquals(0, cache.hits());
+    }
+
+    @Test public void service_cache_limits_spill() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->{
+            for ( int i = 0 ; i < 100 ; i++ )
+                dsg.add(SSE.parseQuad("(_ :s :p "+i+")"));
+        });
+        OpService op = makeOpElt(env);
+        // Too many rows to cache: the result goes on to the memory limit.
+        ServiceResultCache cache = ServiceResultCache.create(10, 10, null);
+        Context cxt = Context.create()
+                .set(Service2.httpServiceCache, cache)
+                .set(Service2.httpServiceMemoryLimit, 500);
+        long spills = RowSetSpillable.spills();
+        QueryIterator qIter = Service2.exec(op, cxt);
+        assertEquals(spills+1, RowSetSpillable.spills());
+        assertEquals(100, Iter.count(qIter));
+        qIter.close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void service_cache_client() {
+        DatasetGraph dsg = env.dsg();
+        dsg.executeWrite(()->dsg.add(SSE.parseQuad("(_ :s :p :o)")));
+        AtomicInteger COUNTER = new AtomicInteger(0);
+        HttpRequestModifier counter = (params, httpHeaders) -> COUNTER.incrementAndGet();
+        OpService op = makeOpElt(env);
+        ServiceResultCache cache = ServiceResultCache.create(10, 100, null);
+        // Different HttpClients, which may have different credentials, do not share results.
+        Context cxt1 = Context.create().set(Service2.httpServiceCache, cache)
+                .set(Service2.httpQueryClient, HttpClient.newHttpClient());
+        Context cxt2 = Context.create().set(Service2.httpServiceCache, cache)
+                .set(Service2.httpQueryClient, HttpClient.newHttpClient());
+        runWithModifier(SERVICE, counter, ()->{
+            assertEquals(1, Iter.count(Service2.exec(op, cxt1)));
+            assertEquals(1, Iter.count(Service2.exec(op, cxt2)));
+            assertEquals(1, Iter.count(Service2.exec(op, cxt1)));
+        });
+        assertEquals(2, COUNTER.get());
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test public void service_negative_cache() throws IOException {
+        // A port with no server.
+        int port;
+        try ( ServerSocket socket = new ServerSocket(0) ) {
+            port = socket.getLocalPort();
+        }
+        String deadURL = "http://localhost:"+port+"/ds";
+        ServiceNegativeCache negativeCache = ServiceNegativeCache.create(Duration.ofMinutes(1), Duration.ofMinutes(10));
+        Context cxt = Context.create().set(Service2.httpServiceNegativeCache, negativeCache);
+        OpService op = makeOp(env);
+        OpService opDead = new OpService(NodeFactory.createURI(deadURL), op.getSubOp(), false);
+        OpService opDeadSilent = new OpService(NodeFactory.createURI(deadURL), op.getSubOp(), true);
+
+        try {
+            Service2.exec(opDead, cxt);
+            fail("Expected an exception");
+        } catch (QueryExceptionHTTP ex) {}
+        assertTrue(negativeCache.isDown(deadURL));
+        assertEquals(1, negativeCache.markedDown());
+
+        // SILENT: one empty solution.
+        QueryIterator qIter = Service2.exec(opDeadSilent, cxt);
+        assertTrue(qIter.hasNext());
+        assertTrue(qIter.next().isEmpty());
+        assertFalse(qIter.hasNext());
+        // Not silent: fails fast.
+        try {
+            Service2.exec(opDead, cxt);
+            fail("Expected an exception");
+        } catch (QueryExceptionHTTP ex) {}
+        assertEquals(2, negativeCache.failFast());
+        assertEquals(0, negativeCache.probes());
+        // Other services are not affected.
+        assertNotNull(Service2.exec(op, cxt));
+    }
+
+    @Test public void service_negative_cache_probe() throws InterruptedException {
+        ServiceNegativeCache negativeCache = ServiceNegativeCache.create(Duration.ofMillis(100), Duration.ofSeconds(1));
+        Context cxt = Context.create().set(Service2.httpServiceNegativeCache, negativeCache);
+        OpService op = makeOp(env);
+        negativeCache.markDown(SERVICE);
+        try {
+            Service2.exec(op, cxt);
+            fail("Expected an exception");
+        } catch (QueryExceptionHTTP ex) {}
+        Thread.sleep(200);
+        // Starts the background check; this call still fails.
+        try {
+            Service2.exec(op, cxt);
+            fail("Expected an exception");
+        } catch (QueryExceptionHTTP ex) {}
+        assertEquals(1, negativeCache.probes());
+        for ( int i = 0 ; i < 100 && negativeCache.isDown(SERVICE) ; i++ )
+            Thread.sleep(50);
+        assertFalse(negativeCache.isDown(SERVICE));
+        assertNotNull(Service2.exec(op, cxt));
+    }
+
+    @Test public void service_negative_cache_off() {
+        ServiceNegativeCache.get().markDown(SERVICE);
+        try {
+            // Off by default.
+            assertNotNull(Service2.exec(makeOp(env), Context.create()));
+            Context cxt = Context.create().set(Service2.httpServiceNegativeCache, false);
+            assertNotNull(Service2.exec(makeOp(env), cxt));
+        } finally {
+            ServiceNegativeCache.get().markUp(SERVICE);
+        }
+    }
+
+    @Test public void service_negative_cache_shared() {
+        ServiceNegativeCache.get().markDown(SERVICE);
+        try {
+            Context cxt = Context.create().set(Service2.httpServiceNegativeCache, true);
+            try {
+                Service2.exec(makeOp(env), cxt);
+                fail("Expected an exception");
+            } catch (QueryExceptionHTTP ex) {}
+        } finally {
+            ServiceNegativeCache.get().markUp(SERVICE);
+        }
+    }
+
+    @Test public void service_negative_cache_mark_once() {
+        ServiceNegativeCache negativeCache = ServiceNegativeCache.create(Duration.ofMinutes(1), Duration.ofMinutes(10));
+        negativeCache.markDown(SERVICE);
+        negativeCache.markDown(SERVICE);
+        assertEquals(1, negativeCache.markedDown());
+        negativeCache.markUp(SERVICE);
+        negativeCache.markDown(SERVICE);
+        assertEquals(2, negativeCache.markedDown());
+    }
+
+    @Test public void service_negative_cache_status() {
+        ServiceNegativeCache negativeCache = ServiceNegativeCache.create(Duration.ofMinutes(1), Duration.ofMinutes(10));
+        // A server error for one request does not mean the service is unavailable.
+        negativeCache.failure(SERVICE, new HttpException(500, "Internal Server Error", null));
+        assertFalse(negativeCache.isDown(SERVICE));
+        negativeCache.failure(SERVICE, new HttpException(503, "Service Unavailable", null));
+        assertTrue(negativeCache.isDown(SERVICE));
+    }
+
     private static void runWithModifier(String key, HttpRequestModifier modifier, Runnable action) {
         RegistryRequestModifier.get().add(SERVICE, modifier);
         try {